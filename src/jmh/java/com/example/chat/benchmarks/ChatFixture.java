@@ -0,0 +1,189 @@
+package com.example.chat.benchmarks;
+
+import com.example.chat.cache.MessageDedupCache;
+import com.example.chat.cache.UserCache;
+import com.example.chat.cache.UserNameFilter;
+import com.example.chat.cluster.LoopbackClusterRouter;
+import com.example.chat.config.*;
+import com.example.chat.delivery.EventLogService;
+import com.example.chat.delivery.SseDeliveryService;
+import com.example.chat.delivery.SseEventEncoder;
+import com.example.chat.dto.NewMessageDTO;
+import com.example.chat.dto.RoomRequest;
+import com.example.chat.dto.UserDTO;
+import com.example.chat.enumeration.ClusterMode;
+import com.example.chat.enumeration.MessageDurability;
+import com.example.chat.enumeration.SlowConsumerPolicy;
+import com.example.chat.enumeration.UserStatus;
+import com.example.chat.metrics.MessageMetrics;
+import com.example.chat.presence.ConnectedUserRegistry;
+import com.example.chat.presence.UserStatusWriter;
+import com.example.chat.repository.AttachmentRepository;
+import com.example.chat.repository.EmailOutboxRepository;
+import com.example.chat.repository.MessageContentRepository;
+import com.example.chat.repository.MessageIdRepository;
+import com.example.chat.repository.MessageRepository;
+import com.example.chat.repository.RoomRepository;
+import com.example.chat.repository.UserRepository;
+import com.example.chat.search.MessageSearchIndex;
+import com.example.chat.service.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.mvc.method.annotation.BenchmarkEmitters;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The message path wired by hand over an {@link EmbeddedDatabase}, with {@code onlineUsers} users
+ * connected through emitters that serialize into a counting sink. Messages are persisted
+ * write-behind and the batch inserts are discarded, as are room messages and their delivery rows, so
+ * the database does not grow during a run; only the work on the sender's thread is measured.
+ */
+public class ChatFixture implements AutoCloseable {
+    private final EmbeddedDatabase database;
+    private final SseDeliveryService sseDeliveryService;
+    private final MessagePersistenceService messagePersistenceService;
+    private final EventHandlerService eventHandlerService;
+    private final RoomService roomService;
+    private final PendingDeliveryService pendingDeliveryService;
+    private final UserStatusWriter userStatusWriter;
+    private final MessageSearchIndex messageSearchIndex;
+    private final LongAdder bytesWritten = new LongAdder();
+
+    public ChatFixture(String name, int onlineUsers) throws IOException {
+        this(name, onlineUsers, new RoomProperties(0, 256, 100_000));
+    }
+
+    public ChatFixture(String name, int onlineUsers, RoomProperties roomProperties) throws IOException {
+        database = new EmbeddedDatabase(name);
+        database.insertUsers(onlineUsers, UserStatus.ONLINE.name());
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        UserRepository userRepository = new UserRepository(database.getJdbcTemplate());
+        UserNameFilter userNameFilter = new UserNameFilter(userRepository,
+                new UserNameFilterProperties(Math.max(onlineUsers, 1000), 0.01, Duration.ofSeconds(5),
+                        1000));
+        userNameFilter.refresh();
+        userStatusWriter = new UserStatusWriter(userRepository, new PresenceProperties(Duration.ofSeconds(1), 1000));
+        UserService userService = new UserService(userRepository,
+                new UserCache(new UserCacheProperties(Math.max(onlineUsers, 1000), Duration.ofMinutes(5))),
+                userNameFilter, userStatusWriter);
+        MessageRepository messageRepository = new MessageRepository(database.getJdbcTemplate()) {
+            @Override
+            public void saveAll(List<NewMessageDTO> messages) {
+            }
+        };
+        messageSearchIndex = new MessageSearchIndex(messageRepository, new SearchProperties(
+                Path.of("target", "jmh-search", name), Duration.ofSeconds(1), 1000, 200_000, 8, Duration.ofSeconds(30),
+                8, true));
+        MessagePersistenceProperties messagePersistenceProperties = new MessagePersistenceProperties(
+                MessageDurability.BUFFERED, 500, Duration.ofMillis(50), 10_000, Path.of("target", "jmh-journal"), 100);
+        messagePersistenceService = new MessagePersistenceService(messageRepository, messagePersistenceProperties,
+                objectMapper, messageSearchIndex);
+        MessageIdAllocator messageIdAllocator = new MessageIdAllocator(
+                new MessageIdRepository(database.getJdbcTemplate()), messagePersistenceProperties);
+        MessageService messageService = new MessageService(messageRepository, userService, messagePersistenceService,
+                messageIdAllocator);
+        MessageContentService messageContentService = new MessageContentService(
+                new MessageContentRepository(database.getJdbcTemplate()), messageRepository, messagePersistenceService,
+                userService, new LargeMessageProperties(255, 200, DataSize.ofMegabytes(1), 6));
+        AttachmentService attachmentService = new AttachmentService(
+                new AttachmentRepository(database.getJdbcTemplate()), messageRepository, messagePersistenceService,
+                userService,
+                new AttachmentProperties(Path.of("target", "jmh-attachments"), DataSize.ofMegabytes(100),
+                        Duration.ofDays(1), Duration.ofHours(1)));
+        EmailOutboxService emailOutboxService = new EmailOutboxService(
+                new EmailOutboxRepository(database.getJdbcTemplate()),
+                new EmailService(new JavaMailSenderImpl()), userService,
+                new EmailOutboxProperties(Duration.ofMinutes(2), 100, 5, Duration.ofSeconds(30), Duration.ofHours(1),
+                        Duration.ofMinutes(5)));
+
+        ConnectedUserRegistry registry = new ConnectedUserRegistry();
+        sseDeliveryService = new SseDeliveryService(
+                new DeliveryProperties(256, 4, 64, SlowConsumerPolicy.DROP_OLDEST),
+                new HeartbeatProperties(Duration.ofSeconds(15), Duration.ofSeconds(30), Duration.ofMillis(100), 512));
+        ReplayProperties replayProperties = new ReplayProperties(256, Duration.ofMinutes(10), 100_000, 500,
+                Duration.ofSeconds(2));
+        EventLogService eventLogService = new EventLogService(registry, sseDeliveryService, replayProperties,
+                new SseEventEncoder(objectMapper));
+        LoopbackClusterRouter clusterRouter = new LoopbackClusterRouter(eventLogService,
+                new ClusterProperties(ClusterMode.LOOPBACK, "bench", null, null, null, null, null));
+        MessageMetrics messageMetrics = new MessageMetrics(new SimpleMeterRegistry());
+        RoomRepository roomRepository = new RoomRepository(database.getJdbcTemplate()) {
+            @Override
+            public long saveMessage(long roomId, long senderId, String content, LocalDateTime timestamp,
+                                    Collection<Long> recipientIds) {
+                return 0;
+            }
+
+            @Override
+            public void markSent(long roomMessageId, List<Long> userIds, LocalDateTime timestamp) {
+            }
+        };
+        roomService = new RoomService(roomRepository, userService, emailOutboxService, registry, eventLogService,
+                clusterRouter, messageMetrics, roomProperties);
+        pendingDeliveryService = new PendingDeliveryService(messageService, roomRepository, userService,
+                eventLogService, sseDeliveryService, messageMetrics,
+                new PendingDeliveryProperties(500, 1, Duration.ofSeconds(30), Duration.ofMillis(200)));
+        eventHandlerService = new EventHandlerService(userService, messageService, messageContentService,
+                attachmentService, emailOutboxService, pendingDeliveryService, roomService, registry,
+                sseDeliveryService, eventLogService, replayProperties, clusterRouter, messageMetrics,
+                new MessageDedupCache(new MessageDedupProperties(Duration.ofMinutes(10), 100_000, Duration.ofSeconds(10)),
+                        new SimpleMeterRegistry()));
+
+        // Same steps as EventHandlerService.registerUser, with an emitter that can be written to outside a request
+        for (int i = 0; i < onlineUsers; i++) {
+            String userName = EmbeddedDatabase.userName(i);
+            SseEmitter sseEmitter = BenchmarkEmitters.attach(new SseEmitter(Long.MAX_VALUE), objectMapper,
+                    bytesWritten);
+            UserDTO userDTO = new UserDTO(sseEmitter, userName);
+            sseDeliveryService.open(userDTO, () -> { });
+            eventLogService.connect(userDTO, null);
+            clusterRouter.userConnected(userName);
+        }
+    }
+
+    public EventHandlerService getEventHandlerService() {
+        return eventHandlerService;
+    }
+
+    public RoomService getRoomService() {
+        return roomService;
+    }
+
+    /**
+     * Creates a room of user0 and the next members - 1 users.
+     */
+    public void createRoom(String name, int members) {
+        List<String> userNames = new ArrayList<>(members - 1);
+        for (int i = 1; i < members; i++) {
+            userNames.add(EmbeddedDatabase.userName(i));
+        }
+        roomService.create(EmbeddedDatabase.userName(0), new RoomRequest(name, userNames));
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public void close() throws Exception {
+        messagePersistenceService.shutdown();
+        roomService.shutdown();
+        pendingDeliveryService.shutdown();
+        sseDeliveryService.shutdown();
+        userStatusWriter.shutdown();
+        messageSearchIndex.shutdown();
+        database.close();
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.chat.benchmarks;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory H2 database in MySQL mode with the Flyway migrations applied, so the repositories run
+ * their production SQL unchanged.
+ */
+public final class EmbeddedDatabase implements AutoCloseable {
+    public static final String SCHEMA = "academy_chat";
+
+    private final HikariDataSource dataSource;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public EmbeddedDatabase(String name) {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url(name));
+        dataSource.setMaximumPoolSize(16);
+        Flyway.configure()
+                .dataSource(dataSource)
+                .schemas(SCHEMA)
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+        jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    }
+
+    public static String url(String name) {
+        return "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1"
+                + ";INIT=CREATE SCHEMA IF NOT EXISTS " + SCHEMA + "\\;SET SCHEMA " + SCHEMA;
+    }
+
+    public NamedParameterJdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    /**
+     * Inserts users named {@code user0 .. user<count-1>} with ids 1..count.
+     */
+    public void insertUsers(int count, String status) {
+        insertUsers(jdbcTemplate, count, status, "not-a-hash");
+    }
+
+    public static void insertUsers(NamedParameterJdbcTemplate jdbcTemplate, int count, String status,
+                                   String passwordHash) {
+        List<SqlParameterSource> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            batch.add(new MapSqlParameterSource("userName", userName(i))
+                    .addValue("email", userName(i) + "@example.com")
+                    .addValue("password", passwordHash)
+                    .addValue("status", status));
+        }
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO user (first_name, last_name, email, user_name, password, status)
+                VALUES('Bench', 'User', :email, :userName, :password, :status)
+                """, batch.toArray(new SqlParameterSource[0]));
+    }
+
+    public void insertMessages(long senderId, long receiverId, int count, String status, LocalDateTime start) {
+        List<SqlParameterSource> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            batch.add(new MapSqlParameterSource("content", "Hello, benchmark: " + i)
+                    .addValue("senderId", senderId)
+                    .addValue("receiverId", receiverId)
+                    .addValue("status", status)
+                    .addValue("timestamp", start.plusSeconds(i)));
+        }
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO message (content, sender_id, receiver_id, status, time_stamp)
+                VALUES(:content, :senderId, :receiverId, :status, :timestamp)
+                """, batch.toArray(new SqlParameterSource[0]));
+    }
+
+    public static String userName(int i) {
+        return "user" + i;
+    }
+
+    @Override
+    public void close() {
+        jdbcTemplate.getJdbcTemplate().execute("SHUTDOWN");
+        dataSource.close();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.chat.benchmarks;
+
+import com.example.chat.dto.ChatDTO;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sending a message to an online recipient through {@code handleMessage} and {@code sendMsg}, for
+ * different numbers of connected users.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class EventHandlerServiceBenchmark {
+    @Param({"10", "1000", "10000"})
+    int onlineUsers;
+
+    ChatFixture fixture;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = new ChatFixture("handler" + onlineUsers, onlineUsers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Benchmark
+    public boolean handleMessage() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String sender = EmbeddedDatabase.userName(random.nextInt(onlineUsers));
+        ChatDTO chatDTO = new ChatDTO("Hello, benchmark", EmbeddedDatabase.userName(random.nextInt(onlineUsers)));
+        return fixture.getEventHandlerService().handleMessage(sender, chatDTO);
+    }
+
+    @Benchmark
+    public boolean sendMsg() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String sender = EmbeddedDatabase.userName(random.nextInt(onlineUsers));
+        ChatDTO chatDTO = new ChatDTO("Hello, benchmark", EmbeddedDatabase.userName(random.nextInt(onlineUsers)));
+        return fixture.getEventHandlerService().sendMsg(chatDTO, sender);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.chat.benchmarks;
+
+import com.example.chat.config.RoomProperties;
+import com.example.chat.dto.RoomSendResponse;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sending a message to a room whose members are all online, pushed on the sender's thread
+ * ({@code fanOutThreads=1}) versus partitioned over one thread per core ({@code fanOutThreads=0}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoomFanOutBenchmark {
+    @Param({"100", "1000", "10000"})
+    int members;
+
+    @Param({"1", "0"})
+    int fanOutThreads;
+
+    ChatFixture fixture;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = new ChatFixture("room" + members + "x" + fanOutThreads, members,
+                new RoomProperties(fanOutThreads, 256, members));
+        fixture.createRoom("bench", members);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Benchmark
+    public RoomSendResponse send() {
+        return fixture.getRoomService().send(EmbeddedDatabase.userName(0), "bench", "Hello, benchmark");
+    }
+}
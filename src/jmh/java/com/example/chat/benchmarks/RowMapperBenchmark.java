@@ -0,0 +1,68 @@
+package com.example.chat.benchmarks;
+
+import com.example.chat.enumeration.MessageStatus;
+import com.example.chat.enumeration.UserStatus;
+import com.example.chat.model.Message;
+import com.example.chat.model.User;
+import com.example.chat.repository.MessageRepository;
+import com.example.chat.repository.UserRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link UserRepository} and {@link MessageRepository} queries and row mappers against H2. Every
+ * user has {@code messagesPerUser} pending messages from the next user.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RowMapperBenchmark {
+    private static final int USERS = 1_000;
+
+    @Param({"10", "100"})
+    int messagesPerUser;
+
+    EmbeddedDatabase database;
+    UserRepository userRepository;
+    MessageRepository messageRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new EmbeddedDatabase("mappers" + messagesPerUser);
+        database.insertUsers(USERS, UserStatus.OFFLINE.name());
+        LocalDateTime start = LocalDateTime.now().minusDays(1);
+        for (long id = 1; id <= USERS; id++) {
+            database.insertMessages(id % USERS + 1, id, messagesPerUser, MessageStatus.PENDING.name(), start);
+        }
+        userRepository = new UserRepository(database.getJdbcTemplate());
+        messageRepository = new MessageRepository(database.getJdbcTemplate());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public User getByUserName() {
+        return userRepository.getByUserName(EmbeddedDatabase.userName(ThreadLocalRandom.current().nextInt(USERS)));
+    }
+
+    @Benchmark
+    public List<Message> getPendingChunk() {
+        return messageRepository.getPendingChunk(ThreadLocalRandom.current().nextInt(USERS) + 1, 0, 500);
+    }
+
+    @Benchmark
+    public List<Message> getConversationPage() {
+        long userId = ThreadLocalRandom.current().nextInt(USERS) + 1;
+        return messageRepository.getConversationPage(userId, userId % USERS + 1, null, null, 50);
+    }
+}
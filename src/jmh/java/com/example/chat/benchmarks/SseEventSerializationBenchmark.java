@@ -0,0 +1,56 @@
+package com.example.chat.benchmarks;
+
+import com.example.chat.events.ChatEvent;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.BenchmarkEmitters;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Building a {@link ChatEvent} frame with {@code SseEmitter.event()} and writing its parts the way
+ * the servlet handler does, for short and maximum-length messages.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SseEventSerializationBenchmark {
+    @Param({"16", "255"})
+    int contentLength;
+
+    ObjectMapper objectMapper;
+    ChatEvent chatEvent;
+    OutputStream sink;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        chatEvent = new ChatEvent("x".repeat(contentLength), "user42");
+        sink = new BenchmarkEmitters.CountingOutputStream(new LongAdder());
+    }
+
+    @Benchmark
+    public Set<ResponseBodyEmitter.DataWithMediaType> build() {
+        return SseEmitter.event()
+                .name(chatEvent.getEventType())
+                .id("1729200000000001:1729200000000")
+                .data(chatEvent, MediaType.APPLICATION_JSON)
+                .build();
+    }
+
+    @Benchmark
+    public void buildAndWrite() throws IOException {
+        BenchmarkEmitters.write(build(), objectMapper, sink);
+    }
+}
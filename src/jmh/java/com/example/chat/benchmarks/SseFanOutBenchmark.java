@@ -0,0 +1,70 @@
+package com.example.chat.benchmarks;
+
+import com.example.chat.delivery.EncodedSseEvent;
+import com.example.chat.delivery.SseEventEncoder;
+import com.example.chat.events.ChatEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.BenchmarkEmitters;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivering one event to every connection of a user, serialized per connection the way
+ * {@code SseEmitter.event()} does it versus encoded once into an {@link EncodedSseEvent}. Run with
+ * {@code -Dbenchmarks="SseFanOut -prof gc"}; {@code gc.alloc.rate.norm} divided by {@code connections}
+ * is the allocation per delivered event.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SseFanOutBenchmark {
+    private static final String EVENT_ID = "1729200000000001:1729200000000";
+
+    @Param({"1", "4", "16"})
+    int connections;
+
+    @Param({"16", "255"})
+    int contentLength;
+
+    SseEventEncoder encoder;
+    ChatEvent chatEvent;
+    SseEmitter[] emitters;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        encoder = new SseEventEncoder(objectMapper);
+        chatEvent = new ChatEvent("x".repeat(contentLength), "user42");
+        LongAdder bytesWritten = new LongAdder();
+        emitters = new SseEmitter[connections];
+        for (int i = 0; i < connections; i++) {
+            emitters[i] = BenchmarkEmitters.attach(new SseEmitter(Long.MAX_VALUE), objectMapper, bytesWritten);
+        }
+    }
+
+    @Benchmark
+    public void serializePerConnection() throws IOException {
+        for (SseEmitter emitter : emitters) {
+            emitter.send(SseEmitter.event()
+                    .name(chatEvent.getEventType())
+                    .id(EVENT_ID)
+                    .data(chatEvent, MediaType.APPLICATION_JSON));
+        }
+    }
+
+    @Benchmark
+    public void encodeOnce() throws IOException {
+        EncodedSseEvent encoded = encoder.encode(EVENT_ID, chatEvent);
+        for (SseEmitter emitter : emitters) {
+            emitter.send(encoded);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.chat.loadtest;
+
+import com.example.chat.ChatApplication;
+import com.example.chat.benchmarks.EmbeddedDatabase;
+import com.example.chat.enumeration.UserStatus;
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The chat application on a random port, backed by H2 and with GreenMail as the SMTP server. Users
+ * are inserted directly, sharing one low-cost BCrypt hash, so seeding thousands of them is quick.
+ */
+public class EmbeddedChatServer implements AutoCloseable {
+    private final GreenMail greenMail;
+    private final ConfigurableApplicationContext context;
+
+    public EmbeddedChatServer(int users, String password) {
+        greenMail = new GreenMail(ServerSetupTest.SMTP.dynamicPort());
+        greenMail.start();
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", 0);
+        properties.put("server.tomcat.max-connections", 20_000);
+        properties.put("spring.datasource.url", EmbeddedDatabase.url("loadtest"));
+        properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.datasource.hikari.maximum-pool-size", 32);
+        properties.put("spring.flyway.schemas", EmbeddedDatabase.SCHEMA);
+        properties.put("spring.mail.host", "localhost");
+        properties.put("spring.mail.port", greenMail.getSmtp().getPort());
+        properties.put("spring.mail.username", "");
+        properties.put("spring.mail.password", "");
+        properties.put("spring.mail.properties.mail.smtp.auth", false);
+        properties.put("spring.mail.properties.mail.smtp.starttls.enable", false);
+        properties.put("spring.mail.properties.mail.smtp.starttls.required", false);
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.file.name", "target/loadtest/app.log");
+        properties.put("chat.message-persistence.journal-dir", "target/loadtest/journal");
+        properties.put("chat.email-outbox.poll-interval", "PT1S");
+        properties.put("chat.email-outbox.digest-window", "PT1S");
+        // Passed as command line arguments, which take precedence over application.properties
+        String[] args = properties.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        try {
+            context = new SpringApplicationBuilder(ChatApplication.class).run(args);
+        } catch (RuntimeException e) {
+            greenMail.stop();
+            throw e;
+        }
+
+        EmbeddedDatabase.insertUsers(context.getBean(NamedParameterJdbcTemplate.class), users,
+                UserStatus.OFFLINE.name(), new BCryptPasswordEncoder(4).encode(password));
+    }
+
+    public URI getBaseUri() {
+        return URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+    }
+
+    public int getReceivedEmailCount() {
+        return greenMail.getReceivedMessages().length;
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        greenMail.stop();
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.chat.loadtest;
+
+public enum LoadPattern {
+    /**
+     * Every message goes from a random online user to a random other online user.
+     */
+    ONE_TO_ONE,
+    /**
+     * A share of the messages goes to a few hot recipients, the rest is one-to-one.
+     */
+    HOT_RECIPIENTS,
+    /**
+     * One-to-one traffic with periodic bursts to users that are offline; they log in at the end
+     * and receive their pending messages.
+     */
+    OFFLINE_BURST
+}
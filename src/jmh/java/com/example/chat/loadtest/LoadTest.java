@@ -0,0 +1,278 @@
+package com.example.chat.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * End-to-end load test: logs in simulated users over {@code /public/login}, holds their SSE streams
+ * open and sends messages over {@code POST /api/v1/message} at a fixed rate. Latency is measured
+ * from the intended send time to the arrival of the event, so a stalled server is not hidden by a
+ * stalled sender (coordinated omission).
+ * <p>
+ * Run with: {@code mvn -Pbenchmarks test-compile exec:exec@loadtest -Dloadtest.args="--users=5000 --rate=2000"}
+ * <p>
+ * Rates near or above {@code chat.rate-limit.global-rate} are answered with 429 and counted as
+ * failed sends, start the server with a higher limit or {@code chat.rate-limit.enabled=false}.
+ */
+public class LoadTest {
+    private static final String PASSWORD = "Load@Test1";
+    private static final String MARKER = "lt:";
+    private static final Path REPORT_DIR = Path.of("target", "loadtest");
+
+    private final LoadTestOptions options;
+    private final HttpClient client;
+    private final URI baseUri;
+    private final List<SimulatedUser> users = new ArrayList<>();
+    private final Recorder latency = new Recorder(3);
+    private final Recorder pendingLatency = new Recorder(3);
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder notSent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder offlineSent = new LongAdder();
+    private final LongAdder pendingReceived = new LongAdder();
+    private volatile long measureFromNanos = Long.MAX_VALUE;
+
+    LoadTest(LoadTestOptions options, HttpClient client, URI baseUri) {
+        this.options = options;
+        this.client = client;
+        this.baseUri = baseUri;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        EmbeddedChatServer server = options.target() == null ? new EmbeddedChatServer(options.users(), PASSWORD) : null;
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2);
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(clientExecutor)
+                .build();
+        try {
+            LoadTest loadTest = new LoadTest(options, client, server != null ? server.getBaseUri() : options.target());
+            loadTest.run(server);
+        } finally {
+            clientExecutor.shutdownNow();
+            if (server != null) {
+                server.close();
+            }
+        }
+        System.exit(0);
+    }
+
+    void run(EmbeddedChatServer server) throws Exception {
+        // Seeded users are named like the benchmark users, registered ones get a per-run prefix
+        String prefix = server != null ? "user" : "lt" + System.currentTimeMillis() / 1000 + "u";
+        for (int i = 0; i < options.users(); i++) {
+            users.add(new SimulatedUser(prefix + i, PASSWORD));
+        }
+        if (server == null) {
+            forEachBounded(users, user -> user.register(client, baseUri));
+        }
+
+        long heapBefore = usedHeapAfterGc();
+        long connectStart = System.nanoTime();
+        forEachBounded(users.subList(0, options.onlineUsers()),
+                user -> user.login(client, baseUri).thenCompose(ignored -> user.subscribe(client, baseUri,
+                        this::onChatEvent)));
+        Duration connectTime = Duration.ofNanos(System.nanoTime() - connectStart);
+        long heapPerConnection = (usedHeapAfterGc() - heapBefore) / Math.max(1, options.onlineUsers());
+
+        long sendStart = System.nanoTime();
+        sendMessages();
+        awaitQuiet(received);
+        double measuredSeconds = (System.nanoTime() - Math.max(measureFromNanos, sendStart)) / 1e9;
+
+        Duration pendingDrainTime = null;
+        if (options.offlineUsers() > 0) {
+            long loginStart = System.nanoTime();
+            forEachBounded(users.subList(options.onlineUsers(), options.users()),
+                    user -> user.login(client, baseUri).thenCompose(ignored -> user.subscribe(client, baseUri,
+                            this::onPendingEvent)));
+            awaitQuiet(pendingReceived);
+            pendingDrainTime = Duration.ofNanos(System.nanoTime() - loginStart);
+        }
+
+        report(connectTime, heapPerConnection, measuredSeconds, pendingDrainTime,
+                server != null ? server.getReceivedEmailCount() : -1);
+    }
+
+    private void sendMessages() throws InterruptedException {
+        Semaphore inFlight = new Semaphore(options.maxInFlight());
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / options.rate();
+        long start = System.nanoTime();
+        measureFromNanos = start + options.warmup().toNanos();
+        long end = measureFromNanos + options.duration().toNanos();
+        long nextBurst = start + options.burstInterval().toNanos();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (long k = 0; ; k++) {
+            long intended = start + k * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+            LockSupport.parkNanos(intended - System.nanoTime());
+            int sender = random.nextInt(options.onlineUsers());
+            send(inFlight, sender, recipient(sender, random), intended);
+            if (options.offlineUsers() > 0 && intended >= nextBurst) {
+                nextBurst += options.burstInterval().toNanos();
+                for (int i = 0; i < options.burstSize(); i++) {
+                    send(inFlight, random.nextInt(options.onlineUsers()),
+                            options.onlineUsers() + random.nextInt(options.offlineUsers()), intended);
+                    offlineSent.increment();
+                }
+            }
+        }
+        if (!inFlight.tryAcquire(options.maxInFlight(), 30, TimeUnit.SECONDS)) {
+            System.err.println("Some requests did not complete within 30 s");
+        }
+    }
+
+    private int recipient(int sender, ThreadLocalRandom random) {
+        if (options.pattern() == LoadPattern.HOT_RECIPIENTS && random.nextDouble() < options.hotShare()) {
+            return random.nextInt(Math.min(options.hotRecipients(), options.onlineUsers()));
+        }
+        int recipient = random.nextInt(options.onlineUsers() - 1);
+        return recipient >= sender ? recipient + 1 : recipient;
+    }
+
+    private void send(Semaphore inFlight, int sender, int recipient, long intended) throws InterruptedException {
+        String body = """
+                {"messageContent":"%s%d:","userName":"%s"}""".formatted(MARKER, intended,
+                users.get(recipient).getUserName());
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/api/v1/message"))
+                .header("Authorization", users.get(sender).getAuthorization())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        inFlight.acquire();
+        client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, failure) -> {
+            inFlight.release();
+            if (failure != null || response.statusCode() != 200) {
+                failed.increment();
+            } else if (response.body().contains("not sent")) {
+                notSent.increment();
+            } else {
+                accepted.increment();
+            }
+        });
+    }
+
+    private void onChatEvent(String dataLine) {
+        long intended = parseIntendedNanos(dataLine);
+        if (intended >= measureFromNanos) {
+            received.increment();
+            latency.recordValue(Math.max(0, System.nanoTime() - intended) / 1_000);
+        }
+    }
+
+    private void onPendingEvent(String dataLine) {
+        long intended = parseIntendedNanos(dataLine);
+        if (intended != Long.MIN_VALUE) {
+            pendingReceived.increment();
+            pendingLatency.recordValue(Math.max(0, System.nanoTime() - intended) / 1_000);
+        }
+    }
+
+    private static long parseIntendedNanos(String dataLine) {
+        int from = dataLine.indexOf(MARKER);
+        if (from < 0) {
+            return Long.MIN_VALUE;
+        }
+        from += MARKER.length();
+        int to = dataLine.indexOf(':', from);
+        return Long.parseLong(dataLine, from, to, 10);
+    }
+
+    private void forEachBounded(List<SimulatedUser> targets,
+                                Function<SimulatedUser, CompletableFuture<Void>> action)
+            throws InterruptedException, ExecutionException {
+        Semaphore permits = new Semaphore(options.loginConcurrency());
+        List<CompletableFuture<Void>> futures = new ArrayList<>(targets.size());
+        for (SimulatedUser user : targets) {
+            permits.acquire();
+            futures.add(action.apply(user).whenComplete((ignored, failure) -> permits.release()));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+    }
+
+    /**
+     * Waits until the counter has not moved for a second, at most 30 seconds.
+     */
+    private static void awaitQuiet(LongAdder counter) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        long last = -1;
+        while (System.nanoTime() < deadline) {
+            long current = counter.sum();
+            if (current == last) {
+                return;
+            }
+            last = current;
+            Thread.sleep(1_000);
+        }
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private void report(Duration connectTime, long heapPerConnection, double measuredSeconds,
+                        Duration pendingDrainTime, int emails) throws IOException {
+        Histogram histogram = latency.getIntervalHistogram();
+        PrintStream out = System.out;
+        out.println();
+        out.printf("Pattern %s, %d users (%d online), target %d msg/s, %s warmup, %s measured%n",
+                options.pattern(), options.users(), options.onlineUsers(), options.rate(),
+                options.warmup(), options.duration());
+        out.printf("Connected %d streams in %d ms, heap per connection %d bytes%s%n", options.onlineUsers(),
+                connectTime.toMillis(), heapPerConnection,
+                options.target() == null ? " (client and server share the JVM)" : " (client side only)");
+        out.printf("Sent: %d accepted, %d not delivered, %d failed, including warmup%n",
+                accepted.sum(), notSent.sum(), failed.sum());
+        out.printf("Received: %d in the measured window, %.1f msg/s%n", received.sum(),
+                received.sum() / measuredSeconds);
+        printLatency(out, "Send-to-receive latency", histogram);
+        if (pendingDrainTime != null) {
+            out.printf("Offline bursts: %d messages sent, %d delivered after login within %d ms%n",
+                    offlineSent.sum(), pendingReceived.sum(), pendingDrainTime.toMillis());
+            printLatency(out, "Send-to-receive latency of pending messages", pendingLatency.getIntervalHistogram());
+        }
+        if (emails >= 0) {
+            out.printf("Emails received by the SMTP stand-in: %d%n", emails);
+        }
+
+        Files.createDirectories(REPORT_DIR);
+        Path hgrm = REPORT_DIR.resolve("latency.hgrm");
+        try (PrintStream file = new PrintStream(Files.newOutputStream(hgrm))) {
+            histogram.outputPercentileDistribution(file, 1_000.0);
+        }
+        out.printf("Latency distribution in milliseconds written to %s%n", hgrm);
+    }
+
+    private static void printLatency(PrintStream out, String title, Histogram histogram) {
+        out.printf("%s (ms): p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, max %.2f, count %d%n", title,
+                histogram.getValueAtPercentile(50) / 1_000.0, histogram.getValueAtPercentile(90) / 1_000.0,
+                histogram.getValueAtPercentile(99) / 1_000.0, histogram.getValueAtPercentile(99.9) / 1_000.0,
+                histogram.getMaxValue() / 1_000.0, histogram.getTotalCount());
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.chat.loadtest;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Options given as {@code --name=value} arguments; see {@link #usage()}.
+ */
+public record LoadTestOptions(
+        URI target,
+        int users,
+        Duration warmup,
+        Duration duration,
+        int rate,
+        LoadPattern pattern,
+        int hotRecipients,
+        double hotShare,
+        double offlineShare,
+        int burstSize,
+        Duration burstInterval,
+        int loginConcurrency,
+        int maxInFlight
+) {
+    public static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Unexpected argument " + arg + "\n" + usage());
+            }
+            int separator = arg.indexOf('=');
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        String target = values.remove("target");
+        LoadTestOptions options = new LoadTestOptions(
+                target == null ? null : URI.create(target),
+                Integer.parseInt(values.getOrDefault("users", "1000")),
+                Duration.parse(values.getOrDefault("warmup", "PT10S")),
+                Duration.parse(values.getOrDefault("duration", "PT60S")),
+                Integer.parseInt(values.getOrDefault("rate", "500")),
+                LoadPattern.valueOf(values.getOrDefault("pattern", "ONE_TO_ONE")),
+                Integer.parseInt(values.getOrDefault("hot-recipients", "10")),
+                Double.parseDouble(values.getOrDefault("hot-share", "0.8")),
+                Double.parseDouble(values.getOrDefault("offline-share", "0.1")),
+                Integer.parseInt(values.getOrDefault("burst-size", "200")),
+                Duration.parse(values.getOrDefault("burst-interval", "PT5S")),
+                Integer.parseInt(values.getOrDefault("login-concurrency", "64")),
+                Integer.parseInt(values.getOrDefault("max-in-flight", "256")));
+        values.keySet().removeAll(List.of("users", "warmup", "duration", "rate", "pattern",
+                "hot-recipients", "hot-share", "offline-share", "burst-size", "burst-interval",
+                "login-concurrency", "max-in-flight"));
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options " + values.keySet() + "\n" + usage());
+        }
+        return options;
+    }
+
+    public int offlineUsers() {
+        return pattern == LoadPattern.OFFLINE_BURST ? (int) Math.round(users * offlineShare) : 0;
+    }
+
+    public int onlineUsers() {
+        return users - offlineUsers();
+    }
+
+    public static String usage() {
+        return """
+                Options (durations in ISO-8601, e.g. PT30S):
+                  --target=<url>               run against a running server; users are registered over the API.
+                                               Without it an embedded server with H2 and GreenMail is started.
+                  --users=1000                 simulated users
+                  --warmup=PT10S --duration=PT60S
+                  --rate=500                   messages per second
+                  --pattern=ONE_TO_ONE         ONE_TO_ONE, HOT_RECIPIENTS or OFFLINE_BURST
+                  --hot-recipients=10 --hot-share=0.8
+                  --offline-share=0.1 --burst-size=200 --burst-interval=PT5S
+                  --login-concurrency=64 --max-in-flight=256
+                """;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.chat.loadtest;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * One user of the load test: logs in, keeps an SSE stream open and passes every {@code data:} line
+ * to a consumer. Streams are read asynchronously, so thousands of them need no thread each.
+ */
+public class SimulatedUser {
+    private final String userName;
+    private final String password;
+    private final String authorization;
+
+    public SimulatedUser(String userName, String password) {
+        this.userName = userName;
+        this.password = password;
+        this.authorization = "Basic " + Base64.getEncoder()
+                .encodeToString((userName + ":" + password).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public String getAuthorization() {
+        return authorization;
+    }
+
+    public CompletableFuture<Void> register(HttpClient client, URI baseUri) {
+        String body = """
+                {"firstName":"Load","lastName":"Test","email":"%s@example.com","userName":"%s","password":"%s"}
+                """.formatted(userName, userName, password);
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/public/register"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenAccept(response -> expectStatus(response, 201, "register"));
+    }
+
+    public CompletableFuture<Void> login(HttpClient client, URI baseUri) {
+        String form = "username=" + URLEncoder.encode(userName, StandardCharsets.UTF_8)
+                + "&password=" + URLEncoder.encode(password, StandardCharsets.UTF_8);
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/public/login"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenAccept(response -> expectStatus(response, 200, "login"));
+    }
+
+    /**
+     * @return completes once the stream is open
+     */
+    public CompletableFuture<Void> subscribe(HttpClient client, URI baseUri, Consumer<String> onData) {
+        CompletableFuture<Void> connected = new CompletableFuture<>();
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/api/v1/subscribe"))
+                .header("Authorization", authorization)
+                .header("Accept", "text/event-stream")
+                .GET()
+                .build();
+        client.sendAsync(request, responseInfo -> {
+                    if (responseInfo.statusCode() != 200) {
+                        connected.completeExceptionally(new IllegalStateException(
+                                "subscribe of " + userName + " failed with " + responseInfo.statusCode()));
+                        return HttpResponse.BodySubscribers.discarding();
+                    }
+                    return HttpResponse.BodySubscribers.fromLineSubscriber(new DataLineSubscriber(connected, onData));
+                })
+                .whenComplete((response, failure) -> {
+                    if (failure != null) {
+                        connected.completeExceptionally(failure);
+                    }
+                });
+        return connected;
+    }
+
+    private void expectStatus(HttpResponse<?> response, int status, String action) {
+        if (response.statusCode() != status) {
+            throw new IllegalStateException(action + " of " + userName + " failed with " + response.statusCode());
+        }
+    }
+
+    private static class DataLineSubscriber implements Flow.Subscriber<String> {
+        private final CompletableFuture<Void> connected;
+        private final Consumer<String> onData;
+
+        DataLineSubscriber(CompletableFuture<Void> connected, Consumer<String> onData) {
+            this.connected = connected;
+            this.onData = onData;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+            connected.complete(null);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (line.startsWith("data:")) {
+                onData.accept(line);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            connected.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
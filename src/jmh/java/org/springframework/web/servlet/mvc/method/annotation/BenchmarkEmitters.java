@@ -0,0 +1,105 @@
+package org.springframework.web.servlet.mvc.method.annotation;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Attaches emitters to a handler that serializes every event into a counting sink instead of an
+ * HTTP response. It lives in Spring's package because {@code ResponseBodyEmitter.Handler} is
+ * package-private; without a handler an emitter would buffer every event forever.
+ */
+public final class BenchmarkEmitters {
+    private BenchmarkEmitters() {
+    }
+
+    public static <T extends ResponseBodyEmitter> T attach(T emitter, ObjectMapper objectMapper,
+                                                           LongAdder bytesWritten) throws IOException {
+        emitter.initialize(new SerializingHandler(objectMapper.copy().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET),
+                bytesWritten));
+        return emitter;
+    }
+
+    /**
+     * Writes the parts of one event the way the servlet handler does: byte arrays as is, strings as
+     * UTF-8 and everything else as JSON.
+     */
+    public static void write(Set<ResponseBodyEmitter.DataWithMediaType> parts, ObjectMapper objectMapper,
+                             OutputStream out) throws IOException {
+        for (ResponseBodyEmitter.DataWithMediaType part : parts) {
+            Object data = part.getData();
+            if (data instanceof byte[] bytes) {
+                out.write(bytes);
+            } else if (data instanceof String text) {
+                out.write(text.getBytes(StandardCharsets.UTF_8));
+            } else {
+                objectMapper.writeValue(out, data);
+            }
+        }
+    }
+
+    public static class CountingOutputStream extends OutputStream {
+        private final LongAdder count;
+
+        public CountingOutputStream(LongAdder count) {
+            this.count = count;
+        }
+
+        @Override
+        public void write(int b) {
+            count.increment();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count.add(len);
+        }
+    }
+
+    private static class SerializingHandler implements ResponseBodyEmitter.Handler {
+        private final ObjectMapper objectMapper;
+        private final OutputStream out;
+
+        SerializingHandler(ObjectMapper objectMapper, LongAdder bytesWritten) {
+            this.objectMapper = objectMapper;
+            this.out = new CountingOutputStream(bytesWritten);
+        }
+
+        @Override
+        public void send(Object data, MediaType mediaType) throws IOException {
+            write(Set.of(new ResponseBodyEmitter.DataWithMediaType(data, mediaType)), objectMapper, out);
+        }
+
+        @Override
+        public void send(Set<ResponseBodyEmitter.DataWithMediaType> items) throws IOException {
+            write(items, objectMapper, out);
+        }
+
+        @Override
+        public void complete() {
+        }
+
+        @Override
+        public void completeWithError(Throwable failure) {
+        }
+
+        @Override
+        public void onTimeout(Runnable callback) {
+        }
+
+        @Override
+        public void onError(Consumer<Throwable> callback) {
+        }
+
+        @Override
+        public void onCompletion(Runnable callback) {
+        }
+    }
+}
@@ -20,6 +20,7 @@ import java.util.ArrayList;
 public class CustomAuthenticationProvider implements AuthenticationProvider {
     private final UserDetailsService userDetailsService;
     private final PasswordEncoder passwordEncoder;
+    private final VerifiedCredentialCache verifiedCredentialCache;
 
     @Override
     public Authentication authenticate(Authentication authentication) throws AuthenticationException {
@@ -28,8 +29,11 @@ public class CustomAuthenticationProvider implements AuthenticationProvider {
 
         UserDetails userDetails = userDetailsService.loadUserByUsername(username);
 
-        if (!passwordEncoder.matches(password, userDetails.getPassword())) {
-            throw new BadCredentialsException("Invalid password");
+        if (!verifiedCredentialCache.matches(username, userDetails.getPassword(), password)) {
+            if (!passwordEncoder.matches(password, userDetails.getPassword())) {
+                throw new BadCredentialsException("Invalid password");
+            }
+            verifiedCredentialCache.remember(username, userDetails.getPassword(), password);
         }
 
         return new UsernamePasswordAuthenticationToken(username, password, new ArrayList<>());
@@ -0,0 +1,61 @@
+package com.example.chat.authentication;
+
+import com.example.chat.config.CredentialCacheProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+/**
+ * Remembers credentials that already passed the password encoder, so repeated HTTP Basic requests
+ * skip BCrypt. Only an HMAC of the stored hash and the raw password is kept, under a key that never
+ * leaves the process; a changed password therefore no longer matches, and entries expire after a TTL.
+ */
+@Component
+public class VerifiedCredentialCache {
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final Cache<String, byte[]> verifiedCredentials;
+    private final SecretKeySpec key;
+
+    public VerifiedCredentialCache(CredentialCacheProperties properties) {
+        this.verifiedCredentials = Caffeine.newBuilder()
+                .maximumSize(properties.maximumSize())
+                .expireAfterWrite(properties.timeToLive())
+                .build();
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, HMAC_ALGORITHM);
+    }
+
+    public boolean matches(String username, String encodedPassword, String rawPassword) {
+        byte[] verified = verifiedCredentials.getIfPresent(username);
+        return verified != null && MessageDigest.isEqual(verified, digest(encodedPassword, rawPassword));
+    }
+
+    public void remember(String username, String encodedPassword, String rawPassword) {
+        verifiedCredentials.put(username, digest(encodedPassword, rawPassword));
+    }
+
+    public void revoke(String username) {
+        verifiedCredentials.invalidate(username);
+    }
+
+    private byte[] digest(String encodedPassword, String rawPassword) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            mac.update(encodedPassword.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(rawPassword.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC not available", e);
+        }
+    }
+}
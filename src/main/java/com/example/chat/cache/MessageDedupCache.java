@@ -0,0 +1,82 @@
+package com.example.chat.cache;
+
+import com.example.chat.config.MessageDedupProperties;
+import com.example.chat.errorHandling.MessageStoreUnavailable;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Bounded, time-windowed outcomes of sends by sender and client message id. A retry within the window
+ * gets the outcome of the first send without pushing or storing the message again, a retry arriving
+ * while the first send is still running waits for it, up to the wait timeout. Past the window, or on
+ * another node of a cluster, the retry finds the stored message by (sender_id, client_message_id)
+ * before it is published.
+ */
+@Component
+public class MessageDedupCache {
+    private final Cache<Submission, CompletableFuture<Boolean>> outcomes;
+    private final Counter duplicateCounter;
+    private final long waitTimeoutMillis;
+
+    private record Submission(String sender, String clientMessageId) {
+    }
+
+    public MessageDedupCache(MessageDedupProperties properties, MeterRegistry meterRegistry) {
+        this.outcomes = Caffeine.newBuilder()
+                .maximumSize(properties.maximumSize())
+                .expireAfterWrite(properties.window())
+                .build();
+        this.duplicateCounter = Counter.builder("chat.messages")
+                .tag("outcome", "duplicate")
+                .register(meterRegistry);
+        this.waitTimeoutMillis = properties.waitTimeout().toMillis();
+    }
+
+    /**
+     * Runs send unless the sender already sent the client message id within the window.
+     *
+     * @return the outcome of send, or of the earlier send of the same client message id
+     * @throws MessageStoreUnavailable if the earlier send is still running after the wait timeout
+     */
+    public boolean submit(String sender, String clientMessageId, BooleanSupplier send) {
+        Submission submission = new Submission(sender, clientMessageId);
+        while (true) {
+            CompletableFuture<Boolean> outcome = new CompletableFuture<>();
+            // Not computed inside the cache, a send would hold the lock of other keys in its bin
+            CompletableFuture<Boolean> earlier = outcomes.asMap().putIfAbsent(submission, outcome);
+            if (earlier == null) {
+                try {
+                    boolean sent = send.getAsBoolean();
+                    outcome.complete(sent);
+                    return sent;
+                } catch (Throwable e) {
+                    // A failed send is not remembered, its retry sends again; waiting retries are released
+                    outcomes.asMap().remove(submission, outcome);
+                    outcome.completeExceptionally(e);
+                    throw e;
+                }
+            }
+            try {
+                boolean sent = earlier.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+                duplicateCounter.increment();
+                return sent;
+            } catch (ExecutionException e) {
+                // The earlier send failed and was removed, try to be the one that sends
+            } catch (TimeoutException e) {
+                throw new MessageStoreUnavailable("The message is still being sent, try again later!");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MessageStoreUnavailable("The message is still being sent, try again later!");
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.chat.cache;
+
+import com.example.chat.config.UserCacheProperties;
+import com.example.chat.model.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+/**
+ * Bounded, TTL-evicting cache of users by user name, with a secondary id to user name index.
+ * Lookups that find no user are not cached. A user loaded while an invalidation ran is dropped
+ * again, so a load that read the old row cannot outlive the invalidation.
+ */
+@Component
+public class UserCache {
+    private final Cache<String, User> usersByUserName;
+    private final Cache<Long, String> userNamesById;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public UserCache(UserCacheProperties properties) {
+        this.usersByUserName = Caffeine.newBuilder()
+                .maximumSize(properties.maximumSize())
+                .expireAfterWrite(properties.timeToLive())
+                .recordStats()
+                .build();
+        this.userNamesById = Caffeine.newBuilder()
+                .maximumSize(properties.maximumSize())
+                .expireAfterWrite(properties.timeToLive())
+                .build();
+    }
+
+    public User getByUserName(String userName, Function<String, User> loader) {
+        User user = usersByUserName.getIfPresent(userName);
+        if (user != null) {
+            hits.increment();
+            return user;
+        }
+        misses.increment();
+        long generation = invalidations.get();
+        // Loading inside the cache makes a concurrent invalidate by name wait for the load instead of being overwritten by it
+        user = usersByUserName.get(userName, loader);
+        if (user != null) {
+            userNamesById.put(user.getId(), user.getUserName());
+            dropIfInvalidated(generation, user);
+        }
+        return user;
+    }
+
+    /**
+     * @return whether the user is cached, without loading it or counting a hit or miss
+     */
+    public boolean containsUserName(String userName) {
+        return usersByUserName.getIfPresent(userName) != null;
+    }
+
+    public boolean containsId(long id) {
+        String userName = userNamesById.getIfPresent(id);
+        return userName != null && usersByUserName.getIfPresent(userName) != null;
+    }
+
+    public User getById(long id, LongFunction<User> loader) {
+        String userName = userNamesById.getIfPresent(id);
+        if (userName != null) {
+            User user = usersByUserName.getIfPresent(userName);
+            if (user != null) {
+                hits.increment();
+                return user;
+            }
+        }
+        misses.increment();
+        long generation = invalidations.get();
+        User user = loader.apply(id);
+        if (user != null) {
+            usersByUserName.put(user.getUserName(), user);
+            userNamesById.put(user.getId(), user.getUserName());
+            dropIfInvalidated(generation, user);
+        }
+        return user;
+    }
+
+    /**
+     * An invalidation counted after the load started may have run before the loaded user was put,
+     * the user may be stale then. One counted after this check runs after the put and removes it.
+     */
+    private void dropIfInvalidated(long generation, User user) {
+        if (invalidations.get() != generation) {
+            usersByUserName.asMap().remove(user.getUserName(), user);
+            userNamesById.asMap().remove(user.getId(), user.getUserName());
+        }
+    }
+
+    public void invalidate(String userName) {
+        invalidations.incrementAndGet();
+        usersByUserName.invalidate(userName);
+    }
+
+    public void invalidate(long id) {
+        invalidations.incrementAndGet();
+        String userName = userNamesById.getIfPresent(id);
+        userNamesById.invalidate(id);
+        if (userName != null) {
+            usersByUserName.invalidate(userName);
+        }
+    }
+
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        usersByUserName.invalidateAll();
+        userNamesById.invalidateAll();
+    }
+
+    public UserCacheStats getStats() {
+        return new UserCacheStats(hits.sum(), misses.sum(),
+                usersByUserName.stats().evictionCount(), usersByUserName.estimatedSize());
+    }
+}
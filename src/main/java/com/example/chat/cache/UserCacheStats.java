@@ -0,0 +1,13 @@
+package com.example.chat.cache;
+
+public record UserCacheStats(
+        long hitCount,
+        long missCount,
+        long evictionCount,
+        long size
+) {
+    public double hitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.chat.cache;
+
+import com.example.chat.config.UserNameFilterProperties;
+import com.example.chat.model.User;
+import com.example.chat.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Bloom filter of the registered user names, so that registration learns most free names are free
+ * without the database. Names are lower-cased like the case-insensitive collation of user_name. The
+ * first refresh loads every user; later ones add the users registered since on other nodes, reading
+ * refreshOverlap ids below the highest one seen again because ids are not committed in order. Until
+ * the first refresh completes every name might exist. Deleted users stay in the filter and are answered
+ * by the database. A negative can still be wrong for a registration not refreshed yet, so lookups of
+ * existing users never rely on it.
+ */
+@Component
+public class UserNameFilter {
+    private static final Logger logger = LoggerFactory.getLogger(UserNameFilter.class);
+    private static final int PAGE_SIZE = 10_000;
+
+    private final UserRepository userRepository;
+    private final BloomFilter filter;
+    private final int refreshOverlap;
+    private volatile boolean warm;
+    private long lastSeenId;
+
+    public UserNameFilter(UserRepository userRepository, UserNameFilterProperties properties) {
+        this.userRepository = userRepository;
+        this.refreshOverlap = properties.refreshOverlap();
+        this.filter = new BloomFilter(properties.expectedUsers(), properties.falsePositiveRate());
+    }
+
+    /**
+     * @return false if no user with this name is registered, true if one may be
+     */
+    public boolean mightExist(String userName) {
+        return !warm || filter.mightContain(key(userName));
+    }
+
+    public void put(String userName) {
+        filter.put(key(userName));
+    }
+
+    private static String key(String userName) {
+        return userName.toLowerCase(Locale.ROOT);
+    }
+
+    @Scheduled(fixedDelayString = "${chat.user-name-filter.refresh-interval:PT5S}")
+    public synchronized void refresh() {
+        try {
+            int loaded = 0;
+            long afterId = Math.max(0, lastSeenId - refreshOverlap);
+            List<User> page;
+            do {
+                page = userRepository.getUserNamesAfter(afterId, PAGE_SIZE);
+                for (User user : page) {
+                    put(user.getUserName());
+                    afterId = user.getId();
+                }
+                loaded += page.size();
+            } while (page.size() == PAGE_SIZE);
+            lastSeenId = Math.max(lastSeenId, afterId);
+            if (!warm) {
+                warm = true;
+                logger.info("User name filter warmed with {} users, {} bits and {} hashes", loaded,
+                        filter.getBitCount(), filter.getHashCount());
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Error: could not refresh the user name filter", e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.chat.cluster;
+
+import io.swagger.v3.oas.annotations.Hidden;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Node-to-node endpoint, authenticated with the shared cluster secret instead of user credentials.
+ */
+@Hidden
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "chat.cluster", name = "mode", havingValue = "HTTP")
+public class ClusterController {
+    private final HttpClusterRouter httpClusterRouter;
+
+    @PostMapping(value = HttpClusterRouter.EVENTS_PATH, consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ForwardResponse> receive(
+            @RequestHeader(value = HttpClusterRouter.SECRET_HEADER, required = false) String secret,
+            @RequestBody ForwardRequest request) {
+        if (!httpClusterRouter.isTrusted(secret)) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        }
+        return new ResponseEntity<>(new ForwardResponse(httpClusterRouter.receive(request)), HttpStatus.OK);
+    }
+
+    @PostMapping(value = HttpClusterRouter.PRESENCE_PATH, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Void> receivePresence(
+            @RequestHeader(value = HttpClusterRouter.SECRET_HEADER, required = false) String secret,
+            @RequestBody PresenceRequest request) {
+        if (!httpClusterRouter.isTrusted(secret)) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        }
+        httpClusterRouter.receive(request);
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+}
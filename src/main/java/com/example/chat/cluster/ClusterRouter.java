@@ -0,0 +1,31 @@
+package com.example.chat.cluster;
+
+import com.example.chat.events.CommunicationsEvent;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Routes events to users connected to other nodes of the cluster. Every node announces which users
+ * have at least one SSE connection to it; events for a user are forwarded to each other node the
+ * user is connected to and published there.
+ */
+public interface ClusterRouter {
+    String getNodeId();
+
+    void userConnected(String userName);
+
+    void userDisconnected(String userName);
+
+    /**
+     * @return true if at least one other node accepted the event for the user
+     */
+    boolean forward(String userName, CommunicationsEvent event);
+
+    /**
+     * Forwards an event that goes to many users, e.g. the members of a room, with one call per node.
+     *
+     * @return the users at least one other node accepted the event for
+     */
+    Set<String> forwardAll(Collection<String> userNames, CommunicationsEvent event);
+}
@@ -0,0 +1,12 @@
+package com.example.chat.cluster;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+
+public record ForwardRequest(
+        List<String> userNames,
+        String eventType,
+        JsonNode data
+) {
+}
@@ -0,0 +1,11 @@
+package com.example.chat.cluster;
+
+import java.util.List;
+
+/**
+ * @param deliveredTo the users of the request with a connection that accepted the event
+ */
+public record ForwardResponse(
+        List<String> deliveredTo
+) {
+}
@@ -0,0 +1,219 @@
+package com.example.chat.cluster;
+
+import com.example.chat.config.ClusterProperties;
+import com.example.chat.delivery.EventLogService;
+import com.example.chat.dto.ClusterNodeDTO;
+import com.example.chat.events.CommunicationsEvent;
+import com.example.chat.events.ForwardedEvent;
+import com.example.chat.repository.ClusterRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the presence directory in the shared database and forwards events to the other nodes over
+ * HTTP. Nodes that stop sending heartbeats are ignored, so a crashed node does not swallow events.
+ * <p>
+ * Forwarding reads a copy of the directory that is reloaded on every heartbeat, so an event costs no
+ * query. A node also tells the others when a user connects to it, so they do not wait for the next
+ * heartbeat to forward to that user. Disconnects are left to the reload: an event forwarded to a node
+ * the user has left is not delivered there, which is what the sender would get anyway.
+ */
+@Component
+@ConditionalOnProperty(prefix = "chat.cluster", name = "mode", havingValue = "HTTP")
+public class HttpClusterRouter implements ClusterRouter {
+    public static final String SECRET_HEADER = "X-Cluster-Secret";
+    public static final String EVENTS_PATH = "/internal/cluster/events";
+    public static final String PRESENCE_PATH = "/internal/cluster/presence";
+    private static final Logger logger = LoggerFactory.getLogger(HttpClusterRouter.class);
+
+    private final ClusterRepository clusterRepository;
+    private final EventLogService eventLogService;
+    private final ClusterProperties properties;
+    private final ObjectMapper objectMapper;
+    private final RestClient restClient;
+    /**
+     * The live nodes other than this one by id, and the nodes each user is connected to by user name
+     */
+    private volatile Map<String, ClusterNodeDTO> nodes = new ConcurrentHashMap<>();
+    private volatile Map<String, Set<String>> presence = new ConcurrentHashMap<>();
+
+    public HttpClusterRouter(ClusterRepository clusterRepository, EventLogService eventLogService,
+                             ClusterProperties properties, ObjectMapper objectMapper,
+                             RestClient.Builder restClientBuilder) {
+        if (properties.secret() == null || properties.secret().isBlank()) {
+            throw new IllegalStateException("chat.cluster.secret must be set in HTTP cluster mode");
+        }
+        this.clusterRepository = clusterRepository;
+        this.eventLogService = eventLogService;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(properties.forwardTimeout());
+        requestFactory.setReadTimeout(properties.forwardTimeout());
+        this.restClient = restClientBuilder.requestFactory(requestFactory).build();
+    }
+
+    @PostConstruct
+    public void start() {
+        // Presence left behind by a previous run of this node is stale
+        clusterRepository.deleteNode(properties.nodeId());
+        heartbeat();
+        logger.info("Cluster node {} started at {}", properties.nodeId(), properties.nodeUrl());
+    }
+
+    @Scheduled(fixedDelayString = "${chat.cluster.heartbeat-interval:PT5S}")
+    public void heartbeat() {
+        LocalDateTime now = LocalDateTime.now();
+        clusterRepository.heartbeat(properties.nodeId(), properties.nodeUrl(), now);
+        LocalDateTime aliveSince = now.minus(properties.nodeTimeout());
+        Map<String, ClusterNodeDTO> liveNodes = new ConcurrentHashMap<>();
+        for (ClusterNodeDTO node : clusterRepository.getNodes()) {
+            if (!node.nodeId().equals(properties.nodeId()) && !node.heartbeatAt().isBefore(aliveSince)) {
+                liveNodes.put(node.nodeId(), node);
+            }
+        }
+        Map<String, Set<String>> livePresence = new ConcurrentHashMap<>();
+        clusterRepository.getPresence(properties.nodeId(), aliveSince).forEach((userName, nodeIds) -> {
+            Set<String> userNodeIds = ConcurrentHashMap.newKeySet();
+            userNodeIds.addAll(nodeIds);
+            livePresence.put(userName, userNodeIds);
+        });
+        nodes = liveNodes;
+        presence = livePresence;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        clusterRepository.deleteNode(properties.nodeId());
+    }
+
+    @Override
+    public String getNodeId() {
+        return properties.nodeId();
+    }
+
+    @Override
+    public void userConnected(String userName) {
+        clusterRepository.savePresence(userName, properties.nodeId(), LocalDateTime.now());
+        PresenceRequest request = new PresenceRequest(userName, properties.nodeId(), properties.nodeUrl());
+        for (ClusterNodeDTO node : nodes.values()) {
+            try {
+                restClient.post()
+                        .uri(node.nodeUrl() + PRESENCE_PATH)
+                        .header(SECRET_HEADER, properties.secret())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(request)
+                        .retrieve()
+                        .toBodilessEntity();
+            } catch (RestClientException e) {
+                logger.warn("Error: could not announce user {} to {}", userName, node.nodeUrl(), e);
+            }
+        }
+    }
+
+    @Override
+    public void userDisconnected(String userName) {
+        clusterRepository.deletePresence(userName, properties.nodeId());
+    }
+
+    @Override
+    public boolean forward(String userName, CommunicationsEvent event) {
+        return !forwardAll(List.of(userName), event).isEmpty();
+    }
+
+    @Override
+    public Set<String> forwardAll(Collection<String> userNames, CommunicationsEvent event) {
+        // A node that stopped sending heartbeats since the last reload is skipped too
+        LocalDateTime aliveSince = LocalDateTime.now().minus(properties.nodeTimeout());
+        Map<String, ClusterNodeDTO> liveNodes = nodes;
+        Map<String, List<String>> userNamesByNodeId = new HashMap<>();
+        for (String userName : userNames) {
+            for (String nodeId : presence.getOrDefault(userName, Set.of())) {
+                ClusterNodeDTO node = liveNodes.get(nodeId);
+                if (node != null && !node.heartbeatAt().isBefore(aliveSince)) {
+                    userNamesByNodeId.computeIfAbsent(nodeId, key -> new ArrayList<>()).add(userName);
+                }
+            }
+        }
+        if (userNamesByNodeId.isEmpty()) {
+            return Set.of();
+        }
+        JsonNode data = objectMapper.valueToTree(event);
+        Set<String> delivered = new HashSet<>();
+        userNamesByNodeId.forEach((nodeId, nodeUserNames) -> {
+            String nodeUrl = liveNodes.get(nodeId).nodeUrl();
+            try {
+                ForwardResponse response = restClient.post()
+                        .uri(nodeUrl + EVENTS_PATH)
+                        .header(SECRET_HEADER, properties.secret())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(new ForwardRequest(nodeUserNames, event.getEventType(), data))
+                        .retrieve()
+                        .body(ForwardResponse.class);
+                if (response != null && response.deliveredTo() != null) {
+                    delivered.addAll(response.deliveredTo());
+                }
+            } catch (RestClientException e) {
+                logger.warn("Error: could not forward event for {} users to {}", nodeUserNames.size(), nodeUrl, e);
+            }
+        });
+        return delivered;
+    }
+
+    public boolean isTrusted(String secret) {
+        return secret != null && MessageDigest.isEqual(secret.getBytes(StandardCharsets.UTF_8),
+                properties.secret().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Publishes an event forwarded by another node to the local connections of its users.
+     *
+     * @return the users with a connection that accepted it
+     */
+    public List<String> receive(ForwardRequest request) {
+        ForwardedEvent event = new ForwardedEvent(request.eventType(), request.data());
+        byte[] data = eventLogService.serialize(event);
+        List<String> deliveredTo = new ArrayList<>();
+        for (String userName : request.userNames()) {
+            if (eventLogService.publish(userName, event, data)) {
+                deliveredTo.add(userName);
+            }
+        }
+        return deliveredTo;
+    }
+
+    /**
+     * Records a user that connected to another node, until the next heartbeat reloads the directory.
+     */
+    public void receive(PresenceRequest request) {
+        if (request.nodeId().equals(properties.nodeId())) {
+            return;
+        }
+        nodes.putIfAbsent(request.nodeId(), new ClusterNodeDTO(request.nodeId(), request.nodeUrl(),
+                LocalDateTime.now()));
+        presence.computeIfAbsent(request.userName(), key -> ConcurrentHashMap.newKeySet()).add(request.nodeId());
+    }
+}
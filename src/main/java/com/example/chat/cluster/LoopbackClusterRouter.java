@@ -0,0 +1,83 @@
+package com.example.chat.cluster;
+
+import com.example.chat.config.ClusterProperties;
+import com.example.chat.delivery.EventLogService;
+import com.example.chat.events.CommunicationsEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process router: nodes sharing a {@link Network} forward events by calling each other directly.
+ * A single node on its own network never forwards anything.
+ */
+@Component
+@ConditionalOnProperty(prefix = "chat.cluster", name = "mode", havingValue = "LOOPBACK", matchIfMissing = true)
+public class LoopbackClusterRouter implements ClusterRouter {
+    private final EventLogService eventLogService;
+    private final String nodeId;
+    private final Network network;
+
+    @Autowired
+    public LoopbackClusterRouter(EventLogService eventLogService, ClusterProperties properties) {
+        this(eventLogService, properties.nodeId(), new Network());
+    }
+
+    public LoopbackClusterRouter(EventLogService eventLogService, String nodeId, Network network) {
+        this.eventLogService = eventLogService;
+        this.nodeId = nodeId;
+        this.network = network;
+        network.nodes.put(nodeId, this);
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void userConnected(String userName) {
+        network.presence.computeIfAbsent(userName, key -> ConcurrentHashMap.newKeySet()).add(nodeId);
+    }
+
+    @Override
+    public void userDisconnected(String userName) {
+        network.presence.computeIfPresent(userName, (key, nodeIds) -> {
+            nodeIds.remove(nodeId);
+            return nodeIds.isEmpty() ? null : nodeIds;
+        });
+    }
+
+    @Override
+    public boolean forward(String userName, CommunicationsEvent event) {
+        boolean delivered = false;
+        for (String remoteNodeId : network.presence.getOrDefault(userName, Set.of())) {
+            LoopbackClusterRouter remote = network.nodes.get(remoteNodeId);
+            if (remote != null && remote != this) {
+                delivered |= remote.eventLogService.publish(userName, event);
+            }
+        }
+        return delivered;
+    }
+
+    @Override
+    public Set<String> forwardAll(Collection<String> userNames, CommunicationsEvent event) {
+        Set<String> delivered = new HashSet<>();
+        for (String userName : userNames) {
+            if (forward(userName, event)) {
+                delivered.add(userName);
+            }
+        }
+        return delivered;
+    }
+
+    public static class Network {
+        private final ConcurrentHashMap<String, LoopbackClusterRouter> nodes = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, Set<String>> presence = new ConcurrentHashMap<>();
+    }
+}
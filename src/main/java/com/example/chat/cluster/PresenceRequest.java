@@ -0,0 +1,8 @@
+package com.example.chat.cluster;
+
+public record PresenceRequest(
+        String userName,
+        String nodeId,
+        String nodeUrl
+) {
+}
@@ -0,0 +1,28 @@
+package com.example.chat.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * @param storeDir        directory of the attachment files, the nodes of a cluster must share it
+ * @param maxSize         largest file accepted
+ * @param orphanRetention how long an upload may wait to be sent; files no message refers to are removed
+ *                        once their last upload is older
+ * @param sweepInterval   how often orphaned files are looked for
+ */
+@ConfigurationProperties(prefix = "chat.attachments")
+public record AttachmentProperties(
+        @DefaultValue("data/attachments")
+        Path storeDir,
+        @DefaultValue("100MB")
+        DataSize maxSize,
+        @DefaultValue("1d")
+        Duration orphanRetention,
+        @DefaultValue("1h")
+        Duration sweepInterval
+) {
+}
@@ -0,0 +1,30 @@
+package com.example.chat.config;
+
+import com.example.chat.enumeration.ClusterMode;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.UUID;
+
+@ConfigurationProperties(prefix = "chat.cluster")
+public record ClusterProperties(
+        @DefaultValue("LOOPBACK")
+        ClusterMode mode,
+        String nodeId,
+        @DefaultValue("http://localhost:8080")
+        String nodeUrl,
+        String secret,
+        @DefaultValue("5s")
+        Duration heartbeatInterval,
+        @DefaultValue("15s")
+        Duration nodeTimeout,
+        @DefaultValue("1s")
+        Duration forwardTimeout
+) {
+    public ClusterProperties {
+        if (nodeId == null || nodeId.isBlank()) {
+            nodeId = UUID.randomUUID().toString();
+        }
+    }
+}
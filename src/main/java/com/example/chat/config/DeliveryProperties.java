@@ -0,0 +1,26 @@
+package com.example.chat.config;
+
+import com.example.chat.enumeration.SlowConsumerPolicy;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param queueCapacity      events buffered per connection
+ * @param writerThreads      most writer threads, started on demand and stopped when idle; every stalled
+ *                           connection holds one until its write times out, so there must be room for the
+ *                           stalled ones besides those that keep delivery going
+ * @param drainBatchSize     events written from one queue before the writer moves on
+ * @param slowConsumerPolicy what happens to a connection whose queue is full
+ */
+@ConfigurationProperties(prefix = "chat.delivery")
+public record DeliveryProperties(
+        @DefaultValue("256")
+        int queueCapacity,
+        @DefaultValue("64")
+        int writerThreads,
+        @DefaultValue("64")
+        int drainBatchSize,
+        @DefaultValue("DROP_OLDEST")
+        SlowConsumerPolicy slowConsumerPolicy
+) {
+}
@@ -0,0 +1,23 @@
+package com.example.chat.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "chat.email-outbox")
+public record EmailOutboxProperties(
+        @DefaultValue("2m")
+        Duration digestWindow,
+        @DefaultValue("100")
+        int batchSize,
+        @DefaultValue("5")
+        int maxAttempts,
+        @DefaultValue("30s")
+        Duration initialBackoff,
+        @DefaultValue("1h")
+        Duration maxBackoff,
+        @DefaultValue("5m")
+        Duration lease
+) {
+}
@@ -0,0 +1,19 @@
+package com.example.chat.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "chat.heartbeat")
+public record HeartbeatProperties(
+        @DefaultValue("15s")
+        Duration interval,
+        @DefaultValue("30s")
+        Duration stallTimeout,
+        @DefaultValue("100ms")
+        Duration tickDuration,
+        @DefaultValue("512")
+        int wheelSize
+) {
+}
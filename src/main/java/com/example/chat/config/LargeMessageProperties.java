@@ -0,0 +1,25 @@
+package com.example.chat.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * @param inlineLimit      longest content, in characters, stored in message.content and pushed as is;
+ *                         at most the 255 characters of the column
+ * @param previewLength    characters of a longer message pushed and stored in its place
+ * @param maxSize          largest content accepted, in UTF-8 bytes
+ * @param compressionLevel Deflater level of the stored content, 1 (fastest) to 9 (smallest)
+ */
+@ConfigurationProperties(prefix = "chat.large-messages")
+public record LargeMessageProperties(
+        @DefaultValue("255")
+        int inlineLimit,
+        @DefaultValue("200")
+        int previewLength,
+        @DefaultValue("1MB")
+        DataSize maxSize,
+        @DefaultValue("6")
+        int compressionLevel
+) {
+}
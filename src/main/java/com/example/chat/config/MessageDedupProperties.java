@@ -0,0 +1,22 @@
+package com.example.chat.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param window      how long the outcome of a send with a client message id is kept for its retries
+ * @param maximumSize most outcomes kept, the oldest are dropped first
+ * @param waitTimeout longest a retry waits for the first send of the same client message id
+ */
+@ConfigurationProperties(prefix = "chat.message-dedup")
+public record MessageDedupProperties(
+        @DefaultValue("10m")
+        Duration window,
+        @DefaultValue("100000")
+        long maximumSize,
+        @DefaultValue("10s")
+        Duration waitTimeout
+) {
+}
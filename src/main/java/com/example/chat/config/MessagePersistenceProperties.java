@@ -0,0 +1,34 @@
+package com.example.chat.config;
+
+import com.example.chat.enumeration.MessageDurability;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * @param durability          how new messages are persisted
+ * @param batchSize           buffered messages that trigger a flush before the flush interval
+ * @param flushInterval       longest time a message is buffered
+ * @param maxBufferedMessages buffered messages at which saves wait for a flush, and fail if it fails
+ * @param journalDir          directory of the JOURNALED segments
+ * @param idBlockSize         message ids a node reserves at once; in a cluster the nodes write ids out of
+ *                            order, by up to a block, which the search index sees as gaps
+ */
+@ConfigurationProperties(prefix = "chat.message-persistence")
+public record MessagePersistenceProperties(
+        @DefaultValue("SYNC")
+        MessageDurability durability,
+        @DefaultValue("500")
+        int batchSize,
+        @DefaultValue("50ms")
+        Duration flushInterval,
+        @DefaultValue("10000")
+        int maxBufferedMessages,
+        @DefaultValue("data/journal")
+        Path journalDir,
+        @DefaultValue("100")
+        int idBlockSize
+) {
+}
@@ -0,0 +1,27 @@
+package com.example.chat.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param chunkSize   pending messages loaded, pushed and marked SENT at a time
+ * @param threads     logins whose backlog is delivered concurrently; a delivery waiting for its
+ *                    connection to drain does not hold one
+ * @param sendTimeout how long to wait for a full connection queue to drain before giving up; the rest
+ *                    of the backlog stays PENDING for the next login
+ * @param timeSlice   how long one delivery runs before other logins get the thread
+ */
+@ConfigurationProperties(prefix = "chat.pending-delivery")
+public record PendingDeliveryProperties(
+        @DefaultValue("500")
+        int chunkSize,
+        @DefaultValue("2")
+        int threads,
+        @DefaultValue("30s")
+        Duration sendTimeout,
+        @DefaultValue("200ms")
+        Duration timeSlice
+) {
+}
@@ -0,0 +1,20 @@
+package com.example.chat.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param flushInterval how long status changes are coalesced before they are written; only the last
+ *                      status of each user in the window is written
+ * @param batchSize     user names per UPDATE statement
+ */
+@ConfigurationProperties(prefix = "chat.presence")
+public record PresenceProperties(
+        @DefaultValue("1s")
+        Duration flushInterval,
+        @DefaultValue("1000")
+        int batchSize
+) {
+}
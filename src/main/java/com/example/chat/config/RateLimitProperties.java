@@ -0,0 +1,31 @@
+package com.example.chat.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param enabled       turns admission control of sends off when false
+ * @param userRate      messages per second a user can keep sending
+ * @param userBurst     messages a user can send at once after being idle
+ * @param globalRate    messages per second accepted from all users together
+ * @param globalBurst   messages accepted at once from all users together
+ * @param sweepInterval how often the buckets of users who stopped sending are dropped
+ */
+@ConfigurationProperties(prefix = "chat.rate-limit")
+public record RateLimitProperties(
+        @DefaultValue("true")
+        boolean enabled,
+        @DefaultValue("5")
+        double userRate,
+        @DefaultValue("20")
+        int userBurst,
+        @DefaultValue("2000")
+        double globalRate,
+        @DefaultValue("4000")
+        int globalBurst,
+        @DefaultValue("1m")
+        Duration sweepInterval
+) {
+}
@@ -0,0 +1,20 @@
+package com.example.chat.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param flushInterval how long acknowledgements are coalesced; each conversation gets at most one
+ *                      receipt per status and interval
+ * @param maxRanges     id ranges accepted in one acknowledgement
+ */
+@ConfigurationProperties(prefix = "chat.receipts")
+public record ReceiptProperties(
+        @DefaultValue("1s")
+        Duration flushInterval,
+        @DefaultValue("100")
+        int maxRanges
+) {
+}
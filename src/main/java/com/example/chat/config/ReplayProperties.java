@@ -0,0 +1,25 @@
+package com.example.chat.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param clockSkew how far the clocks of the nodes may be apart; a replay from the database starts this
+ *                  much before the last event the client received, and may repeat messages it already has
+ */
+@ConfigurationProperties(prefix = "chat.replay")
+public record ReplayProperties(
+        @DefaultValue("256")
+        int bufferSize,
+        @DefaultValue("10m")
+        Duration retention,
+        @DefaultValue("100000")
+        long maximumUsers,
+        @DefaultValue("500")
+        int maxDatabaseReplay,
+        @DefaultValue("2s")
+        Duration clockSkew
+) {
+}
@@ -0,0 +1,22 @@
+package com.example.chat.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param fanOutThreads    threads that push a room message to online members, 0 for one per core
+ * @param minPartitionSize rooms with fewer online members than this are pushed on the sender's thread
+ */
+@ConfigurationProperties(prefix = "chat.rooms")
+public record RoomProperties(
+        @DefaultValue("0")
+        int fanOutThreads,
+        @DefaultValue("256")
+        int minPartitionSize,
+        @DefaultValue("10000")
+        int maxMembers
+) {
+    public int fanOutParallelism() {
+        return fanOutThreads > 0 ? fanOutThreads : Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.chat.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * @param indexDir          local directory of the index segments; deleting it rebuilds the index
+ *                          from the database on the next start
+ * @param pollInterval      how often messages stored by other nodes are picked up
+ * @param batchSize         messages read from the database per query while catching up
+ * @param memtablePostings  postings kept in memory before they are written to a new segment
+ * @param maxSegments       segments searched before the smaller ones are merged
+ * @param gapTimeout        how long a missing message id is re-checked, in case its insert commits
+ *                          after a later one
+ * @param maxQueryTerms     terms accepted in one query
+ * @param rebuildOnStart    discard the local index and rebuild it from the database
+ */
+@ConfigurationProperties(prefix = "chat.search")
+public record SearchProperties(
+        @DefaultValue("data/search")
+        Path indexDir,
+        @DefaultValue("1s")
+        Duration pollInterval,
+        @DefaultValue("1000")
+        int batchSize,
+        @DefaultValue("200000")
+        int memtablePostings,
+        @DefaultValue("8")
+        int maxSegments,
+        @DefaultValue("30s")
+        Duration gapTimeout,
+        @DefaultValue("8")
+        int maxQueryTerms,
+        @DefaultValue("false")
+        boolean rebuildOnStart
+) {
+}
@@ -29,6 +29,10 @@ private final AuthenticationProvider authenticationProvider;
                 .authorizeHttpRequests(authorize -> authorize
                         //DEFINE PUBLIC ENDPOINTS IF ANY
                         .requestMatchers("/public/**").permitAll()
+                        //NODE-TO-NODE, CHECKED AGAINST THE CLUSTER SECRET
+                        .requestMatchers("/internal/cluster/**").permitAll()
+                        //SCRAPED BY PROMETHEUS
+                        .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
                         //ALL THE REST AUTHENTICATION REQUIRED
                         .anyRequest().authenticated())
                 .httpBasic(withDefaults())
@@ -0,0 +1,15 @@
+package com.example.chat.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "chat.user-cache")
+public record UserCacheProperties(
+        @DefaultValue("10000")
+        long maximumSize,
+        @DefaultValue("5m")
+        Duration timeToLive
+) {
+}
@@ -0,0 +1,27 @@
+package com.example.chat.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param expectedUsers     registered users the filter is sized for; past that the false positive rate grows
+ * @param falsePositiveRate share of unknown user names that still have to be checked in the database
+ * @param refreshInterval   how often users registered on other nodes are added to the filter; until then
+ *                          they are unknown to this node
+ * @param refreshOverlap    ids below the highest one seen that every refresh reads again, so a registration
+ *                          that committed after one with a higher id is still added
+ */
+@ConfigurationProperties(prefix = "chat.user-name-filter")
+public record UserNameFilterProperties(
+        @DefaultValue("1000000")
+        long expectedUsers,
+        @DefaultValue("0.01")
+        double falsePositiveRate,
+        @DefaultValue("5s")
+        Duration refreshInterval,
+        @DefaultValue("1000")
+        int refreshOverlap
+) {
+}
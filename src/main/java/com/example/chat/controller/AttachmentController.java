@@ -0,0 +1,133 @@
+package com.example.chat.controller;
+
+import com.example.chat.dto.AttachmentDTO;
+import com.example.chat.ratelimit.SendRateLimiter;
+import com.example.chat.service.AttachmentService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.List;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1/")
+public class AttachmentController {
+    // Tomcat writes a file named in these request attributes to the socket with sendfile after the handler returns
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final AttachmentService attachmentService;
+    private final SendRateLimiter sendRateLimiter;
+
+    @Operation(summary = "Upload a file as the request body, to send its id as the attachmentId of a message")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Attachment stored",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = AttachmentDTO.class)) }),
+            @ApiResponse(responseCode = "400", description = "The file is too large", content = @Content),
+            @ApiResponse(responseCode = "429", description = "Too many uploads and messages, retry after "
+                    + "Retry-After seconds", content = @Content)})
+    @PostMapping(value = ("/attachments"), produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<AttachmentDTO> upload(Principal principal, HttpServletRequest request) throws IOException {
+        // Uploads share the budget of sends, a file is sent right after it is uploaded
+        sendRateLimiter.acquire(principal.getName());
+        AttachmentDTO attachment = attachmentService.upload(principal.getName(), request.getInputStream(),
+                request.getContentType());
+        return new ResponseEntity<>(attachment, HttpStatus.CREATED);
+    }
+
+    @Operation(summary = "Download an attachment, a single byte range can be requested with Range")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The file", content = @Content),
+            @ApiResponse(responseCode = "206", description = "The requested range of the file", content = @Content),
+            @ApiResponse(responseCode = "404", description = "No message of the user has this attachment",
+                    content = @Content),
+            @ApiResponse(responseCode = "416", description = "The range is outside the file", content = @Content)})
+    @GetMapping(value = ("/attachments/{attachmentId}"))
+    public void download(Principal principal, @PathVariable String attachmentId, HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        AttachmentDTO attachment = attachmentService.getAttachment(principal.getName(), attachmentId);
+        String eTag = "\"" + attachment.id() + "\"";
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        // The id is the hash of the file, it never changes
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                CacheControl.maxAge(Duration.ofDays(365)).cachePrivate().immutable().getHeaderValue());
+        if (eTag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+        long length = attachment.size();
+        long start = 0;
+        long end = length - 1;
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+                // Several ranges are answered with the whole file
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(length);
+                    end = ranges.get(0).getRangeEnd(length);
+                    if (start >= length || start > end) {
+                        throw new IllegalArgumentException("Range outside the file");
+                    }
+                    response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+                }
+            } catch (IllegalArgumentException e) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return;
+            }
+        }
+        response.setContentType(attachment.contentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().build().toString());
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setContentLengthLong(end - start + 1);
+        if (length == 0) {
+            return;
+        }
+        Path file = attachmentService.getFile(attachment.id());
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                long transferred = channel.transferTo(position, end + 1 - position, out);
+                if (transferred <= 0) {
+                    throw new IOException("Attachment " + attachment.id() + " is shorter than " + length + " bytes");
+                }
+                position += transferred;
+            }
+        }
+    }
+}
@@ -3,7 +3,6 @@ package com.example.chat.controller;
 import com.example.chat.authentication.CustomAuthenticationProvider;
 import com.example.chat.dto.UserRequest;
 import com.example.chat.enumeration.UserStatus;
-import com.example.chat.service.EventHandlerService;
 import com.example.chat.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -37,7 +36,6 @@ import java.security.Principal;
 public class AuthController {
     private final AuthenticationProvider authenticationProvider;
     private final UserService userService;
-    private final EventHandlerService eventHandlerService;
     private final CustomAuthenticationProvider customAuthenticationProvider;
 
     private static final Logger logger = LoggerFactory.getLogger(AuthController.class);
@@ -55,7 +53,6 @@ public class AuthController {
                 new UsernamePasswordAuthenticationToken(username, password));
         SecurityContextHolder.getContext().setAuthentication(authentication);
         session.setAttribute("SPRING_SECURITY_CONTEXT", SecurityContextHolder.getContext());
-        eventHandlerService.registerUser(username);
         return new ResponseEntity<>("redirect:/chat", HttpStatus.OK);
     }
 
@@ -81,6 +78,7 @@ public class AuthController {
     @PostMapping("/api/v1/logout")
     public ResponseEntity<String> logout(Principal principal) {
         SecurityContextHolder.clearContext();
+        customAuthenticationProvider.getVerifiedCredentialCache().revoke(principal.getName());
         logger.info("User {} logged out", principal.getName());
         userService.updateStatus(principal.getName(), UserStatus.OFFLINE);
 
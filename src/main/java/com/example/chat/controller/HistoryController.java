@@ -0,0 +1,45 @@
+package com.example.chat.controller;
+
+import com.example.chat.dto.HistoryPageDTO;
+import com.example.chat.service.MessageService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.security.Principal;
+import java.time.LocalDateTime;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1/")
+public class HistoryController {
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final MessageService messageService;
+
+    @Operation(summary = "Conversation history, newest first")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "One page of the conversation",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = HistoryPageDTO.class)) })})
+    @GetMapping(value = ("/history/{userName}"), produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<HistoryPageDTO> getHistory(Principal principal, @PathVariable String userName,
+                                                     @RequestParam(required = false)
+                                                     @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                                     LocalDateTime beforeTimestamp,
+                                                     @RequestParam(required = false) Long beforeId,
+                                                     @RequestParam(defaultValue = "50") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        HistoryPageDTO page = messageService.getConversation(principal.getName(), userName, beforeTimestamp,
+                beforeId, pageSize);
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+}
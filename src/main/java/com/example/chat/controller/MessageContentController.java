@@ -0,0 +1,46 @@
+package com.example.chat.controller;
+
+import com.example.chat.dto.StoredContentDTO;
+import com.example.chat.service.MessageContentService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Duration;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1/")
+public class MessageContentController {
+    private final MessageContentService messageContentService;
+
+    @Operation(summary = "Full content of a message pushed as a preview with a contentId")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The content, streamed as it is inflated",
+                    content = { @Content(mediaType = "text/plain") }),
+            @ApiResponse(responseCode = "404", description = "No message of the user has this content",
+                    content = @Content)})
+    @GetMapping(value = ("/message/content/{contentId}"))
+    public ResponseEntity<StreamingResponseBody> getContent(Principal principal, @PathVariable String contentId) {
+        StoredContentDTO content = messageContentService.getContent(principal.getName(), contentId);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8));
+        headers.setContentLength(content.originalSize());
+        // The id is the hash of the content, it never changes
+        headers.setETag("\"" + content.id() + "\"");
+        headers.setCacheControl(CacheControl.maxAge(Duration.ofDays(365)).cachePrivate().immutable());
+        StreamingResponseBody body = out -> messageContentService.writeTo(content, out);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+}
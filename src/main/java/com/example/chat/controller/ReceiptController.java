@@ -0,0 +1,35 @@
+package com.example.chat.controller;
+
+import com.example.chat.dto.ReceiptRequest;
+import com.example.chat.service.ReceiptService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.security.Principal;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1/receipts")
+public class ReceiptController {
+    private final ReceiptService receiptService;
+
+    @Operation(summary = "Acknowledge received messages from one sender as DELIVERED or READ")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Acknowledgement queued, written within a flush interval",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = String.class)) })})
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> acknowledge(Principal principal, @Valid @RequestBody ReceiptRequest receiptRequest) {
+        receiptService.acknowledge(principal.getName(), receiptRequest);
+        return new ResponseEntity<>("Receipts accepted!", HttpStatus.ACCEPTED);
+    }
+}
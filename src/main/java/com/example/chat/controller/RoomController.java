@@ -0,0 +1,69 @@
+package com.example.chat.controller;
+
+import com.example.chat.dto.RoomMemberRequest;
+import com.example.chat.dto.RoomMessageRequest;
+import com.example.chat.dto.RoomRequest;
+import com.example.chat.dto.RoomSendResponse;
+import com.example.chat.ratelimit.SendRateLimiter;
+import com.example.chat.service.RoomService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.security.Principal;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1/rooms")
+public class RoomController {
+    private final RoomService roomService;
+    private final SendRateLimiter sendRateLimiter;
+
+    @Operation(summary = "Create a room; the creator is always a member")
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> create(Principal principal, @Valid @RequestBody RoomRequest roomRequest) {
+        roomService.create(principal.getName(), roomRequest);
+        return new ResponseEntity<>("Room created!", HttpStatus.CREATED);
+    }
+
+    @Operation(summary = "Add a member to a room you are a member of")
+    @PostMapping(value = ("/{roomName}/members"), consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> addMember(Principal principal, @PathVariable String roomName,
+                                            @Valid @RequestBody RoomMemberRequest roomMemberRequest) {
+        roomService.addMember(principal.getName(), roomName, roomMemberRequest.userName());
+        return new ResponseEntity<>("Member added!", HttpStatus.OK);
+    }
+
+    @Operation(summary = "Leave a room, or remove a member from a room you created")
+    @DeleteMapping(value = ("/{roomName}/members/{userName}"))
+    public ResponseEntity<String> removeMember(Principal principal, @PathVariable String roomName,
+                                               @PathVariable String userName) {
+        roomService.removeMember(principal.getName(), roomName, userName);
+        return new ResponseEntity<>("Member removed!", HttpStatus.OK);
+    }
+
+    @Operation(summary = "Send a message to every member of the room")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Message stored and pushed to the online members",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = RoomSendResponse.class)) }),
+            @ApiResponse(responseCode = "429", description = "Too many messages, retry after Retry-After seconds",
+                    content = @Content)})
+    @PostMapping(value = ("/{roomName}/messages"), consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<RoomSendResponse> send(Principal principal, @PathVariable String roomName,
+                                                 @Valid @RequestBody RoomMessageRequest roomMessageRequest) {
+        sendRateLimiter.acquire(principal.getName());
+        RoomSendResponse response = roomService.send(principal.getName(), roomName,
+                roomMessageRequest.messageContent());
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+}
@@ -1,17 +1,20 @@
 package com.example.chat.controller;
 
 import com.example.chat.dto.ChatDTO;
+import com.example.chat.ratelimit.SendRateLimiter;
 import com.example.chat.service.EventHandlerService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.security.Principal;
 
@@ -20,15 +23,19 @@ import java.security.Principal;
 @RequestMapping("/api/v1/")
 public class SSEController {
     private final EventHandlerService eventHandlerService;
+    private final SendRateLimiter sendRateLimiter;
 
     @Operation(summary = "Send message")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Message sent",
                     content = { @Content(mediaType = "application/json",
-                            schema = @Schema(implementation = String.class)) })})
+                            schema = @Schema(implementation = String.class)) }),
+            @ApiResponse(responseCode = "429", description = "Too many messages, retry after Retry-After seconds",
+                    content = @Content)})
 
     @PostMapping(value = ("/message"), consumes = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<String> sendMessage(Principal principal, @RequestBody ChatDTO chatDTO) {
+    public ResponseEntity<String> sendMessage(Principal principal, @Valid @RequestBody ChatDTO chatDTO) {
+            sendRateLimiter.acquire(principal.getName());
             boolean sent = eventHandlerService.handleMessage(principal.getName(), chatDTO);
             if (!sent) {
                 return new ResponseEntity<>("Message not sent!", HttpStatus.OK);
@@ -36,4 +43,11 @@ public class SSEController {
             return new ResponseEntity<>("Message sent!", HttpStatus.OK);
     }
 
+    @Operation(summary = "Subscribe to the event stream, resuming after Last-Event-ID if given")
+    @GetMapping(value = ("/subscribe"), produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(Principal principal,
+                                @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return eventHandlerService.registerUser(principal.getName(), lastEventId);
+    }
+
 }
\ No newline at end of file
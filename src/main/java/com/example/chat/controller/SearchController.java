@@ -0,0 +1,41 @@
+package com.example.chat.controller;
+
+import com.example.chat.dto.SearchResultDTO;
+import com.example.chat.service.MessageSearchService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.security.Principal;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1/")
+public class SearchController {
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final MessageSearchService messageSearchService;
+
+    @Operation(summary = "Search the messages sent or received by the user, newest first")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "One page of matching messages",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = SearchResultDTO.class)) }),
+            @ApiResponse(responseCode = "400", description = "No searchable terms or too many terms",
+                    content = @Content)})
+    @GetMapping(value = ("/search"), produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<SearchResultDTO> search(Principal principal, @RequestParam("q") String query,
+                                                  @RequestParam(required = false) Long beforeId,
+                                                  @RequestParam(defaultValue = "20") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        SearchResultDTO result = messageSearchService.search(principal.getName(), query, beforeId, pageSize);
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+}
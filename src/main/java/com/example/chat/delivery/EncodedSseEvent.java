@@ -0,0 +1,74 @@
+package com.example.chat.delivery;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * A complete SSE frame, {@code event:/id:/data:} lines included, encoded to UTF-8 once. The same
+ * instance is written to every connection of the user and on replay, so the event is never
+ * serialized again. The frame is sealed; only {@link #build()} is supported.
+ */
+public final class EncodedSseEvent implements SseEmitter.SseEventBuilder {
+    public static final EncodedSseEvent HEARTBEAT = new EncodedSseEvent(
+            ":heartbeat\n\n".getBytes(StandardCharsets.UTF_8));
+
+    private final byte[] frame;
+    private final Set<ResponseBodyEmitter.DataWithMediaType> parts;
+
+    EncodedSseEvent(byte[] frame) {
+        this.frame = frame;
+        // Written as is by the ByteArrayHttpMessageConverter, the media type only has to be one it accepts
+        this.parts = Set.of(new ResponseBodyEmitter.DataWithMediaType(frame, MediaType.TEXT_PLAIN));
+    }
+
+    public int length() {
+        return frame.length;
+    }
+
+    String asString() {
+        return new String(frame, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Set<ResponseBodyEmitter.DataWithMediaType> build() {
+        return parts;
+    }
+
+    @Override
+    public SseEmitter.SseEventBuilder id(String id) {
+        throw sealed();
+    }
+
+    @Override
+    public SseEmitter.SseEventBuilder name(String eventName) {
+        throw sealed();
+    }
+
+    @Override
+    public SseEmitter.SseEventBuilder reconnectTime(long reconnectTimeMillis) {
+        throw sealed();
+    }
+
+    @Override
+    public SseEmitter.SseEventBuilder comment(String comment) {
+        throw sealed();
+    }
+
+    @Override
+    public SseEmitter.SseEventBuilder data(Object object) {
+        throw sealed();
+    }
+
+    @Override
+    public SseEmitter.SseEventBuilder data(Object object, MediaType mediaType) {
+        throw sealed();
+    }
+
+    private static UnsupportedOperationException sealed() {
+        return new UnsupportedOperationException("Error: an encoded SSE event cannot be modified");
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.chat.delivery;
+
+/**
+ * SSE event id of the form {@code <sequence>-<publishedAt>}. The sequence is per user and increases
+ * monotonically, also across restarts; publishedAt is when the event was published, in epoch
+ * milliseconds, so a reconnect can fall back to the database for the messages pushed since then when the
+ * events after the sequence are no longer buffered. Message ids are reserved in blocks per node and do not
+ * follow the order messages are pushed in; push times do, across nodes up to their clock skew.
+ * Ids of the earlier {@code <sequence>:<messageId>} form are not resumed from.
+ */
+public record EventId(
+        long sequence,
+        long publishedAt
+) {
+    public static EventId parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        int separator = value.indexOf('-');
+        if (separator < 0) {
+            return null;
+        }
+        try {
+            return new EventId(Long.parseLong(value.substring(0, separator)),
+                    Long.parseLong(value.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return sequence + "-" + publishedAt;
+    }
+}
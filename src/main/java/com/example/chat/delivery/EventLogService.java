@@ -0,0 +1,119 @@
+package com.example.chat.delivery;
+
+import com.example.chat.config.ReplayProperties;
+import com.example.chat.dto.UserDTO;
+import com.example.chat.events.CommunicationsEvent;
+import com.example.chat.presence.ConnectedUserRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * Assigns per-user event ids and keeps a replay buffer of recent events per user, including for a
+ * while after the user's last connection drops, so a reconnect with Last-Event-ID can resume.
+ * Publishing and connecting take the lock of the user's log, so a reconnecting emitter gets every
+ * event exactly once, either replayed or live.
+ */
+@Service
+public class EventLogService {
+    private final ConnectedUserRegistry connectedUserRegistry;
+    private final SseDeliveryService sseDeliveryService;
+    private final ReplayProperties properties;
+    private final SseEventEncoder encoder;
+    private final Cache<String, UserEventLog> logs;
+
+    public EventLogService(ConnectedUserRegistry connectedUserRegistry, SseDeliveryService sseDeliveryService,
+                           ReplayProperties properties, SseEventEncoder encoder) {
+        this.connectedUserRegistry = connectedUserRegistry;
+        this.sseDeliveryService = sseDeliveryService;
+        this.properties = properties;
+        this.encoder = encoder;
+        this.logs = Caffeine.newBuilder()
+                .maximumSize(properties.maximumUsers())
+                .expireAfterAccess(properties.retention())
+                .build();
+    }
+
+    /**
+     * Publishes the event to every connection of the user.
+     *
+     * @return true if at least one connection accepted it
+     */
+    public boolean publish(String userName, CommunicationsEvent event) {
+        return publish(userName, event, encoder.serialize(event));
+    }
+
+    /**
+     * Publishes an event that goes to many users, serialized once with {@link #serialize}.
+     *
+     * @return true if at least one connection accepted it
+     */
+    public boolean publish(String userName, CommunicationsEvent event, byte[] data) {
+        UserEventLog log = getLog(userName);
+        synchronized (log) {
+            OutboundEvent outboundEvent = log.append(event, data);
+            boolean delivered = false;
+            for (UserDTO userDTO : connectedUserRegistry.getConnections(userName)) {
+                delivered |= sseDeliveryService.send(userDTO, outboundEvent);
+            }
+            return delivered;
+        }
+    }
+
+    /**
+     * Publishes the event to a single connection of the user; it is still recorded for replay.
+     */
+    public boolean publish(UserDTO userDTO, CommunicationsEvent event) {
+        UserEventLog log = getLog(userDTO.userName());
+        synchronized (log) {
+            return sseDeliveryService.send(userDTO, log.append(event));
+        }
+    }
+
+    /**
+     * Registers the connection and replays the buffered events after lastEventId to it.
+     */
+    public Connection connect(UserDTO userDTO, String lastEventId) {
+        UserEventLog log = getLog(userDTO.userName());
+        synchronized (log) {
+            boolean firstConnection = connectedUserRegistry.register(userDTO);
+            EventId eventId = EventId.parse(lastEventId);
+            if (eventId == null) {
+                return new Connection(firstConnection, null);
+            }
+            List<OutboundEvent> buffered = log.since(eventId.sequence());
+            if (buffered == null) {
+                // Messages are stamped by the clock of the node that pushed them, in whole seconds
+                Instant since = Instant.ofEpochMilli(eventId.publishedAt()).minus(properties.clockSkew());
+                return new Connection(firstConnection, LocalDateTime.ofInstant(since, ZoneId.systemDefault()));
+            }
+            for (OutboundEvent outboundEvent : buffered) {
+                sseDeliveryService.send(userDTO, outboundEvent);
+            }
+            return new Connection(firstConnection, null);
+        }
+    }
+
+    public byte[] serialize(CommunicationsEvent event) {
+        return encoder.serialize(event);
+    }
+
+    private UserEventLog getLog(String userName) {
+        // Seeding from the clock keeps sequences increasing when a log is recreated, e.g. after a restart
+        return logs.get(userName, key -> new UserEventLog(properties.bufferSize(), System.currentTimeMillis() * 1000,
+                encoder));
+    }
+
+    /**
+     * @param firstConnection whether this is the only connection of the user
+     * @param replayFromDatabase set when the gap is larger than the buffer; the messages pushed since then
+     *                           must be loaded from the database
+     */
+    public record Connection(boolean firstConnection, LocalDateTime replayFromDatabase) {
+    }
+}
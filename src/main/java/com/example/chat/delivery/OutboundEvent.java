@@ -0,0 +1,26 @@
+package com.example.chat.delivery;
+
+import com.example.chat.events.CommunicationsEvent;
+
+/**
+ * @param encoded the serialized frame, shared by every connection the event is written to; events
+ *                without one are serialized by the writer
+ */
+public record OutboundEvent(
+        String id,
+        CommunicationsEvent event,
+        EncodedSseEvent encoded
+) {
+    /**
+     * Keep-alive written as an SSE comment; it has no id and is not replayed.
+     */
+    public static final OutboundEvent HEARTBEAT = new OutboundEvent(null, null, EncodedSseEvent.HEARTBEAT);
+
+    public OutboundEvent(String id, CommunicationsEvent event) {
+        this(id, event, null);
+    }
+
+    public boolean isHeartbeat() {
+        return event == null;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.chat.delivery;
+
+import com.example.chat.dto.UserDTO;
+import com.example.chat.enumeration.SlowConsumerPolicy;
+import com.example.chat.events.OverflowEvent;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounded queue of events waiting to be written to one SSE connection.
+ */
+public class OutboundQueue {
+    private final UserDTO userDTO;
+    private final Runnable onFailure;
+    private final int capacity;
+    private final SlowConsumerPolicy policy;
+    private final ArrayDeque<OutboundEvent> events;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private boolean closed;
+    private Runnable onWritable;
+    private HashedTimingWheel.Timeout heartbeat;
+    private volatile long lastWriteNanos = System.nanoTime();
+    private volatile long writeStartedNanos;
+
+    public OutboundQueue(UserDTO userDTO, Runnable onFailure, int capacity, SlowConsumerPolicy policy) {
+        this.userDTO = userDTO;
+        this.onFailure = onFailure;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.events = new ArrayDeque<>(Math.min(capacity, 16));
+    }
+
+    /**
+     * @return false if the queue is closed or full and the policy is {@link SlowConsumerPolicy#DISCONNECT}
+     */
+    public synchronized boolean offer(OutboundEvent outboundEvent) {
+        if (closed) {
+            return false;
+        }
+        if (events.size() >= capacity) {
+            switch (policy) {
+                case DROP_OLDEST -> events.pollFirst();
+                case COALESCE -> coalesce();
+                case DISCONNECT -> {
+                    return false;
+                }
+            }
+        }
+        events.addLast(outboundEvent);
+        return true;
+    }
+
+    private void coalesce() {
+        int dropped = 0;
+        for (OutboundEvent queued : events) {
+            if (queued.isHeartbeat()) {
+                continue;
+            }
+            dropped += queued.event() instanceof OverflowEvent overflowEvent ? overflowEvent.droppedEvents() : 1;
+        }
+        events.clear();
+        events.addLast(new OutboundEvent(null, new OverflowEvent(dropped)));
+    }
+
+    public synchronized boolean hasCapacity() {
+        return events.size() < capacity;
+    }
+
+    /**
+     * Runs callback once the queue has drained to half its capacity or is closed, at once if it is not
+     * full. A producer that must not lose events waits this way without holding a thread and never
+     * triggers the slow-consumer policy. Only the last callback registered is kept.
+     */
+    public void whenWritable(Runnable callback) {
+        synchronized (this) {
+            if (!closed && events.size() >= capacity) {
+                onWritable = callback;
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    public OutboundEvent poll() {
+        OutboundEvent outboundEvent;
+        Runnable writable = null;
+        synchronized (this) {
+            outboundEvent = events.pollFirst();
+            if (onWritable != null && events.size() <= capacity / 2) {
+                writable = onWritable;
+                onWritable = null;
+            }
+        }
+        // Outside the lock, the callback may offer events
+        if (writable != null) {
+            writable.run();
+        }
+        return outboundEvent;
+    }
+
+    public synchronized int size() {
+        return events.size();
+    }
+
+    public void close() {
+        Runnable writable;
+        synchronized (this) {
+            closed = true;
+            events.clear();
+            if (heartbeat != null) {
+                heartbeat.cancel();
+            }
+            writable = onWritable;
+            onWritable = null;
+        }
+        if (writable != null) {
+            writable.run();
+        }
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    boolean tryStartDraining() {
+        return draining.compareAndSet(false, true);
+    }
+
+    void stopDraining() {
+        draining.set(false);
+    }
+
+    synchronized void setHeartbeat(HashedTimingWheel.Timeout heartbeat) {
+        if (closed) {
+            heartbeat.cancel();
+        }
+        this.heartbeat = heartbeat;
+    }
+
+    void writeStarted() {
+        writeStartedNanos = System.nanoTime();
+    }
+
+    void writeFinished() {
+        lastWriteNanos = System.nanoTime();
+        writeStartedNanos = 0;
+    }
+
+    /**
+     * @return whether nothing has been written to the connection for at least the given time
+     */
+    boolean isIdle(long nowNanos, long idleNanos) {
+        return nowNanos - lastWriteNanos >= idleNanos;
+    }
+
+    /**
+     * @return whether a write has been blocked for longer than the given time, i.e. the peer stopped reading
+     */
+    boolean isStalled(long nowNanos, long stallNanos) {
+        long started = writeStartedNanos;
+        return started != 0 && nowNanos - started > stallNanos;
+    }
+
+    public UserDTO getUserDTO() {
+        return userDTO;
+    }
+
+    Runnable getOnFailure() {
+        return onFailure;
+    }
+}
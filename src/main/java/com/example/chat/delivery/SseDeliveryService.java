@@ -0,0 +1,220 @@
+package com.example.chat.delivery;
+
+import com.example.chat.config.DeliveryProperties;
+import com.example.chat.config.HeartbeatProperties;
+import com.example.chat.dto.UserDTO;
+import com.example.chat.events.CommunicationsEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.web.servlet.mvc.method.annotation.SseEmitter.event;
+
+/**
+ * Delivers events to SSE connections off the request thread. Every connection has its own bounded
+ * {@link OutboundQueue} drained by a pool of writer threads. Servlet writes block, so a browser that
+ * stops reading holds a writer thread until the write fails after the Tomcat connection timeout; the
+ * pool grows on demand to writerThreads so that stalled connections do not hold up the others, and
+ * never the sender.
+ * <p>
+ * Idle connections get a comment ping every heartbeat interval, so a vanished peer surfaces as a
+ * failed write. A connection whose write has been blocked for longer than the stall timeout is evicted.
+ * Both checks run per connection on a {@link HashedTimingWheel}.
+ * <p>
+ * Published events carry the frame encoded by {@link SseEventEncoder} and are written as is; only
+ * overflow markers created by the queue itself are serialized here.
+ */
+@Service
+public class SseDeliveryService {
+    private static final Logger logger = LoggerFactory.getLogger(SseDeliveryService.class);
+
+    private final DeliveryProperties properties;
+    private final HeartbeatProperties heartbeatProperties;
+    private final ExecutorService writers;
+    private final ExecutorService reaper;
+    private final HashedTimingWheel timingWheel;
+    private final ConcurrentHashMap<SseEmitter, OutboundQueue> queues = new ConcurrentHashMap<>();
+
+    public SseDeliveryService(DeliveryProperties properties, HeartbeatProperties heartbeatProperties) {
+        this.properties = properties;
+        this.heartbeatProperties = heartbeatProperties;
+        ThreadPoolExecutor writers = new ThreadPoolExecutor(properties.writerThreads(), properties.writerThreads(),
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new CustomizableThreadFactory("sse-writer-"));
+        // Below the core size every drain gets a thread of its own, idle ones are stopped
+        writers.allowCoreThreadTimeOut(true);
+        this.writers = writers;
+        // One thread per eviction, an eviction can wait for its blocked write; at most one per stalled writer
+        this.reaper = Executors.newCachedThreadPool(new CustomizableThreadFactory("sse-reaper-"));
+        this.timingWheel = new HashedTimingWheel("sse-heartbeat-", heartbeatProperties.tickDuration(),
+                heartbeatProperties.wheelSize());
+    }
+
+    public void open(UserDTO userDTO, Runnable onFailure) {
+        OutboundQueue queue = new OutboundQueue(userDTO, onFailure,
+                properties.queueCapacity(), properties.slowConsumerPolicy());
+        queues.put(userDTO.sseEmitter(), queue);
+        scheduleHeartbeat(queue);
+        // Spring commits the response headers with the first write, so without this the client
+        // would not see the stream open until the first event or heartbeat
+        if (queue.offer(OutboundEvent.HEARTBEAT)) {
+            scheduleDrain(queue);
+        }
+    }
+
+    public void close(UserDTO userDTO) {
+        OutboundQueue queue = queues.remove(userDTO.sseEmitter());
+        if (queue != null) {
+            queue.close();
+        }
+    }
+
+    /**
+     * Enqueues the event and returns without waiting for the write.
+     *
+     * @return false if the connection is unknown or was disconnected by the slow-consumer policy
+     */
+    public boolean send(UserDTO userDTO, OutboundEvent outboundEvent) {
+        OutboundQueue queue = queues.get(userDTO.sseEmitter());
+        if (queue == null) {
+            return false;
+        }
+        if (!queue.offer(outboundEvent)) {
+            if (!queue.isClosed()) {
+                logger.warn("Outbound queue of user {} is full, disconnecting slow consumer", userDTO.userName());
+                fail(queue, new IOException("Slow consumer"));
+            }
+            return false;
+        }
+        scheduleDrain(queue);
+        return true;
+    }
+
+    /**
+     * @return whether an event can be sent without the slow-consumer policy; true for a closed connection,
+     * whose sends fail
+     */
+    public boolean hasCapacity(UserDTO userDTO) {
+        OutboundQueue queue = queues.get(userDTO.sseEmitter());
+        return queue == null || queue.hasCapacity();
+    }
+
+    /**
+     * Runs callback once the connection's queue has drained, see {@link OutboundQueue#whenWritable}. It runs
+     * on the thread that drains or closes the queue and must not block.
+     *
+     * @return false if the connection is unknown or closed, callback is then not run
+     */
+    public boolean whenWritable(UserDTO userDTO, Runnable callback) {
+        OutboundQueue queue = queues.get(userDTO.sseEmitter());
+        if (queue == null || queue.isClosed()) {
+            return false;
+        }
+        queue.whenWritable(callback);
+        return true;
+    }
+
+    public int getQueueDepth() {
+        int depth = 0;
+        for (OutboundQueue queue : queues.values()) {
+            depth += queue.size();
+        }
+        return depth;
+    }
+
+    private void scheduleHeartbeat(OutboundQueue queue) {
+        queue.setHeartbeat(timingWheel.schedule(() -> heartbeat(queue), heartbeatProperties.interval()));
+    }
+
+    private void heartbeat(OutboundQueue queue) {
+        if (queue.isClosed()) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (queue.isStalled(now, heartbeatProperties.stallTimeout().toNanos())) {
+            logger.warn("Write to user {} stalled, evicting the connection", queue.getUserDTO().userName());
+            // Completing the emitter can wait on the blocked write until it times out, so keep it off the
+            // wheel thread
+            reaper.execute(() -> fail(queue, new IOException("Stalled connection")));
+            return;
+        }
+        if (queue.size() == 0 && queue.isIdle(now, heartbeatProperties.interval().toNanos())
+                && queue.offer(OutboundEvent.HEARTBEAT)) {
+            scheduleDrain(queue);
+        }
+        scheduleHeartbeat(queue);
+    }
+
+    private void scheduleDrain(OutboundQueue queue) {
+        if (queue.tryStartDraining()) {
+            writers.execute(() -> drain(queue));
+        }
+    }
+
+    private void drain(OutboundQueue queue) {
+        SseEmitter sseEmitter = queue.getUserDTO().sseEmitter();
+        try {
+            for (int i = 0; i < properties.drainBatchSize(); i++) {
+                OutboundEvent outboundEvent = queue.poll();
+                if (outboundEvent == null) {
+                    break;
+                }
+                queue.writeStarted();
+                sseEmitter.send(toSseEvent(outboundEvent));
+                queue.writeFinished();
+            }
+        } catch (IOException | IllegalStateException e) {
+            fail(queue, e);
+            return;
+        } finally {
+            queue.stopDraining();
+        }
+        // Re-check after releasing the drain flag so an event offered in between is not stranded.
+        if (queue.size() > 0) {
+            scheduleDrain(queue);
+        }
+    }
+
+    private SseEmitter.SseEventBuilder toSseEvent(OutboundEvent outboundEvent) {
+        if (outboundEvent.encoded() != null) {
+            return outboundEvent.encoded();
+        }
+        CommunicationsEvent communicationsEvent = outboundEvent.event();
+        SseEmitter.SseEventBuilder eventBuilder = event().name(communicationsEvent.getEventType());
+        if (outboundEvent.id() != null) {
+            eventBuilder.id(outboundEvent.id());
+        }
+        return eventBuilder.data(communicationsEvent, MediaType.APPLICATION_JSON);
+    }
+
+    private void fail(OutboundQueue queue, Exception e) {
+        close(queue.getUserDTO());
+        queue.getOnFailure().run();
+        try {
+            queue.getUserDTO().sseEmitter().completeWithError(e);
+        } catch (IllegalStateException alreadyCompleted) {
+            logger.debug("Request of user {} already completed", queue.getUserDTO().userName());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        timingWheel.stop();
+        reaper.shutdown();
+        writers.shutdown();
+        if (!writers.awaitTermination(5, TimeUnit.SECONDS)) {
+            writers.shutdownNow();
+        }
+    }
+}
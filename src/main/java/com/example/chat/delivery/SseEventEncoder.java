@@ -0,0 +1,57 @@
+package com.example.chat.delivery;
+
+import com.example.chat.events.CommunicationsEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serializes an event into an {@link EncodedSseEvent} with the same layout as
+ * {@code SseEmitter.event().name(..).id(..).data(.., APPLICATION_JSON)}.
+ */
+@Component
+public class SseEventEncoder {
+    private static final byte[] END = "\n\n".getBytes(StandardCharsets.UTF_8);
+
+    // Indented JSON would span several data: lines
+    private final ObjectWriter writer;
+
+    public SseEventEncoder(ObjectMapper objectMapper) {
+        this.writer = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+    }
+
+    public EncodedSseEvent encode(String id, CommunicationsEvent event) {
+        return encode(id, event.getEventType(), serialize(event));
+    }
+
+    /**
+     * @param data the event serialized by {@link #serialize}, shared when one event goes to many users
+     */
+    public EncodedSseEvent encode(String id, String eventType, byte[] data) {
+        StringBuilder header = new StringBuilder(64).append("event:").append(eventType);
+        if (id != null) {
+            header.append("\nid:").append(id);
+        }
+        byte[] headerBytes = header.append("\ndata:").toString().getBytes(StandardCharsets.UTF_8);
+
+        byte[] frame = new byte[headerBytes.length + data.length + END.length];
+        System.arraycopy(headerBytes, 0, frame, 0, headerBytes.length);
+        System.arraycopy(data, 0, frame, headerBytes.length, data.length);
+        System.arraycopy(END, 0, frame, headerBytes.length + data.length, END.length);
+        return new EncodedSseEvent(frame);
+    }
+
+    public byte[] serialize(CommunicationsEvent event) {
+        try {
+            // Jackson serializes into its recycled buffers and returns an exact-size copy
+            return writer.writeValueAsBytes(event);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error: could not serialize " + event.getEventType() + " event", e);
+        }
+    }
+}
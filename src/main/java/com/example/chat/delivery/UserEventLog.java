@@ -0,0 +1,72 @@
+package com.example.chat.delivery;
+
+import com.example.chat.events.CommunicationsEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-user event sequence with a ring buffer of the most recent events. Not thread safe, callers
+ * synchronize on the log.
+ */
+public class UserEventLog {
+    private final OutboundEvent[] ring;
+    private final long[] sequences;
+    private final long firstSequence;
+    private final SseEventEncoder encoder;
+    private long lastSequence;
+    private long lastPublishedAt;
+
+    public UserEventLog(int capacity, long initialSequence, SseEventEncoder encoder) {
+        this.encoder = encoder;
+        this.ring = new OutboundEvent[capacity];
+        this.sequences = new long[capacity];
+        this.firstSequence = initialSequence + 1;
+        this.lastSequence = initialSequence;
+    }
+
+    /**
+     * Assigns the next id and encodes the event once for all connections and replays.
+     */
+    public OutboundEvent append(CommunicationsEvent event) {
+        return append(event, encoder.serialize(event));
+    }
+
+    /**
+     * @param data the event already serialized by the {@link SseEventEncoder}
+     */
+    public OutboundEvent append(CommunicationsEvent event, byte[] data) {
+        long sequence = ++lastSequence;
+        // Kept from going back with the clock, so a later event never resumes from an earlier time
+        lastPublishedAt = Math.max(lastPublishedAt, System.currentTimeMillis());
+        String id = new EventId(sequence, lastPublishedAt).toString();
+        OutboundEvent outboundEvent = new OutboundEvent(id, event, encoder.encode(id, event.getEventType(), data));
+        int slot = (int) (sequence % ring.length);
+        ring[slot] = outboundEvent;
+        sequences[slot] = sequence;
+        return outboundEvent;
+    }
+
+    /**
+     * @return the buffered events after the given sequence, or null if some of them are not buffered
+     */
+    public List<OutboundEvent> since(long sequence) {
+        long oldestBuffered = Math.max(firstSequence, lastSequence - ring.length + 1);
+        if (sequence + 1 < oldestBuffered || sequence > lastSequence) {
+            return null;
+        }
+        List<OutboundEvent> events = new ArrayList<>((int) (lastSequence - sequence));
+        for (long next = sequence + 1; next <= lastSequence; next++) {
+            events.add(ring[(int) (next % ring.length)]);
+        }
+        return events;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    public long getLastPublishedAt() {
+        return lastPublishedAt;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.chat.dto;
+
+public record AckRangeDTO(
+        long senderId,
+        long receiverId,
+        long fromId,
+        long toId
+) {
+}
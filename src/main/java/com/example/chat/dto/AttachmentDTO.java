@@ -0,0 +1,12 @@
+package com.example.chat.dto;
+
+/**
+ * @param id   SHA-256 of the file, pass it as attachmentId when sending a message
+ * @param size size of the file in bytes
+ */
+public record AttachmentDTO(
+        String id,
+        long size,
+        String contentType
+) {
+}
@@ -1,10 +1,22 @@
 package com.example.chat.dto;
 
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 
+/**
+ * @param attachmentId    id of an uploaded attachment sent with the message, messageContent is its caption
+ * @param clientMessageId id the client gave the message, a retry with the same id is answered with the
+ *                        outcome of the first send instead of being sent again
+ */
 public record ChatDTO(
         @NotNull
         String messageContent,
         @NotNull
-        String userName) {
+        String userName,
+        String attachmentId,
+        @Size(max = 64)
+        String clientMessageId) {
+    public ChatDTO(String messageContent, String userName) {
+        this(messageContent, userName, null, null);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package com.example.chat.dto;
+
+import java.time.LocalDateTime;
+
+public record ClusterNodeDTO(
+        String nodeId,
+        String nodeUrl,
+        LocalDateTime heartbeatAt
+) {
+}
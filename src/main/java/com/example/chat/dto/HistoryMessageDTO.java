@@ -0,0 +1,17 @@
+package com.example.chat.dto;
+
+import com.example.chat.enumeration.MessageStatus;
+
+import java.time.LocalDateTime;
+
+public record HistoryMessageDTO(
+        long id,
+        String sender,
+        String receiver,
+        String messageContent,
+        MessageStatus status,
+        LocalDateTime timestamp,
+        String contentId,
+        String attachmentId
+) {
+}
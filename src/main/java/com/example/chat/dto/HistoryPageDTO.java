@@ -0,0 +1,15 @@
+package com.example.chat.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * One page of a conversation, newest first. Pass nextBeforeTimestamp and nextBeforeId back to get the
+ * next (older) page; both are null on the last page.
+ */
+public record HistoryPageDTO(
+        List<HistoryMessageDTO> messages,
+        LocalDateTime nextBeforeTimestamp,
+        Long nextBeforeId
+) {
+}
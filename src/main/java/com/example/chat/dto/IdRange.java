@@ -0,0 +1,16 @@
+package com.example.chat.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+
+/**
+ * Inclusive range of message ids. Both ends are ids the client received, so an acknowledgement
+ * never reaches messages it has not seen.
+ */
+public record IdRange(
+        @PositiveOrZero
+        long fromId,
+        @NotNull
+        Long toId
+) {
+}
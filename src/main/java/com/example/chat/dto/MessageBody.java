@@ -0,0 +1,20 @@
+package com.example.chat.dto;
+
+/**
+ * What is pushed and stored for a message.
+ *
+ * @param content         the message, or a preview of it when contentId is set
+ * @param contentId       the stored full content of a message longer than the inline limit, otherwise null
+ * @param attachmentId    the attachment sent with the message, or null
+ * @param clientMessageId the id the client gave the message, or null
+ */
+public record MessageBody(
+        String content,
+        String contentId,
+        String attachmentId,
+        String clientMessageId
+) {
+    public MessageBody(String content, String contentId, String attachmentId) {
+        this(content, contentId, attachmentId, null);
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.chat.dto;
+
+import com.example.chat.enumeration.MessageStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * @param id              the reserved message id, null only in journals written before ids were reserved
+ * @param statusChangedAt when the message got its status, null while it is pending; a message pushed
+ *                        when it is created gets it at its timestamp
+ */
+public record NewMessageDTO(
+        Long id,
+        String content,
+        long senderId,
+        long receiverId,
+        MessageStatus status,
+        LocalDateTime timestamp,
+        String contentId,
+        String attachmentId,
+        String clientMessageId,
+        LocalDateTime statusChangedAt
+) {
+    public NewMessageDTO withStatus(MessageStatus status, LocalDateTime statusChangedAt) {
+        return new NewMessageDTO(id, content, senderId, receiverId, status, timestamp, contentId, attachmentId,
+                clientMessageId, statusChangedAt);
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.chat.dto;
+
+import com.example.chat.enumeration.MessageStatus;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+/**
+ * @param userName the sender of the acknowledged messages
+ */
+public record ReceiptRequest(
+        @NotBlank
+        String userName,
+        @NotNull
+        MessageStatus status,
+        @NotEmpty
+        List<@Valid @NotNull IdRange> ranges
+) {
+}
@@ -0,0 +1,10 @@
+package com.example.chat.dto;
+
+import com.example.chat.enumeration.UserStatus;
+
+public record RoomMemberDTO(
+        long userId,
+        String userName,
+        UserStatus status
+) {
+}
@@ -0,0 +1,9 @@
+package com.example.chat.dto;
+
+import jakarta.validation.constraints.NotBlank;
+
+public record RoomMemberRequest(
+        @NotBlank
+        String userName
+) {
+}
@@ -0,0 +1,11 @@
+package com.example.chat.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+public record RoomMessageRequest(
+        @NotNull
+        @Size(max = 255)
+        String messageContent
+) {
+}
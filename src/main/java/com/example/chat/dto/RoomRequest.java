@@ -0,0 +1,19 @@
+package com.example.chat.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * @param members user names to add besides the creator
+ */
+public record RoomRequest(
+        @NotBlank
+        @Size(max = 100)
+        String name,
+        @NotNull
+        List<String> members
+) {
+}
@@ -0,0 +1,12 @@
+package com.example.chat.dto;
+
+/**
+ * @param delivered members the message was pushed to
+ * @param pending   members it was stored for until they log in
+ */
+public record RoomSendResponse(
+        long messageId,
+        int delivered,
+        int pending
+) {
+}
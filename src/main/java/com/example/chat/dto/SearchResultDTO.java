@@ -0,0 +1,13 @@
+package com.example.chat.dto;
+
+import java.util.List;
+
+/**
+ * One page of search results, newest first. Pass nextBeforeId back to get the next (older) page; it is
+ * null on the last page.
+ */
+public record SearchResultDTO(
+        List<HistoryMessageDTO> messages,
+        Long nextBeforeId
+) {
+}
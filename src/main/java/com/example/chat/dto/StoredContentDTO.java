@@ -0,0 +1,12 @@
+package com.example.chat.dto;
+
+/**
+ * @param originalSize size of the content in UTF-8 bytes
+ * @param data         the content, Deflate compressed
+ */
+public record StoredContentDTO(
+        String id,
+        int originalSize,
+        byte[] data
+) {
+}
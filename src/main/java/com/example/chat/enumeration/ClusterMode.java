@@ -0,0 +1,5 @@
+package com.example.chat.enumeration;
+
+public enum ClusterMode {
+    LOOPBACK, HTTP
+}
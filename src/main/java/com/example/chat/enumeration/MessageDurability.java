@@ -0,0 +1,5 @@
+package com.example.chat.enumeration;
+
+public enum MessageDurability {
+    SYNC, JOURNALED, BUFFERED
+}
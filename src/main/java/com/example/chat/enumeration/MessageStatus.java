@@ -1,5 +1,9 @@
 package com.example.chat.enumeration;
 
+/**
+ * PENDING until pushed, SENT once written to a connection, DELIVERED and READ once the receiving
+ * client acknowledges them. A message only ever moves forward through these states.
+ */
 public enum MessageStatus {
-    PENDING, SENT
-}
\ No newline at end of file
+    PENDING, SENT, DELIVERED, READ
+}
@@ -0,0 +1,5 @@
+package com.example.chat.enumeration;
+
+public enum OutboxStatus {
+    PENDING, SENT, FAILED
+}
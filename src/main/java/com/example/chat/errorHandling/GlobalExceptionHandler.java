@@ -39,6 +39,20 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return new ResponseEntity<String>(businessNotFound.getMessage(), HttpStatus.NOT_FOUND);
     }
 
+    @ExceptionHandler(MessageStoreUnavailable.class)
+    public ResponseEntity<String> MessageStoreUnavailableHandler(MessageStoreUnavailable messageStoreUnavailable) {
+        return new ResponseEntity<String>(messageStoreUnavailable.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(RateLimitExceeded.class)
+    public ResponseEntity<String> RateLimitExceededHandler(RateLimitExceeded rateLimitExceeded) {
+        HttpHeaders headers = new HttpHeaders();
+        // Retry-After is in whole seconds, rounded up so a client waiting that long gets a token
+        long retryAfter = Math.max(1, (rateLimitExceeded.getRetryAfter().toMillis() + 999) / 1000);
+        headers.set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+        return new ResponseEntity<String>(rateLimitExceeded.getMessage(), headers, HttpStatus.TOO_MANY_REQUESTS);
+    }
+
     @Override
     protected ResponseEntity<Object> handleMethodArgumentNotValid(MethodArgumentNotValidException ex, HttpHeaders headers, HttpStatusCode status, WebRequest request) {
         List<ObjectError> errors = ex.getBindingResult().getAllErrors();
@@ -0,0 +1,7 @@
+package com.example.chat.errorHandling;
+
+public class MessageStoreUnavailable extends RuntimeException {
+    public MessageStoreUnavailable(String message) {
+        super(message);
+    }
+}
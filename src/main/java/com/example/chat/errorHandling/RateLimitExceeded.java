@@ -0,0 +1,17 @@
+package com.example.chat.errorHandling;
+
+import java.time.Duration;
+
+public class RateLimitExceeded extends RuntimeException {
+    private final Duration retryAfter;
+
+    public RateLimitExceeded(String message, Duration retryAfter) {
+        // Thrown on every refused send, the stack trace is never looked at
+        super(message, null, false, false);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
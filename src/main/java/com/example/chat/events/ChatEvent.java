@@ -1,11 +1,30 @@
 package com.example.chat.events;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * @param userName     the receiver
+ * @param sender       the user to acknowledge the message to
+ * @param messageId    the id of the message; live messages are pushed with an id reserved before they are
+ *                     stored, so it can be acknowledged before write-behind inserts the row
+ * @param contentId    set when messageContent is only a preview; the full content is fetched by this id
+ * @param attachmentId set when a file was sent with the message
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public record ChatEvent(
         String messageContent,
-        String userName
+        String userName,
+        String sender,
+        Long messageId,
+        String contentId,
+        String attachmentId
 ) implements CommunicationsEvent {
+    public ChatEvent(String messageContent, String userName) {
+        this(messageContent, userName, null, null, null, null);
+    }
+
     @Override
     public String getEventType() {
         return "chat";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,18 @@
+package com.example.chat.events;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * An event received from another cluster node, re-sent as is.
+ */
+public record ForwardedEvent(
+        String eventType,
+        @JsonValue
+        JsonNode data
+) implements CommunicationsEvent {
+    @Override
+    public String getEventType() {
+        return eventType;
+    }
+}
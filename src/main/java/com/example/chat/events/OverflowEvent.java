@@ -0,0 +1,10 @@
+package com.example.chat.events;
+
+public record OverflowEvent(
+        int droppedEvents
+) implements CommunicationsEvent {
+    @Override
+    public String getEventType() {
+        return "overflow";
+    }
+}
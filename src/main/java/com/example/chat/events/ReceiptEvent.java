@@ -0,0 +1,20 @@
+package com.example.chat.events;
+
+import com.example.chat.dto.IdRange;
+import com.example.chat.enumeration.MessageStatus;
+
+import java.util.List;
+
+/**
+ * Tells a sender that userName acknowledged the messages in ranges with status.
+ */
+public record ReceiptEvent(
+        String userName,
+        MessageStatus status,
+        List<IdRange> ranges
+) implements CommunicationsEvent {
+    @Override
+    public String getEventType() {
+        return "receipt";
+    }
+}
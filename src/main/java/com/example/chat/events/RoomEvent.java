@@ -0,0 +1,16 @@
+package com.example.chat.events;
+
+/**
+ * @param messageId the id of the stored room message, the same for every member
+ */
+public record RoomEvent(
+        String room,
+        String sender,
+        String messageContent,
+        long messageId
+) implements CommunicationsEvent {
+    @Override
+    public String getEventType() {
+        return "room";
+    }
+}
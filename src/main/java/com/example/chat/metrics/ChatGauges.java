@@ -0,0 +1,87 @@
+package com.example.chat.metrics;
+
+import com.example.chat.cache.UserCache;
+import com.example.chat.delivery.SseDeliveryService;
+import com.example.chat.enumeration.MessageStatus;
+import com.example.chat.presence.ConnectedUserRegistry;
+import com.example.chat.presence.UserStatusWriter;
+import com.example.chat.repository.MessageRepository;
+import com.example.chat.service.EmailOutboxService;
+import com.example.chat.service.MessagePersistenceService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gauges of the message pipeline. The in-memory ones are read on every scrape; the database counts
+ * are refreshed on a schedule, so scraping never queries MySQL. The pending count reads only the
+ * PENDING entries of message_status_idx, which every status change of a message has to update.
+ */
+@Component
+public class ChatGauges {
+    private static final Logger logger = LoggerFactory.getLogger(ChatGauges.class);
+
+    private final MessageRepository messageRepository;
+    private final EmailOutboxService emailOutboxService;
+    private final AtomicLong pendingMessages = new AtomicLong();
+    private final AtomicLong emailOutboxDepth = new AtomicLong();
+
+    public ChatGauges(MeterRegistry meterRegistry, ConnectedUserRegistry connectedUserRegistry,
+                      SseDeliveryService sseDeliveryService, MessagePersistenceService messagePersistenceService,
+                      MessageRepository messageRepository, EmailOutboxService emailOutboxService,
+                      UserCache userCache, UserStatusWriter userStatusWriter) {
+        this.messageRepository = messageRepository;
+        this.emailOutboxService = emailOutboxService;
+
+        Gauge.builder("chat.sse.emitters", connectedUserRegistry, ConnectedUserRegistry::getEmitterCount)
+                .description("Open SSE connections")
+                .register(meterRegistry);
+        Gauge.builder("chat.sse.users", connectedUserRegistry, ConnectedUserRegistry::getConnectedUserCount)
+                .description("Users with at least one open SSE connection")
+                .register(meterRegistry);
+        Gauge.builder("chat.sse.queue.depth", sseDeliveryService, SseDeliveryService::getQueueDepth)
+                .description("Events waiting in the outbound queues of all connections")
+                .register(meterRegistry);
+        Gauge.builder("chat.messages.buffered", messagePersistenceService,
+                        MessagePersistenceService::getBufferedCount)
+                .description("Messages accepted but not yet written to the database")
+                .register(meterRegistry);
+        Gauge.builder("chat.messages.pending", pendingMessages, AtomicLong::get)
+                .description("Stored messages waiting for their recipient to log in")
+                .register(meterRegistry);
+        Gauge.builder("chat.email.outbox.depth", emailOutboxDepth, AtomicLong::get)
+                .description("Pending notifications in the email outbox")
+                .register(meterRegistry);
+        Gauge.builder("chat.presence.status.pending", userStatusWriter, UserStatusWriter::getPendingCount)
+                .description("User status changes not yet written to the database")
+                .register(meterRegistry);
+
+        Gauge.builder("chat.user.cache.size", userCache, cache -> cache.getStats().size())
+                .register(meterRegistry);
+        FunctionCounter.builder("chat.user.cache.requests", userCache, cache -> cache.getStats().hitCount())
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("chat.user.cache.requests", userCache, cache -> cache.getStats().missCount())
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("chat.user.cache.evictions", userCache, cache -> cache.getStats().evictionCount())
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${chat.metrics.backlog-refresh-interval:PT30S}")
+    public void refreshBacklog() {
+        try {
+            pendingMessages.set(messageRepository.countByStatus(MessageStatus.PENDING.name()));
+            emailOutboxDepth.set(emailOutboxService.getQueueDepth());
+        } catch (DataAccessException e) {
+            logger.warn("Error: could not refresh the backlog gauges", e);
+        }
+    }
+}
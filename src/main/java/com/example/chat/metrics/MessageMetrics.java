@@ -0,0 +1,74 @@
+package com.example.chat.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Timers and counters of the message path. They are recorded in code rather than with {@code @Timed}
+ * because {@code sendMsg} is mostly called from inside
+ * {@link com.example.chat.service.EventHandlerService}, where a proxy would not see it.
+ */
+@Component
+public class MessageMetrics {
+    private final Timer handleTimer;
+    private final Timer sendTimer;
+    private final Timer pendingDeliveryTimer;
+    private final Timer roomSendTimer;
+    private final Counter sentCounter;
+    private final Counter storedCounter;
+    private final Counter pendingDeliveredCounter;
+
+    public MessageMetrics(MeterRegistry meterRegistry) {
+        this.handleTimer = Timer.builder("chat.message.handle")
+                .description("EventHandlerService.handleMessage, from the sender's request")
+                .register(meterRegistry);
+        this.sendTimer = Timer.builder("chat.message.send")
+                .description("EventHandlerService.sendMsg, publishing to the recipient's connections")
+                .register(meterRegistry);
+        this.pendingDeliveryTimer = Timer.builder("chat.message.pending.delivery")
+                .description("PendingDeliveryService, delivering the backlog of a user after login")
+                .register(meterRegistry);
+        this.roomSendTimer = Timer.builder("chat.room.send")
+                .description("RoomService.send, persisting a room message and fanning it out to the members")
+                .register(meterRegistry);
+        this.sentCounter = Counter.builder("chat.messages")
+                .tag("outcome", "sent")
+                .register(meterRegistry);
+        this.storedCounter = Counter.builder("chat.messages")
+                .tag("outcome", "stored")
+                .register(meterRegistry);
+        this.pendingDeliveredCounter = Counter.builder("chat.messages")
+                .tag("outcome", "pending_delivered")
+                .register(meterRegistry);
+    }
+
+    public Timer getHandleTimer() {
+        return handleTimer;
+    }
+
+    public Timer getSendTimer() {
+        return sendTimer;
+    }
+
+    public Timer getPendingDeliveryTimer() {
+        return pendingDeliveryTimer;
+    }
+
+    public Timer getRoomSendTimer() {
+        return roomSendTimer;
+    }
+
+    public Counter getSentCounter() {
+        return sentCounter;
+    }
+
+    public Counter getStoredCounter() {
+        return storedCounter;
+    }
+
+    public Counter getPendingDeliveredCounter() {
+        return pendingDeliveredCounter;
+    }
+}
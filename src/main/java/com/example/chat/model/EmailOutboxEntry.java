@@ -0,0 +1,23 @@
+package com.example.chat.model;
+
+import com.example.chat.enumeration.OutboxStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailOutboxEntry {
+    private long id;
+    private long recipientId;
+    private String senderUserName;
+    private OutboxStatus status;
+    private int attempts;
+    private LocalDateTime createdAt;
+    private LocalDateTime nextAttemptAt;
+}
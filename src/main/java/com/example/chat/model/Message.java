@@ -17,4 +17,6 @@ public class Message {
     private User receiver;
     private MessageStatus status;
     private LocalDateTime timestamp;
+    private String contentId;
+    private String attachmentId;
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.example.chat.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class Room {
+    private long id;
+    private String name;
+    private long createdBy;
+    private LocalDateTime createdAt;
+}
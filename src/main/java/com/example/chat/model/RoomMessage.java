@@ -0,0 +1,18 @@
+package com.example.chat.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+public class RoomMessage {
+    private long id;
+    private String roomName;
+    private String senderUserName;
+    private String content;
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,73 @@
+package com.example.chat.presence;
+
+import com.example.chat.dto.UserDTO;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connected SSE emitters indexed by user name. A user can hold several emitters at once
+ * (one per tab or device); lookups, additions and removals are O(1) in the number of users.
+ */
+@Component
+public class ConnectedUserRegistry {
+    private final ConcurrentHashMap<String, Set<UserDTO>> connections = new ConcurrentHashMap<>();
+    private final AtomicInteger emitterCount = new AtomicInteger();
+
+    /**
+     * @return true if this is the first emitter registered for the user
+     */
+    public boolean register(UserDTO userDTO) {
+        boolean[] first = new boolean[1];
+        connections.compute(userDTO.userName(), (userName, emitters) -> {
+            if (emitters == null) {
+                emitters = new CopyOnWriteArraySet<>();
+                first[0] = true;
+            }
+            if (emitters.add(userDTO)) {
+                emitterCount.incrementAndGet();
+            }
+            return emitters;
+        });
+        return first[0];
+    }
+
+    /**
+     * @return true if the removed emitter was the last one the user had
+     */
+    public boolean unregister(UserDTO userDTO) {
+        boolean[] last = new boolean[1];
+        connections.computeIfPresent(userDTO.userName(), (userName, emitters) -> {
+            if (emitters.remove(userDTO)) {
+                emitterCount.decrementAndGet();
+                if (emitters.isEmpty()) {
+                    last[0] = true;
+                    return null;
+                }
+            }
+            return emitters;
+        });
+        return last[0];
+    }
+
+    public Set<UserDTO> getConnections(String userName) {
+        Set<UserDTO> emitters = connections.get(userName);
+        return emitters == null ? Collections.emptySet() : Collections.unmodifiableSet(emitters);
+    }
+
+    public boolean isConnected(String userName) {
+        return connections.containsKey(userName);
+    }
+
+    public int getConnectedUserCount() {
+        return connections.size();
+    }
+
+    public int getEmitterCount() {
+        return emitterCount.get();
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.chat.presence;
+
+import com.example.chat.config.PresenceProperties;
+import com.example.chat.enumeration.UserStatus;
+import com.example.chat.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the status column of the user table behind the in-memory presence. Transitions are coalesced
+ * per user, so a user who logs in and out within one flush interval costs one row update or none, and
+ * the updates of a window are sent as one batched statement per status. The column is a persisted
+ * mirror for other readers; delivery decisions are made from {@link ConnectedUserRegistry} and the
+ * cluster presence directory.
+ */
+@Component
+public class UserStatusWriter {
+    private static final Logger logger = LoggerFactory.getLogger(UserStatusWriter.class);
+
+    private final UserRepository userRepository;
+    private final PresenceProperties properties;
+    private final ConcurrentHashMap<String, UserStatus> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    public UserStatusWriter(UserRepository userRepository, PresenceProperties properties) {
+        this.userRepository = userRepository;
+        this.properties = properties;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("status-writer-"));
+        long intervalMillis = properties.flushInterval().toMillis();
+        this.flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Replaces any status of the user that has not been written yet.
+     */
+    public void record(String userName, UserStatus status) {
+        pending.put(userName, status);
+    }
+
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<UserStatus, List<String>> batches = new EnumMap<>(UserStatus.class);
+        for (String userName : pending.keySet()) {
+            UserStatus status = pending.remove(userName);
+            if (status != null) {
+                batches.computeIfAbsent(status, s -> new ArrayList<>()).add(userName);
+            }
+        }
+        for (Map.Entry<UserStatus, List<String>> batch : batches.entrySet()) {
+            List<String> userNames = batch.getValue();
+            try {
+                for (int from = 0; from < userNames.size(); from += properties.batchSize()) {
+                    userRepository.updateStatusByUserNames(
+                            userNames.subList(from, Math.min(from + properties.batchSize(), userNames.size())),
+                            batch.getKey().name());
+                }
+            } catch (DataAccessException e) {
+                logger.error("Error: writing the status of {} users failed, will retry", userNames.size(), e);
+                // A status recorded since is newer and wins over the failed one
+                userNames.forEach(userName -> pending.putIfAbsent(userName, batch.getKey()));
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Error: scheduled status flush failed", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        flush();
+    }
+}
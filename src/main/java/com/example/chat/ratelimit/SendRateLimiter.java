@@ -0,0 +1,92 @@
+package com.example.chat.ratelimit;
+
+import com.example.chat.config.RateLimitProperties;
+import com.example.chat.errorHandling.RateLimitExceeded;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Admission control of sends, checked before a message reaches the services and the database. Every
+ * user has a {@link TokenBucket} and all sends also take a token from one global bucket, so neither a
+ * single user nor all of them together can push more than the configured rate. Buckets are lock-free
+ * and looked up without locking, a refused send costs a map lookup and a CAS.
+ */
+@Component
+public class SendRateLimiter {
+    private final RateLimitProperties properties;
+    private final TokenBucket globalBucket;
+    private final ConcurrentHashMap<String, TokenBucket> userBuckets = new ConcurrentHashMap<>();
+    private final Counter userRejectedCounter;
+    private final Counter globalRejectedCounter;
+
+    public SendRateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System.nanoTime());
+    }
+
+    SendRateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry, long now) {
+        this.properties = properties;
+        this.globalBucket = new TokenBucket(properties.globalRate(), properties.globalBurst(), now);
+        this.userRejectedCounter = Counter.builder("chat.rate.limited")
+                .tag("limit", "user")
+                .register(meterRegistry);
+        this.globalRejectedCounter = Counter.builder("chat.rate.limited")
+                .tag("limit", "global")
+                .register(meterRegistry);
+        Gauge.builder("chat.rate.buckets", userBuckets, ConcurrentHashMap::size)
+                .description("Users with a rate limit bucket, those who sent recently")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @throws RateLimitExceeded if the user or the server is over its rate
+     */
+    public void acquire(String userName) {
+        acquire(userName, System.nanoTime());
+    }
+
+    void acquire(String userName, long now) {
+        if (!properties.enabled()) {
+            return;
+        }
+        TokenBucket userBucket = userBuckets.get(userName);
+        if (userBucket == null) {
+            userBucket = userBuckets.computeIfAbsent(userName,
+                    key -> new TokenBucket(properties.userRate(), properties.userBurst(), now));
+        }
+        long wait = userBucket.tryAcquire(now);
+        if (wait > 0) {
+            userRejectedCounter.increment();
+            throw new RateLimitExceeded("Too many messages, slow down!", Duration.ofNanos(wait));
+        }
+        wait = globalBucket.tryAcquire(now);
+        if (wait > 0) {
+            // The send is refused, it should not count against the user
+            userBucket.refund();
+            globalRejectedCounter.increment();
+            throw new RateLimitExceeded("The server is busy, try again later!", Duration.ofNanos(wait));
+        }
+    }
+
+    /**
+     * Drops the buckets that have refilled, a new full bucket is created on the next send. A send racing
+     * the removal may use the dropped bucket, which lets that user send at most one extra burst.
+     */
+    @Scheduled(fixedDelayString = "${chat.rate-limit.sweep-interval:PT1M}")
+    public void sweep() {
+        sweep(System.nanoTime());
+    }
+
+    void sweep(long now) {
+        userBuckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    int getBucketCount() {
+        return userBuckets.size();
+    }
+}
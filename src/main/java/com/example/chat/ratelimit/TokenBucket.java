@@ -0,0 +1,54 @@
+package com.example.chat.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket in a single {@link AtomicLong}, kept in the form of the generic cell rate
+ * algorithm: rather than a token count and a refill time, the bucket stores the time at which it
+ * will be full again. Taking a token moves that time one emission interval forward; it is refused if
+ * the time would lie more than the whole burst ahead of now. All times are {@link System#nanoTime()}
+ * values and only ever compared by difference.
+ */
+final class TokenBucket {
+    private final long emissionInterval;
+    private final long capacity;
+    private final AtomicLong fullAt;
+
+    /**
+     * @param ratePerSecond tokens added per second
+     * @param burst         tokens in a full bucket
+     */
+    TokenBucket(double ratePerSecond, int burst, long now) {
+        this.emissionInterval = Math.max(1, Math.round(1_000_000_000d / ratePerSecond));
+        this.capacity = emissionInterval * burst;
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * @return 0 if a token was taken, otherwise the nanoseconds until one is available
+     */
+    long tryAcquire(long now) {
+        while (true) {
+            long current = fullAt.get();
+            long next = (current - now < 0 ? now : current) + emissionInterval;
+            long ahead = next - now;
+            if (ahead > capacity) {
+                return ahead - capacity;
+            }
+            if (fullAt.weakCompareAndSetVolatile(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Gives back a token taken by {@link #tryAcquire}, when the request was refused further on.
+     */
+    void refund() {
+        fullAt.addAndGet(-emissionInterval);
+    }
+
+    boolean isFull(long now) {
+        return fullAt.get() - now <= 0;
+    }
+}
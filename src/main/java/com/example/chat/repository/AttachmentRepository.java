@@ -0,0 +1,111 @@
+package com.example.chat.repository;
+
+import com.example.chat.dto.AttachmentDTO;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.support.DataAccessUtils;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RequiredArgsConstructor
+@Repository
+@Timed(value = "chat.repository", description = "AttachmentRepository queries")
+public class AttachmentRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Attachments are keyed by their hash, the content type of the first upload is kept.
+     */
+    public void save(AttachmentDTO attachment, LocalDateTime createdAt) {
+        try {
+            jdbcTemplate.update("""
+                    INSERT INTO attachment
+                    (id, size, content_type, created_at)
+                    VALUES(:id, :size, :contentType, :createdAt)
+                    """, new MapSqlParameterSource("id", attachment.id())
+                    .addValue("size", attachment.size())
+                    .addValue("contentType", attachment.contentType())
+                    .addValue("createdAt", createdAt));
+        } catch (DuplicateKeyException e) {
+            // Uploaded before
+        }
+    }
+
+    /**
+     * Records that the user uploaded the attachment, again at uploadedAt if they did before.
+     */
+    public void saveUpload(String attachmentId, long userId, LocalDateTime uploadedAt) {
+        jdbcTemplate.update("""
+                INSERT INTO attachment_upload
+                (attachment_id, user_id, uploaded_at)
+                VALUES(:attachmentId, :userId, :uploadedAt)
+                ON DUPLICATE KEY UPDATE uploaded_at = :uploadedAt
+                """, new MapSqlParameterSource("attachmentId", attachmentId)
+                .addValue("userId", userId)
+                .addValue("uploadedAt", uploadedAt));
+    }
+
+    public boolean isUploader(String attachmentId, long userId) {
+        Boolean uploader = jdbcTemplate.queryForObject("""
+                SELECT EXISTS(SELECT 1 FROM academy_chat.attachment_upload
+                WHERE attachment_id = :attachmentId and user_id = :userId)
+                """, new MapSqlParameterSource("attachmentId", attachmentId)
+                .addValue("userId", userId), Boolean.class);
+        return Boolean.TRUE.equals(uploader);
+    }
+
+    /**
+     * Attachments no message refers to and nobody uploaded since uploadedBefore. A scan of the attachment
+     * table with a lookup in message_attachment_idx per row.
+     */
+    public List<String> getOrphanIds(LocalDateTime uploadedBefore, int limit) {
+        return jdbcTemplate.queryForList("""
+                SELECT a.id
+                FROM academy_chat.attachment a
+                WHERE a.created_at < :uploadedBefore
+                and NOT EXISTS(SELECT 1 FROM academy_chat.attachment_upload u
+                WHERE u.attachment_id = a.id and u.uploaded_at >= :uploadedBefore)
+                and NOT EXISTS(SELECT 1 FROM academy_chat.message m WHERE m.attachment_id = a.id)
+                LIMIT :limit
+                """, new MapSqlParameterSource("uploadedBefore", uploadedBefore)
+                .addValue("limit", limit), String.class);
+    }
+
+    /**
+     * Deletes the attachment if it is still an orphan, see {@link #getOrphanIds}.
+     *
+     * @return whether it was deleted
+     */
+    @Transactional
+    public boolean deleteOrphan(String id, LocalDateTime uploadedBefore) {
+        int deleted = jdbcTemplate.update("""
+                DELETE FROM attachment
+                WHERE id = :id
+                and NOT EXISTS(SELECT 1 FROM attachment_upload u
+                WHERE u.attachment_id = :id and u.uploaded_at >= :uploadedBefore)
+                and NOT EXISTS(SELECT 1 FROM message m WHERE m.attachment_id = :id)
+                """, new MapSqlParameterSource("id", id)
+                .addValue("uploadedBefore", uploadedBefore));
+        if (deleted == 0) {
+            return false;
+        }
+        jdbcTemplate.update("DELETE FROM attachment_upload WHERE attachment_id = :id",
+                new MapSqlParameterSource("id", id));
+        return true;
+    }
+
+    public AttachmentDTO getById(String id) {
+        return DataAccessUtils.singleResult(jdbcTemplate.query("""
+                SELECT id, size, content_type
+                FROM academy_chat.attachment
+                WHERE id = :id
+                """, new MapSqlParameterSource("id", id), (rs, rowNum) -> new AttachmentDTO(rs.getString("id"),
+                rs.getLong("size"), rs.getString("content_type"))));
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.chat.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Content-addressed local store of attachment files. A file is kept under the SHA-256 of its bytes,
+ * in a directory named after the first two hex digits, so the same file uploaded many times is stored
+ * once. Uploads are streamed to a temporary file while they are hashed and only appear under their
+ * id once they are complete and on disk.
+ */
+public class AttachmentStore {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String TMP_DIR = "tmp";
+
+    private final Path storeDir;
+
+    public record StoredFile(String id, long size) {
+    }
+
+    public AttachmentStore(Path storeDir) throws IOException {
+        this.storeDir = storeDir;
+        Files.createDirectories(storeDir.resolve(TMP_DIR));
+    }
+
+    /**
+     * @param maxSize the upload is aborted with an IllegalArgumentException once it exceeds this
+     */
+    public StoredFile store(InputStream in, long maxSize) throws IOException {
+        MessageDigest digest = sha256();
+        Path tmp = Files.createTempFile(storeDir.resolve(TMP_DIR), "upload-", ".tmp");
+        long size = 0;
+        try {
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxSize) {
+                        throw new IllegalArgumentException("Attachments are limited to " + maxSize + " bytes!");
+                    }
+                    digest.update(buffer, 0, read);
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                    while (chunk.hasRemaining()) {
+                        out.write(chunk);
+                    }
+                }
+                out.force(true);
+            }
+            String id = HexFormat.of().formatHex(digest.digest());
+            Path file = pathOf(id);
+            if (!Files.exists(file)) {
+                Files.createDirectories(file.getParent());
+                try {
+                    Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    // Stored by a concurrent upload of the same file
+                }
+            }
+            return new StoredFile(id, size);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public boolean exists(String id) {
+        return Files.exists(pathOf(id));
+    }
+
+    public void delete(String id) throws IOException {
+        Files.deleteIfExists(pathOf(id));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the id is not a SHA-256 in hex
+     */
+    public Path pathOf(String id) {
+        if (id.length() != 64 || !id.chars().allMatch(c -> (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+            throw new IllegalArgumentException("Invalid attachment id!");
+        }
+        return storeDir.resolve(id.substring(0, 2)).resolve(id);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
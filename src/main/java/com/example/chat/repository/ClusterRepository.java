@@ -0,0 +1,77 @@
+package com.example.chat.repository;
+
+import com.example.chat.dto.ClusterNodeDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@RequiredArgsConstructor
+@Repository
+public class ClusterRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void heartbeat(String nodeId, String nodeUrl, LocalDateTime now) {
+        jdbcTemplate.update("""
+                INSERT INTO cluster_node (node_id, node_url, heartbeat_at)
+                VALUES(:nodeId, :nodeUrl, :now)
+                ON DUPLICATE KEY UPDATE node_url = VALUES(node_url), heartbeat_at = VALUES(heartbeat_at)
+                """, new MapSqlParameterSource("nodeId", nodeId)
+                .addValue("nodeUrl", nodeUrl)
+                .addValue("now", now));
+    }
+
+    public void deleteNode(String nodeId) {
+        MapSqlParameterSource params = new MapSqlParameterSource("nodeId", nodeId);
+        jdbcTemplate.update("DELETE FROM user_presence WHERE node_id = :nodeId", params);
+        jdbcTemplate.update("DELETE FROM cluster_node WHERE node_id = :nodeId", params);
+    }
+
+    public void savePresence(String userName, String nodeId, LocalDateTime now) {
+        jdbcTemplate.update("""
+                INSERT INTO user_presence (user_name, node_id, connected_at)
+                VALUES(:userName, :nodeId, :now)
+                ON DUPLICATE KEY UPDATE connected_at = VALUES(connected_at)
+                """, new MapSqlParameterSource("userName", userName)
+                .addValue("nodeId", nodeId)
+                .addValue("now", now));
+    }
+
+    public void deletePresence(String userName, String nodeId) {
+        jdbcTemplate.update("DELETE FROM user_presence WHERE user_name = :userName and node_id = :nodeId",
+                new MapSqlParameterSource("userName", userName).addValue("nodeId", nodeId));
+    }
+
+    public List<ClusterNodeDTO> getNodes() {
+        return jdbcTemplate.query("""
+                SELECT node_id, node_url, heartbeat_at
+                FROM academy_chat.cluster_node
+                """, (rs, rowNum) -> new ClusterNodeDTO(rs.getString("node_id"), rs.getString("node_url"),
+                rs.getTimestamp("heartbeat_at").toLocalDateTime()));
+    }
+
+    /**
+     * @return the ids of the live nodes other than excludedNodeId, by the name of each user connected to them
+     */
+    public Map<String, Set<String>> getPresence(String excludedNodeId, LocalDateTime aliveSince) {
+        Map<String, Set<String>> presence = new HashMap<>();
+        jdbcTemplate.query("""
+                SELECT p.user_name, p.node_id
+                FROM academy_chat.user_presence p
+                JOIN academy_chat.cluster_node n ON n.node_id = p.node_id
+                WHERE p.node_id <> :excludedNodeId and n.heartbeat_at >= :aliveSince
+                """, new MapSqlParameterSource("excludedNodeId", excludedNodeId)
+                .addValue("aliveSince", aliveSince), (RowCallbackHandler) rs -> presence
+                .computeIfAbsent(rs.getString("user_name"), key -> new HashSet<>())
+                .add(rs.getString("node_id")));
+        return presence;
+    }
+}
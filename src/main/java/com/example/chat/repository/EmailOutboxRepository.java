@@ -0,0 +1,124 @@
+package com.example.chat.repository;
+
+import com.example.chat.enumeration.OutboxStatus;
+import com.example.chat.model.EmailOutboxEntry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@RequiredArgsConstructor
+@Repository
+public class EmailOutboxRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void save(long recipientId, String senderUserName, LocalDateTime createdAt, LocalDateTime nextAttemptAt) {
+        jdbcTemplate.update("""
+                INSERT INTO email_outbox
+                (recipient_id, sender_user_name, status, attempts, created_at, next_attempt_at)
+                VALUES(:recipientId, :senderUserName, :status, 0, :createdAt, :nextAttemptAt)
+                """, new MapSqlParameterSource("recipientId", recipientId)
+                .addValue("senderUserName", senderUserName)
+                .addValue("status", OutboxStatus.PENDING.name())
+                .addValue("createdAt", createdAt)
+                .addValue("nextAttemptAt", nextAttemptAt));
+    }
+
+    public void saveAll(Collection<Long> recipientIds, String senderUserName, LocalDateTime createdAt,
+                        LocalDateTime nextAttemptAt) {
+        SqlParameterSource[] batch = recipientIds.stream()
+                .map(recipientId -> new MapSqlParameterSource("recipientId", recipientId)
+                        .addValue("senderUserName", senderUserName)
+                        .addValue("status", OutboxStatus.PENDING.name())
+                        .addValue("createdAt", createdAt)
+                        .addValue("nextAttemptAt", nextAttemptAt))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO email_outbox
+                (recipient_id, sender_user_name, status, attempts, created_at, next_attempt_at)
+                VALUES(:recipientId, :senderUserName, :status, 0, :createdAt, :nextAttemptAt)
+                """, batch);
+    }
+
+    public List<Long> getDueRecipientIds(LocalDateTime now, int limit) {
+        return jdbcTemplate.queryForList("""
+                SELECT DISTINCT recipient_id
+                FROM academy_chat.email_outbox
+                WHERE status = 'PENDING' and next_attempt_at <= :now
+                LIMIT :limit
+                """, new MapSqlParameterSource("now", now).addValue("limit", limit), Long.class);
+    }
+
+    /**
+     * Pushes the due entries of the recipient out by the lease, so only one dispatcher sends the digest.
+     *
+     * @return the number of claimed entries, 0 if another dispatcher got there first
+     */
+    public int claim(long recipientId, LocalDateTime now, LocalDateTime leaseUntil) {
+        return jdbcTemplate.update("""
+                UPDATE email_outbox
+                SET next_attempt_at = :leaseUntil
+                WHERE recipient_id = :recipientId and status = 'PENDING' and next_attempt_at <= :now
+                """, new MapSqlParameterSource("recipientId", recipientId)
+                .addValue("now", now)
+                .addValue("leaseUntil", leaseUntil));
+    }
+
+    public List<EmailOutboxEntry> getPendingByRecipientId(long recipientId) {
+        return jdbcTemplate.query("""
+                SELECT id, recipient_id, sender_user_name, status, attempts, created_at, next_attempt_at
+                FROM academy_chat.email_outbox
+                WHERE recipient_id = :recipientId and status = 'PENDING'
+                ORDER BY id
+                """, new MapSqlParameterSource("recipientId", recipientId), new RowMapper<EmailOutboxEntry>() {
+            @Override
+            public EmailOutboxEntry mapRow(ResultSet rs, int rowNum) throws SQLException {
+                EmailOutboxEntry entry = new EmailOutboxEntry();
+                entry.setId(rs.getLong("id"));
+                entry.setRecipientId(rs.getLong("recipient_id"));
+                entry.setSenderUserName(rs.getString("sender_user_name"));
+                entry.setStatus(OutboxStatus.valueOf(rs.getString("status")));
+                entry.setAttempts(rs.getInt("attempts"));
+                entry.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+                entry.setNextAttemptAt(rs.getTimestamp("next_attempt_at").toLocalDateTime());
+                return entry;
+            }
+        });
+    }
+
+    public void updateStatusByIds(List<Long> ids, OutboxStatus status) {
+        jdbcTemplate.update("""
+                UPDATE email_outbox
+                SET status = :status
+                WHERE id IN (:ids)
+                """, new MapSqlParameterSource("ids", ids).addValue("status", status.name()));
+    }
+
+    public void rescheduleByIds(List<Long> ids, int attempts, LocalDateTime nextAttemptAt) {
+        jdbcTemplate.update("""
+                UPDATE email_outbox
+                SET attempts = :attempts,
+                next_attempt_at = :nextAttemptAt
+                WHERE id IN (:ids)
+                """, new MapSqlParameterSource("ids", ids)
+                .addValue("attempts", attempts)
+                .addValue("nextAttemptAt", nextAttemptAt));
+    }
+
+    public long countPending() {
+        Long count = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*)
+                FROM academy_chat.email_outbox
+                WHERE status = 'PENDING'
+                """, new MapSqlParameterSource(), Long.class);
+        return count == null ? 0 : count;
+    }
+}
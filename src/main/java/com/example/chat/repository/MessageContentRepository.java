@@ -0,0 +1,55 @@
+package com.example.chat.repository;
+
+import com.example.chat.dto.StoredContentDTO;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.support.DataAccessUtils;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@RequiredArgsConstructor
+@Repository
+@Timed(value = "chat.repository", description = "MessageContentRepository queries")
+public class MessageContentRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public boolean existsById(String id) {
+        return !jdbcTemplate.queryForList("""
+                SELECT 1
+                FROM academy_chat.message_content
+                WHERE id = :id
+                LIMIT 1
+                """, new MapSqlParameterSource("id", id), Integer.class).isEmpty();
+    }
+
+    /**
+     * Content is keyed by its hash, a concurrent save of the same content is not an error.
+     */
+    public void save(String id, int originalSize, byte[] data, LocalDateTime createdAt) {
+        try {
+            jdbcTemplate.update("""
+                    INSERT INTO message_content
+                    (id, original_size, data, created_at)
+                    VALUES(:id, :originalSize, :data, :createdAt)
+                    """, new MapSqlParameterSource("id", id)
+                    .addValue("originalSize", originalSize)
+                    .addValue("data", data)
+                    .addValue("createdAt", createdAt));
+        } catch (DuplicateKeyException e) {
+            // Stored by another request in the meantime
+        }
+    }
+
+    public StoredContentDTO getById(String id) {
+        return DataAccessUtils.singleResult(jdbcTemplate.query("""
+                SELECT id, original_size, data
+                FROM academy_chat.message_content
+                WHERE id = :id
+                """, new MapSqlParameterSource("id", id), (rs, rowNum) -> new StoredContentDTO(rs.getString("id"),
+                rs.getInt("original_size"), rs.getBytes("data"))));
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.chat.repository;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@RequiredArgsConstructor
+@Repository
+@Timed(value = "chat.repository", description = "MessageIdRepository queries")
+public class MessageIdRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Reserves count consecutive message ids, across all nodes of a cluster.
+     *
+     * @return the first reserved id
+     */
+    @Transactional
+    public long reserve(int count) {
+        Long nextId = jdbcTemplate.queryForObject("""
+                SELECT next_id
+                FROM academy_chat.message_id_sequence
+                WHERE id = 1
+                FOR UPDATE
+                """, new MapSqlParameterSource(), Long.class);
+        jdbcTemplate.update("""
+                UPDATE message_id_sequence
+                SET next_id = next_id + :count
+                WHERE id = 1
+                """, new MapSqlParameterSource("count", count));
+        return nextId;
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.chat.repository;
+
+import com.example.chat.dto.NewMessageDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Append-only local journal of messages that are buffered but not yet in the database. An append only
+ * writes, {@link #sync} forces it to disk with group commit: one caller forces every append made so far
+ * while concurrent callers wait for that force, so producers share an fsync instead of paying one each.
+ * The journal is split into numbered segments: {@link #rotate()} seals the current segment so it can be
+ * deleted once its messages are committed. A sealed segment is forced by the next sync, not by the rotation.
+ */
+public class MessageJournal implements Closeable {
+    private static final String SEGMENT_PREFIX = "messages-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final Logger logger = LoggerFactory.getLogger(MessageJournal.class);
+
+    private final Path journalDir;
+    private final ObjectMapper objectMapper;
+    private final List<Path> recoveredSegments;
+    // Sealed segments with appends that may not be forced yet, closed once they are
+    private final Map<Path, FileChannel> unforcedSegments = new LinkedHashMap<>();
+    private final Object forceLock = new Object();
+    private long generation;
+    private Path currentSegment;
+    private FileChannel channel;
+    private long appendedSequence;
+    // Guarded by forceLock
+    private long forcedSequence;
+    private boolean forcing;
+
+    public MessageJournal(Path journalDir, ObjectMapper objectMapper) throws IOException {
+        this.journalDir = journalDir;
+        this.objectMapper = objectMapper;
+        Files.createDirectories(journalDir);
+        this.recoveredSegments = listSegments();
+        for (Path segment : recoveredSegments) {
+            generation = Math.max(generation, generationOf(segment));
+        }
+        open();
+    }
+
+    /**
+     * @return segments left behind by a previous run, oldest first
+     */
+    public List<Path> getRecoveredSegments() {
+        return recoveredSegments;
+    }
+
+    /**
+     * Writes the message without forcing it.
+     *
+     * @return the sequence to {@link #sync} to make the message durable
+     */
+    public long append(NewMessageDTO message) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(message);
+        ByteBuffer buffer = ByteBuffer.allocate(json.length + 1).put(json).put((byte) '\n').flip();
+        synchronized (this) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            return ++appendedSequence;
+        }
+    }
+
+    /**
+     * Returns once the appends up to sequence are on disk, forcing the journal if no other caller is.
+     */
+    public void sync(long sequence) throws IOException {
+        while (true) {
+            synchronized (forceLock) {
+                while (forcing && forcedSequence < sequence) {
+                    try {
+                        forceLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while waiting for the journal to be forced", e);
+                    }
+                }
+                if (forcedSequence >= sequence) {
+                    return;
+                }
+                forcing = true;
+            }
+            long target;
+            Map<Path, FileChannel> sealed;
+            FileChannel current;
+            synchronized (this) {
+                target = appendedSequence;
+                sealed = new LinkedHashMap<>(unforcedSegments);
+                unforcedSegments.clear();
+                current = channel;
+            }
+            boolean forced = false;
+            try {
+                for (FileChannel segment : sealed.values()) {
+                    force(segment);
+                    segment.close();
+                }
+                force(current);
+                forced = true;
+            } finally {
+                if (!forced) {
+                    synchronized (this) {
+                        sealed.forEach((segment, segmentChannel) -> {
+                            if (segmentChannel.isOpen()) {
+                                unforcedSegments.putIfAbsent(segment, segmentChannel);
+                            }
+                        });
+                    }
+                }
+                synchronized (forceLock) {
+                    if (forced) {
+                        forcedSequence = Math.max(forcedSequence, target);
+                    }
+                    forcing = false;
+                    forceLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Seals the current segment and starts a new one, without waiting for a force.
+     *
+     * @return the sealed segment
+     */
+    public synchronized Path rotate() throws IOException {
+        Path sealed = currentSegment;
+        unforcedSegments.put(sealed, channel);
+        open();
+        return sealed;
+    }
+
+    public List<NewMessageDTO> read(Path segment) throws IOException {
+        List<NewMessageDTO> messages = new ArrayList<>();
+        for (String line : Files.readAllLines(segment)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                messages.add(objectMapper.readValue(line, NewMessageDTO.class));
+            } catch (JsonProcessingException e) {
+                // Only the last line of a segment can be torn by a crash mid-append
+                logger.warn("Skipping unreadable journal entry in {}", segment, e);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Deletes a segment whose messages are committed, it no longer needs to be forced.
+     */
+    public void delete(Path segment) throws IOException {
+        FileChannel unforced;
+        synchronized (this) {
+            unforced = unforcedSegments.remove(segment);
+        }
+        if (unforced != null) {
+            unforced.close();
+        }
+        Files.deleteIfExists(segment);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (FileChannel segment : unforcedSegments.values()) {
+            force(segment);
+            segment.close();
+        }
+        unforcedSegments.clear();
+        channel.force(false);
+        channel.close();
+        if (Files.size(currentSegment) == 0) {
+            Files.delete(currentSegment);
+        }
+    }
+
+    private static void force(FileChannel segment) throws IOException {
+        try {
+            segment.force(false);
+        } catch (ClosedChannelException e) {
+            // Deleted once its messages were committed, or closed on shutdown after a force
+        }
+    }
+
+    private void open() throws IOException {
+        generation++;
+        currentSegment = journalDir.resolve(SEGMENT_PREFIX + generation + SEGMENT_SUFFIX);
+        channel = FileChannel.open(currentSegment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted((a, b) -> Long.compare(generationOf(a), generationOf(b)))
+                    .toList();
+        }
+    }
+
+    private static long generationOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -1,69 +1,368 @@
 package com.example.chat.repository;
 
+import com.example.chat.dto.AckRangeDTO;
+import com.example.chat.dto.NewMessageDTO;
 import com.example.chat.enumeration.MessageStatus;
 import com.example.chat.model.Message;
+import com.example.chat.model.User;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 @RequiredArgsConstructor
 @Repository
+@Timed(value = "chat.repository", description = "MessageRepository queries")
 public class MessageRepository {
+    private static final int UPDATE_CHUNK_SIZE = 1000;
+    private static final LocalDateTime MAX_TIMESTAMP = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+    private static final String CONVERSATION_DIRECTION = """
+            SELECT id, content, sender_id, receiver_id, status, time_stamp, content_id, attachment_id
+            FROM academy_chat.message
+            WHERE sender_id = ? and receiver_id = ?
+            and (time_stamp < ? or (time_stamp = ? and id < ?))
+            ORDER BY time_stamp DESC, id DESC
+            LIMIT ?
+            """;
+    // Skips a message written again, e.g. from a replayed journal, and a client message id the sender already
+    // used, looked up on the primary key and message_client_message_idx; a message of another conversation
+    // under the id still fails on the key
+    private static final String INSERT_MESSAGE = """
+            INSERT INTO message
+            (id, content, sender_id, receiver_id, status, time_stamp, content_id, attachment_id, client_message_id,
+            status_changed_at)
+            SELECT :id, :content, :senderId, :receiverId, :status, :timestamp, :contentId, :attachmentId,
+            :clientMessageId, :statusChangedAt
+            FROM DUAL
+            WHERE NOT EXISTS(SELECT 1 FROM message WHERE id = :id and sender_id = :senderId
+            and receiver_id = :receiverId)
+            and NOT EXISTS(SELECT 1 FROM message WHERE sender_id = :senderId and client_message_id = :clientMessageId)
+            """;
+
     private final NamedParameterJdbcTemplate jdbcTemplate;
-    private final UserRepository userRepository;
 
-    public List<Message> getAllPendingByReceiverId(long receiverId) {
+    /**
+     * Keyset chunk of the pending messages of a receiver, in id order after afterId. Only the id,
+     * content, content id and sender id are loaded, that is all a delivery needs. The range scan on
+     * message_receiver_status_idx (whose entries end with the primary key) stops after limit rows.
+     */
+    public List<Message> getPendingChunk(long receiverId, long afterId, int limit) {
+        List<Message> messages = new ArrayList<>(limit);
+        jdbcTemplate.query("""
+                SELECT id, content, sender_id, content_id, attachment_id
+                FROM academy_chat.message
+                WHERE receiver_id=:receiverId and status = 'PENDING' and id > :afterId
+                ORDER BY id
+                LIMIT :limit
+                """, new MapSqlParameterSource("receiverId", receiverId)
+                .addValue("afterId", afterId)
+                .addValue("limit", limit), (RowCallbackHandler) rs -> {
+            Message message = new Message();
+            message.setId(rs.getLong("id"));
+            message.setContent(rs.getString("content"));
+            message.setSender(userReference(rs.getLong("sender_id"), null));
+            message.setStatus(MessageStatus.PENDING);
+            message.setContentId(rs.getString("content_id"));
+            message.setAttachmentId(rs.getString("attachment_id"));
+            messages.add(message);
+        });
+        return messages;
+    }
+
+    /**
+     * Messages pushed to the receiver since the given time, a range scan of message_receiver_status_changed_idx.
+     * Messages acknowledged since then are included too.
+     */
+    public List<Message> getPushedSince(long receiverId, LocalDateTime since, int limit) {
         return jdbcTemplate.query("""
-                SELECT id, content, sender_id, receiver_id, status, time_stamp
+                SELECT id, content, sender_id, receiver_id, status, time_stamp, content_id, attachment_id
                 FROM academy_chat.message
-                WHERE status = "PENDING" and receiver_id=:receiverId
-                """, new MapSqlParameterSource("receiverId", receiverId), new RowMapper<Message>() {
+                WHERE receiver_id=:receiverId and status_changed_at >= :since
+                and status IN ('SENT', 'DELIVERED', 'READ')
+                ORDER BY id
+                LIMIT :limit
+                """, new MapSqlParameterSource("receiverId", receiverId)
+                .addValue("since", since)
+                .addValue("limit", limit), new RowMapper<Message>() {
             @Override
             public Message mapRow(ResultSet rs, int rowNum) throws SQLException {
                 Message message = new Message();
                 message.setId(rs.getLong("id"));
                 message.setContent(rs.getString("content"));
-                long senderId = rs.getLong("sender_id");
-                message.setSender(userRepository.getById(senderId));
-                long receiverId = rs.getLong("receiver_id");
-                message.setReceiver(userRepository.getById(receiverId));
-                String status = rs.getString("status");
-                message.setStatus(MessageStatus.valueOf(status));
+                message.setSender(userReference(rs.getLong("sender_id"), null));
+                message.setReceiver(userReference(rs.getLong("receiver_id"), null));
+                message.setStatus(MessageStatus.valueOf(rs.getString("status")));
+                message.setTimestamp(rs.getTimestamp("time_stamp").toLocalDateTime());
+                message.setContentId(rs.getString("content_id"));
+                message.setAttachmentId(rs.getString("attachment_id"));
                 return message;
             }
         });
     }
 
-    public void save(String content, long senderId, long receiverId, MessageStatus status, LocalDateTime timestamp) {
-        jdbcTemplate.update("""
-                INSERT INTO message
-                (content, sender_id, receiver_id, status, time_stamp)
-                VALUES(:content, :senderId, :receiverId, :status, :timestamp)
-                """, new MapSqlParameterSource("content", content)
+    /**
+     * Keyset page of all messages in id order after afterId, with what the search index needs: a range
+     * scan of the primary key that stops after limit rows.
+     */
+    public List<Message> getIndexPage(long afterId, int limit) {
+        List<Message> messages = new ArrayList<>(limit);
+        jdbcTemplate.query("""
+                SELECT id, content, sender_id, receiver_id, content_id, attachment_id
+                FROM academy_chat.message
+                WHERE id > :afterId
+                ORDER BY id
+                LIMIT :limit
+                """, new MapSqlParameterSource("afterId", afterId)
+                .addValue("limit", limit), (RowCallbackHandler) rs -> messages.add(indexedMessage(rs)));
+        return messages;
+    }
+
+    public List<Message> getByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Message> messages = new ArrayList<>(ids.size());
+        jdbcTemplate.query("""
+                SELECT id, content, sender_id, receiver_id, status, time_stamp, content_id, attachment_id
+                FROM academy_chat.message
+                WHERE id IN (:ids)
+                """, new MapSqlParameterSource("ids", ids), (RowCallbackHandler) rs -> {
+            Message message = indexedMessage(rs);
+            message.setStatus(MessageStatus.valueOf(rs.getString("status")));
+            message.setTimestamp(rs.getTimestamp("time_stamp").toLocalDateTime());
+            messages.add(message);
+        });
+        return messages;
+    }
+
+    private static Message indexedMessage(ResultSet rs) throws SQLException {
+        Message message = new Message();
+        message.setId(rs.getLong("id"));
+        message.setContent(rs.getString("content"));
+        message.setSender(userReference(rs.getLong("sender_id"), null));
+        message.setReceiver(userReference(rs.getLong("receiver_id"), null));
+        message.setContentId(rs.getString("content_id"));
+        message.setAttachmentId(rs.getString("attachment_id"));
+        return message;
+    }
+
+    private static User userReference(long id, String userName) {
+        User user = new User();
+        user.setId(id);
+        user.setUserName(userName);
+        return user;
+    }
+
+    /**
+     * Keyset page of the messages exchanged between two users, newest first, strictly before
+     * (beforeTimestamp, beforeId). Each direction is a backward range scan on message_conversation_idx
+     * that stops after limit rows, so the cost of a page does not depend on how far back it is.
+     * time_stamp is the time the message was sent and is never updated, so a message keeps its place
+     * while the user is paging.
+     */
+    public List<Message> getConversationPage(long userId, long otherUserId, LocalDateTime beforeTimestamp,
+                                             Long beforeId, int limit) {
+        Timestamp before = Timestamp.valueOf(beforeTimestamp == null ? MAX_TIMESTAMP : beforeTimestamp);
+        long beforeMessageId = beforeId == null ? Long.MAX_VALUE : beforeId;
+        String sql = "SELECT * FROM ((" + CONVERSATION_DIRECTION + ") UNION ALL (" + CONVERSATION_DIRECTION
+                + ")) page ORDER BY time_stamp DESC, id DESC LIMIT ?";
+        List<Message> messages = new ArrayList<>(limit);
+        jdbcTemplate.getJdbcOperations().query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql);
+            int index = 1;
+            for (long[] direction : new long[][]{{userId, otherUserId}, {otherUserId, userId}}) {
+                ps.setLong(index++, direction[0]);
+                ps.setLong(index++, direction[1]);
+                ps.setTimestamp(index++, before);
+                ps.setTimestamp(index++, before);
+                ps.setLong(index++, beforeMessageId);
+                ps.setInt(index++, limit);
+            }
+            ps.setInt(index, limit);
+            ps.setFetchSize(limit);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            Message message = new Message();
+            message.setId(rs.getLong("id"));
+            message.setContent(rs.getString("content"));
+            message.setSender(userReference(rs.getLong("sender_id"), null));
+            message.setReceiver(userReference(rs.getLong("receiver_id"), null));
+            message.setStatus(MessageStatus.valueOf(rs.getString("status")));
+            message.setTimestamp(rs.getTimestamp("time_stamp").toLocalDateTime());
+            message.setContentId(rs.getString("content_id"));
+            message.setAttachmentId(rs.getString("attachment_id"));
+            messages.add(message);
+        });
+        return messages;
+    }
+
+    /**
+     * A message already stored under the id, or with the client message id of one already stored for the
+     * sender, is skipped.
+     *
+     * @throws org.springframework.dao.DuplicateKeyException if another message has the id
+     */
+    public void save(Long id, String content, long senderId, long receiverId, MessageStatus status,
+                     LocalDateTime timestamp, String contentId, String attachmentId, String clientMessageId,
+                     LocalDateTime statusChangedAt) {
+        jdbcTemplate.update(INSERT_MESSAGE, new MapSqlParameterSource("id", id)
+                .addValue("content", content)
                 .addValue("senderId", senderId)
                 .addValue("receiverId", receiverId)
                 .addValue("status", status.name())
-                .addValue("timestamp", timestamp));
+                .addValue("timestamp", timestamp)
+                .addValue("contentId", contentId)
+                .addValue("attachmentId", attachmentId)
+                .addValue("clientMessageId", clientMessageId)
+                .addValue("statusChangedAt", statusChangedAt));
+    }
+
+    /**
+     * Messages already stored under their id, or with the client message id of one already stored for the
+     * sender, are skipped, so a replayed journal or a retried send does not fail the batch. Another message
+     * under one of the ids fails it on the primary key.
+     */
+    @Transactional
+    public void saveAll(List<NewMessageDTO> messages) {
+        SqlParameterSource[] batch = new SqlParameterSource[messages.size()];
+        for (int i = 0; i < batch.length; i++) {
+            NewMessageDTO message = messages.get(i);
+            batch[i] = new MapSqlParameterSource("id", message.id())
+                    .addValue("content", message.content())
+                    .addValue("senderId", message.senderId())
+                    .addValue("receiverId", message.receiverId())
+                    .addValue("status", message.status().name())
+                    .addValue("timestamp", message.timestamp())
+                    .addValue("contentId", message.contentId())
+                    .addValue("attachmentId", message.attachmentId())
+                    .addValue("clientMessageId", message.clientMessageId())
+                    .addValue("statusChangedAt", message.statusChangedAt());
+        }
+        jdbcTemplate.batchUpdate(INSERT_MESSAGE, batch);
+    }
+
+    /**
+     * @return the status of the message the sender stored with the client message id, or null; a lookup in
+     * message_client_message_idx
+     */
+    public MessageStatus getStatusByClientMessageId(long senderId, String clientMessageId) {
+        List<String> statuses = jdbcTemplate.queryForList("""
+                SELECT status
+                FROM academy_chat.message
+                WHERE sender_id = :senderId and client_message_id = :clientMessageId
+                """, new MapSqlParameterSource("senderId", senderId)
+                .addValue("clientMessageId", clientMessageId), String.class);
+        return statuses.isEmpty() ? null : MessageStatus.valueOf(statuses.get(0));
     }
 
     public void updateMessageById(long id, String status, LocalDateTime timestamp) {
         jdbcTemplate.update("""
                 UPDATE message
                 SET status=:status,
-                time_stamp = :timestamp
+                status_changed_at = :timestamp
                 WHERE id=:id
                 """, new MapSqlParameterSource("id", id)
                 .addValue("status", status)
                 .addValue("timestamp", timestamp));
     }
 
+    /**
+     * Updates pending messages only, so an acknowledgement that overtook the update is kept.
+     */
+    public void updateMessagesByIds(List<Long> ids, String status, LocalDateTime timestamp) {
+        for (int from = 0; from < ids.size(); from += UPDATE_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + UPDATE_CHUNK_SIZE, ids.size()));
+            jdbcTemplate.update("""
+                    UPDATE message
+                    SET status=:status,
+                    status_changed_at = :timestamp
+                    WHERE id IN (:ids) and status = 'PENDING'
+                    """, new MapSqlParameterSource("ids", chunk)
+                    .addValue("status", status)
+                    .addValue("timestamp", timestamp));
+        }
+    }
+
+    /**
+     * Moves the messages in each range forward to status, one batched statement per call. Messages that
+     * already reached status or a later one are left alone, and so are pending ones the client has not
+     * been sent yet. Each range is a scan of
+     * message_conversation_idx, whose entries end with the id.
+     */
+    public void acknowledge(MessageStatus status, List<AckRangeDTO> ranges, LocalDateTime timestamp) {
+        SqlParameterSource[] batch = new SqlParameterSource[ranges.size()];
+        for (int i = 0; i < batch.length; i++) {
+            AckRangeDTO range = ranges.get(i);
+            batch[i] = new MapSqlParameterSource("senderId", range.senderId())
+                    .addValue("receiverId", range.receiverId())
+                    .addValue("fromId", range.fromId())
+                    .addValue("toId", range.toId())
+                    .addValue("status", status.name())
+                    .addValue("timestamp", timestamp);
+        }
+        jdbcTemplate.batchUpdate("""
+                UPDATE message
+                SET status=:status,
+                status_changed_at = :timestamp
+                WHERE sender_id=:senderId and receiver_id=:receiverId and id BETWEEN :fromId and :toId
+                and status IN ('SENT', 'DELIVERED') and status <> :status
+                """, batch);
+    }
+
+    /**
+     * @return whether the user sent or received a message with the content, a scan of message_content_idx
+     */
+    public boolean isContentParticipant(String contentId, long userId) {
+        return !jdbcTemplate.queryForList("""
+                SELECT 1
+                FROM academy_chat.message
+                WHERE content_id = :contentId and (sender_id = :userId or receiver_id = :userId)
+                LIMIT 1
+                """, new MapSqlParameterSource("contentId", contentId)
+                .addValue("userId", userId), Integer.class).isEmpty();
+    }
+
+    /**
+     * @return whether the user sent or received a message with the attachment, a scan of
+     * message_attachment_idx
+     */
+    public boolean isAttachmentParticipant(String attachmentId, long userId) {
+        return !jdbcTemplate.queryForList("""
+                SELECT 1
+                FROM academy_chat.message
+                WHERE attachment_id = :attachmentId and (sender_id = :userId or receiver_id = :userId)
+                LIMIT 1
+                """, new MapSqlParameterSource("attachmentId", attachmentId)
+                .addValue("userId", userId), Integer.class).isEmpty();
+    }
+
+    /**
+     * A range scan of message_status_idx, its cost grows with the number of messages in the status rather
+     * than with the table.
+     */
+    public long countByStatus(String status) {
+        Long count = jdbcTemplate.queryForObject("""
+                SELECT count(*)
+                FROM academy_chat.message
+                WHERE status = :status
+                """, new MapSqlParameterSource("status", status), Long.class);
+        return count == null ? 0 : count;
+    }
+
     public void deleteMessage(long id) {
         jdbcTemplate.update("DELETE FROM message WHERE id=:id", new MapSqlParameterSource("id", id));
     }
@@ -0,0 +1,219 @@
+package com.example.chat.repository;
+
+import com.example.chat.dto.RoomMemberDTO;
+import com.example.chat.enumeration.MessageStatus;
+import com.example.chat.enumeration.UserStatus;
+import com.example.chat.model.Room;
+import com.example.chat.model.RoomMessage;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@RequiredArgsConstructor
+@Repository
+@Timed(value = "chat.repository", description = "RoomRepository queries")
+public class RoomRepository {
+    private static final int UPDATE_CHUNK_SIZE = 1000;
+    private static final RowMapper<RoomMessage> ROOM_MESSAGE_ROW_MAPPER = (rs, rowNum) -> {
+        RoomMessage message = new RoomMessage();
+        message.setId(rs.getLong("id"));
+        message.setRoomName(rs.getString("room_name"));
+        message.setSenderUserName(rs.getString("sender_user_name"));
+        message.setContent(rs.getString("content"));
+        message.setTimestamp(rs.getTimestamp("time_stamp").toLocalDateTime());
+        return message;
+    };
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Creates the room together with its first members.
+     */
+    @Transactional
+    public long save(String name, long createdBy, LocalDateTime createdAt, Collection<Long> memberIds) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update("""
+                INSERT INTO room
+                (name, created_by, created_at)
+                VALUES(:name, :createdBy, :createdAt)
+                """, new MapSqlParameterSource("name", name)
+                .addValue("createdBy", createdBy)
+                .addValue("createdAt", createdAt), keyHolder, new String[]{"id"});
+        long roomId = keyHolder.getKey().longValue();
+        saveMembers(roomId, memberIds, createdAt);
+        return roomId;
+    }
+
+    public Room getByName(String name) {
+        try {
+            return jdbcTemplate.queryForObject("""
+                    SELECT id, name, created_by, created_at
+                    FROM academy_chat.room
+                    WHERE name = :name
+                    """, new MapSqlParameterSource("name", name), (rs, rowNum) -> new Room(rs.getLong("id"),
+                    rs.getString("name"), rs.getLong("created_by"), rs.getTimestamp("created_at").toLocalDateTime()));
+        } catch (EmptyResultDataAccessException e) {
+            return null;
+        }
+    }
+
+    public void saveMembers(long roomId, Collection<Long> userIds, LocalDateTime joinedAt) {
+        SqlParameterSource[] batch = userIds.stream()
+                .map(userId -> new MapSqlParameterSource("roomId", roomId)
+                        .addValue("userId", userId)
+                        .addValue("joinedAt", joinedAt))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("""
+                INSERT IGNORE INTO room_member
+                (room_id, user_id, joined_at)
+                VALUES(:roomId, :userId, :joinedAt)
+                """, batch);
+    }
+
+    public void deleteMember(long roomId, long userId) {
+        jdbcTemplate.update("DELETE FROM room_member WHERE room_id=:roomId and user_id=:userId",
+                new MapSqlParameterSource("roomId", roomId).addValue("userId", userId));
+    }
+
+    public boolean isMember(long roomId, long userId) {
+        Boolean member = jdbcTemplate.queryForObject("""
+                SELECT EXISTS(SELECT 1 FROM academy_chat.room_member WHERE room_id = :roomId and user_id = :userId)
+                """, new MapSqlParameterSource("roomId", roomId).addValue("userId", userId), Boolean.class);
+        return Boolean.TRUE.equals(member);
+    }
+
+    public int countMembers(long roomId) {
+        Integer count = jdbcTemplate.queryForObject("""
+                SELECT count(*)
+                FROM academy_chat.room_member
+                WHERE room_id = :roomId
+                """, new MapSqlParameterSource("roomId", roomId), Integer.class);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Members with their current status, in one query instead of a user lookup per member.
+     */
+    public List<RoomMemberDTO> getMembers(long roomId) {
+        return jdbcTemplate.query("""
+                SELECT u.id, u.user_name, u.status
+                FROM academy_chat.room_member rm
+                JOIN academy_chat.user u ON u.id = rm.user_id
+                WHERE rm.room_id = :roomId
+                """, new MapSqlParameterSource("roomId", roomId), (rs, rowNum) -> new RoomMemberDTO(
+                rs.getLong("id"), rs.getString("user_name"), UserStatus.valueOf(rs.getString("status"))));
+    }
+
+    /**
+     * Stores the message once and a PENDING delivery for every recipient in the same transaction.
+     */
+    @Transactional
+    public long saveMessage(long roomId, long senderId, String content, LocalDateTime timestamp,
+                            Collection<Long> recipientIds) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update("""
+                INSERT INTO room_message
+                (room_id, sender_id, content, time_stamp)
+                VALUES(:roomId, :senderId, :content, :timestamp)
+                """, new MapSqlParameterSource("roomId", roomId)
+                .addValue("senderId", senderId)
+                .addValue("content", content)
+                .addValue("timestamp", timestamp), keyHolder, new String[]{"id"});
+        long roomMessageId = keyHolder.getKey().longValue();
+        if (!recipientIds.isEmpty()) {
+            SqlParameterSource[] batch = recipientIds.stream()
+                    .map(userId -> new MapSqlParameterSource("roomMessageId", roomMessageId)
+                            .addValue("userId", userId)
+                            .addValue("status", MessageStatus.PENDING.name()))
+                    .toArray(SqlParameterSource[]::new);
+            jdbcTemplate.batchUpdate("""
+                    INSERT INTO room_delivery
+                    (room_message_id, user_id, status)
+                    VALUES(:roomMessageId, :userId, :status)
+                    """, batch);
+        }
+        return roomMessageId;
+    }
+
+    /**
+     * Marks the deliveries of one message to the members that were pushed it as SENT, unless pending
+     * delivery got there first.
+     */
+    public void markSent(long roomMessageId, List<Long> userIds, LocalDateTime timestamp) {
+        for (int from = 0; from < userIds.size(); from += UPDATE_CHUNK_SIZE) {
+            List<Long> chunk = userIds.subList(from, Math.min(from + UPDATE_CHUNK_SIZE, userIds.size()));
+            jdbcTemplate.update("""
+                    UPDATE room_delivery
+                    SET status='SENT',
+                    time_stamp = :timestamp
+                    WHERE room_message_id=:roomMessageId and user_id IN (:userIds) and status = 'PENDING'
+                    """, new MapSqlParameterSource("roomMessageId", roomMessageId)
+                    .addValue("userIds", chunk)
+                    .addValue("timestamp", timestamp));
+        }
+    }
+
+    /**
+     * Keyset chunk of the room messages pending for a member, in id order after afterId.
+     */
+    public List<RoomMessage> getPendingChunk(long userId, long afterId, int limit) {
+        return jdbcTemplate.query("""
+                SELECT m.id, r.name AS room_name, s.user_name AS sender_user_name, m.content, m.time_stamp
+                FROM academy_chat.room_delivery d
+                JOIN academy_chat.room_message m ON m.id = d.room_message_id
+                JOIN academy_chat.room r ON r.id = m.room_id
+                JOIN academy_chat.user s ON s.id = m.sender_id
+                WHERE d.user_id = :userId and d.status = 'PENDING' and d.room_message_id > :afterId
+                ORDER BY d.room_message_id
+                LIMIT :limit
+                """, new MapSqlParameterSource("userId", userId)
+                .addValue("afterId", afterId)
+                .addValue("limit", limit), ROOM_MESSAGE_ROW_MAPPER);
+    }
+
+    /**
+     * Room messages pushed to a member since the given time, a range scan of room_delivery_user_time_idx.
+     */
+    public List<RoomMessage> getSentSince(long userId, LocalDateTime since, int limit) {
+        return jdbcTemplate.query("""
+                SELECT m.id, r.name AS room_name, s.user_name AS sender_user_name, m.content, m.time_stamp
+                FROM academy_chat.room_delivery d
+                JOIN academy_chat.room_message m ON m.id = d.room_message_id
+                JOIN academy_chat.room r ON r.id = m.room_id
+                JOIN academy_chat.user s ON s.id = m.sender_id
+                WHERE d.user_id = :userId and d.time_stamp >= :since and d.status = 'SENT'
+                ORDER BY d.room_message_id
+                LIMIT :limit
+                """, new MapSqlParameterSource("userId", userId)
+                .addValue("since", since)
+                .addValue("limit", limit), ROOM_MESSAGE_ROW_MAPPER);
+    }
+
+    public void updateDeliveries(long userId, List<Long> roomMessageIds, MessageStatus status,
+                                 LocalDateTime timestamp) {
+        for (int from = 0; from < roomMessageIds.size(); from += UPDATE_CHUNK_SIZE) {
+            List<Long> chunk = roomMessageIds.subList(from, Math.min(from + UPDATE_CHUNK_SIZE, roomMessageIds.size()));
+            jdbcTemplate.update("""
+                    UPDATE room_delivery
+                    SET status=:status,
+                    time_stamp = :timestamp
+                    WHERE user_id=:userId and room_message_id IN (:ids)
+                    """, new MapSqlParameterSource("ids", chunk)
+                    .addValue("userId", userId)
+                    .addValue("status", status.name())
+                    .addValue("timestamp", timestamp));
+        }
+    }
+}
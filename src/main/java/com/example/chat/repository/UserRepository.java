@@ -2,7 +2,10 @@ package com.example.chat.repository;
 
 import com.example.chat.enumeration.UserStatus;
 import com.example.chat.model.User;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.support.DataAccessUtils;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
@@ -10,57 +13,79 @@ import org.springframework.stereotype.Repository;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 @RequiredArgsConstructor
 @Repository
+@Timed(value = "chat.repository", description = "UserRepository queries")
 public class UserRepository {
+    private static final RowMapper<User> USER_ROW_MAPPER = new RowMapper<User>() {
+        @Override
+        public User mapRow(ResultSet rs, int rowNum) throws SQLException {
+            User user = new User();
+            user.setId(rs.getLong("id"));
+            user.setFirstName(rs.getString("first_name"));
+            user.setLastName(rs.getString("last_name"));
+            user.setEmail(rs.getString("email"));
+            user.setUserName(rs.getString("user_name"));
+            user.setPassword(rs.getString("password"));
+            user.setStatus(UserStatus.valueOf(rs.getString("status" )));
+            return user;
+        }
+    };
+
     private final NamedParameterJdbcTemplate jdbcTemplate;
 
+    /**
+     * @return the user, or null if there is none with this id
+     */
     public User getById(long id) {
-        return jdbcTemplate.queryForObject("""
+        return DataAccessUtils.singleResult(jdbcTemplate.query("""
                 SELECT id, first_name, last_name, email, user_name, password, status
                 FROM academy_chat.user
                 WHERE id=:id;
-                """, new MapSqlParameterSource("id", id), new RowMapper<User>() {
-            @Override
-            public User mapRow(ResultSet rs, int rowNum) throws SQLException {
-                User user = new User();
-                user.setId(rs.getLong("id"));
-                user.setFirstName(rs.getString("first_name"));
-                user.setLastName(rs.getString("last_name"));
-                user.setEmail(rs.getString("email"));
-                user.setUserName(rs.getString("user_name"));
-                user.setPassword(rs.getString("password"));
-                user.setStatus(UserStatus.valueOf(rs.getString("status" )));
-                return user;
-            }
-        });
+                """, new MapSqlParameterSource("id", id), USER_ROW_MAPPER));
     }
 
+    /**
+     * @return the user, or null if there is none with this user name
+     */
     public User getByUserName(String userName) {
-        return jdbcTemplate.queryForObject("""
+        return DataAccessUtils.singleResult(jdbcTemplate.query("""
                 SELECT id, first_name, last_name, email, user_name, password, status
                 FROM academy_chat.user
                 WHERE user_name=:userName;
-                """, new MapSqlParameterSource("userName", userName), new RowMapper<User>() {
-            @Override
-            public User mapRow(ResultSet rs, int rowNum) throws SQLException {
-                User user = new User();
-                user.setId(rs.getLong("id"));
-                user.setFirstName(rs.getString("first_name"));
-                user.setLastName(rs.getString("last_name"));
-                user.setEmail(rs.getString("email"));
-                user.setUserName(rs.getString("user_name"));
-                user.setPassword(rs.getString("password"));
-                user.setStatus(UserStatus.valueOf(rs.getString("status" )));
-                return user;
-            }
-        });
+                """, new MapSqlParameterSource("userName", userName), USER_ROW_MAPPER));
     }
 
     public UserStatus getStatusByUserName(String userName) {
-        User user = getByUserName(userName);
-        return user.getStatus();
+        return UserStatus.valueOf(jdbcTemplate.queryForObject("""
+                SELECT status
+                FROM academy_chat.user
+                WHERE user_name=:userName
+                """, new MapSqlParameterSource("userName", userName), String.class));
+    }
+
+    /**
+     * One page of the registered users with only their id and user name, in id order.
+     */
+    public List<User> getUserNamesAfter(long afterId, int limit) {
+        List<User> users = new ArrayList<>(limit);
+        jdbcTemplate.query("""
+                SELECT id, user_name
+                FROM academy_chat.user
+                WHERE id > :afterId
+                ORDER BY id
+                LIMIT :limit
+                """, new MapSqlParameterSource("afterId", afterId).addValue("limit", limit), (RowCallbackHandler) rs -> {
+            User user = new User();
+            user.setId(rs.getLong("id"));
+            user.setUserName(rs.getString("user_name"));
+            users.add(user);
+        });
+        return users;
     }
 
     public void save(String firstName, String lastName, String email, String userName, String password, String status) {
@@ -76,21 +101,34 @@ public class UserRepository {
                 .addValue("status", status));
     }
 
-    public void updateStatusByUserName(String userName, String status) {
+    public void updateStatusByUserNames(Collection<String> userNames, String status) {
         jdbcTemplate.update("""
                 UPDATE academy_chat.user
                 SET status=:status
-                WHERE user_name=:userName
-                """, new MapSqlParameterSource("userName", userName).addValue("status", status));
+                WHERE user_name IN (:userNames)
+                """, new MapSqlParameterSource("userNames", userNames).addValue("status", status));
     }
 
     public void delete(long id) {
         jdbcTemplate.update("DELETE FROM user WHERE id=:id", new MapSqlParameterSource("id", id));
     }
 
+    public boolean existsById(long id) {
+        return !jdbcTemplate.queryForList("""
+                SELECT 1
+                FROM academy_chat.user
+                WHERE id=:id
+                LIMIT 1
+                """, new MapSqlParameterSource("id", id), Integer.class).isEmpty();
+    }
+
     public boolean existsByUserName(String userName) {
-        User user = getByUserName(userName);
-        return (user != null) || !user.isEmpty();
+        return !jdbcTemplate.queryForList("""
+                SELECT 1
+                FROM academy_chat.user
+                WHERE user_name=:userName
+                LIMIT 1
+                """, new MapSqlParameterSource("userName", userName), Integer.class).isEmpty();
     }
 
 }
\ No newline at end of file
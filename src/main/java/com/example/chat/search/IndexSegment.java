@@ -0,0 +1,196 @@
+package com.example.chat.search;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable, memory-mapped file of posting lists sorted by {@link PostingKey}. After a magic number
+ * the file holds one entry per key: user id (long), term length (short), term (UTF-8), id count (int)
+ * and the message ids (long each, ascending). Every {@link #SPARSE_INTERVAL}th key is kept in memory,
+ * so a lookup is a binary search plus a scan of at most that many entries, whatever the file size.
+ */
+class IndexSegment {
+    static final int SPARSE_INTERVAL = 32;
+    private static final int MAGIC = 0x43485831;
+
+    private final Path path;
+    private final ByteBuffer buffer;
+    private final long[] sparseUserIds;
+    private final String[] sparseTerms;
+    private final int[] sparseOffsets;
+
+    record Entry(PostingKey key, long[] ids) {
+    }
+
+    IndexSegment(Path path) throws IOException {
+        this.path = path;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Error: index segment " + path + " is larger than 2 GB");
+            }
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (buffer.limit() < Integer.BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Error: " + path + " is not an index segment");
+        }
+        List<Integer> offsets = new ArrayList<>();
+        List<PostingKey> keys = new ArrayList<>();
+        int offset = Integer.BYTES;
+        try {
+            for (int entry = 0; offset < buffer.limit(); entry++) {
+                if (entry % SPARSE_INTERVAL == 0) {
+                    offsets.add(offset);
+                    keys.add(keyAt(offset));
+                }
+                offset = nextEntry(offset);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            offset = -1;
+        }
+        if (offset != buffer.limit()) {
+            throw new IOException("Error: index segment " + path + " is truncated");
+        }
+        this.sparseUserIds = new long[keys.size()];
+        this.sparseTerms = new String[keys.size()];
+        this.sparseOffsets = new int[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            sparseUserIds[i] = keys.get(i).userId();
+            sparseTerms[i] = keys.get(i).term();
+            sparseOffsets[i] = offsets.get(i);
+        }
+    }
+
+    /**
+     * Writes the entries, which must be sorted by key, to a new segment. The file only appears under
+     * its name once it is complete and on disk.
+     */
+    static IndexSegment write(Path path, Iterator<Entry> entries) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream channelStream = Channels.newOutputStream(channel);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(channelStream, 1 << 16));
+            out.writeInt(MAGIC);
+            while (entries.hasNext()) {
+                Entry entry = entries.next();
+                byte[] term = entry.key().term().getBytes(StandardCharsets.UTF_8);
+                out.writeLong(entry.key().userId());
+                out.writeShort(term.length);
+                out.write(term);
+                out.writeInt(entry.ids().length);
+                for (long id : entry.ids()) {
+                    out.writeLong(id);
+                }
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return new IndexSegment(path);
+    }
+
+    /**
+     * @return the ids of the key in ascending order, empty if the segment does not have it
+     */
+    long[] postings(PostingKey key) {
+        int low = 0;
+        int high = sparseOffsets.length - 1;
+        int block = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int compared = compare(sparseUserIds[mid], sparseTerms[mid], key);
+            if (compared <= 0) {
+                block = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (block < 0) {
+            return new long[0];
+        }
+        int offset = sparseOffsets[block];
+        int end = block + 1 < sparseOffsets.length ? sparseOffsets[block + 1] : buffer.limit();
+        while (offset < end) {
+            int compared = keyAt(offset).compareTo(key);
+            if (compared == 0) {
+                return idsAt(offset);
+            }
+            if (compared > 0) {
+                break;
+            }
+            offset = nextEntry(offset);
+        }
+        return new long[0];
+    }
+
+    Iterator<Entry> entries() {
+        return new Iterator<>() {
+            private int offset = Integer.BYTES;
+
+            @Override
+            public boolean hasNext() {
+                return offset < buffer.limit();
+            }
+
+            @Override
+            public Entry next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Entry entry = new Entry(keyAt(offset), idsAt(offset));
+                offset = nextEntry(offset);
+                return entry;
+            }
+        };
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long getSize() {
+        return buffer.limit();
+    }
+
+    private static int compare(long userId, String term, PostingKey key) {
+        int byUser = Long.compare(userId, key.userId());
+        return byUser != 0 ? byUser : term.compareTo(key.term());
+    }
+
+    private PostingKey keyAt(int offset) {
+        int termLength = buffer.getShort(offset + Long.BYTES);
+        byte[] term = new byte[termLength];
+        buffer.get(offset + Long.BYTES + Short.BYTES, term);
+        return new PostingKey(buffer.getLong(offset), new String(term, StandardCharsets.UTF_8));
+    }
+
+    private long[] idsAt(int offset) {
+        int countOffset = offset + Long.BYTES + Short.BYTES + buffer.getShort(offset + Long.BYTES);
+        long[] ids = new long[buffer.getInt(countOffset)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = buffer.getLong(countOffset + Integer.BYTES + i * Long.BYTES);
+        }
+        return ids;
+    }
+
+    private int nextEntry(int offset) {
+        int countOffset = offset + Long.BYTES + Short.BYTES + buffer.getShort(offset + Long.BYTES);
+        return countOffset + Integer.BYTES + buffer.getInt(countOffset) * Long.BYTES;
+    }
+}
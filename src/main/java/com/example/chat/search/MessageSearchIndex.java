@@ -0,0 +1,402 @@
+package com.example.chat.search;
+
+import com.example.chat.config.SearchProperties;
+import com.example.chat.model.Message;
+import com.example.chat.repository.MessageRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Inverted index of message content, scoped per participant. The index follows the message table in
+ * id order on a single indexer thread, woken after every local save and polling for messages stored
+ * by other nodes. New postings are held in memory and written to immutable segment files once there
+ * are enough of them; the smaller segments are merged when there are too many. A search reads only
+ * the posting lists of the searching user's terms, so its cost does not grow with the table.
+ * <p>
+ * Ids skipped while following the table (an insert that commits after a later one) are re-checked
+ * for {@link SearchProperties#gapTimeout()}. The checkpoint file records the id up to which every
+ * message is in a segment; postings still in memory are re-read from the database after a crash.
+ */
+@Component
+public class MessageSearchIndex {
+    private static final Logger logger = LoggerFactory.getLogger(MessageSearchIndex.class);
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".idx";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+    private static final int MAX_GAPS = 10_000;
+
+    private final MessageRepository messageRepository;
+    private final SearchProperties properties;
+    private final ScheduledExecutorService indexer;
+    private final AtomicBoolean catchUpRequested = new AtomicBoolean();
+    private volatile Map<PostingKey, Postings> memtable = new ConcurrentHashMap<>();
+    private volatile List<IndexSegment> segments;
+    // Indexer state, guarded by this
+    private final TreeMap<Long, Long> gaps = new TreeMap<>();
+    private long position;
+    private long generation;
+    private int memtablePostings;
+
+    public MessageSearchIndex(MessageRepository messageRepository, SearchProperties properties) throws IOException {
+        this.messageRepository = messageRepository;
+        this.properties = properties;
+        Files.createDirectories(properties.indexDir());
+        List<Path> files = listSegments();
+        for (Path file : files) {
+            generation = Math.max(generation, generationOf(file));
+        }
+        Long checkpoint = readCheckpoint();
+        List<IndexSegment> opened = new ArrayList<>();
+        if (checkpoint != null && !properties.rebuildOnStart()) {
+            try {
+                for (Path file : files) {
+                    opened.add(new IndexSegment(file));
+                }
+            } catch (IOException e) {
+                logger.warn("Error: unreadable search index segment, rebuilding the index from the database", e);
+                checkpoint = null;
+            }
+        }
+        if (checkpoint == null || properties.rebuildOnStart()) {
+            // Without a checkpoint the segments may be from an interrupted rebuild
+            opened.clear();
+            for (Path file : files) {
+                Files.delete(file);
+            }
+            checkpoint = 0L;
+            writeCheckpoint(checkpoint);
+        }
+        this.segments = List.copyOf(opened);
+        this.position = checkpoint;
+        logger.info("Search index opened with {} segments, catching up after message {}", opened.size(), position);
+
+        this.indexer = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("search-indexer-"));
+        long intervalMillis = properties.pollInterval().toMillis();
+        this.indexer.scheduleWithFixedDelay(this::catchUpQuietly, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Called after messages were stored, so they become searchable without waiting for the next poll.
+     */
+    public void requestCatchUp() {
+        if (catchUpRequested.compareAndSet(false, true)) {
+            try {
+                indexer.execute(this::catchUpQuietly);
+            } catch (RejectedExecutionException e) {
+                // Shutting down, the next start catches up from the checkpoint
+            }
+        }
+    }
+
+    /**
+     * @return ids of the messages sent or received by the user that contain every term, newest first,
+     * all below beforeId
+     */
+    public List<Long> search(long userId, Collection<String> terms, long beforeId, int limit) {
+        long[] matches = null;
+        for (String term : terms) {
+            long[] ids = postings(new PostingKey(userId, term));
+            matches = matches == null ? ids : intersect(matches, ids);
+            if (matches.length == 0) {
+                return List.of();
+            }
+        }
+        if (matches == null) {
+            return List.of();
+        }
+        List<Long> page = new ArrayList<>(Math.min(limit, matches.length));
+        for (int i = matches.length - 1; i >= 0 && page.size() < limit; i--) {
+            if (matches[i] < beforeId) {
+                page.add(matches[i]);
+            }
+        }
+        return page;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * @return sorted, distinct ids of the key across memory and segments
+     */
+    private long[] postings(PostingKey key) {
+        // Memory before segments: a flush publishes its segment before it clears the memory
+        Postings inMemory = memtable.get(key);
+        List<IndexSegment> current = segments;
+        long[][] parts = new long[current.size() + 1][];
+        int total = 0;
+        parts[0] = inMemory == null ? new long[0] : inMemory.toArray();
+        total += parts[0].length;
+        for (int i = 0; i < current.size(); i++) {
+            parts[i + 1] = current.get(i).postings(key);
+            total += parts[i + 1].length;
+        }
+        long[] ids = new long[total];
+        int offset = 0;
+        for (long[] part : parts) {
+            System.arraycopy(part, 0, ids, offset, part.length);
+            offset += part.length;
+        }
+        return sortedDistinct(ids);
+    }
+
+    synchronized void catchUp() throws IOException {
+        catchUpRequested.set(false);
+        recheckGaps();
+        List<Message> page;
+        do {
+            page = messageRepository.getIndexPage(position, properties.batchSize());
+            for (Message message : page) {
+                if (message.getId() > position + 1) {
+                    trackGaps(position + 1, message.getId() - 1);
+                }
+                add(message);
+                position = message.getId();
+            }
+            // Checked per page, so a rebuild of the whole table is written out as it goes
+            if (memtablePostings >= properties.memtablePostings()) {
+                flushMemtable();
+            }
+            if (segments.size() > properties.maxSegments()) {
+                merge();
+            }
+        } while (page.size() == properties.batchSize());
+    }
+
+    private void catchUpQuietly() {
+        try {
+            catchUp();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Error: search index catch-up failed", e);
+        }
+    }
+
+    private void add(Message message) {
+        long senderId = message.getSender().getId();
+        long receiverId = message.getReceiver().getId();
+        for (String term : Tokenizer.tokenize(message.getContent())) {
+            memtable.computeIfAbsent(new PostingKey(senderId, term), key -> new Postings()).add(message.getId());
+            memtablePostings++;
+            if (receiverId != senderId) {
+                memtable.computeIfAbsent(new PostingKey(receiverId, term), key -> new Postings())
+                        .add(message.getId());
+                memtablePostings++;
+            }
+        }
+    }
+
+    private void trackGaps(long fromId, long toId) {
+        long now = System.currentTimeMillis();
+        for (long id = fromId; id <= toId && gaps.size() < MAX_GAPS; id++) {
+            gaps.put(id, now);
+        }
+    }
+
+    private void recheckGaps() {
+        if (gaps.isEmpty()) {
+            return;
+        }
+        long expiredBefore = System.currentTimeMillis() - properties.gapTimeout().toMillis();
+        gaps.values().removeIf(firstSeen -> firstSeen < expiredBefore);
+        List<Long> ids = gaps.keySet().stream().limit(properties.batchSize()).toList();
+        if (ids.isEmpty()) {
+            return;
+        }
+        for (Message message : messageRepository.getByIds(ids)) {
+            add(message);
+            gaps.remove(message.getId());
+        }
+    }
+
+    private void flushMemtable() throws IOException {
+        if (memtable.isEmpty()) {
+            return;
+        }
+        TreeMap<PostingKey, Postings> sorted = new TreeMap<>(memtable);
+        IndexSegment segment = IndexSegment.write(nextSegmentPath(), sorted.entrySet().stream()
+                .map(entry -> new IndexSegment.Entry(entry.getKey(), sortedDistinct(entry.getValue().toArray())))
+                .iterator());
+        List<IndexSegment> updated = new ArrayList<>(segments);
+        updated.add(segment);
+        segments = List.copyOf(updated);
+        memtable = new ConcurrentHashMap<>();
+        logger.info("Search index: wrote {} postings to {}", memtablePostings, segment.getPath().getFileName());
+        memtablePostings = 0;
+        writeCheckpoint(gaps.isEmpty() ? position : gaps.firstKey() - 1);
+    }
+
+    private void merge() throws IOException {
+        List<IndexSegment> bySize = new ArrayList<>(segments);
+        bySize.sort(Comparator.comparingLong(IndexSegment::getSize));
+        List<IndexSegment> candidates = new ArrayList<>();
+        long mergedSize = 0;
+        for (IndexSegment segment : bySize) {
+            if (mergedSize + segment.getSize() > MAX_SEGMENT_BYTES) {
+                break;
+            }
+            candidates.add(segment);
+            mergedSize += segment.getSize();
+        }
+        if (candidates.size() < 2) {
+            return;
+        }
+        IndexSegment merged = IndexSegment.write(nextSegmentPath(), mergeEntries(candidates));
+        List<IndexSegment> updated = new ArrayList<>(segments);
+        updated.removeAll(candidates);
+        updated.add(merged);
+        segments = List.copyOf(updated);
+        for (IndexSegment segment : candidates) {
+            // Searches still reading the old segment keep their mapping
+            Files.deleteIfExists(segment.getPath());
+        }
+        logger.info("Search index: merged {} segments into {}", candidates.size(), merged.getPath().getFileName());
+    }
+
+    private static Iterator<IndexSegment.Entry> mergeEntries(List<IndexSegment> sources) {
+        record Head(IndexSegment.Entry entry, Iterator<IndexSegment.Entry> rest) {
+        }
+        PriorityQueue<Head> heads = new PriorityQueue<>(Comparator.comparing(head -> head.entry().key()));
+        for (IndexSegment source : sources) {
+            Iterator<IndexSegment.Entry> entries = source.entries();
+            if (entries.hasNext()) {
+                heads.add(new Head(entries.next(), entries));
+            }
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public IndexSegment.Entry next() {
+                Head head = heads.poll();
+                if (head == null) {
+                    throw new NoSuchElementException();
+                }
+                PostingKey key = head.entry().key();
+                List<long[]> parts = new ArrayList<>();
+                while (head != null) {
+                    parts.add(head.entry().ids());
+                    if (head.rest().hasNext()) {
+                        heads.add(new Head(head.rest().next(), head.rest()));
+                    }
+                    head = !heads.isEmpty() && heads.peek().entry().key().equals(key) ? heads.poll() : null;
+                }
+                long[] ids = parts.stream().flatMapToLong(Arrays::stream).toArray();
+                return new IndexSegment.Entry(key, sortedDistinct(ids));
+            }
+        };
+    }
+
+    static long[] sortedDistinct(long[] ids) {
+        Arrays.sort(ids);
+        int size = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                ids[size++] = ids[i];
+            }
+        }
+        return size == ids.length ? ids : Arrays.copyOf(ids, size);
+    }
+
+    private static long[] intersect(long[] a, long[] b) {
+        long[] result = new long[Math.min(a.length, b.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[size++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private Path nextSegmentPath() {
+        generation++;
+        return properties.indexDir().resolve(SEGMENT_PREFIX + generation + SEGMENT_SUFFIX);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(properties.indexDir())) {
+            return files.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted(Comparator.comparingLong(MessageSearchIndex::generationOf))
+                    .toList();
+        }
+    }
+
+    private static long generationOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private Long readCheckpoint() throws IOException {
+        Path checkpoint = properties.indexDir().resolve(CHECKPOINT);
+        if (!Files.exists(checkpoint)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(Files.readString(checkpoint, StandardCharsets.UTF_8).trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Error: unreadable search index checkpoint {}", checkpoint, e);
+            return null;
+        }
+    }
+
+    private void writeCheckpoint(long messageId) throws IOException {
+        Path checkpoint = properties.indexDir().resolve(CHECKPOINT);
+        Path tmp = properties.indexDir().resolve(CHECKPOINT + ".tmp");
+        Files.writeString(tmp, Long.toString(messageId), StandardCharsets.UTF_8);
+        Files.move(tmp, checkpoint, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        indexer.shutdown();
+        indexer.awaitTermination(5, TimeUnit.SECONDS);
+        try {
+            synchronized (this) {
+                flushMemtable();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write the search index on shutdown", e);
+        }
+    }
+}
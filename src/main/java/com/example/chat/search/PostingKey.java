@@ -0,0 +1,13 @@
+package com.example.chat.search;
+
+/**
+ * A term as seen by one participant: every message is indexed once for its sender and once for its
+ * receiver, so a search only ever reads the posting lists of the user searching.
+ */
+public record PostingKey(long userId, String term) implements Comparable<PostingKey> {
+    @Override
+    public int compareTo(PostingKey other) {
+        int byUser = Long.compare(userId, other.userId);
+        return byUser != 0 ? byUser : term.compareTo(other.term);
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.chat.search;
+
+import java.util.Arrays;
+
+/**
+ * Growable posting list of the in-memory part of the index.
+ */
+final class Postings {
+    private long[] ids = new long[4];
+    private int size;
+
+    synchronized void add(long id) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        ids[size++] = id;
+    }
+
+    synchronized long[] toArray() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    synchronized int size() {
+        return size;
+    }
+}
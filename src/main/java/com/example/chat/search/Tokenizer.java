@@ -0,0 +1,41 @@
+package com.example.chat.search;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits text into lower-cased runs of letters and digits. Single characters and runs longer than
+ * {@link #MAX_LENGTH} are not indexed.
+ */
+public final class Tokenizer {
+    static final int MIN_LENGTH = 2;
+    static final int MAX_LENGTH = 40;
+
+    private Tokenizer() {
+    }
+
+    /**
+     * @return the distinct terms of the text, in order of first appearance
+     */
+    public static Set<String> tokenize(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (text == null) {
+            return terms;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                int length = i - start;
+                if (length >= MIN_LENGTH && length <= MAX_LENGTH) {
+                    terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+}
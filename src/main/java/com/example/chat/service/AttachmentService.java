@@ -0,0 +1,136 @@
+package com.example.chat.service;
+
+import com.example.chat.config.AttachmentProperties;
+import com.example.chat.dto.AttachmentDTO;
+import com.example.chat.errorHandling.BusinessNotFound;
+import com.example.chat.model.User;
+import com.example.chat.repository.AttachmentRepository;
+import com.example.chat.repository.AttachmentStore;
+import com.example.chat.repository.MessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * File attachments. An upload is streamed into the {@link AttachmentStore} and answered with its id,
+ * which is then sent as the attachmentId of a message. Only the users who uploaded a file, or sent or
+ * received a message with it, can send or download it. Files no message refers to are removed once
+ * their last upload is older than the orphan retention.
+ */
+@Service
+public class AttachmentService {
+    private static final int SWEEP_BATCH_SIZE = 1000;
+    private static final Logger logger = LoggerFactory.getLogger(AttachmentService.class);
+
+    private final AttachmentRepository attachmentRepository;
+    private final MessageRepository messageRepository;
+    private final MessagePersistenceService messagePersistenceService;
+    private final UserService userService;
+    private final AttachmentProperties properties;
+    private final AttachmentStore attachmentStore;
+
+    public AttachmentService(AttachmentRepository attachmentRepository, MessageRepository messageRepository,
+                             MessagePersistenceService messagePersistenceService, UserService userService,
+                             AttachmentProperties properties) throws IOException {
+        this.attachmentRepository = attachmentRepository;
+        this.messageRepository = messageRepository;
+        this.messagePersistenceService = messagePersistenceService;
+        this.userService = userService;
+        this.properties = properties;
+        this.attachmentStore = new AttachmentStore(properties.storeDir());
+    }
+
+    public AttachmentDTO upload(String userName, InputStream in, String contentType) throws IOException {
+        User user = getUser(userName);
+        AttachmentStore.StoredFile file = attachmentStore.store(in, properties.maxSize().toBytes());
+        AttachmentDTO attachment = new AttachmentDTO(file.id(), file.size(),
+                contentType == null ? MediaType.APPLICATION_OCTET_STREAM_VALUE : contentType);
+        LocalDateTime now = LocalDateTime.now();
+        attachmentRepository.save(attachment, now);
+        attachmentRepository.saveUpload(attachment.id(), user.getId(), now);
+        return attachment;
+    }
+
+    /**
+     * Checks that an attachment about to be sent was uploaded by the sender, or that the sender already
+     * sent or received a message with it. Ids of files of other users are answered as not found.
+     */
+    public void requireAttachment(String sender, String attachmentId) {
+        User user = getUser(sender);
+        if (!attachmentStore.exists(attachmentId)
+                || !attachmentRepository.isUploader(attachmentId, user.getId())
+                && !isParticipant(user, attachmentId)) {
+            throw new BusinessNotFound("Attachment not found!");
+        }
+    }
+
+    /**
+     * @return the attachment, if the user sent or received a message with it
+     */
+    public AttachmentDTO getAttachment(String userName, String attachmentId) {
+        User user = getUser(userName);
+        if (!isParticipant(user, attachmentId)) {
+            throw new BusinessNotFound("Attachment not found!");
+        }
+        AttachmentDTO attachment = attachmentRepository.getById(attachmentId);
+        if (attachment == null || !attachmentStore.exists(attachmentId)) {
+            throw new BusinessNotFound("Attachment not found!");
+        }
+        return attachment;
+    }
+
+    public Path getFile(String attachmentId) {
+        return attachmentStore.pathOf(attachmentId);
+    }
+
+    /**
+     * Removes the files no message refers to and nobody uploaded within the orphan retention. The row is
+     * deleted before the file; an upload of the same file in between finds no file when it is sent and
+     * has to be repeated, which stores the file again.
+     */
+    @Scheduled(fixedDelayString = "${chat.attachments.sweep-interval:PT1H}")
+    public void removeOrphans() {
+        LocalDateTime uploadedBefore = LocalDateTime.now().minus(properties.orphanRetention());
+        List<String> ids = attachmentRepository.getOrphanIds(uploadedBefore, SWEEP_BATCH_SIZE);
+        int removed = 0;
+        for (String id : ids) {
+            // A message waiting for write-behind may refer to it
+            if (messagePersistenceService.isBuffered(message -> id.equals(message.attachmentId()))
+                    || !attachmentRepository.deleteOrphan(id, uploadedBefore)) {
+                continue;
+            }
+            try {
+                attachmentStore.delete(id);
+                removed++;
+            } catch (IOException e) {
+                logger.error("Error: attachment: {} could not be removed from the store", id, e);
+            }
+        }
+        if (removed > 0) {
+            logger.info("Removed {} orphaned attachments", removed);
+        }
+    }
+
+    private boolean isParticipant(User user, String attachmentId) {
+        // The message may still be waiting for write-behind
+        return messagePersistenceService.isBuffered(message -> attachmentId.equals(message.attachmentId())
+                && (message.senderId() == user.getId() || message.receiverId() == user.getId()))
+                || messageRepository.isAttachmentParticipant(attachmentId, user.getId());
+    }
+
+    private User getUser(String userName) {
+        User user = userService.getUserByUserName(userName);
+        if (user == null) {
+            throw new BusinessNotFound("Not a registered user!");
+        }
+        return user;
+    }
+}
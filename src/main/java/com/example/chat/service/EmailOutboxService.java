@@ -0,0 +1,123 @@
+package com.example.chat.service;
+
+import com.example.chat.config.EmailOutboxProperties;
+import com.example.chat.dto.EmailDTO;
+import com.example.chat.enumeration.OutboxStatus;
+import com.example.chat.model.EmailOutboxEntry;
+import com.example.chat.model.User;
+import com.example.chat.repository.EmailOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pending-message notifications go through the email_outbox table instead of SMTP on the request
+ * thread. A scheduled dispatcher waits for the digest window of each recipient, sends one email
+ * summarising every pending notification and retries failed sends with exponential backoff.
+ */
+@RequiredArgsConstructor
+@Service
+public class EmailOutboxService {
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final EmailService emailService;
+    private final UserService userService;
+    private final EmailOutboxProperties properties;
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutboxService.class);
+
+    public void enqueue(long recipientId, String senderUserName) {
+        LocalDateTime now = LocalDateTime.now();
+        emailOutboxRepository.save(recipientId, senderUserName, now, now.plus(properties.digestWindow()));
+    }
+
+    /**
+     * Enqueues the notifications of one message to many recipients, e.g. the offline members of a room,
+     * in a single batch.
+     */
+    public void enqueueAll(Collection<Long> recipientIds, String senderUserName) {
+        if (recipientIds.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        emailOutboxRepository.saveAll(recipientIds, senderUserName, now, now.plus(properties.digestWindow()));
+    }
+
+    @Scheduled(fixedDelayString = "${chat.email-outbox.poll-interval:PT10S}")
+    public void dispatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> recipientIds = emailOutboxRepository.getDueRecipientIds(now, properties.batchSize());
+        for (long recipientId : recipientIds) {
+            if (emailOutboxRepository.claim(recipientId, now, now.plus(properties.lease())) > 0) {
+                sendDigest(recipientId, now);
+            }
+        }
+    }
+
+    public long getQueueDepth() {
+        return emailOutboxRepository.countPending();
+    }
+
+    private void sendDigest(long recipientId, LocalDateTime now) {
+        List<EmailOutboxEntry> entries = emailOutboxRepository.getPendingByRecipientId(recipientId);
+        if (entries.isEmpty()) {
+            return;
+        }
+        List<Long> ids = entries.stream().map(EmailOutboxEntry::getId).toList();
+        User user = userService.getById(recipientId);
+        if (user == null) {
+            logger.error("Error: email digest: recipient id: {} not found!", recipientId);
+            emailOutboxRepository.updateStatusByIds(ids, OutboxStatus.FAILED);
+            return;
+        }
+        try {
+            emailService.sendSimpleEmail(toDigest(user, entries));
+            emailOutboxRepository.updateStatusByIds(ids, OutboxStatus.SENT);
+        } catch (Exception e) {
+            int attempts = entries.stream().mapToInt(EmailOutboxEntry::getAttempts).max().orElse(0) + 1;
+            if (attempts >= properties.maxAttempts()) {
+                logger.error("Error: email digest to userName: {} failed {} times, giving up", user.getUserName(),
+                        attempts, e);
+                emailOutboxRepository.updateStatusByIds(ids, OutboxStatus.FAILED);
+            } else {
+                logger.warn("Email digest to userName: {} failed, attempt {}", user.getUserName(), attempts, e);
+                emailOutboxRepository.rescheduleByIds(ids, attempts, now.plus(backoff(attempts)));
+            }
+        }
+    }
+
+    Duration backoff(int attempts) {
+        Duration backoff = properties.initialBackoff().multipliedBy(1L << Math.min(attempts - 1, 20));
+        return backoff.compareTo(properties.maxBackoff()) > 0 ? properties.maxBackoff() : backoff;
+    }
+
+    private EmailDTO toDigest(User user, List<EmailOutboxEntry> entries) {
+        Map<String, Integer> countsBySender = new LinkedHashMap<>();
+        for (EmailOutboxEntry entry : entries) {
+            countsBySender.merge(entry.getSenderUserName(), 1, Integer::sum);
+        }
+        StringBuilder body = new StringBuilder("Dear Mr/Ms " + user.getLastName() + ",\n\n");
+        if (entries.size() == 1) {
+            body.append("Please note that you have a new message from ")
+                    .append(entries.get(0).getSenderUserName())
+                    .append(", waiting to be opened!\n");
+        } else {
+            body.append("Please note that you have ").append(entries.size())
+                    .append(" new messages waiting to be opened:\n");
+            countsBySender.forEach((sender, count) ->
+                    body.append(" - ").append(count).append(" from ").append(sender).append("\n"));
+        }
+        body.append("Please log in to do so!\n\n")
+                .append("Regards,\nCake Shop Chat");
+        String subject = entries.size() == 1 ? "You have new pending message" : "You have new pending messages";
+        return new EmailDTO(subject, user.getEmail(), body.toString());
+    }
+}
@@ -2,6 +2,7 @@ package com.example.chat.service;
 
 import com.example.chat.controller.AuthController;
 import com.example.chat.dto.EmailDTO;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,6 +17,7 @@ public class EmailService {
 
     private static final Logger logger = LoggerFactory.getLogger(AuthController.class);
 
+    @Timed(value = "chat.email.send", description = "SMTP send of one email")
     public void sendSimpleEmail(EmailDTO emailDTO) {
         SimpleMailMessage message = new SimpleMailMessage();
         message.setTo(emailDTO.getToList());
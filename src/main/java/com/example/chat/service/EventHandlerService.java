@@ -1,61 +1,84 @@
 package com.example.chat.service;
 
+import com.example.chat.cache.MessageDedupCache;
+import com.example.chat.cluster.ClusterRouter;
+import com.example.chat.config.ReplayProperties;
+import com.example.chat.delivery.EventLogService;
+import com.example.chat.delivery.SseDeliveryService;
 import com.example.chat.dto.ChatDTO;
-import com.example.chat.dto.EmailDTO;
+import com.example.chat.dto.MessageBody;
 import com.example.chat.dto.UserDTO;
 import com.example.chat.enumeration.MessageStatus;
 import com.example.chat.enumeration.UserStatus;
 import com.example.chat.errorHandling.BusinessNotFound;
 import com.example.chat.events.ChatEvent;
-import com.example.chat.events.CommunicationsEvent;
+import com.example.chat.events.RoomEvent;
+import com.example.chat.metrics.MessageMetrics;
 import com.example.chat.model.Message;
+import com.example.chat.model.RoomMessage;
 import com.example.chat.model.User;
+import com.example.chat.presence.ConnectedUserRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.http.MediaType;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.IOException;
 import java.time.LocalDateTime;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
-
-import static org.springframework.web.servlet.mvc.method.annotation.SseEmitter.event;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class EventHandlerService {
-    private static final AtomicInteger ID_Counter = new AtomicInteger(1);
     public static final long DEFAULT_TIMEOUT = Long.MAX_VALUE;
-    private final Set<UserDTO> loggedInUsers = new HashSet<>();
     private static final Logger logger = LoggerFactory.getLogger(EventHandlerService.class);
 
     private final UserService userService;
     private final MessageService messageService;
-    private final EmailService emailService;
+    private final MessageContentService messageContentService;
+    private final AttachmentService attachmentService;
+    private final EmailOutboxService emailOutboxService;
+    private final PendingDeliveryService pendingDeliveryService;
+    private final RoomService roomService;
+    private final ConnectedUserRegistry connectedUserRegistry;
+    private final SseDeliveryService sseDeliveryService;
+    private final EventLogService eventLogService;
+    private final ReplayProperties replayProperties;
+    private final ClusterRouter clusterRouter;
+    private final MessageMetrics messageMetrics;
+    private final MessageDedupCache messageDedupCache;
 
     public SseEmitter registerUser(String userName) {
+        return registerUser(userName, null);
+    }
+
+    /**
+     * @param lastEventId the Last-Event-ID sent by a reconnecting client, or null
+     */
+    public SseEmitter registerUser(String userName, String lastEventId) {
         SseEmitter sseEmitter = new SseEmitter(DEFAULT_TIMEOUT);
         UserDTO userDTO = new UserDTO(sseEmitter, userName);
 
-        sseEmitter.onCompletion(() -> loggedInUsers.remove(userDTO));
+        sseEmitter.onCompletion(() -> unregister(userDTO));
         sseEmitter.onError((err) -> removeAndLogError(userDTO));
         sseEmitter.onTimeout(() -> removeAndLogError(userDTO));
 
-        loggedInUsers.add(userDTO);
-        userService.updateStatus(userName, UserStatus.ONLINE);
-
-        List<Message> pendingMessages = messageService.getAllPendingTo(userDTO.userName());
-        if (!pendingMessages.isEmpty()) {
-            sendAllPending(pendingMessages, userDTO);
+        sseDeliveryService.open(userDTO, () -> removeAndLogError(userDTO));
+        EventLogService.Connection connection = eventLogService.connect(userDTO, lastEventId);
+        if (connection.firstConnection()) {
+            clusterRouter.userConnected(userName);
+            userService.updateStatus(userName, UserStatus.ONLINE);
         }
+        if (connection.replayFromDatabase() != null) {
+            replayFromDatabase(userDTO, connection.replayFromDatabase());
+        }
+
+        // Off the request thread, so a large backlog does not hold up the login
+        pendingDeliveryService.deliverAsync(userDTO);
 
         logger.info("New user logged in: {}", userDTO.userName());
         return sseEmitter;
@@ -63,80 +86,132 @@ public class EventHandlerService {
 
     private void removeAndLogError(UserDTO userDTO) {
         logger.info("Error during communication. The user {} is not logged in!", userDTO.userName());
-        userService.updateStatus(userDTO.userName(), UserStatus.OFFLINE);
-        loggedInUsers.remove(userDTO);
+        unregister(userDTO);
+    }
+
+    private void unregister(UserDTO userDTO) {
+        sseDeliveryService.close(userDTO);
+        if (connectedUserRegistry.unregister(userDTO)) {
+            clusterRouter.userDisconnected(userDTO.userName());
+            userService.updateStatus(userDTO.userName(), UserStatus.OFFLINE);
+        }
     }
 
 
-    public void sendAllPending(List<Message> pendingMessages, UserDTO userDTO) {
-        for (Message message : pendingMessages) {
-            ChatEvent chatEvent = new ChatEvent(message.getContent(), userDTO.userName());
-            sendMessage(userDTO, chatEvent);
-            messageService.updateMessage(message.getId(), MessageStatus.SENT, LocalDateTime.now());
+    private void replayFromDatabase(UserDTO userDTO, LocalDateTime since) {
+        List<Message> messages = messageService.getPushedSince(userDTO.userName(), since,
+                replayProperties.maxDatabaseReplay());
+        logger.info("Replaying {} messages pushed since {} from the database to user {}", messages.size(), since,
+                userDTO.userName());
+        for (Message message : messages) {
+            User sender = userService.getById(message.getSender().getId());
+            eventLogService.publish(userDTO, new ChatEvent(message.getContent(), userDTO.userName(),
+                    sender == null ? null : sender.getUserName(), message.getId(), message.getContentId(),
+                    message.getAttachmentId()));
+        }
+        List<RoomMessage> roomMessages = roomService.getPushedSince(userDTO.userName(), since,
+                replayProperties.maxDatabaseReplay());
+        logger.info("Replaying {} room messages pushed since {} from the database to user {}", roomMessages.size(),
+                since, userDTO.userName());
+        for (RoomMessage message : roomMessages) {
+            eventLogService.publish(userDTO, new RoomEvent(message.getRoomName(), message.getSenderUserName(),
+                    message.getContent(), message.getId()));
         }
     }
 
     public boolean sendMsg(ChatDTO chatDTO, String sender) {
-        boolean sent = false;
-        if (!userService.existsByUserName(chatDTO.userName())) {
-            throw new BusinessNotFound("Not a registered user!");
-        }
-        Set<UserDTO> users = Set.copyOf(loggedInUsers);
-        for (UserDTO user : users) {
-            if (user.userName().equals(chatDTO.userName())) {
-                ChatEvent chatEvent = new ChatEvent(chatDTO.messageContent(), chatDTO.userName());
-                logger.info("Notify user {} for a new message", user.userName());
-                sendMessage(user, chatEvent);
-                messageService.create(chatDTO, sender, MessageStatus.SENT, LocalDateTime.now());
-                sent = true;
-                break;
+        return sendMsg(messageService.allocateId(), chatDTO, prepare(chatDTO, sender), sender);
+    }
+
+    /**
+     * @param messageId the id the message is pushed with, and stored under if it was pushed
+     */
+    private boolean sendMsg(long messageId, ChatDTO chatDTO, MessageBody messageBody, String sender) {
+        Timer.Sample sample = Timer.start();
+        try {
+            boolean sent = false;
+            if (!userService.existsByUserName(chatDTO.userName())) {
+                throw new BusinessNotFound("Not a registered user!");
             }
+            ChatEvent chatEvent = new ChatEvent(messageBody.content(), chatDTO.userName(), sender, messageId,
+                    messageBody.contentId(), messageBody.attachmentId());
+            if (connectedUserRegistry.isConnected(chatDTO.userName())) {
+                logger.info("Notify user {} for a new message", chatDTO.userName());
+                sent = eventLogService.publish(chatDTO.userName(), chatEvent);
+            }
+            // The user may also be connected to other nodes of the cluster
+            sent |= clusterRouter.forward(chatDTO.userName(), chatEvent);
+            if (sent) {
+                messageService.create(messageId, chatDTO.userName(), messageBody, sender, MessageStatus.SENT,
+                        LocalDateTime.now());
+                messageMetrics.getSentCounter().increment();
+            }
+            return sent;
+        } finally {
+            sample.stop(messageMetrics.getSendTimer());
         }
-        return sent;
     }
 
     public void storeMsgForLater(ChatDTO chatDTO, String sender) {
-        messageService.create(chatDTO, sender, MessageStatus.PENDING, LocalDateTime.now());
+        storeMsgForLater(messageService.allocateId(), chatDTO, prepare(chatDTO, sender), sender);
+    }
+
+    private void storeMsgForLater(long messageId, ChatDTO chatDTO, MessageBody messageBody, String sender) {
+        messageService.create(messageId, chatDTO.userName(), messageBody, sender, MessageStatus.PENDING,
+                LocalDateTime.now());
         User user = userService.getUserByUserName(chatDTO.userName());
-        String body = "Dear Mr/Ms " + user.getLastName() + ",\n\n"
-                + "Please note that you have a new message from "
-                + sender
-                + ", waiting to be opened!\n"
-                + "Please log in to do so!\n\n"
-                + "Regards,\nCake Shop Chat";
-        EmailDTO emailDTO = new EmailDTO("You have new pending message", user.getEmail(), body);
-        emailService.sendSimpleEmail(emailDTO);
+        emailOutboxService.enqueue(user.getId(), sender);
+        messageMetrics.getStoredCounter().increment();
 
         logger.info("Message stored as PENDING for userName: {}", chatDTO.userName());
     }
 
-    private void sendMessage(UserDTO userDTO, CommunicationsEvent communicationsEvent) {
-        SseEmitter sseEmitter = userDTO.sseEmitter();
-        try {
-            int eventID = ID_Counter.incrementAndGet();
-            SseEmitter.SseEventBuilder eventBuilder = event().name(communicationsEvent.getEventType())
-                    .id(String.valueOf(eventID))
-                    .data(communicationsEvent, MediaType.APPLICATION_JSON);
-            sseEmitter.send(eventBuilder);
-        } catch (IOException e) {
-            sseEmitter.completeWithError(e);
+    private MessageBody prepare(ChatDTO chatDTO, String sender) {
+        MessageBody messageBody = messageContentService.prepare(chatDTO.messageContent());
+        if (chatDTO.attachmentId() != null) {
+            attachmentService.requireAttachment(sender, chatDTO.attachmentId());
         }
+        return new MessageBody(messageBody.content(), messageBody.contentId(), chatDTO.attachmentId(),
+                chatDTO.clientMessageId());
     }
 
+    /**
+     * A message with a client message id is sent once, retries get the outcome of the first send. A retry
+     * the dedup cache no longer knows, or that reaches another node, finds the stored message instead.
+     */
     public boolean handleMessage(String userName, ChatDTO chatDTO) {
-        User user;
-        boolean sent = false;
-        user = userService.getUserByUserName(chatDTO.userName());
+        Timer.Sample sample = Timer.start();
+        try {
+            if (chatDTO.clientMessageId() == null) {
+                return handleNewMessage(userName, chatDTO);
+            }
+            return messageDedupCache.submit(userName, chatDTO.clientMessageId(),
+                    () -> handleNewMessage(userName, chatDTO));
+        } finally {
+            sample.stop(messageMetrics.getHandleTimer());
+        }
+    }
+
+    private boolean handleNewMessage(String userName, ChatDTO chatDTO) {
+        User user = userService.getUserByUserName(chatDTO.userName());
         if (user == null) {
             throw new UsernameNotFoundException("You are trying to send a message to a not existing user!");
         }
-        if (user.getStatus().equals(UserStatus.ONLINE)) {
-            sent = sendMsg(chatDTO, userName);
+        if (chatDTO.clientMessageId() != null) {
+            MessageStatus status = messageService.getStatusByClientMessageId(userName, chatDTO.clientMessageId());
+            if (status != null) {
+                // Pushed unless it was stored as pending
+                return status != MessageStatus.PENDING;
+            }
         }
+        // Large content is stored once, whether the message is pushed or kept for later
+        MessageBody messageBody = prepare(chatDTO, userName);
+        // Presence is in the connection registry and the cluster directory, the status column lags behind
+        long messageId = messageService.allocateId();
+        boolean sent = sendMsg(messageId, chatDTO, messageBody, userName);
         if (!sent) {
-            storeMsgForLater(chatDTO, userName);
+            storeMsgForLater(messageId, chatDTO, messageBody, userName);
         }
-
         return sent;
     }
-}
\ No newline at end of file
+}
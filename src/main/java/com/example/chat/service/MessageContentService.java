@@ -0,0 +1,121 @@
+package com.example.chat.service;
+
+import com.example.chat.config.LargeMessageProperties;
+import com.example.chat.dto.MessageBody;
+import com.example.chat.dto.StoredContentDTO;
+import com.example.chat.errorHandling.BusinessNotFound;
+import com.example.chat.model.User;
+import com.example.chat.repository.MessageContentRepository;
+import com.example.chat.repository.MessageRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Messages longer than {@link LargeMessageProperties#inlineLimit()} are stored Deflate compressed in
+ * message_content, keyed by the SHA-256 of the content, and only a preview and the content id travel
+ * through events, the write-behind buffer and message rows. The full content is inflated while it is
+ * streamed to a participant who asks for it.
+ */
+@RequiredArgsConstructor
+@Service
+public class MessageContentService {
+    private final MessageContentRepository messageContentRepository;
+    private final MessageRepository messageRepository;
+    private final MessagePersistenceService messagePersistenceService;
+    private final UserService userService;
+    private final LargeMessageProperties properties;
+
+    /**
+     * @return the content itself if it fits inline, otherwise a preview and the id of the stored content
+     */
+    public MessageBody prepare(String content) {
+        if (content.length() <= properties.inlineLimit()) {
+            return new MessageBody(content, null, null);
+        }
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > properties.maxSize().toBytes()) {
+            throw new IllegalArgumentException("Messages are limited to " + properties.maxSize().toKilobytes()
+                    + " KB!");
+        }
+        String contentId = HexFormat.of().formatHex(sha256(bytes));
+        if (!messageContentRepository.existsById(contentId)) {
+            messageContentRepository.save(contentId, bytes.length, deflate(bytes), LocalDateTime.now());
+        }
+        return new MessageBody(preview(content), contentId, null);
+    }
+
+    /**
+     * @return the stored content, if the user sent or received a message with it
+     */
+    public StoredContentDTO getContent(String userName, String contentId) {
+        User user = userService.getUserByUserName(userName);
+        if (user == null) {
+            throw new BusinessNotFound("Not a registered user!");
+        }
+        // A live message is pushed before it is stored. The buffer is checked first, so a message that is
+        // committed while the database is queried is found in one of them
+        if (!messagePersistenceService.isBuffered(message -> contentId.equals(message.contentId())
+                && (message.senderId() == user.getId() || message.receiverId() == user.getId()))
+                && !messageRepository.isContentParticipant(contentId, user.getId())) {
+            throw new BusinessNotFound("Message content not found!");
+        }
+        StoredContentDTO content = messageContentRepository.getById(contentId);
+        if (content == null) {
+            throw new BusinessNotFound("Message content not found!");
+        }
+        return content;
+    }
+
+    /**
+     * Inflates the content into out as it is written, the inflated content is never held in memory.
+     */
+    public void writeTo(StoredContentDTO content, OutputStream out) throws IOException {
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(content.data()))) {
+            in.transferTo(out);
+        }
+    }
+
+    private String preview(String content) {
+        int end = Math.min(properties.previewLength(), properties.inlineLimit());
+        if (Character.isHighSurrogate(content.charAt(end - 1))) {
+            end--;
+        }
+        return content.substring(0, end);
+    }
+
+    private byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(properties.compressionLevel());
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
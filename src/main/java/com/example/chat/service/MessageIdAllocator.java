@@ -0,0 +1,40 @@
+package com.example.chat.service;
+
+import com.example.chat.config.MessagePersistenceProperties;
+import com.example.chat.repository.MessageIdRepository;
+import org.springframework.stereotype.Service;
+
+/**
+ * Hands out message ids before the message is written, so a live event carries the id of the row
+ * that write-behind inserts later. Ids are reserved from message_id_sequence in blocks of
+ * {@link MessagePersistenceProperties#idBlockSize()}; the rest of a block is lost on restart.
+ */
+@Service
+public class MessageIdAllocator {
+    private final MessageIdRepository messageIdRepository;
+    private final int blockSize;
+    private long nextId;
+    private long blockEnd;
+
+    public MessageIdAllocator(MessageIdRepository messageIdRepository, MessagePersistenceProperties properties) {
+        this.messageIdRepository = messageIdRepository;
+        this.blockSize = properties.idBlockSize();
+    }
+
+    public synchronized long nextId() {
+        long id = peekNextId();
+        nextId++;
+        return id;
+    }
+
+    /**
+     * @return the id the next message will get, reserving a block first if none is left
+     */
+    public synchronized long peekNextId() {
+        if (nextId == blockEnd) {
+            nextId = messageIdRepository.reserve(blockSize);
+            blockEnd = nextId + blockSize;
+        }
+        return nextId;
+    }
+}
@@ -0,0 +1,355 @@
+package com.example.chat.service;
+
+import com.example.chat.config.MessagePersistenceProperties;
+import com.example.chat.dto.AckRangeDTO;
+import com.example.chat.dto.NewMessageDTO;
+import com.example.chat.enumeration.MessageDurability;
+import com.example.chat.enumeration.MessageStatus;
+import com.example.chat.errorHandling.MessageStoreUnavailable;
+import com.example.chat.repository.MessageJournal;
+import com.example.chat.repository.MessageRepository;
+import com.example.chat.search.MessageSearchIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Persists new messages according to {@link MessageDurability}:
+ * <ul>
+ *     <li>SYNC - one INSERT per message on the caller's thread</li>
+ *     <li>JOURNALED - appended to a local journal and forced to disk before the save returns, concurrent
+ *     saves sharing one fsync, then written behind in JDBC batches</li>
+ *     <li>BUFFERED - kept in memory only and written behind in JDBC batches</li>
+ * </ul>
+ * Buffered messages are committed in one transaction per flush, triggered by batch size or flush interval,
+ * and flushed on shutdown. Messages are written at least once: journal segments left by a crash are
+ * replayed by the flusher before the buffer, and kept until the database takes them. Once
+ * maxBufferedMessages are waiting, a save that a flush cannot make room for fails with
+ * {@link MessageStoreUnavailable}. {@link MessageSearchIndex} is woken after every write.
+ * <p>
+ * Readers see buffered messages through {@link #getBuffered} instead of forcing a flush, and status changes
+ * go through this service so they also reach messages that are not stored yet. A change to a batch that is
+ * being written is run again once the batch is committed. Journals keep the status a message was sent with.
+ */
+@Service
+public class MessagePersistenceService {
+    private static final Logger logger = LoggerFactory.getLogger(MessagePersistenceService.class);
+
+    private final MessageRepository messageRepository;
+    private final MessagePersistenceProperties properties;
+    private final MessageJournal journal;
+    private final MessageSearchIndex messageSearchIndex;
+    private final ScheduledExecutorService flusher;
+    private final Object bufferLock = new Object();
+    private final Object flushLock = new Object();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final List<Path> uncommittedSegments = new ArrayList<>();
+    private final List<Path> recoveredSegments = new ArrayList<>();
+    private final List<StatusUpdate> deferredUpdates = new ArrayList<>();
+    private List<NewMessageDTO> buffer = new ArrayList<>();
+    private List<NewMessageDTO> writing = List.of();
+
+    public MessagePersistenceService(MessageRepository messageRepository, MessagePersistenceProperties properties,
+                                     ObjectMapper objectMapper, MessageSearchIndex messageSearchIndex)
+            throws IOException {
+        this.messageRepository = messageRepository;
+        this.properties = properties;
+        this.messageSearchIndex = messageSearchIndex;
+        if (properties.durability() == MessageDurability.JOURNALED) {
+            this.journal = new MessageJournal(properties.journalDir(), objectMapper);
+            // Replayed by the flusher, the database may not be reachable yet
+            this.recoveredSegments.addAll(journal.getRecoveredSegments());
+        } else {
+            this.journal = null;
+        }
+        if (properties.durability() == MessageDurability.SYNC) {
+            this.flusher = null;
+        } else {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("message-writer-"));
+            long intervalMillis = properties.flushInterval().toMillis();
+            this.flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void save(NewMessageDTO message) {
+        if (properties.durability() == MessageDurability.SYNC) {
+            messageRepository.save(message.id(), message.content(), message.senderId(), message.receiverId(),
+                    message.status(), message.timestamp(), message.contentId(), message.attachmentId(),
+                    message.clientMessageId(), message.statusChangedAt());
+            messageSearchIndex.requestCatchUp();
+            return;
+        }
+        int buffered = offer(message);
+        if (buffered < 0) {
+            // The database is falling behind, make the producer wait for it
+            flush();
+            buffered = offer(message);
+            if (buffered < 0) {
+                throw new MessageStoreUnavailable("Messages can not be stored right now, try again later!");
+            }
+        }
+        if (buffered >= properties.batchSize() && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Journals outside bufferLock, readers do not wait for the disk. The message is buffered first, so it
+     * is journaled in the segment of its batch or a later one, which is kept until the later batch is
+     * committed; a segment never holds a message of a later batch.
+     *
+     * @return the number of buffered messages, or -1 if the buffer is full and the message was not taken
+     */
+    private int offer(NewMessageDTO message) {
+        int buffered;
+        synchronized (bufferLock) {
+            if (buffer.size() >= properties.maxBufferedMessages()) {
+                return -1;
+            }
+            buffer.add(message);
+            buffered = buffer.size();
+        }
+        if (journal != null) {
+            try {
+                journal.sync(journal.append(message));
+            } catch (IOException e) {
+                synchronized (bufferLock) {
+                    // Unless a flush took it already, then it is written although the save fails
+                    buffer.removeIf(queued -> queued == message);
+                }
+                throw new UncheckedIOException("Could not journal message", e);
+            }
+        }
+        return buffered;
+    }
+
+    /**
+     * @return the messages not committed yet that match filter, including a batch being written. Call it
+     * before querying the database, so a message committed in between shows up in one of them.
+     */
+    public List<NewMessageDTO> getBuffered(Predicate<NewMessageDTO> filter) {
+        List<NewMessageDTO> matching = new ArrayList<>();
+        synchronized (bufferLock) {
+            for (NewMessageDTO message : writing) {
+                if (filter.test(message)) {
+                    matching.add(message);
+                }
+            }
+            for (NewMessageDTO message : buffer) {
+                if (filter.test(message)) {
+                    matching.add(message);
+                }
+            }
+        }
+        return matching;
+    }
+
+    public boolean isBuffered(Predicate<NewMessageDTO> filter) {
+        synchronized (bufferLock) {
+            return writing.stream().anyMatch(filter) || buffer.stream().anyMatch(filter);
+        }
+    }
+
+    /**
+     * Moves the pending messages with the ids to status, see {@link MessageRepository#updateMessagesByIds}.
+     */
+    public void updatePending(List<Long> ids, MessageStatus status, LocalDateTime timestamp) {
+        Set<Long> idSet = new HashSet<>(ids);
+        update(new StatusUpdate(message -> message.status() == MessageStatus.PENDING && message.id() != null
+                && idSet.contains(message.id()), status, timestamp,
+                () -> messageRepository.updateMessagesByIds(ids, status.toString(), timestamp)));
+    }
+
+    /**
+     * Applies acknowledged id ranges, see {@link MessageRepository#acknowledge}.
+     */
+    public void acknowledge(MessageStatus status, List<AckRangeDTO> ranges, LocalDateTime timestamp) {
+        update(new StatusUpdate(message -> (message.status() == MessageStatus.SENT
+                || message.status() == MessageStatus.DELIVERED) && message.status() != status
+                && message.id() != null && ranges.stream().anyMatch(range -> range.senderId() == message.senderId()
+                && range.receiverId() == message.receiverId() && message.id() >= range.fromId()
+                && message.id() <= range.toId()), status, timestamp,
+                () -> messageRepository.acknowledge(status, ranges, timestamp)));
+    }
+
+    private void update(StatusUpdate update) {
+        if (properties.durability() != MessageDurability.SYNC) {
+            synchronized (bufferLock) {
+                update.applyTo(buffer);
+                if (writing.stream().anyMatch(update.matches())) {
+                    // The statement below may run before the batch is committed
+                    deferredUpdates.add(update);
+                }
+            }
+        }
+        update.write().run();
+    }
+
+    /**
+     * Writes recovered journal segments and all buffered messages to the database. A no-op in SYNC mode.
+     */
+    public void flush() {
+        if (properties.durability() == MessageDurability.SYNC) {
+            return;
+        }
+        if (write()) {
+            messageSearchIndex.requestCatchUp();
+        }
+    }
+
+    /**
+     * @return whether any message was written
+     */
+    private boolean write() {
+        synchronized (flushLock) {
+            flushRequested.set(false);
+            int replayed = replayRecoveredSegments();
+            if (replayed < 0) {
+                return false;
+            }
+            List<NewMessageDTO> batch;
+            Path sealedSegment = null;
+            synchronized (bufferLock) {
+                if (buffer.isEmpty()) {
+                    return replayed > 0;
+                }
+                batch = buffer;
+                writing = batch;
+                buffer = new ArrayList<>();
+                if (journal != null) {
+                    try {
+                        sealedSegment = journal.rotate();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Could not rotate message journal", e);
+                    }
+                }
+            }
+            if (sealedSegment != null) {
+                uncommittedSegments.add(sealedSegment);
+            }
+            try {
+                messageRepository.saveAll(batch);
+            } catch (DataAccessException e) {
+                logger.error("Error: flushing {} buffered messages failed, will retry", batch.size(), e);
+                synchronized (bufferLock) {
+                    for (StatusUpdate update : deferredUpdates) {
+                        update.applyTo(batch);
+                    }
+                    deferredUpdates.clear();
+                    writing = List.of();
+                    batch.addAll(buffer);
+                    buffer = batch;
+                }
+                return replayed > 0;
+            }
+            List<StatusUpdate> updates;
+            synchronized (bufferLock) {
+                updates = new ArrayList<>(deferredUpdates);
+                deferredUpdates.clear();
+                writing = List.of();
+            }
+            deleteCommittedSegments();
+            for (StatusUpdate update : updates) {
+                try {
+                    update.write().run();
+                } catch (DataAccessException e) {
+                    logger.error("Error: updating the status of {} written messages failed", update.status(), e);
+                }
+            }
+            return true;
+        }
+    }
+
+    public int getBufferedCount() {
+        synchronized (bufferLock) {
+            return buffer.size();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Error: scheduled message flush failed", e);
+        }
+    }
+
+    private void deleteCommittedSegments() {
+        for (Path segment : uncommittedSegments) {
+            try {
+                journal.delete(segment);
+            } catch (IOException e) {
+                logger.warn("Could not delete committed journal segment {}", segment, e);
+            }
+        }
+        uncommittedSegments.clear();
+    }
+
+    /**
+     * @return the number of messages replayed, or -1 if the database failed and segments are left
+     */
+    private int replayRecoveredSegments() {
+        int replayed = 0;
+        while (!recoveredSegments.isEmpty()) {
+            Path segment = recoveredSegments.get(0);
+            try {
+                List<NewMessageDTO> messages = journal.read(segment);
+                if (!messages.isEmpty()) {
+                    logger.info("Replaying {} journaled messages from {}", messages.size(), segment);
+                    messageRepository.saveAll(messages);
+                    replayed += messages.size();
+                }
+                journal.delete(segment);
+            } catch (DataAccessException e) {
+                logger.error("Error: replaying journal segment {} failed, will retry", segment, e);
+                return -1;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not replay journal segment " + segment, e);
+            }
+            recoveredSegments.remove(0);
+        }
+        return replayed;
+    }
+
+    /**
+     * A status change of the messages that match, applied in memory to messages not stored yet and by
+     * write to stored ones.
+     */
+    private record StatusUpdate(Predicate<NewMessageDTO> matches, MessageStatus status, LocalDateTime timestamp,
+                                Runnable write) {
+        void applyTo(List<NewMessageDTO> messages) {
+            messages.replaceAll(message -> matches.test(message) ? message.withStatus(status, timestamp) : message);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException, InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        flush();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+}
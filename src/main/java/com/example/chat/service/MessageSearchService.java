@@ -0,0 +1,79 @@
+package com.example.chat.service;
+
+import com.example.chat.config.SearchProperties;
+import com.example.chat.dto.HistoryMessageDTO;
+import com.example.chat.dto.SearchResultDTO;
+import com.example.chat.errorHandling.BusinessNotFound;
+import com.example.chat.model.Message;
+import com.example.chat.model.User;
+import com.example.chat.repository.MessageRepository;
+import com.example.chat.search.MessageSearchIndex;
+import com.example.chat.search.Tokenizer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Searches the direct messages a user sent or received. Every term of the query must occur in a
+ * message; results are newest first. The ids come from {@link MessageSearchIndex}, only the messages
+ * of the page are loaded from the database.
+ */
+@RequiredArgsConstructor
+@Service
+public class MessageSearchService {
+    private final MessageSearchIndex messageSearchIndex;
+    private final MessageRepository messageRepository;
+    private final UserService userService;
+    private final SearchProperties properties;
+
+    public SearchResultDTO search(String userName, String query, Long beforeId, int limit) {
+        User user = userService.getUserByUserName(userName);
+        if (user == null) {
+            throw new BusinessNotFound("Not a registered user!");
+        }
+        Set<String> terms = Tokenizer.tokenize(query);
+        if (terms.isEmpty()) {
+            throw new IllegalArgumentException("The query has no searchable terms!");
+        }
+        if (terms.size() > properties.maxQueryTerms()) {
+            throw new IllegalArgumentException("At most " + properties.maxQueryTerms()
+                    + " terms can be searched at once!");
+        }
+        List<Long> ids = messageSearchIndex.search(user.getId(), terms,
+                beforeId == null ? Long.MAX_VALUE : beforeId, limit);
+        Map<Long, Message> byId = new HashMap<>();
+        for (Message message : messageRepository.getByIds(ids)) {
+            byId.put(message.getId(), message);
+        }
+        List<HistoryMessageDTO> results = new ArrayList<>(ids.size());
+        for (long id : ids) {
+            Message message = byId.get(id);
+            // Deleted since it was indexed
+            if (message == null) {
+                continue;
+            }
+            long senderId = message.getSender().getId();
+            long receiverId = message.getReceiver().getId();
+            if (senderId != user.getId() && receiverId != user.getId()) {
+                continue;
+            }
+            results.add(new HistoryMessageDTO(message.getId(), userNameOf(senderId, user),
+                    userNameOf(receiverId, user), message.getContent(), message.getStatus(),
+                    message.getTimestamp(), message.getContentId(), message.getAttachmentId()));
+        }
+        return new SearchResultDTO(results, ids.size() < limit ? null : ids.get(ids.size() - 1));
+    }
+
+    private String userNameOf(long id, User user) {
+        if (id == user.getId()) {
+            return user.getUserName();
+        }
+        User other = userService.getById(id);
+        return other == null ? null : other.getUserName();
+    }
+}
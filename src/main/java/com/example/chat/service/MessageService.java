@@ -1,9 +1,14 @@
 package com.example.chat.service;
 
 import com.example.chat.enumeration.MessageStatus;
+import com.example.chat.errorHandling.BusinessNotFound;
 import com.example.chat.model.Message;
 import com.example.chat.model.User;
-import com.example.chat.dto.ChatDTO;
+import com.example.chat.dto.AckRangeDTO;
+import com.example.chat.dto.HistoryMessageDTO;
+import com.example.chat.dto.HistoryPageDTO;
+import com.example.chat.dto.MessageBody;
+import com.example.chat.dto.NewMessageDTO;
 import com.example.chat.repository.MessageRepository;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
@@ -11,33 +16,178 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @RequiredArgsConstructor
 @Service
 public class MessageService {
     private final MessageRepository messageRepository;
     private final UserService userService;
+    private final MessagePersistenceService messagePersistenceService;
+    private final MessageIdAllocator messageIdAllocator;
 
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
+    private static final Comparator<Message> BY_ID = Comparator.comparingLong(Message::getId);
+    private static final Comparator<Message> NEWEST_FIRST = Comparator.comparing(Message::getTimestamp)
+            .thenComparingLong(Message::getId).reversed();
 
-    public void create(ChatDTO chatDTO, String fromUser, MessageStatus status, LocalDateTime timestamp) {
+    /**
+     * @return the id for a new message, to be pushed with it before it is created
+     */
+    public long allocateId() {
+        return messageIdAllocator.nextId();
+    }
+
+    /**
+     * @param messageId from {@link #allocateId()}
+     */
+    public void create(long messageId, String toUser, MessageBody messageBody, String fromUser,
+                       MessageStatus status, LocalDateTime timestamp) {
+        User sender = userService.getUserByUserName(fromUser);
+        User receiver = userService.getUserByUserName(toUser);
+        // time_stamp is stored in whole seconds, a buffered copy must sort the same as the row
+        LocalDateTime storedTimestamp = timestamp.truncatedTo(ChronoUnit.SECONDS);
+        messagePersistenceService.save(new NewMessageDTO(messageId, messageBody.content(), sender.getId(), receiver.getId(),
+                status, storedTimestamp, messageBody.contentId(), messageBody.attachmentId(),
+                messageBody.clientMessageId(), status == MessageStatus.PENDING ? null : storedTimestamp));
+    }
+
+    /**
+     * @return the status of the message the sender already sent with the client message id, including one
+     * still buffered for write-behind, or null if there is none
+     */
+    public MessageStatus getStatusByClientMessageId(String fromUser, String clientMessageId) {
         User sender = userService.getUserByUserName(fromUser);
-        User receiver = userService.getUserByUserName(chatDTO.userName());
-        messageRepository.save(chatDTO.messageContent(), sender.getId(), receiver.getId(), status, timestamp);
+        List<NewMessageDTO> buffered = messagePersistenceService.getBuffered(message ->
+                message.senderId() == sender.getId() && clientMessageId.equals(message.clientMessageId()));
+        if (!buffered.isEmpty()) {
+            return buffered.get(0).status();
+        }
+        return messageRepository.getStatusByClientMessageId(sender.getId(), clientMessageId);
     }
 
-    public List<Message> getAllPendingTo(String userName) {
-            User user = userService.getUserByUserName(userName);
-            if (user == null) {
-                logger.error("Error: userName: {} not found!", userName);
-                return new ArrayList<>();
-            }
-            return messageRepository.getAllPendingByReceiverId(user.getId());
+    /**
+     * One chunk of the pending messages of a receiver, see {@link MessageRepository#getPendingChunk},
+     * including messages still buffered for write-behind.
+     */
+    public List<Message> getPendingChunk(long receiverId, long afterId, int limit) {
+        List<NewMessageDTO> buffered = messagePersistenceService.getBuffered(message -> message.id() != null
+                && message.receiverId() == receiverId && message.status() == MessageStatus.PENDING
+                && message.id() > afterId);
+        return merge(messageRepository.getPendingChunk(receiverId, afterId, limit), buffered, BY_ID, limit);
+    }
+
+    /**
+     * @return the messages pushed to the user since the given time, whatever their id, including messages
+     * still buffered for write-behind
+     */
+    public List<Message> getPushedSince(String userName, LocalDateTime since, int limit) {
+        User user = userService.getUserByUserName(userName);
+        if (user == null) {
+            logger.error("Error: userName: {} not found!", userName);
+            return new ArrayList<>();
+        }
+        List<NewMessageDTO> buffered = messagePersistenceService.getBuffered(message -> message.id() != null
+                && message.receiverId() == user.getId() && message.status() != MessageStatus.PENDING
+                && message.statusChangedAt() != null && !message.statusChangedAt().isBefore(since));
+        return merge(messageRepository.getPushedSince(user.getId(), since, limit), buffered, BY_ID, limit);
+    }
+
+    public HistoryPageDTO getConversation(String userName, String otherUserName, LocalDateTime beforeTimestamp,
+                                          Long beforeId, int limit) {
+        User user = userService.getUserByUserName(userName);
+        User otherUser = userService.getUserByUserName(otherUserName);
+        if (user == null || otherUser == null) {
+            throw new BusinessNotFound("Not a registered user!");
+        }
+        long beforeMessageId = beforeId == null ? Long.MAX_VALUE : beforeId;
+        List<NewMessageDTO> buffered = messagePersistenceService.getBuffered(message -> message.id() != null
+                && (message.senderId() == user.getId() && message.receiverId() == otherUser.getId()
+                || message.senderId() == otherUser.getId() && message.receiverId() == user.getId())
+                && (beforeTimestamp == null || message.timestamp().isBefore(beforeTimestamp)
+                || message.timestamp().isEqual(beforeTimestamp) && message.id() < beforeMessageId));
+        List<Message> messages = merge(messageRepository.getConversationPage(user.getId(), otherUser.getId(),
+                beforeTimestamp, beforeId, limit), buffered, NEWEST_FIRST, limit);
+        List<HistoryMessageDTO> history = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            boolean sentByUser = message.getSender().getId() == user.getId();
+            history.add(new HistoryMessageDTO(message.getId(),
+                    sentByUser ? user.getUserName() : otherUser.getUserName(),
+                    sentByUser ? otherUser.getUserName() : user.getUserName(),
+                    message.getContent(), message.getStatus(), message.getTimestamp(), message.getContentId(),
+                    message.getAttachmentId()));
+        }
+        if (messages.size() < limit) {
+            return new HistoryPageDTO(history, null, null);
+        }
+        Message last = messages.get(messages.size() - 1);
+        return new HistoryPageDTO(history, last.getTimestamp(), last.getId());
     }
 
     public void updateMessage(long messageId, MessageStatus status, LocalDateTime timestamp) {
         messageRepository.updateMessageById(messageId, status.toString(), timestamp);
     }
+
+    public void updateMessages(List<Long> messageIds, MessageStatus status, LocalDateTime timestamp) {
+        if (messageIds.isEmpty()) {
+            return;
+        }
+        messagePersistenceService.updatePending(messageIds, status, timestamp);
+    }
+
+    /**
+     * Applies acknowledged id ranges, including messages still buffered for write-behind, which the
+     * range of a live message can refer to.
+     */
+    public void acknowledge(MessageStatus status, List<AckRangeDTO> ranges) {
+        if (ranges.isEmpty()) {
+            return;
+        }
+        messagePersistenceService.acknowledge(status, ranges, LocalDateTime.now());
+    }
+
+    /**
+     * @param buffered read before stored, a message written in between is in both and the row is kept
+     * @return the first limit messages of both in order
+     */
+    private static List<Message> merge(List<Message> stored, List<NewMessageDTO> buffered,
+                                       Comparator<Message> order, int limit) {
+        if (buffered.isEmpty()) {
+            return stored;
+        }
+        Map<Long, Message> messages = new LinkedHashMap<>();
+        for (NewMessageDTO message : buffered) {
+            messages.put(message.id(), toMessage(message));
+        }
+        for (Message message : stored) {
+            messages.put(message.getId(), message);
+        }
+        List<Message> merged = new ArrayList<>(messages.values());
+        merged.sort(order);
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    private static Message toMessage(NewMessageDTO newMessage) {
+        Message message = new Message();
+        message.setId(newMessage.id());
+        message.setContent(newMessage.content());
+        message.setSender(userReference(newMessage.senderId()));
+        message.setReceiver(userReference(newMessage.receiverId()));
+        message.setStatus(newMessage.status());
+        message.setTimestamp(newMessage.timestamp());
+        message.setContentId(newMessage.contentId());
+        message.setAttachmentId(newMessage.attachmentId());
+        return message;
+    }
+
+    private static User userReference(long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
 }
\ No newline at end of file
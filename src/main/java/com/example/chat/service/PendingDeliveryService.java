@@ -0,0 +1,255 @@
+package com.example.chat.service;
+
+import com.example.chat.config.PendingDeliveryProperties;
+import com.example.chat.delivery.EventLogService;
+import com.example.chat.delivery.SseDeliveryService;
+import com.example.chat.dto.UserDTO;
+import com.example.chat.enumeration.MessageStatus;
+import com.example.chat.events.ChatEvent;
+import com.example.chat.events.RoomEvent;
+import com.example.chat.metrics.MessageMetrics;
+import com.example.chat.model.Message;
+import com.example.chat.model.RoomMessage;
+import com.example.chat.model.User;
+import com.example.chat.repository.RoomRepository;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Delivers the messages stored while a user was offline, off the login thread. The backlog is read
+ * in keyset chunks, so only one chunk is ever in memory. When the connection's queue is full the
+ * delivery is parked, without holding a thread, until the queue has drained, so a large backlog is
+ * paced by the client instead of overflowing the queue; a user who keeps reading yields the thread to
+ * other logins after every time slice. Pushed messages are marked SENT before the delivery parks or
+ * moves on to the next chunk; if the connection drops, or the queue does not drain within the send
+ * timeout, the rest stays PENDING and the next login resumes from there.
+ */
+@Service
+public class PendingDeliveryService {
+    private static final Logger logger = LoggerFactory.getLogger(PendingDeliveryService.class);
+
+    private final MessageService messageService;
+    private final RoomRepository roomRepository;
+    private final UserService userService;
+    private final EventLogService eventLogService;
+    private final SseDeliveryService sseDeliveryService;
+    private final MessageMetrics messageMetrics;
+    private final PendingDeliveryProperties properties;
+    private final ScheduledExecutorService executor;
+    // The newest connection per user whose backlog is being delivered
+    private final ConcurrentHashMap<String, UserDTO> latestConnections = new ConcurrentHashMap<>();
+
+    private enum ChunkOutcome {
+        MORE, END, QUEUE_FULL, CLOSED
+    }
+
+    public PendingDeliveryService(MessageService messageService, RoomRepository roomRepository,
+                                  UserService userService, EventLogService eventLogService,
+                                  SseDeliveryService sseDeliveryService, MessageMetrics messageMetrics,
+                                  PendingDeliveryProperties properties) {
+        this.messageService = messageService;
+        this.roomRepository = roomRepository;
+        this.userService = userService;
+        this.eventLogService = eventLogService;
+        this.sseDeliveryService = sseDeliveryService;
+        this.messageMetrics = messageMetrics;
+        this.properties = properties;
+        this.executor = Executors.newScheduledThreadPool(properties.threads(),
+                new CustomizableThreadFactory("pending-delivery-"));
+    }
+
+    /**
+     * Schedules the delivery of the user's backlog to the connection. If a delivery for the user is
+     * already running, it continues with this connection once done, so one user never has two.
+     */
+    public void deliverAsync(UserDTO userDTO) {
+        if (latestConnections.put(userDTO.userName(), userDTO) == null) {
+            executor.execute(() -> deliver(userDTO));
+        }
+    }
+
+    /**
+     * Delivers on the calling thread until the backlog ends or the delivery parks or yields.
+     */
+    void deliver(UserDTO userDTO) {
+        User user = userService.getUserByUserName(userDTO.userName());
+        if (user == null) {
+            logger.error("Error: userName: {} not found!", userDTO.userName());
+            finish(userDTO);
+            return;
+        }
+        new Delivery(user, userDTO).run();
+    }
+
+    private void finish(UserDTO userDTO) {
+        if (latestConnections.remove(userDTO.userName(), userDTO)) {
+            return;
+        }
+        UserDTO next = latestConnections.get(userDTO.userName());
+        if (next != null) {
+            executor.execute(() -> deliver(next));
+        }
+    }
+
+    /**
+     * The backlog of one connection, direct messages first and then room messages, delivered in slices.
+     */
+    private final class Delivery implements Runnable {
+        private final User user;
+        private final UserDTO userDTO;
+        private final Timer.Sample sample = Timer.start();
+        private boolean rooms;
+        private long afterId;
+        private int delivered;
+
+        private Delivery(User user, UserDTO userDTO) {
+            this.user = user;
+            this.userDTO = userDTO;
+        }
+
+        @Override
+        public void run() {
+            long sliceEnd = System.nanoTime() + properties.timeSlice().toNanos();
+            try {
+                while (true) {
+                    ChunkOutcome outcome = rooms ? deliverRoomChunk() : deliverMessageChunk();
+                    switch (outcome) {
+                        case QUEUE_FULL -> {
+                            park();
+                            return;
+                        }
+                        case CLOSED -> {
+                            logger.warn("Connection of user {} closed, the rest of the backlog stays pending",
+                                    userDTO.userName());
+                            complete();
+                            return;
+                        }
+                        case END -> {
+                            logDelivered();
+                            if (rooms) {
+                                complete();
+                                return;
+                            }
+                            rooms = true;
+                            afterId = 0;
+                            delivered = 0;
+                        }
+                        case MORE -> {
+                        }
+                    }
+                    if (System.nanoTime() - sliceEnd > 0) {
+                        // Other logins get their turn
+                        executor.execute(this);
+                        return;
+                    }
+                }
+            } catch (RuntimeException e) {
+                logger.error("Error: pending delivery to userName: {} failed", userDTO.userName(), e);
+                complete();
+            }
+        }
+
+        private ChunkOutcome deliverMessageChunk() {
+            List<Message> chunk = messageService.getPendingChunk(user.getId(), afterId, properties.chunkSize());
+            List<Long> sentIds = new ArrayList<>(chunk.size());
+            ChunkOutcome outcome = chunk.size() < properties.chunkSize() ? ChunkOutcome.END : ChunkOutcome.MORE;
+            for (Message message : chunk) {
+                if (!sseDeliveryService.hasCapacity(userDTO)) {
+                    outcome = ChunkOutcome.QUEUE_FULL;
+                    break;
+                }
+                User sender = userService.getById(message.getSender().getId());
+                if (!eventLogService.publish(userDTO, new ChatEvent(message.getContent(), userDTO.userName(),
+                        sender == null ? null : sender.getUserName(), message.getId(), message.getContentId(),
+                        message.getAttachmentId()))) {
+                    outcome = ChunkOutcome.CLOSED;
+                    break;
+                }
+                sentIds.add(message.getId());
+                afterId = message.getId();
+            }
+            messageService.updateMessages(sentIds, MessageStatus.SENT, LocalDateTime.now());
+            messageMetrics.getPendingDeliveredCounter().increment(sentIds.size());
+            delivered += sentIds.size();
+            return outcome;
+        }
+
+        private ChunkOutcome deliverRoomChunk() {
+            List<RoomMessage> chunk = roomRepository.getPendingChunk(user.getId(), afterId, properties.chunkSize());
+            List<Long> sentIds = new ArrayList<>(chunk.size());
+            ChunkOutcome outcome = chunk.size() < properties.chunkSize() ? ChunkOutcome.END : ChunkOutcome.MORE;
+            for (RoomMessage message : chunk) {
+                if (!sseDeliveryService.hasCapacity(userDTO)) {
+                    outcome = ChunkOutcome.QUEUE_FULL;
+                    break;
+                }
+                if (!eventLogService.publish(userDTO, new RoomEvent(message.getRoomName(),
+                        message.getSenderUserName(), message.getContent(), message.getId()))) {
+                    outcome = ChunkOutcome.CLOSED;
+                    break;
+                }
+                sentIds.add(message.getId());
+                afterId = message.getId();
+            }
+            roomRepository.updateDeliveries(user.getId(), sentIds, MessageStatus.SENT, LocalDateTime.now());
+            messageMetrics.getPendingDeliveredCounter().increment(sentIds.size());
+            delivered += sentIds.size();
+            return outcome;
+        }
+
+        /**
+         * Resumes on the executor once the queue has drained, or gives up after the send timeout.
+         */
+        private void park() {
+            AtomicBoolean resumed = new AtomicBoolean();
+            ScheduledFuture<?> timeout = executor.schedule(() -> {
+                if (resumed.compareAndSet(false, true)) {
+                    logger.warn("Connection of user {} stopped reading, the rest of the backlog stays pending",
+                            userDTO.userName());
+                    complete();
+                }
+            }, properties.sendTimeout().toNanos(), TimeUnit.NANOSECONDS);
+            boolean open = sseDeliveryService.whenWritable(userDTO, () -> {
+                if (resumed.compareAndSet(false, true)) {
+                    timeout.cancel(false);
+                    executor.execute(this);
+                }
+            });
+            if (!open && resumed.compareAndSet(false, true)) {
+                timeout.cancel(false);
+                complete();
+            }
+        }
+
+        private void logDelivered() {
+            if (delivered > 0) {
+                logger.info("Delivered {} pending {} to user {}", delivered, rooms ? "room messages" : "messages",
+                        userDTO.userName());
+            }
+        }
+
+        private void complete() {
+            sample.stop(messageMetrics.getPendingDeliveryTimer());
+            finish(userDTO);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.chat.service;
+
+import com.example.chat.cluster.ClusterRouter;
+import com.example.chat.config.ReceiptProperties;
+import com.example.chat.delivery.EventLogService;
+import com.example.chat.dto.AckRangeDTO;
+import com.example.chat.dto.IdRange;
+import com.example.chat.dto.ReceiptRequest;
+import com.example.chat.enumeration.MessageStatus;
+import com.example.chat.errorHandling.BusinessNotFound;
+import com.example.chat.events.ReceiptEvent;
+import com.example.chat.model.User;
+import com.example.chat.presence.ConnectedUserRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivery and read receipts. Acknowledgements are coalesced in memory per conversation and status;
+ * every flush interval their id ranges are merged, written in one batched UPDATE per status, and the
+ * sender of each conversation is pushed one {@link ReceiptEvent} with the merged ranges. However often
+ * a client acknowledges, a conversation costs at most one statement and one receipt per status and
+ * interval.
+ */
+@Service
+public class ReceiptService {
+    private static final Logger logger = LoggerFactory.getLogger(ReceiptService.class);
+
+    private final UserService userService;
+    private final MessageService messageService;
+    private final ConnectedUserRegistry connectedUserRegistry;
+    private final EventLogService eventLogService;
+    private final ClusterRouter clusterRouter;
+    private final ReceiptProperties properties;
+    private final ConcurrentHashMap<Conversation, List<IdRange>> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    record Conversation(long senderId, String sender, long receiverId, String receiver, MessageStatus status) {
+    }
+
+    public ReceiptService(UserService userService, MessageService messageService,
+                          ConnectedUserRegistry connectedUserRegistry, EventLogService eventLogService,
+                          ClusterRouter clusterRouter, ReceiptProperties properties) {
+        this.userService = userService;
+        this.messageService = messageService;
+        this.connectedUserRegistry = connectedUserRegistry;
+        this.eventLogService = eventLogService;
+        this.clusterRouter = clusterRouter;
+        this.properties = properties;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("receipt-writer-"));
+        long intervalMillis = properties.flushInterval().toMillis();
+        this.flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param userName the receiver of the acknowledged messages
+     */
+    public void acknowledge(String userName, ReceiptRequest receiptRequest) {
+        if (receiptRequest.status() != MessageStatus.DELIVERED && receiptRequest.status() != MessageStatus.READ) {
+            throw new IllegalArgumentException("Only DELIVERED and READ can be acknowledged!");
+        }
+        if (receiptRequest.ranges().size() > properties.maxRanges()) {
+            throw new IllegalArgumentException("At most " + properties.maxRanges()
+                    + " id ranges can be acknowledged at once!");
+        }
+        for (IdRange range : receiptRequest.ranges()) {
+            if (range.toId() == null) {
+                throw new IllegalArgumentException("Id ranges must be closed: " + range.fromId() + "-");
+            }
+            if (range.toId() < range.fromId()) {
+                throw new IllegalArgumentException("Invalid id range: " + range.fromId() + "-" + range.toId());
+            }
+        }
+        User receiver = requireUser(userName);
+        User sender = requireUser(receiptRequest.userName());
+        Conversation conversation = new Conversation(sender.getId(), sender.getUserName(), receiver.getId(),
+                receiver.getUserName(), receiptRequest.status());
+        pending.compute(conversation, (key, ranges) -> {
+            if (ranges == null) {
+                ranges = new ArrayList<>();
+            }
+            ranges.addAll(receiptRequest.ranges());
+            return ranges;
+        });
+    }
+
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Conversation, List<IdRange>> acknowledged = new HashMap<>();
+        for (Conversation conversation : pending.keySet()) {
+            List<IdRange> ranges = pending.remove(conversation);
+            if (ranges != null) {
+                acknowledged.put(conversation, merge(ranges));
+            }
+        }
+        for (MessageStatus status : List.of(MessageStatus.DELIVERED, MessageStatus.READ)) {
+            Map<Conversation, List<IdRange>> batch = new HashMap<>();
+            List<AckRangeDTO> ackRanges = new ArrayList<>();
+            acknowledged.forEach((conversation, ranges) -> {
+                if (conversation.status() != status) {
+                    return;
+                }
+                batch.put(conversation, ranges);
+                for (IdRange range : ranges) {
+                    ackRanges.add(new AckRangeDTO(conversation.senderId(), conversation.receiverId(), range.fromId(),
+                            range.toId()));
+                }
+            });
+            try {
+                messageService.acknowledge(status, ackRanges);
+            } catch (DataAccessException e) {
+                logger.error("Error: writing {} receipts of {} conversations failed, will retry", status,
+                        batch.size(), e);
+                batch.forEach((conversation, ranges) -> pending.merge(conversation, ranges, (queued, failed) -> {
+                    queued.addAll(failed);
+                    return queued;
+                }));
+                continue;
+            }
+            batch.forEach(this::notifySender);
+        }
+    }
+
+    /**
+     * Sorts the ranges and joins those that overlap or touch.
+     */
+    static List<IdRange> merge(List<IdRange> ranges) {
+        List<IdRange> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingLong(IdRange::fromId));
+        List<IdRange> merged = new ArrayList<>();
+        long fromId = sorted.get(0).fromId();
+        long toId = sorted.get(0).toId();
+        for (IdRange range : sorted.subList(1, sorted.size())) {
+            if (range.fromId() <= toId + 1) {
+                toId = Math.max(toId, range.toId());
+            } else {
+                merged.add(new IdRange(fromId, toId));
+                fromId = range.fromId();
+                toId = range.toId();
+            }
+        }
+        merged.add(new IdRange(fromId, toId));
+        return merged;
+    }
+
+    private void notifySender(Conversation conversation, List<IdRange> ranges) {
+        ReceiptEvent receiptEvent = new ReceiptEvent(conversation.receiver(), conversation.status(), ranges);
+        if (connectedUserRegistry.isConnected(conversation.sender())) {
+            eventLogService.publish(conversation.sender(), receiptEvent);
+        }
+        // The sender may also be connected to other nodes of the cluster
+        clusterRouter.forward(conversation.sender(), receiptEvent);
+    }
+
+    private User requireUser(String userName) {
+        User user = userService.getUserByUserName(userName);
+        if (user == null) {
+            throw new BusinessNotFound("Not a registered user!");
+        }
+        return user;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Error: scheduled receipt flush failed", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        flush();
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.chat.service;
+
+import com.example.chat.cluster.ClusterRouter;
+import com.example.chat.config.RoomProperties;
+import com.example.chat.delivery.EventLogService;
+import com.example.chat.dto.RoomMemberDTO;
+import com.example.chat.dto.RoomRequest;
+import com.example.chat.dto.RoomSendResponse;
+import com.example.chat.enumeration.UserStatus;
+import com.example.chat.errorHandling.BusinessNotFound;
+import com.example.chat.events.RoomEvent;
+import com.example.chat.metrics.MessageMetrics;
+import com.example.chat.model.Room;
+import com.example.chat.model.RoomMessage;
+import com.example.chat.model.User;
+import com.example.chat.presence.ConnectedUserRegistry;
+import com.example.chat.repository.RoomRepository;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Group chat rooms. A room message is stored once, with a PENDING delivery row per member, instead of
+ * one message per recipient, before anything is pushed. It is then serialized once with its id and
+ * pushed to the online members in partitions that run in parallel on the fan-out pool, and forwarded
+ * with one call per other cluster node; the members it reached are marked SENT in one update, the others
+ * stay PENDING and are notified by email in one batch.
+ */
+@Service
+public class RoomService {
+    private static final Logger logger = LoggerFactory.getLogger(RoomService.class);
+
+    private final RoomRepository roomRepository;
+    private final UserService userService;
+    private final EmailOutboxService emailOutboxService;
+    private final ConnectedUserRegistry connectedUserRegistry;
+    private final EventLogService eventLogService;
+    private final ClusterRouter clusterRouter;
+    private final MessageMetrics messageMetrics;
+    private final RoomProperties properties;
+    private final ExecutorService fanOut;
+
+    public RoomService(RoomRepository roomRepository, UserService userService,
+                       EmailOutboxService emailOutboxService, ConnectedUserRegistry connectedUserRegistry,
+                       EventLogService eventLogService, ClusterRouter clusterRouter, MessageMetrics messageMetrics,
+                       RoomProperties properties) {
+        this.roomRepository = roomRepository;
+        this.userService = userService;
+        this.emailOutboxService = emailOutboxService;
+        this.connectedUserRegistry = connectedUserRegistry;
+        this.eventLogService = eventLogService;
+        this.clusterRouter = clusterRouter;
+        this.messageMetrics = messageMetrics;
+        this.properties = properties;
+        this.fanOut = Executors.newFixedThreadPool(properties.fanOutParallelism(),
+                new CustomizableThreadFactory("room-fan-out-"));
+    }
+
+    public void create(String creator, RoomRequest roomRequest) {
+        if (roomRepository.getByName(roomRequest.name()) != null) {
+            throw new IllegalArgumentException("Room already exists!");
+        }
+        long creatorId = requireUser(creator).getId();
+        Set<Long> memberIds = new LinkedHashSet<>();
+        memberIds.add(creatorId);
+        for (String member : roomRequest.members()) {
+            memberIds.add(requireUser(member).getId());
+        }
+        if (memberIds.size() > properties.maxMembers()) {
+            throw new IllegalArgumentException("A room can have at most " + properties.maxMembers() + " members!");
+        }
+        roomRepository.save(roomRequest.name(), creatorId, LocalDateTime.now(), memberIds);
+        logger.info("Room {} created by {} with {} members", roomRequest.name(), creator, memberIds.size());
+    }
+
+    public void addMember(String userName, String roomName, String newMember) {
+        Room room = requireRoom(roomName);
+        requireMember(room, userName);
+        if (roomRepository.countMembers(room.getId()) >= properties.maxMembers()) {
+            throw new IllegalArgumentException("A room can have at most " + properties.maxMembers() + " members!");
+        }
+        roomRepository.saveMembers(room.getId(), List.of(requireUser(newMember).getId()), LocalDateTime.now());
+    }
+
+    /**
+     * Members can leave a room; only its creator can remove other members.
+     */
+    public void removeMember(String userName, String roomName, String member) {
+        Room room = requireRoom(roomName);
+        User user = requireUser(userName);
+        if (!userName.equals(member) && room.getCreatedBy() != user.getId()) {
+            throw new IllegalArgumentException("Only the creator of the room can remove other members!");
+        }
+        roomRepository.deleteMember(room.getId(), requireUser(member).getId());
+    }
+
+    public RoomSendResponse send(String senderName, String roomName, String content) {
+        Timer.Sample sample = Timer.start();
+        try {
+            Room room = requireRoom(roomName);
+            List<RoomMemberDTO> members = roomRepository.getMembers(room.getId());
+            RoomMemberDTO sender = members.stream()
+                    .filter(member -> member.userName().equals(senderName))
+                    .findFirst()
+                    .orElseThrow(() -> new BusinessNotFound("Not a member of the room!"));
+
+            List<RoomMemberDTO> online = new ArrayList<>(members.size());
+            List<Long> recipients = new ArrayList<>(members.size());
+            List<Long> pending = new ArrayList<>();
+            for (RoomMemberDTO member : members) {
+                if (member == sender) {
+                    continue;
+                }
+                recipients.add(member.userId());
+                // The status column is written behind, members who just connected here may still read OFFLINE
+                if (member.status() == UserStatus.ONLINE || connectedUserRegistry.isConnected(member.userName())) {
+                    online.add(member);
+                } else {
+                    pending.add(member.userId());
+                }
+            }
+
+            // Stored before the fan-out, so no member is pushed a message that failed to store
+            long messageId = roomRepository.saveMessage(room.getId(), sender.userId(), content, LocalDateTime.now(),
+                    recipients);
+            RoomEvent roomEvent = new RoomEvent(roomName, senderName, content, messageId);
+            boolean[] delivered = fanOut(online, roomEvent, eventLogService.serialize(roomEvent));
+            // Members may also be connected to other nodes of the cluster, each gets one call for all of them
+            Set<String> forwardedTo = clusterRouter.forwardAll(online.stream().map(RoomMemberDTO::userName).toList(),
+                    roomEvent);
+            List<Long> deliveredTo = new ArrayList<>(online.size());
+            for (int i = 0; i < delivered.length; i++) {
+                if (delivered[i] || forwardedTo.contains(online.get(i).userName())) {
+                    deliveredTo.add(online.get(i).userId());
+                } else {
+                    pending.add(online.get(i).userId());
+                }
+            }
+
+            roomRepository.markSent(messageId, deliveredTo, LocalDateTime.now());
+            emailOutboxService.enqueueAll(pending, senderName);
+            messageMetrics.getSentCounter().increment(deliveredTo.size());
+            messageMetrics.getStoredCounter().increment(pending.size());
+
+            logger.info("Room message {} to {}: {} delivered, {} pending", messageId, roomName, deliveredTo.size(),
+                    pending.size());
+            return new RoomSendResponse(messageId, deliveredTo.size(), pending.size());
+        } finally {
+            sample.stop(messageMetrics.getRoomSendTimer());
+        }
+    }
+
+    /**
+     * Splits the members into at most one partition per fan-out thread, each at least minPartitionSize
+     * long. The sender's thread pushes the first partition itself, so small rooms never leave it.
+     *
+     * @return per member, whether a connection to this node accepted the event
+     */
+    private boolean[] fanOut(List<RoomMemberDTO> members, RoomEvent roomEvent, byte[] data) {
+        boolean[] delivered = new boolean[members.size()];
+        int partitions = Math.min(properties.fanOutParallelism(),
+                members.size() / Math.max(1, properties.minPartitionSize()));
+        if (partitions <= 1) {
+            deliver(members, 0, members.size(), roomEvent, data, delivered);
+            return delivered;
+        }
+        int partitionSize = (members.size() + partitions - 1) / partitions;
+        List<CompletableFuture<Void>> futures = new ArrayList<>(partitions - 1);
+        for (int from = partitionSize; from < members.size(); from += partitionSize) {
+            int start = from;
+            int end = Math.min(from + partitionSize, members.size());
+            futures.add(CompletableFuture.runAsync(() -> deliver(members, start, end, roomEvent, data, delivered),
+                    fanOut));
+        }
+        deliver(members, 0, partitionSize, roomEvent, data, delivered);
+        // Partitions write disjoint ranges; join makes their writes visible here
+        futures.forEach(CompletableFuture::join);
+        return delivered;
+    }
+
+    private void deliver(List<RoomMemberDTO> members, int from, int to, RoomEvent roomEvent, byte[] data,
+                         boolean[] delivered) {
+        for (int i = from; i < to; i++) {
+            String userName = members.get(i).userName();
+            if (connectedUserRegistry.isConnected(userName)) {
+                delivered[i] = eventLogService.publish(userName, roomEvent, data);
+            }
+        }
+    }
+
+    /**
+     * @return the room messages pushed to the user since the given time, for a reconnect whose gap is no
+     * longer buffered
+     */
+    public List<RoomMessage> getPushedSince(String userName, LocalDateTime since, int limit) {
+        User user = userService.getUserByUserName(userName);
+        if (user == null) {
+            return new ArrayList<>();
+        }
+        return roomRepository.getSentSince(user.getId(), since, limit);
+    }
+
+    private Room requireRoom(String roomName) {
+        Room room = roomRepository.getByName(roomName);
+        if (room == null) {
+            throw new BusinessNotFound("Room not found!");
+        }
+        return room;
+    }
+
+    private void requireMember(Room room, String userName) {
+        if (!roomRepository.isMember(room.getId(), requireUser(userName).getId())) {
+            throw new BusinessNotFound("Not a member of the room!");
+        }
+    }
+
+    private User requireUser(String userName) {
+        User user = userService.getUserByUserName(userName);
+        if (user == null) {
+            throw new BusinessNotFound("Not a registered user!");
+        }
+        return user;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fanOut.shutdown();
+    }
+}
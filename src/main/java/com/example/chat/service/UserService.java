@@ -1,14 +1,16 @@
 package com.example.chat.service;
 
+import com.example.chat.cache.UserCache;
+import com.example.chat.cache.UserNameFilter;
 import com.example.chat.dto.UserRequest;
 import com.example.chat.dto.UserResponse;
 import com.example.chat.enumeration.UserStatus;
 import com.example.chat.model.User;
+import com.example.chat.presence.UserStatusWriter;
 import com.example.chat.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
@@ -16,16 +18,20 @@ import org.springframework.stereotype.Service;
 @Service
 public class UserService {
     private final UserRepository userRepository;
+    private final UserCache userCache;
+    private final UserNameFilter userNameFilter;
+    private final UserStatusWriter userStatusWriter;
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
 
     public User getById(long id) {
+        return userCache.getById(id, this::loadById);
+    }
+
+    private User loadById(long id) {
         User user;
         try {
             user = userRepository.getById(id);
         } catch (Exception e) {
-            if (e instanceof EmptyResultDataAccessException) {
-                return null;
-            }
             logger.error("Error: getById: Userid: {} not found!", id, e);
             throw e;
         }
@@ -34,13 +40,14 @@ public class UserService {
     }
 
     public User getUserByUserName(String userName) {
+        return userCache.getByUserName(userName, this::loadByUserName);
+    }
+
+    private User loadByUserName(String userName) {
         User user;
         try {
             user = userRepository.getByUserName(userName);
         } catch (Exception e) {
-            if (e instanceof EmptyResultDataAccessException) {
-                return null;
-            }
             logger.error("Error: getUserByUserName: userName: {} not found!", userName, e);
             throw e;
         }
@@ -49,7 +56,7 @@ public class UserService {
     }
 
     public UserResponse getUserResponseByUserName(String userName) {
-        User user = userRepository.getByUserName(userName);
+        User user = getUserByUserName(userName);
         if (user == null) {
             UsernameNotFoundException usernameNotFoundException = new UsernameNotFoundException("User with userName: "
                     + userName + " not found!");
@@ -68,21 +75,43 @@ public class UserService {
         logger.info("Request to DB: create new user with userName: {}", userRequest.userName());
         userRepository.save(userRequest.firstName(), userRequest.lastName(), userRequest.email(), userRequest.userName(),
                 userRequest.password(), UserStatus.ONLINE.name());
+        userNameFilter.put(userRequest.userName());
+        userCache.invalidate(userRequest.userName());
     }
 
+    /**
+     * Written behind; the cached user keeps the status it was loaded with, presence is read from the
+     * connection registry.
+     */
     public void updateStatus(String userName, UserStatus status) {
-        userRepository.updateStatusByUserName(userName, status.name());
+        userStatusWriter.record(userName, status);
+    }
+
+    public void delete(long id) {
+        logger.info("Request to DB: delete user with id: {}", id);
+        userRepository.delete(id);
+        userCache.invalidate(id);
     }
 
 
     public boolean existsById(long id) {
-            User user = getById(id);
-            return user != null;
+        return userCache.containsId(id) || userRepository.existsById(id);
     }
 
+    /**
+     * Answered by the cache, or by a query that reads no row. The user name filter is not consulted, its
+     * negatives can be stale for a name just registered on another node.
+     */
     public boolean existsByUserName(String userName) {
-            User user = getUserByUserName(userName);
-            return user != null;
+        return userCache.containsUserName(userName) || userRepository.existsByUserName(userName);
+    }
+
+    /**
+     * Trusts a negative of the {@link UserNameFilter}; a name registered on another node since its last
+     * refresh then fails on the unique key when the user is inserted.
+     */
+    public boolean isUserNameAvailable(String userName) {
+        return !userNameFilter.mightExist(userName) || !existsByUserName(userName);
     }
 
 }
\ No newline at end of file
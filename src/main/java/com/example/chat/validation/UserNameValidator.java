@@ -1,6 +1,5 @@
 package com.example.chat.validation;
 
-import com.example.chat.model.User;
 import com.example.chat.service.UserService;
 import jakarta.validation.ConstraintValidator;
 import jakarta.validation.ConstraintValidatorContext;
@@ -12,8 +11,7 @@ public class UserNameValidator implements ConstraintValidator<UniqueUserName, St
 
     @Override
     public boolean isValid(String s, ConstraintValidatorContext constraintValidatorContext) {
-        User user =  useruserService.getUserByUserName(s);
-        return user == null;
+        return useruserService.isUserNameAvailable(s);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,3 @@
+-- message.time_stamp stays the time the message was sent, status updates set status_changed_at instead
+
+ALTER TABLE message ADD COLUMN status_changed_at datetime DEFAULT NULL;
@@ -0,0 +1,9 @@
+-- academy_chat.message_id_sequence definition, message ids are reserved in blocks before the message is written
+
+CREATE TABLE IF NOT EXISTS message_id_sequence (
+  id int NOT NULL,
+  next_id bigint NOT NULL,
+  PRIMARY KEY (id)
+);
+
+INSERT INTO message_id_sequence (id, next_id) SELECT 1, COALESCE(MAX(id), 0) + 1 FROM message;
@@ -0,0 +1,4 @@
+-- The pending-messages gauge counts by status every refresh; without this index that is a full table scan.
+-- Each status change of a message also moves its entry in this index.
+
+CREATE INDEX message_status_idx ON message (status);
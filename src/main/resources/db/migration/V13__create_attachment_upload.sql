@@ -0,0 +1,8 @@
+-- academy_chat.attachment_upload definition, who uploaded an attachment; a file uploaded by several users is stored once
+
+CREATE TABLE IF NOT EXISTS attachment_upload (
+  attachment_id char(64) NOT NULL,
+  user_id bigint NOT NULL,
+  uploaded_at datetime NOT NULL,
+  PRIMARY KEY (attachment_id, user_id)
+);
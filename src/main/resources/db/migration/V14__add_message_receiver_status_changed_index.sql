@@ -0,0 +1,3 @@
+-- A reconnect whose gap left the replay buffer loads the messages pushed to the user since its last event
+
+CREATE INDEX message_receiver_status_changed_idx ON message (receiver_id, status_changed_at);
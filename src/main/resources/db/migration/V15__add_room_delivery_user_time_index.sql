@@ -0,0 +1,3 @@
+-- A reconnect whose gap left the replay buffer loads the room messages pushed to the member since its last event
+
+CREATE INDEX room_delivery_user_time_idx ON room_delivery (user_id, time_stamp);
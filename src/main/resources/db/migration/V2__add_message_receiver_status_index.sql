@@ -0,0 +1,3 @@
+-- Pending messages are looked up by receiver and status on every login
+
+CREATE INDEX message_receiver_status_idx ON message (receiver_id, status);
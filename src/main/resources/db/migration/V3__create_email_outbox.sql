@@ -0,0 +1,14 @@
+-- academy_chat.email_outbox definition
+
+CREATE TABLE IF NOT EXISTS email_outbox (
+  id bigint NOT NULL AUTO_INCREMENT,
+  recipient_id bigint NOT NULL,
+  sender_user_name varchar(100) NOT NULL,
+  status varchar(100) NOT NULL,
+  attempts int NOT NULL DEFAULT 0,
+  created_at datetime NOT NULL,
+  next_attempt_at datetime NOT NULL,
+  PRIMARY KEY (id),
+  KEY email_outbox_status_next_attempt_idx (status, next_attempt_at),
+  KEY email_outbox_recipient_status_idx (recipient_id, status)
+);
@@ -0,0 +1,3 @@
+-- Conversation history is paged by (time_stamp, id) within one sender/receiver direction
+
+CREATE INDEX message_conversation_idx ON message (sender_id, receiver_id, time_stamp, id);
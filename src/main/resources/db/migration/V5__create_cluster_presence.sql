@@ -0,0 +1,18 @@
+-- academy_chat.cluster_node definition
+
+CREATE TABLE IF NOT EXISTS cluster_node (
+  node_id varchar(100) NOT NULL,
+  node_url varchar(255) NOT NULL,
+  heartbeat_at datetime NOT NULL,
+  PRIMARY KEY (node_id)
+);
+
+-- academy_chat.user_presence definition
+
+CREATE TABLE IF NOT EXISTS user_presence (
+  user_name varchar(100) NOT NULL,
+  node_id varchar(100) NOT NULL,
+  connected_at datetime NOT NULL,
+  PRIMARY KEY (user_name, node_id),
+  KEY user_presence_node_idx (node_id)
+);
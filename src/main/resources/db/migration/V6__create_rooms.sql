@@ -0,0 +1,43 @@
+-- academy_chat.room definition
+
+CREATE TABLE IF NOT EXISTS room (
+  id bigint NOT NULL AUTO_INCREMENT,
+  name varchar(100) NOT NULL,
+  created_by bigint NOT NULL,
+  created_at datetime NOT NULL,
+  PRIMARY KEY (id),
+  UNIQUE KEY room_name_unique (name)
+);
+
+-- academy_chat.room_member definition
+
+CREATE TABLE IF NOT EXISTS room_member (
+  room_id bigint NOT NULL,
+  user_id bigint NOT NULL,
+  joined_at datetime NOT NULL,
+  PRIMARY KEY (room_id, user_id),
+  KEY room_member_user_idx (user_id)
+);
+
+-- academy_chat.room_message definition, one row per message whatever the size of the room
+
+CREATE TABLE IF NOT EXISTS room_message (
+  id bigint NOT NULL AUTO_INCREMENT,
+  room_id bigint NOT NULL,
+  sender_id bigint NOT NULL,
+  content varchar(255) NOT NULL,
+  time_stamp datetime NOT NULL,
+  PRIMARY KEY (id),
+  KEY room_message_room_idx (room_id, time_stamp, id)
+);
+
+-- academy_chat.room_delivery definition, the delivery state of a room message per member
+
+CREATE TABLE IF NOT EXISTS room_delivery (
+  room_message_id bigint NOT NULL,
+  user_id bigint NOT NULL,
+  status varchar(100) NOT NULL,
+  time_stamp datetime DEFAULT NULL,
+  PRIMARY KEY (room_message_id, user_id),
+  KEY room_delivery_user_status_idx (user_id, status, room_message_id)
+);
@@ -0,0 +1,16 @@
+-- academy_chat.message_content definition, the compressed content of messages too long for message.content
+-- keyed by the SHA-256 of the content, so a message sent many times is stored once
+
+CREATE TABLE IF NOT EXISTS message_content (
+  id char(64) NOT NULL,
+  original_size int NOT NULL,
+  data mediumblob NOT NULL,
+  created_at datetime NOT NULL,
+  PRIMARY KEY (id)
+);
+
+-- message.content keeps a preview of such messages, content_id refers to the full content
+
+ALTER TABLE message ADD COLUMN content_id char(64) DEFAULT NULL;
+
+CREATE INDEX message_content_idx ON message (content_id);
@@ -0,0 +1,15 @@
+-- academy_chat.attachment definition, files kept in the local attachment store under the SHA-256 of their bytes
+
+CREATE TABLE IF NOT EXISTS attachment (
+  id char(64) NOT NULL,
+  size bigint NOT NULL,
+  content_type varchar(100) NOT NULL,
+  created_at datetime NOT NULL,
+  PRIMARY KEY (id)
+);
+
+-- message.attachment_id refers to the file sent with a message
+
+ALTER TABLE message ADD COLUMN attachment_id char(64) DEFAULT NULL;
+
+CREATE INDEX message_attachment_idx ON message (attachment_id);
@@ -0,0 +1,5 @@
+-- message.client_message_id is the id a client gave a message, a retried send is not stored twice
+
+ALTER TABLE message ADD COLUMN client_message_id varchar(64) DEFAULT NULL;
+
+CREATE UNIQUE INDEX message_client_message_idx ON message (sender_id, client_message_id);
@@ -22,7 +22,136 @@ CREATE TABLE message (
   receiver_id bigint NOT NULL,
   status varchar(100) NOT NULL,
   time_stamp datetime DEFAULT NULL,
+  content_id char(64) DEFAULT NULL,
+  attachment_id char(64) DEFAULT NULL,
+  client_message_id varchar(64) DEFAULT NULL,
+  status_changed_at datetime DEFAULT NULL,
   PRIMARY KEY (id),
   KEY message_user_FK (sender_id),
-  KEY message_user_FK_1 (receiver_id)
-)
\ No newline at end of file
+  KEY message_user_FK_1 (receiver_id),
+  KEY message_receiver_status_idx (receiver_id, status),
+  KEY message_conversation_idx (sender_id, receiver_id, time_stamp, id),
+  KEY message_content_idx (content_id),
+  KEY message_attachment_idx (attachment_id),
+  KEY message_status_idx (status),
+  KEY message_receiver_status_changed_idx (receiver_id, status_changed_at),
+  UNIQUE KEY message_client_message_idx (sender_id, client_message_id)
+)
+
+-- academy_chat.message_id_sequence definition, message ids are reserved in blocks before the message is written
+
+CREATE TABLE message_id_sequence (
+  id int NOT NULL,
+  next_id bigint NOT NULL,
+  PRIMARY KEY (id)
+)
+
+INSERT INTO message_id_sequence (id, next_id) VALUES (1, 1)
+
+-- academy_chat.message_content definition, the compressed content of messages too long for message.content
+
+CREATE TABLE message_content (
+  id char(64) NOT NULL,
+  original_size int NOT NULL,
+  data mediumblob NOT NULL,
+  created_at datetime NOT NULL,
+  PRIMARY KEY (id)
+)
+
+-- academy_chat.attachment definition, files kept in the local attachment store under the SHA-256 of their bytes
+
+CREATE TABLE attachment (
+  id char(64) NOT NULL,
+  size bigint NOT NULL,
+  content_type varchar(100) NOT NULL,
+  created_at datetime NOT NULL,
+  PRIMARY KEY (id)
+)
+
+-- academy_chat.attachment_upload definition, who uploaded an attachment; a file uploaded by several users is stored once
+
+CREATE TABLE attachment_upload (
+  attachment_id char(64) NOT NULL,
+  user_id bigint NOT NULL,
+  uploaded_at datetime NOT NULL,
+  PRIMARY KEY (attachment_id, user_id)
+)
+
+-- academy_chat.email_outbox definition
+
+CREATE TABLE email_outbox (
+  id bigint NOT NULL AUTO_INCREMENT,
+  recipient_id bigint NOT NULL,
+  sender_user_name varchar(100) NOT NULL,
+  status varchar(100) NOT NULL,
+  attempts int NOT NULL DEFAULT 0,
+  created_at datetime NOT NULL,
+  next_attempt_at datetime NOT NULL,
+  PRIMARY KEY (id),
+  KEY email_outbox_status_next_attempt_idx (status, next_attempt_at),
+  KEY email_outbox_recipient_status_idx (recipient_id, status)
+)
+
+-- academy_chat.cluster_node definition
+
+CREATE TABLE cluster_node (
+  node_id varchar(100) NOT NULL,
+  node_url varchar(255) NOT NULL,
+  heartbeat_at datetime NOT NULL,
+  PRIMARY KEY (node_id)
+)
+
+-- academy_chat.user_presence definition
+
+CREATE TABLE user_presence (
+  user_name varchar(100) NOT NULL,
+  node_id varchar(100) NOT NULL,
+  connected_at datetime NOT NULL,
+  PRIMARY KEY (user_name, node_id),
+  KEY user_presence_node_idx (node_id)
+)
+
+-- academy_chat.room definition
+
+CREATE TABLE room (
+  id bigint NOT NULL AUTO_INCREMENT,
+  name varchar(100) NOT NULL,
+  created_by bigint NOT NULL,
+  created_at datetime NOT NULL,
+  PRIMARY KEY (id),
+  UNIQUE KEY room_name_unique (name)
+)
+
+-- academy_chat.room_member definition
+
+CREATE TABLE room_member (
+  room_id bigint NOT NULL,
+  user_id bigint NOT NULL,
+  joined_at datetime NOT NULL,
+  PRIMARY KEY (room_id, user_id),
+  KEY room_member_user_idx (user_id)
+)
+
+-- academy_chat.room_message definition, one row per message whatever the size of the room
+
+CREATE TABLE room_message (
+  id bigint NOT NULL AUTO_INCREMENT,
+  room_id bigint NOT NULL,
+  sender_id bigint NOT NULL,
+  content varchar(255) NOT NULL,
+  time_stamp datetime NOT NULL,
+  PRIMARY KEY (id),
+  KEY room_message_room_idx (room_id, time_stamp, id)
+)
+
+-- academy_chat.room_delivery definition, the delivery state of a room message per member
+
+CREATE TABLE room_delivery (
+  room_message_id bigint NOT NULL,
+  user_id bigint NOT NULL,
+  status varchar(100) NOT NULL,
+  time_stamp datetime DEFAULT NULL,
+  PRIMARY KEY (room_message_id, user_id),
+  KEY room_delivery_user_status_idx (user_id, status, room_message_id),
+  KEY room_delivery_user_time_idx (user_id, time_stamp)
+)
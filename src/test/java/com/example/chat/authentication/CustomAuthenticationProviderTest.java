@@ -0,0 +1,70 @@
+package com.example.chat.authentication;
+
+import com.example.chat.config.CredentialCacheProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomAuthenticationProviderTest {
+    private static final String ENCODED_PASSWORD = "$2a$10$u4eU9d.OFQTlJdYum1tykunFmy.rKdA565cwr/t0tfHAUf/of/jt2";
+
+    UserDetailsService userDetailsService;
+    PasswordEncoder passwordEncoder;
+    VerifiedCredentialCache verifiedCredentialCache;
+    CustomAuthenticationProvider authenticationProvider;
+
+    @BeforeEach
+    void setUp() {
+        userDetailsService = Mockito.mock(UserDetailsService.class);
+        passwordEncoder = Mockito.mock(PasswordEncoder.class);
+        verifiedCredentialCache = new VerifiedCredentialCache(new CredentialCacheProperties(100, Duration.ofMinutes(15)));
+        authenticationProvider = new CustomAuthenticationProvider(userDetailsService, passwordEncoder,
+                verifiedCredentialCache);
+        Mockito.when(userDetailsService.loadUserByUsername("Kate"))
+                .thenReturn(new User("Kate", ENCODED_PASSWORD, new ArrayList<>()));
+        Mockito.when(passwordEncoder.matches("password", ENCODED_PASSWORD)).thenReturn(true);
+    }
+
+    @Test
+    void givenRepeatedRequests_whenAuthenticating_thenPasswordEncoderRunsOnce() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(authenticationProvider.authenticate(
+                    new UsernamePasswordAuthenticationToken("Kate", "password")).isAuthenticated());
+        }
+        Mockito.verify(passwordEncoder, Mockito.times(1)).matches("password", ENCODED_PASSWORD);
+    }
+
+    @Test
+    void givenVerifiedCredentials_whenWrongPassword_thenBadCredentials() {
+        authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("Kate", "password"));
+        assertThrows(BadCredentialsException.class, () -> authenticationProvider.authenticate(
+                new UsernamePasswordAuthenticationToken("Kate", "password1")));
+    }
+
+    @Test
+    void givenRevokedCredentials_whenAuthenticating_thenPasswordEncoderRunsAgain() {
+        authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("Kate", "password"));
+        verifiedCredentialCache.revoke("Kate");
+        authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("Kate", "password"));
+        Mockito.verify(passwordEncoder, Mockito.times(2)).matches("password", ENCODED_PASSWORD);
+    }
+
+    @Test
+    void givenChangedPasswordHash_whenAuthenticating_thenCachedCredentialsNotUsed() {
+        authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("Kate", "password"));
+        Mockito.when(userDetailsService.loadUserByUsername("Kate"))
+                .thenReturn(new User("Kate", "$2a$10$changed", new ArrayList<>()));
+        assertThrows(BadCredentialsException.class, () -> authenticationProvider.authenticate(
+                new UsernamePasswordAuthenticationToken("Kate", "password")));
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.chat.cache;
+
+import com.example.chat.config.MessageDedupProperties;
+import com.example.chat.errorHandling.MessageStoreUnavailable;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageDedupCacheTest {
+    private final MessageDedupCache cache = new MessageDedupCache(
+            new MessageDedupProperties(Duration.ofMinutes(10), 1000, Duration.ofSeconds(1)), new SimpleMeterRegistry());
+
+    @Test
+    void givenSentMessage_whenRetried_thenFirstOutcomeReturnedWithoutSending() {
+        AtomicInteger sends = new AtomicInteger();
+        assertFalse(cache.submit("Kate", "m-1", () -> sends.incrementAndGet() > 1));
+        assertFalse(cache.submit("Kate", "m-1", () -> sends.incrementAndGet() > 1));
+        assertEquals(1, sends.get());
+    }
+
+    @Test
+    void givenSameClientMessageId_whenSentByOtherSender_thenSentAgain() {
+        AtomicInteger sends = new AtomicInteger();
+        cache.submit("Kate", "m-1", () -> sends.incrementAndGet() > 0);
+        cache.submit("John", "m-1", () -> sends.incrementAndGet() > 0);
+        assertEquals(2, sends.get());
+    }
+
+    @Test
+    void givenFailedSend_whenRetried_thenSentAgain() {
+        assertThrows(IllegalStateException.class, () -> cache.submit("Kate", "m-1", () -> {
+            throw new IllegalStateException("Database down");
+        }));
+        assertTrue(cache.submit("Kate", "m-1", () -> true));
+    }
+
+    @Test
+    void givenSendInProgress_whenRetriedConcurrently_thenRetryWaitsForFirstOutcome() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger sends = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> first = executor.submit(() -> cache.submit("Kate", "m-1", () -> {
+                sends.incrementAndGet();
+                sending.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }));
+            assertTrue(sending.await(5, TimeUnit.SECONDS));
+            Future<Boolean> retry = executor.submit(() -> cache.submit("Kate", "m-1", () -> {
+                sends.incrementAndGet();
+                return false;
+            }));
+            release.countDown();
+            assertTrue(first.get(5, TimeUnit.SECONDS));
+            assertTrue(retry.get(5, TimeUnit.SECONDS));
+            assertEquals(1, sends.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void givenSendFailingWithError_whenRetried_thenSentAgain() {
+        assertThrows(AssertionError.class, () -> cache.submit("Kate", "m-1", () -> {
+            throw new AssertionError("Out of memory");
+        }));
+        assertTrue(cache.submit("Kate", "m-1", () -> true));
+    }
+
+    @Test
+    void givenSendStuck_whenRetried_thenRetryGivesUpAfterWaitTimeout() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> cache.submit("Kate", "m-1", () -> {
+                sending.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }));
+            assertTrue(sending.await(5, TimeUnit.SECONDS));
+            assertThrows(MessageStoreUnavailable.class, () -> cache.submit("Kate", "m-1", () -> false));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.chat.cache;
+
+import com.example.chat.config.UserCacheProperties;
+import com.example.chat.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserCacheTest {
+    private final UserCache userCache = new UserCache(new UserCacheProperties(100, Duration.ofMinutes(5)));
+
+    @Test
+    void givenInvalidationDuringLoadById_whenLoaded_thenUserNotCached() {
+        AtomicInteger loads = new AtomicInteger();
+        userCache.getById(7, id -> {
+            loads.incrementAndGet();
+            userCache.invalidate("Kate");
+            return user(id, "Kate");
+        });
+        userCache.getById(7, id -> {
+            loads.incrementAndGet();
+            return user(id, "Kate");
+        });
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void givenInvalidationByIdDuringLoadByName_whenLoaded_thenUserNotCached() {
+        AtomicInteger loads = new AtomicInteger();
+        userCache.getByUserName("Kate", userName -> {
+            loads.incrementAndGet();
+            userCache.invalidate(7L);
+            return user(7, userName);
+        });
+        assertFalse(userCache.containsUserName("Kate"));
+        assertFalse(userCache.containsId(7));
+    }
+
+    @Test
+    void givenNoInvalidation_whenLoadedTwice_thenSecondIsHit() {
+        AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 2; i++) {
+            userCache.getById(7, id -> {
+                loads.incrementAndGet();
+                return user(id, "Kate");
+            });
+        }
+        assertEquals(1, loads.get());
+        assertTrue(userCache.containsUserName("Kate"));
+    }
+
+    private static User user(long id, String userName) {
+        User user = new User();
+        user.setId(id);
+        user.setUserName(userName);
+        return user;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.chat.cluster;
+
+import com.example.chat.config.ClusterProperties;
+import com.example.chat.delivery.EventLogService;
+import com.example.chat.dto.ClusterNodeDTO;
+import com.example.chat.enumeration.ClusterMode;
+import com.example.chat.events.ChatEvent;
+import com.example.chat.repository.ClusterRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HttpClusterRouterTest {
+    private static final String SECRET = "s3cret";
+
+    @Mock
+    ClusterRepository clusterRepository;
+    @Mock
+    EventLogService eventLogService;
+
+    HttpServer nodeB;
+    String nodeBUrl;
+    final AtomicInteger requests = new AtomicInteger();
+    final AtomicReference<String> receivedSecret = new AtomicReference<>();
+    volatile int responseStatus = 200;
+    volatile String responseBody = "{\"deliveredTo\":[\"Kate\"]}";
+
+    @BeforeEach
+    void setUp() throws IOException {
+        nodeB = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        nodeB.createContext(HttpClusterRouter.EVENTS_PATH, exchange -> {
+            requests.incrementAndGet();
+            receivedSecret.set(exchange.getRequestHeaders().getFirst(HttpClusterRouter.SECRET_HEADER));
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = responseBody.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(responseStatus, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        nodeB.start();
+        nodeBUrl = "http://localhost:" + nodeB.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeB.stop(0);
+    }
+
+    private HttpClusterRouter router(String secret) {
+        ClusterProperties properties = new ClusterProperties(ClusterMode.HTTP, "a", "http://localhost:8080", secret,
+                Duration.ofSeconds(5), Duration.ofSeconds(15), Duration.ofSeconds(1));
+        return new HttpClusterRouter(clusterRepository, eventLogService, properties, new ObjectMapper(),
+                RestClient.builder());
+    }
+
+    private HttpClusterRouter routerWithNodeB(LocalDateTime heartbeatAt) {
+        return routerWithNodeB(heartbeatAt, Map.of("Kate", Set.of("b")));
+    }
+
+    private HttpClusterRouter routerWithNodeB(LocalDateTime heartbeatAt, Map<String, Set<String>> presence) {
+        HttpClusterRouter router = router(SECRET);
+        when(clusterRepository.getNodes()).thenReturn(List.of(
+                new ClusterNodeDTO("a", "http://localhost:8080", LocalDateTime.now()),
+                new ClusterNodeDTO("b", nodeBUrl, heartbeatAt)));
+        when(clusterRepository.getPresence(eq("a"), any())).thenReturn(presence);
+        router.heartbeat();
+        return router;
+    }
+
+    @Test
+    void givenNoSecret_whenCreatingRouter_thenRejected() {
+        assertThrows(IllegalStateException.class, () -> router(" "));
+    }
+
+    @Test
+    void givenWrongSecret_whenNodeSendsEvent_thenForbiddenAndNothingPublished() {
+        ClusterController controller = new ClusterController(router(SECRET));
+        ForwardRequest request = new ForwardRequest(List.of("Kate"), "chat", new ObjectMapper().createObjectNode());
+
+        assertEquals(HttpStatus.FORBIDDEN, controller.receive("guess", request).getStatusCode());
+        assertEquals(HttpStatus.FORBIDDEN, controller.receive(null, request).getStatusCode());
+        assertEquals(HttpStatus.FORBIDDEN, controller.receivePresence("guess",
+                new PresenceRequest("Kate", "b", nodeBUrl)).getStatusCode());
+        verifyNoInteractions(eventLogService);
+    }
+
+    @Test
+    void givenUserOnLiveNode_whenForwarding_thenPostedWithSecretWithoutQueryingPresence() {
+        HttpClusterRouter router = routerWithNodeB(LocalDateTime.now());
+
+        assertTrue(router.forward("Kate", new ChatEvent("Hi", "Kate")));
+        assertTrue(router.forward("Kate", new ChatEvent("Hi again", "Kate")));
+        assertEquals(2, requests.get());
+        assertEquals(SECRET, receivedSecret.get());
+        verify(clusterRepository, times(1)).getPresence(eq("a"), any());
+    }
+
+    @Test
+    void givenUsersOnSameNode_whenForwardingToAll_thenOneCallReturnsWhoAccepted() {
+        HttpClusterRouter router = routerWithNodeB(LocalDateTime.now(),
+                Map.of("Kate", Set.of("b"), "Tom", Set.of("b")));
+
+        assertEquals(Set.of("Kate"), router.forwardAll(List.of("Kate", "Tom", "Anna"),
+                new ChatEvent("Hi", "team")));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void givenUserOnStaleNode_whenForwarding_thenNodeIsSkipped() {
+        HttpClusterRouter router = routerWithNodeB(LocalDateTime.now().minusMinutes(1));
+
+        assertFalse(router.forward("Kate", new ChatEvent("Hi", "Kate")));
+        assertEquals(0, requests.get());
+    }
+
+    @Test
+    void givenNodeFails_whenForwarding_thenNotDelivered() {
+        HttpClusterRouter router = routerWithNodeB(LocalDateTime.now());
+        responseStatus = 500;
+
+        assertFalse(router.forward("Kate", new ChatEvent("Hi", "Kate")));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void givenNodeUnreachable_whenForwarding_thenNotDelivered() {
+        HttpClusterRouter router = routerWithNodeB(LocalDateTime.now());
+        nodeB.stop(0);
+
+        assertFalse(router.forward("Kate", new ChatEvent("Hi", "Kate")));
+    }
+
+    @Test
+    void givenUserAnnouncedByOtherNode_whenForwardingBeforeNextHeartbeat_thenForwarded() {
+        HttpClusterRouter router = router(SECRET);
+
+        router.receive(new PresenceRequest("Kate", "b", nodeBUrl));
+
+        assertTrue(router.forward("Kate", new ChatEvent("Hi", "Kate")));
+        assertEquals(1, requests.get());
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.chat.cluster;
+
+import com.example.chat.config.ClusterProperties;
+import com.example.chat.delivery.EventLogService;
+import com.example.chat.events.ChatEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LoopbackClusterRouterTest {
+    @Mock
+    EventLogService nodeAEvents;
+    @Mock
+    EventLogService nodeBEvents;
+
+    LoopbackClusterRouter nodeA;
+    LoopbackClusterRouter nodeB;
+
+    @BeforeEach
+    void setUp() {
+        LoopbackClusterRouter.Network network = new LoopbackClusterRouter.Network();
+        nodeA = new LoopbackClusterRouter(nodeAEvents, "a", network);
+        nodeB = new LoopbackClusterRouter(nodeBEvents, "b", network);
+    }
+
+    @Test
+    void givenUserOnOtherNode_whenForwarding_thenPublishedOnThatNode() {
+        ChatEvent event = new ChatEvent("Hi", "Kate");
+        nodeB.userConnected("Kate");
+        when(nodeBEvents.publish("Kate", event)).thenReturn(true);
+
+        assertTrue(nodeA.forward("Kate", event));
+        verifyNoInteractions(nodeAEvents);
+    }
+
+    @Test
+    void givenUserOnlyOnThisNode_whenForwarding_thenNothingIsForwarded() {
+        nodeA.userConnected("Kate");
+
+        assertFalse(nodeA.forward("Kate", new ChatEvent("Hi", "Kate")));
+        verifyNoInteractions(nodeAEvents, nodeBEvents);
+    }
+
+    @Test
+    void givenUserDisconnectedFromOtherNode_whenForwarding_thenNothingIsForwarded() {
+        nodeB.userConnected("Kate");
+        nodeB.userDisconnected("Kate");
+
+        assertFalse(nodeA.forward("Kate", new ChatEvent("Hi", "Kate")));
+        verifyNoInteractions(nodeBEvents);
+    }
+
+    @Test
+    void givenDefaultClusterMode_whenContextStarts_thenLoopbackRouterIsWired() {
+        new ApplicationContextRunner()
+                .withUserConfiguration(ClusterPropertiesConfiguration.class)
+                .withBean(EventLogService.class, () -> nodeAEvents)
+                .withBean(LoopbackClusterRouter.class)
+                .run(context -> {
+                    assertThat(context).hasNotFailed();
+                    assertThat(context).hasSingleBean(ClusterRouter.class);
+                });
+    }
+
+    @Configuration
+    @EnableConfigurationProperties(ClusterProperties.class)
+    static class ClusterPropertiesConfiguration {
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.chat.controller;
+
+import com.example.chat.dto.AttachmentDTO;
+import com.example.chat.errorHandling.RateLimitExceeded;
+import com.example.chat.ratelimit.SendRateLimiter;
+import com.example.chat.service.AttachmentService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Principal;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttachmentControllerTest {
+    static final String ID = "a".repeat(64);
+
+    AttachmentService attachmentService = Mockito.mock(AttachmentService.class);
+    SendRateLimiter sendRateLimiter = Mockito.mock(SendRateLimiter.class);
+    AttachmentController attachmentController = new AttachmentController(attachmentService, sendRateLimiter);
+    Principal kate = () -> "Kate";
+    @TempDir
+    Path dir;
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path file = Files.writeString(dir.resolve(ID), "0123456789", StandardCharsets.UTF_8);
+        Mockito.when(attachmentService.getAttachment("Kate", ID)).thenReturn(new AttachmentDTO(ID, 10, "text/plain"));
+        Mockito.when(attachmentService.getFile(ID)).thenReturn(file);
+    }
+
+    @Test
+    void givenNoRange_whenDownloading_thenWholeFile() throws Exception {
+        attachmentController.download(kate, ID, request, response);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+    }
+
+    @Test
+    void givenRange_whenDownloading_thenPartialContent() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+        attachmentController.download(kate, ID, request, response);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("2345", response.getContentAsString());
+        assertEquals("bytes 2-5/10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(4, response.getContentLengthLong());
+    }
+
+    @Test
+    void givenRangeOutsideFile_whenDownloading_thenNotSatisfiable() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=20-");
+        attachmentController.download(kate, ID, request, response);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void givenSendfileSupport_whenDownloading_thenFileLeftToTheContainer() throws Exception {
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader(HttpHeaders.RANGE, "bytes=-3");
+        attachmentController.download(kate, ID, request, response);
+
+        assertEquals(206, response.getStatus());
+        assertEquals(7L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(10L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void givenUserOverRate_whenUploading_thenRejectedBeforeReadingTheBody() {
+        Mockito.doThrow(new RateLimitExceeded("Too many messages, slow down!", Duration.ofSeconds(1)))
+                .when(sendRateLimiter).acquire("Kate");
+
+        assertThrows(RateLimitExceeded.class, () -> attachmentController.upload(kate, request));
+        Mockito.verifyNoInteractions(attachmentService);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.chat.delivery;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedTimingWheelTest {
+    HashedTimingWheel wheel;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new HashedTimingWheel("test-wheel-", Duration.ofMillis(10), 4);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        wheel.stop();
+    }
+
+    @Test
+    void givenDelayLongerThanOneRotation_whenScheduling_thenTaskRunsNotBeforeDeadline() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        wheel.schedule(fired::countDown, Duration.ofMillis(150));
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150));
+    }
+
+    @Test
+    void givenCancelledTimeout_whenDeadlinePasses_thenTaskDoesNotRun() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        HashedTimingWheel.Timeout timeout = wheel.schedule(runs::incrementAndGet, Duration.ofMillis(30));
+        timeout.cancel();
+        CountDownLatch later = new CountDownLatch(1);
+        wheel.schedule(later::countDown, Duration.ofMillis(80));
+
+        assertTrue(later.await(2, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+        assertTrue(timeout.isCancelled());
+    }
+
+    @Test
+    void givenTaskReschedulingItself_whenRunning_thenItKeepsFiring() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(3);
+        Runnable[] task = new Runnable[1];
+        task[0] = () -> {
+            fired.countDown();
+            wheel.schedule(task[0], Duration.ofMillis(20));
+        };
+        wheel.schedule(task[0], Duration.ofMillis(20));
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.chat.delivery;
+
+import com.example.chat.dto.UserDTO;
+import com.example.chat.enumeration.SlowConsumerPolicy;
+import com.example.chat.events.ChatEvent;
+import com.example.chat.events.OverflowEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboundQueueTest {
+    private static final int CAPACITY = 3;
+
+    private OutboundQueue queue(SlowConsumerPolicy policy) {
+        return new OutboundQueue(new UserDTO(new SseEmitter(), "Kate"), () -> { }, CAPACITY, policy);
+    }
+
+    private OutboundEvent event(int i) {
+        return new OutboundEvent(String.valueOf(i), new ChatEvent("Hello, test: " + i, "Kate"));
+    }
+
+    @Test
+    void givenFullQueue_whenDropOldest_thenHeadIsDiscarded() {
+        OutboundQueue queue = queue(SlowConsumerPolicy.DROP_OLDEST);
+        for (int i = 1; i <= 4; i++) {
+            assertTrue(queue.offer(event(i)));
+        }
+        assertEquals(CAPACITY, queue.size());
+        assertEquals("2", queue.poll().id());
+    }
+
+    @Test
+    void givenFullQueue_whenCoalesce_thenBacklogIsReplacedByOverflowEvent() {
+        OutboundQueue queue = queue(SlowConsumerPolicy.COALESCE);
+        for (int i = 1; i <= 4; i++) {
+            assertTrue(queue.offer(event(i)));
+        }
+        assertEquals(new OverflowEvent(3), queue.poll().event());
+        assertEquals("4", queue.poll().id());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void givenQueuedHeartbeat_whenCoalesce_thenHeartbeatIsNotCountedAsDropped() {
+        OutboundQueue queue = queue(SlowConsumerPolicy.COALESCE);
+        queue.offer(OutboundEvent.HEARTBEAT);
+        queue.offer(event(1));
+        queue.offer(event(2));
+        queue.offer(event(3));
+        assertEquals(new OverflowEvent(2), queue.poll().event());
+        assertEquals("3", queue.poll().id());
+    }
+
+    @Test
+    void givenBlockedWrite_whenCheckingStall_thenStalledOnlyAfterTimeout() {
+        OutboundQueue queue = queue(SlowConsumerPolicy.DROP_OLDEST);
+        queue.writeStarted();
+        long now = System.nanoTime();
+        assertFalse(queue.isStalled(now, 1_000_000_000L));
+        assertTrue(queue.isStalled(now + 2_000_000_000L, 1_000_000_000L));
+        queue.writeFinished();
+        assertFalse(queue.isStalled(now + 2_000_000_000L, 1_000_000_000L));
+    }
+
+    @Test
+    void givenRepeatedOverflow_whenCoalesce_thenDroppedCountAccumulates() {
+        OutboundQueue queue = queue(SlowConsumerPolicy.COALESCE);
+        for (int i = 1; i <= 6; i++) {
+            queue.offer(event(i));
+        }
+        assertEquals(new OverflowEvent(5), queue.poll().event());
+        assertEquals("6", queue.poll().id());
+    }
+
+    @Test
+    void givenFullQueue_whenDisconnect_thenOfferIsRejected() {
+        OutboundQueue queue = queue(SlowConsumerPolicy.DISCONNECT);
+        for (int i = 1; i <= CAPACITY; i++) {
+            assertTrue(queue.offer(event(i)));
+        }
+        assertFalse(queue.offer(event(4)));
+    }
+
+    @Test
+    void givenClosedQueue_whenOffering_thenRejected() {
+        OutboundQueue queue = queue(SlowConsumerPolicy.DROP_OLDEST);
+        queue.close();
+        assertFalse(queue.offer(event(1)));
+        assertTrue(queue.isClosed());
+    }
+
+    @Test
+    void givenFullQueue_whenWaitingToWrite_thenCalledBackOnceHalfDrained() {
+        OutboundQueue queue = queue(SlowConsumerPolicy.DISCONNECT);
+        AtomicInteger calls = new AtomicInteger();
+        queue.whenWritable(calls::incrementAndGet);
+        assertEquals(1, calls.get());
+        for (int i = 1; i <= CAPACITY; i++) {
+            queue.offer(event(i));
+        }
+        assertFalse(queue.hasCapacity());
+
+        queue.whenWritable(calls::incrementAndGet);
+        queue.poll();
+        assertEquals(1, calls.get());
+        queue.poll();
+        assertEquals(2, calls.get());
+        queue.poll();
+        assertEquals(2, calls.get());
+        assertTrue(queue.offer(event(4)));
+    }
+
+    @Test
+    void givenFullQueue_whenClosedWhileWaitingToWrite_thenCalledBack() {
+        OutboundQueue queue = queue(SlowConsumerPolicy.DISCONNECT);
+        for (int i = 1; i <= CAPACITY; i++) {
+            queue.offer(event(i));
+        }
+        AtomicInteger calls = new AtomicInteger();
+        queue.whenWritable(calls::incrementAndGet);
+        queue.close();
+        assertEquals(1, calls.get());
+    }
+}
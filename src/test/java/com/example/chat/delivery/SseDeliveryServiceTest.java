@@ -0,0 +1,52 @@
+package com.example.chat.delivery;
+
+import com.example.chat.config.DeliveryProperties;
+import com.example.chat.config.HeartbeatProperties;
+import com.example.chat.dto.UserDTO;
+import com.example.chat.enumeration.SlowConsumerPolicy;
+import com.example.chat.events.ChatEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SseDeliveryServiceTest {
+    private final SseDeliveryService service = new SseDeliveryService(
+            new DeliveryProperties(16, 4, 8, SlowConsumerPolicy.DROP_OLDEST),
+            new HeartbeatProperties(Duration.ofMinutes(1), Duration.ofMinutes(1), Duration.ofMillis(100), 64));
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() throws Exception {
+        release.countDown();
+        service.shutdown();
+    }
+
+    @Test
+    void givenStalledConnections_whenSendingToAnother_thenItIsStillDelivered() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            SseEmitter stalled = Mockito.mock(SseEmitter.class);
+            Mockito.doAnswer(invocation -> release.await(10, TimeUnit.SECONDS))
+                    .when(stalled).send(ArgumentMatchers.any(SseEmitter.SseEventBuilder.class));
+            service.open(new UserDTO(stalled, "stalled" + i), () -> { });
+        }
+        CountDownLatch delivered = new CountDownLatch(2);
+        SseEmitter reading = Mockito.mock(SseEmitter.class);
+        Mockito.doAnswer(invocation -> {
+            delivered.countDown();
+            return null;
+        }).when(reading).send(ArgumentMatchers.any(SseEmitter.SseEventBuilder.class));
+        UserDTO kate = new UserDTO(reading, "Kate");
+        service.open(kate, () -> { });
+
+        assertTrue(service.send(kate, new OutboundEvent("1", new ChatEvent("Hello, test", "Kate"))));
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+    }
+}
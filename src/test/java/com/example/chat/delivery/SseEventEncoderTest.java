@@ -0,0 +1,36 @@
+package com.example.chat.delivery;
+
+import com.example.chat.events.ChatEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SseEventEncoderTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void givenChatEvent_whenEncoding_thenFrameMatchesSseEmitterLayout() throws Exception {
+        ChatEvent event = new ChatEvent("Hello, ünïcode\nline", "Kate");
+        EncodedSseEvent encoded = new SseEventEncoder(objectMapper).encode("1001:42", event);
+
+        assertEquals("event:chat\nid:1001:42\ndata:" + objectMapper.writeValueAsString(event) + "\n\n",
+                encoded.asString());
+        assertSame(encoded.build(), encoded.build());
+    }
+
+    @Test
+    void givenIndentingObjectMapper_whenEncoding_thenDataStaysOnOneLine() {
+        ObjectMapper indenting = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        String frame = new SseEventEncoder(indenting).encode(null, new ChatEvent("Hello", "Kate")).asString();
+
+        assertTrue(frame.startsWith("event:chat\ndata:{"));
+        assertEquals(frame.length() - 2, frame.indexOf("\n\n"));
+    }
+
+    @Test
+    void givenEncodedEvent_whenModifying_thenRejected() {
+        assertThrows(UnsupportedOperationException.class, () -> EncodedSseEvent.HEARTBEAT.data("x"));
+    }
+}
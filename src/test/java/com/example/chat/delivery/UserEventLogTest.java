@@ -0,0 +1,88 @@
+package com.example.chat.delivery;
+
+import com.example.chat.dto.IdRange;
+import com.example.chat.enumeration.MessageStatus;
+import com.example.chat.events.ChatEvent;
+import com.example.chat.events.ReceiptEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserEventLogTest {
+    private static final long INITIAL_SEQUENCE = 1_000;
+    private static final SseEventEncoder ENCODER = new SseEventEncoder(new ObjectMapper());
+
+    private UserEventLog logWith(int events) {
+        UserEventLog log = new UserEventLog(4, INITIAL_SEQUENCE, ENCODER);
+        for (int i = 1; i <= events; i++) {
+            log.append(new ChatEvent("Hello, test: " + i, "Kate"));
+        }
+        return log;
+    }
+
+    @Test
+    void givenAppendedEvents_whenParsingIds_thenSequencesIncreaseAndCarryPublishTime() {
+        UserEventLog log = new UserEventLog(4, INITIAL_SEQUENCE, ENCODER);
+        long before = System.currentTimeMillis();
+        EventId first = EventId.parse(log.append(new ChatEvent("Hello", "Kate")).id());
+        EventId second = EventId.parse(log.append(
+                new ChatEvent("Hello", "Kate", "danBrown", 45L, null, null)).id());
+        EventId third = EventId.parse(log.append(new ReceiptEvent("danBrown", MessageStatus.READ,
+                List.of(new IdRange(45, 45L)))).id());
+        long after = System.currentTimeMillis();
+        assertEquals(INITIAL_SEQUENCE + 1, first.sequence());
+        assertEquals(INITIAL_SEQUENCE + 2, second.sequence());
+        assertEquals(INITIAL_SEQUENCE + 3, third.sequence());
+        assertTrue(first.publishedAt() >= before && third.publishedAt() <= after);
+        assertTrue(first.publishedAt() <= second.publishedAt() && second.publishedAt() <= third.publishedAt());
+        assertEquals(third.publishedAt(), log.getLastPublishedAt());
+        assertEquals(INITIAL_SEQUENCE + 3, log.getLastSequence());
+    }
+
+    @Test
+    void givenMessageFromAnEarlierBlock_whenAppending_thenIdDoesNotGoBack() {
+        UserEventLog log = new UserEventLog(4, INITIAL_SEQUENCE, ENCODER);
+        EventId first = EventId.parse(log.append(new ChatEvent("Hello", "Kate", "danBrown", 145L, null, null)).id());
+        EventId second = EventId.parse(log.append(new ChatEvent("Hello", "Kate", "danBrown", 46L, null, null)).id());
+        assertTrue(second.publishedAt() >= first.publishedAt());
+    }
+
+    @Test
+    void givenGapWithinBuffer_whenResuming_thenMissedEventsAreReturnedInOrder() {
+        UserEventLog log = logWith(6);
+        List<OutboundEvent> missed = log.since(INITIAL_SEQUENCE + 3);
+        assertEquals(3, missed.size());
+        assertEquals(new ChatEvent("Hello, test: 4", "Kate"), missed.get(0).event());
+        assertEquals(new ChatEvent("Hello, test: 6", "Kate"), missed.get(2).event());
+    }
+
+    @Test
+    void givenUpToDateClient_whenResuming_thenNothingToReplay() {
+        UserEventLog log = logWith(3);
+        assertTrue(log.since(INITIAL_SEQUENCE + 3).isEmpty());
+    }
+
+    @Test
+    void givenGapLargerThanBuffer_whenResuming_thenNull() {
+        UserEventLog log = logWith(6);
+        assertNull(log.since(INITIAL_SEQUENCE + 1));
+    }
+
+    @Test
+    void givenIdFromBeforeTheLogExisted_whenResuming_thenNull() {
+        UserEventLog log = logWith(2);
+        assertNull(log.since(INITIAL_SEQUENCE - 10));
+    }
+
+    @Test
+    void givenMalformedIds_whenParsing_thenNull() {
+        assertNull(EventId.parse(null));
+        assertNull(EventId.parse("17"));
+        assertNull(EventId.parse("a-b"));
+        // The earlier <sequence>:<messageId> form
+        assertNull(EventId.parse("17:40"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.chat.presence;
+
+import com.example.chat.dto.UserDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectedUserRegistryTest {
+    ConnectedUserRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new ConnectedUserRegistry();
+    }
+
+    @Test
+    void givenTwoEmittersForOneUser_whenRegistering_thenOnlyFirstIsReportedAsNew() {
+        UserDTO firstTab = new UserDTO(new SseEmitter(), "Kate");
+        UserDTO secondTab = new UserDTO(new SseEmitter(), "Kate");
+
+        assertTrue(registry.register(firstTab));
+        assertFalse(registry.register(secondTab));
+        assertEquals(2, registry.getConnections("Kate").size());
+        assertEquals(1, registry.getConnectedUserCount());
+        assertEquals(2, registry.getEmitterCount());
+    }
+
+    @Test
+    void givenTwoEmittersForOneUser_whenUnregistering_thenOnlyLastIsReportedAsLast() {
+        UserDTO firstTab = new UserDTO(new SseEmitter(), "Kate");
+        UserDTO secondTab = new UserDTO(new SseEmitter(), "Kate");
+        registry.register(firstTab);
+        registry.register(secondTab);
+
+        assertFalse(registry.unregister(firstTab));
+        assertTrue(registry.isConnected("Kate"));
+        assertTrue(registry.unregister(secondTab));
+        assertFalse(registry.isConnected("Kate"));
+        assertFalse(registry.unregister(secondTab));
+        assertEquals(0, registry.getEmitterCount());
+    }
+
+    @Test
+    void givenUnknownUser_whenGettingConnections_thenReturnEmptySet() {
+        assertTrue(registry.getConnections("Lisa").isEmpty());
+    }
+
+    @Test
+    void givenConcurrentLogins_whenRegisteringAndUnregistering_thenNoEntriesAreLost() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < 1_000; j++) {
+                    UserDTO userDTO = new UserDTO(new SseEmitter(), "user" + (j % 10));
+                    registry.register(userDTO);
+                    registry.unregister(userDTO);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(0, registry.getConnectedUserCount());
+        assertEquals(0, registry.getEmitterCount());
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.chat.ratelimit;
+
+import com.example.chat.config.RateLimitProperties;
+import com.example.chat.errorHandling.RateLimitExceeded;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SendRateLimiterTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void givenFullBucket_whenBurstExhausted_thenRefusedWithRetryAfter() {
+        TokenBucket bucket = new TokenBucket(10, 3, 0);
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(SECOND / 10, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(SECOND / 10));
+    }
+
+    @Test
+    void givenRefusedSend_whenRefunded_thenTokenAvailableAgain() {
+        TokenBucket bucket = new TokenBucket(1, 1, 0);
+        assertEquals(0, bucket.tryAcquire(0));
+        bucket.refund();
+        assertTrue(bucket.isFull(0));
+        assertEquals(0, bucket.tryAcquire(0));
+    }
+
+    @Test
+    void givenConcurrentSenders_whenBucketEmptied_thenExactlyBurstAdmitted() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1, 100, 0);
+        AtomicInteger admitted = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(8);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.execute(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    if (bucket.tryAcquire(0) == 0) {
+                        admitted.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(100, admitted.get());
+    }
+
+    @Test
+    void givenUserOverLimit_whenOtherUserSends_thenOnlyFirstRefused() {
+        SendRateLimiter limiter = limiter(1, 2, 1000, 1000);
+        limiter.acquire("Kate", 0);
+        limiter.acquire("Kate", 0);
+        RateLimitExceeded exceeded = assertThrows(RateLimitExceeded.class, () -> limiter.acquire("Kate", 0));
+        assertEquals(Duration.ofSeconds(1), exceeded.getRetryAfter());
+        assertDoesNotThrow(() -> limiter.acquire("John", 0));
+    }
+
+    @Test
+    void givenGlobalLimitReached_whenRefused_thenUserTokenRefunded() {
+        SendRateLimiter limiter = limiter(1, 1, 1, 1);
+        limiter.acquire("Kate", 0);
+        assertThrows(RateLimitExceeded.class, () -> limiter.acquire("John", 0));
+        // John's refused send did not use his token
+        assertDoesNotThrow(() -> limiter.acquire("John", SECOND));
+    }
+
+    @Test
+    void givenIdleUsers_whenSwept_thenRefilledBucketsDropped() {
+        SendRateLimiter limiter = limiter(1, 5, 1000, 1000);
+        limiter.acquire("Kate", 0);
+        limiter.acquire("John", 3 * SECOND);
+        limiter.sweep(2 * SECOND);
+        assertEquals(1, limiter.getBucketCount());
+    }
+
+    @Test
+    void givenDisabled_whenSending_thenNeverRefused() {
+        SendRateLimiter limiter = new SendRateLimiter(
+                new RateLimitProperties(false, 1, 1, 1, 1, Duration.ofMinutes(1)), new SimpleMeterRegistry());
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire("Kate", 0);
+        }
+        assertEquals(0, limiter.getBucketCount());
+    }
+
+    private static SendRateLimiter limiter(double userRate, int userBurst, double globalRate, int globalBurst) {
+        return new SendRateLimiter(new RateLimitProperties(true, userRate, userBurst, globalRate, globalBurst,
+                Duration.ofMinutes(1)), new SimpleMeterRegistry(), 0);
+    }
+}
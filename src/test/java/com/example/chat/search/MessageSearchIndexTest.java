@@ -0,0 +1,131 @@
+package com.example.chat.search;
+
+import com.example.chat.config.SearchProperties;
+import com.example.chat.model.Message;
+import com.example.chat.model.User;
+import com.example.chat.repository.MessageRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageSearchIndexTest {
+    static final long DAN = 3L;
+    static final long KATE = 8L;
+    static final long JOHN = 12L;
+
+    @TempDir
+    Path indexDir;
+    MessageRepository messageRepository;
+    MessageSearchIndex index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        messageRepository = Mockito.mock(MessageRepository.class);
+        index = open(1000, 8);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        index.shutdown();
+    }
+
+    private MessageSearchIndex open(int memtablePostings, int maxSegments) throws Exception {
+        return new MessageSearchIndex(messageRepository, new SearchProperties(indexDir, Duration.ofHours(1), 100,
+                memtablePostings, maxSegments, Duration.ofMinutes(1), 8, false));
+    }
+
+    private static Message message(long id, long senderId, long receiverId, String content) {
+        Message message = new Message();
+        message.setId(id);
+        message.setContent(content);
+        User sender = new User();
+        sender.setId(senderId);
+        message.setSender(sender);
+        User receiver = new User();
+        receiver.setId(receiverId);
+        message.setReceiver(receiver);
+        return message;
+    }
+
+    private void storedAfter(long afterId, Message... messages) {
+        Mockito.when(messageRepository.getIndexPage(ArgumentMatchers.eq(afterId), ArgumentMatchers.anyInt()))
+                .thenReturn(List.of(messages));
+    }
+
+    @Test
+    void givenText_whenTokenizing_thenLowerCaseWordsOnce() {
+        assertEquals(Set.of("meeting", "at", "10", "café"), Tokenizer.tokenize("Meeting at 10, a café? MEETING!"));
+    }
+
+    @Test
+    void givenMessages_whenSearching_thenEveryTermMatchesNewestFirst() throws Exception {
+        storedAfter(0, message(1, DAN, KATE, "Lunch on Friday?"),
+                message(2, KATE, DAN, "Friday works, lunch at noon"),
+                message(3, DAN, KATE, "See you friday"));
+        index.catchUp();
+
+        assertEquals(List.of(3L, 2L, 1L), index.search(DAN, List.of("friday"), Long.MAX_VALUE, 10));
+        assertEquals(List.of(2L, 1L), index.search(KATE, List.of("lunch", "friday"), Long.MAX_VALUE, 10));
+        assertEquals(List.of(1L), index.search(KATE, List.of("lunch", "friday"), 2, 10));
+        assertEquals(List.of(3L), index.search(KATE, List.of("friday"), Long.MAX_VALUE, 1));
+        assertEquals(List.of(), index.search(KATE, List.of("lunch", "dinner"), Long.MAX_VALUE, 10));
+    }
+
+    @Test
+    void givenMessagesOfOtherUsers_whenSearching_thenOnlyOwnConversationsMatch() throws Exception {
+        storedAfter(0, message(1, DAN, KATE, "secret plan"), message(2, JOHN, JOHN, "my secret notes"));
+        index.catchUp();
+
+        assertEquals(List.of(1L), index.search(KATE, List.of("secret"), Long.MAX_VALUE, 10));
+        assertEquals(List.of(2L), index.search(JOHN, List.of("secret"), Long.MAX_VALUE, 10));
+    }
+
+    @Test
+    void givenFlushedSegments_whenReopening_thenIndexIsKeptAndCatchUpResumes() throws Exception {
+        storedAfter(0, message(1, DAN, KATE, "quarterly report"), message(2, DAN, KATE, "report draft"));
+        index.catchUp();
+        index.shutdown();
+
+        index = open(1000, 8);
+        storedAfter(2, message(3, KATE, DAN, "report approved"));
+        index.catchUp();
+
+        assertEquals(List.of(3L, 2L, 1L), index.search(DAN, List.of("report"), Long.MAX_VALUE, 10));
+    }
+
+    @Test
+    void givenTooManySegments_whenCatchingUp_thenSmallestAreMerged() throws Exception {
+        index.shutdown();
+        index = open(1, 2);
+        for (long id = 1; id <= 3; id++) {
+            storedAfter(id - 1, message(id, DAN, KATE, "budget " + id));
+            index.catchUp();
+        }
+
+        assertTrue(index.getSegmentCount() <= 2);
+        assertEquals(List.of(3L, 2L, 1L), index.search(KATE, List.of("budget"), Long.MAX_VALUE, 10));
+    }
+
+    @Test
+    void givenIdCommittedLate_whenCatchingUp_thenGapIsIndexed() throws Exception {
+        storedAfter(0, message(1, DAN, KATE, "first invoice"), message(3, DAN, KATE, "third invoice"));
+        index.catchUp();
+        assertEquals(List.of(3L, 1L), index.search(KATE, List.of("invoice"), Long.MAX_VALUE, 10));
+
+        Mockito.when(messageRepository.getByIds(List.of(2L)))
+                .thenReturn(List.of(message(2, DAN, KATE, "second invoice")));
+        index.catchUp();
+
+        assertEquals(List.of(3L, 2L, 1L), index.search(KATE, List.of("invoice"), Long.MAX_VALUE, 10));
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.chat.service;
+
+import com.example.chat.config.AttachmentProperties;
+import com.example.chat.dto.AttachmentDTO;
+import com.example.chat.enumeration.UserStatus;
+import com.example.chat.errorHandling.BusinessNotFound;
+import com.example.chat.model.User;
+import com.example.chat.repository.AttachmentRepository;
+import com.example.chat.repository.MessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttachmentServiceTest {
+    AttachmentRepository attachmentRepository = Mockito.mock(AttachmentRepository.class);
+    MessageRepository messageRepository = Mockito.mock(MessageRepository.class);
+    MessagePersistenceService messagePersistenceService = Mockito.mock(MessagePersistenceService.class);
+    UserService userService = Mockito.mock(UserService.class);
+    @TempDir
+    Path storeDir;
+    AttachmentService attachmentService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        attachmentService = new AttachmentService(attachmentRepository, messageRepository, messagePersistenceService,
+                userService, new AttachmentProperties(storeDir, DataSize.ofBytes(1024),
+                Duration.ofDays(1), Duration.ofHours(1)));
+        Mockito.when(userService.getUserByUserName("Kate")).thenReturn(
+                new User(8L, "Kate", "Winslett", "kate.winslett@gmail.com", "Kate", "password", UserStatus.ONLINE));
+    }
+
+    private long countFiles() throws Exception {
+        try (Stream<Path> files = Files.walk(storeDir)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    @Test
+    void givenSameFileTwice_whenUploading_thenStoredOnceUnderItsHash() throws Exception {
+        byte[] file = "screenshot bytes".getBytes(StandardCharsets.UTF_8);
+
+        AttachmentDTO first = attachmentService.upload("Kate", new ByteArrayInputStream(file), "image/png");
+        AttachmentDTO second = attachmentService.upload("Kate", new ByteArrayInputStream(file), "image/png");
+
+        assertEquals(first, second);
+        assertEquals(64, first.id().length());
+        assertEquals(file.length, first.size());
+        assertArrayEquals(file, Files.readAllBytes(attachmentService.getFile(first.id())));
+        assertEquals(1, countFiles());
+        Mockito.verify(attachmentRepository, Mockito.times(2)).saveUpload(ArgumentMatchers.eq(first.id()),
+                ArgumentMatchers.eq(8L), ArgumentMatchers.any());
+    }
+
+    @Test
+    void givenOversizedFile_whenUploading_thenRejectedAndNothingKept() throws Exception {
+        assertThrows(IllegalArgumentException.class,
+                () -> attachmentService.upload("Kate", new ByteArrayInputStream(new byte[1025]), null));
+
+        assertEquals(0, countFiles());
+        Mockito.verifyNoInteractions(attachmentRepository);
+    }
+
+    @Test
+    void givenUnknownOrInvalidId_whenSending_thenRejected() {
+        assertThrows(BusinessNotFound.class, () -> attachmentService.requireAttachment("Kate", "a".repeat(64)));
+        assertThrows(IllegalArgumentException.class,
+                () -> attachmentService.requireAttachment("Kate", "../../etc/passwd"));
+    }
+
+    @Test
+    void givenAttachmentOfOtherUsers_whenSending_thenNotFoundUnlessUploaderOrParticipant() throws Exception {
+        AttachmentDTO attachment = attachmentService.upload("Kate", new ByteArrayInputStream(new byte[10]),
+                "image/png");
+
+        assertThrows(BusinessNotFound.class, () -> attachmentService.requireAttachment("Kate", attachment.id()));
+
+        Mockito.when(attachmentRepository.isUploader(attachment.id(), 8L)).thenReturn(true);
+        attachmentService.requireAttachment("Kate", attachment.id());
+
+        Mockito.when(attachmentRepository.isUploader(attachment.id(), 8L)).thenReturn(false);
+        Mockito.when(messageRepository.isAttachmentParticipant(attachment.id(), 8L)).thenReturn(true);
+        attachmentService.requireAttachment("Kate", attachment.id());
+    }
+
+    @Test
+    void givenOrphans_whenSweeping_thenOnlyDeletedOnesRemovedFromStore() throws Exception {
+        AttachmentDTO orphan = attachmentService.upload("Kate", new ByteArrayInputStream(new byte[10]), null);
+        AttachmentDTO sent = attachmentService.upload("Kate", new ByteArrayInputStream(new byte[20]), null);
+        Mockito.when(attachmentRepository.getOrphanIds(ArgumentMatchers.any(), ArgumentMatchers.anyInt()))
+                .thenReturn(List.of(orphan.id(), sent.id()));
+        Mockito.when(attachmentRepository.deleteOrphan(ArgumentMatchers.eq(orphan.id()), ArgumentMatchers.any()))
+                .thenReturn(true);
+
+        attachmentService.removeOrphans();
+
+        assertFalse(Files.exists(attachmentService.getFile(orphan.id())));
+        assertTrue(Files.exists(attachmentService.getFile(sent.id())));
+    }
+
+    @Test
+    void givenAttachmentOfOtherUsers_whenDownloading_thenNotFound() throws Exception {
+        AttachmentDTO attachment = attachmentService.upload("Kate", new ByteArrayInputStream(new byte[10]), "image/png");
+        Mockito.when(attachmentRepository.getById(attachment.id())).thenReturn(attachment);
+
+        assertThrows(BusinessNotFound.class, () -> attachmentService.getAttachment("Kate", attachment.id()));
+        Mockito.verify(messagePersistenceService, Mockito.never()).flush();
+
+        Mockito.when(messageRepository.isAttachmentParticipant(ArgumentMatchers.eq(attachment.id()),
+                ArgumentMatchers.eq(8L))).thenReturn(true);
+        assertEquals(attachment, attachmentService.getAttachment("Kate", attachment.id()));
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.chat.service;
+
+import com.example.chat.config.EmailOutboxProperties;
+import com.example.chat.enumeration.OutboxStatus;
+import com.example.chat.enumeration.UserStatus;
+import com.example.chat.model.EmailOutboxEntry;
+import com.example.chat.model.User;
+import com.example.chat.repository.EmailOutboxRepository;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmailOutboxServiceTest {
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    EmailOutboxRepository emailOutboxRepository;
+    UserService userService;
+    JavaMailSenderImpl mailSender;
+    EmailOutboxService emailOutboxService;
+    User recipient;
+
+    @BeforeEach
+    void setUp() {
+        emailOutboxRepository = Mockito.mock(EmailOutboxRepository.class);
+        userService = Mockito.mock(UserService.class);
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost(ServerSetupTest.SMTP.getBindAddress());
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+        emailOutboxService = new EmailOutboxService(emailOutboxRepository, new EmailService(mailSender), userService,
+                new EmailOutboxProperties(Duration.ofMinutes(2), 100, 3, Duration.ofSeconds(30),
+                        Duration.ofMinutes(5), Duration.ofMinutes(5)));
+        recipient = new User(8L, "Kate", "Winslett", "kate.winslett@gmail.com",
+                "Kate", "password", UserStatus.OFFLINE);
+        Mockito.when(userService.getById(recipient.getId())).thenReturn(recipient);
+        Mockito.when(emailOutboxRepository.getDueRecipientIds(ArgumentMatchers.any(), ArgumentMatchers.anyInt()))
+                .thenReturn(List.of(recipient.getId()));
+        Mockito.when(emailOutboxRepository.claim(ArgumentMatchers.eq(recipient.getId()), ArgumentMatchers.any(),
+                ArgumentMatchers.any())).thenReturn(3);
+        Mockito.when(emailOutboxRepository.getPendingByRecipientId(recipient.getId())).thenReturn(List.of(
+                entry(1L, "danBrown", 0), entry(2L, "danBrown", 0), entry(3L, "Simo", 0)));
+    }
+
+    private EmailOutboxEntry entry(long id, String sender, int attempts) {
+        LocalDateTime now = LocalDateTime.now();
+        return new EmailOutboxEntry(id, recipient.getId(), sender, OutboxStatus.PENDING, attempts, now, now);
+    }
+
+    @Test
+    void givenSeveralPendingNotifications_whenDispatching_thenOneDigestIsSent() throws Exception {
+        emailOutboxService.dispatch();
+
+        MimeMessage[] messages = greenMail.getReceivedMessages();
+        assertEquals(1, messages.length);
+        assertEquals(recipient.getEmail(), messages[0].getAllRecipients()[0].toString());
+        String body = GreenMailUtil.getBody(messages[0]);
+        assertTrue(body.contains("2 from danBrown"));
+        assertTrue(body.contains("1 from Simo"));
+        Mockito.verify(emailOutboxRepository).updateStatusByIds(List.of(1L, 2L, 3L), OutboxStatus.SENT);
+    }
+
+    @Test
+    void givenRecipientClaimedByAnotherDispatcher_whenDispatching_thenNothingIsSent() {
+        Mockito.when(emailOutboxRepository.claim(ArgumentMatchers.eq(recipient.getId()), ArgumentMatchers.any(),
+                ArgumentMatchers.any())).thenReturn(0);
+        emailOutboxService.dispatch();
+
+        assertEquals(0, greenMail.getReceivedMessages().length);
+        Mockito.verify(emailOutboxRepository, Mockito.never()).getPendingByRecipientId(recipient.getId());
+    }
+
+    @Test
+    void givenSmtpUnavailable_whenDispatching_thenDigestIsRescheduledWithBackoff() {
+        mailSender.setPort(ServerSetupTest.SMTP.getPort() + 1);
+        emailOutboxService.dispatch();
+
+        Mockito.verify(emailOutboxRepository).rescheduleByIds(ArgumentMatchers.eq(List.of(1L, 2L, 3L)),
+                ArgumentMatchers.eq(1), ArgumentMatchers.any());
+        Mockito.verify(emailOutboxRepository, Mockito.never())
+                .updateStatusByIds(ArgumentMatchers.anyList(), ArgumentMatchers.any());
+    }
+
+    @Test
+    void givenLastAttemptFails_whenDispatching_thenDigestIsMarkedFailed() {
+        Mockito.when(emailOutboxRepository.getPendingByRecipientId(recipient.getId()))
+                .thenReturn(List.of(entry(1L, "danBrown", 2)));
+        mailSender.setPort(ServerSetupTest.SMTP.getPort() + 1);
+        emailOutboxService.dispatch();
+
+        Mockito.verify(emailOutboxRepository).updateStatusByIds(List.of(1L), OutboxStatus.FAILED);
+    }
+
+    @Test
+    void givenRepeatedFailures_whenComputingBackoff_thenDoublesUpToMaximum() {
+        assertEquals(Duration.ofSeconds(30), emailOutboxService.backoff(1));
+        assertEquals(Duration.ofSeconds(60), emailOutboxService.backoff(2));
+        assertEquals(Duration.ofMinutes(5), emailOutboxService.backoff(10));
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.chat.service;
+
+import com.example.chat.config.LargeMessageProperties;
+import com.example.chat.dto.MessageBody;
+import com.example.chat.dto.NewMessageDTO;
+import com.example.chat.dto.StoredContentDTO;
+import com.example.chat.enumeration.MessageStatus;
+import com.example.chat.enumeration.UserStatus;
+import com.example.chat.errorHandling.BusinessNotFound;
+import com.example.chat.model.User;
+import com.example.chat.repository.MessageContentRepository;
+import com.example.chat.repository.MessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageContentServiceTest {
+    MessageContentRepository messageContentRepository = Mockito.mock(MessageContentRepository.class);
+    MessageRepository messageRepository = Mockito.mock(MessageRepository.class);
+    MessagePersistenceService messagePersistenceService = Mockito.mock(MessagePersistenceService.class);
+    UserService userService = Mockito.mock(UserService.class);
+    MessageContentService messageContentService;
+    User kate = new User(8L, "Kate", "Winslett", "kate.winslett@gmail.com", "Kate", "password", UserStatus.ONLINE);
+
+    @BeforeEach
+    void setUp() {
+        messageContentService = new MessageContentService(messageContentRepository, messageRepository,
+                messagePersistenceService, userService,
+                new LargeMessageProperties(255, 200, DataSize.ofKilobytes(64), 6));
+        Mockito.when(userService.getUserByUserName("Kate")).thenReturn(kate);
+    }
+
+    @Test
+    void givenShortContent_whenPreparing_thenKeptInline() {
+        String content = "x".repeat(255);
+
+        assertEquals(new MessageBody(content, null, null), messageContentService.prepare(content));
+        Mockito.verifyNoInteractions(messageContentRepository);
+    }
+
+    @Test
+    void givenLongContent_whenPreparing_thenStoredCompressedOnceAndPreviewed() throws Exception {
+        String content = "Minutes of the meeting: nothing was decided. ".repeat(100);
+
+        MessageBody messageBody = messageContentService.prepare(content);
+        assertEquals(content.substring(0, 200), messageBody.content());
+        assertEquals(64, messageBody.contentId().length());
+
+        ArgumentCaptor<byte[]> data = ArgumentCaptor.forClass(byte[].class);
+        Mockito.verify(messageContentRepository).save(ArgumentMatchers.eq(messageBody.contentId()),
+                ArgumentMatchers.eq(content.length()), data.capture(), ArgumentMatchers.any());
+        assertTrue(data.getValue().length < content.length() / 10);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        messageContentService.writeTo(new StoredContentDTO(messageBody.contentId(), content.length(),
+                data.getValue()), out);
+        assertEquals(content, out.toString(StandardCharsets.UTF_8));
+
+        Mockito.when(messageContentRepository.existsById(messageBody.contentId())).thenReturn(true);
+        assertEquals(messageBody, messageContentService.prepare(content));
+        Mockito.verify(messageContentRepository, Mockito.times(1)).save(ArgumentMatchers.anyString(),
+                ArgumentMatchers.anyInt(), ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+
+    @Test
+    void givenOversizedContent_whenPreparing_thenRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> messageContentService.prepare("x".repeat(64 * 1024 + 1)));
+    }
+
+    @Test
+    void givenMessageStillBuffered_whenGettingContent_thenFoundWithoutFlush() {
+        StoredContentDTO stored = new StoredContentDTO("abc", 3, new byte[0]);
+        NewMessageDTO buffered = new NewMessageDTO(41L, "preview", 12L, 8L, MessageStatus.SENT,
+                LocalDateTime.of(2024, 7, 27, 17, 45), "abc", null, null, null);
+        Mockito.when(messagePersistenceService.isBuffered(ArgumentMatchers.any())).thenAnswer(
+                invocation -> invocation.<Predicate<NewMessageDTO>>getArgument(0).test(buffered));
+        Mockito.when(messageContentRepository.getById("abc")).thenReturn(stored);
+
+        assertEquals(stored, messageContentService.getContent("Kate", "abc"));
+        assertThrows(BusinessNotFound.class, () -> messageContentService.getContent("Kate", "abd"));
+        Mockito.verify(messagePersistenceService, Mockito.never()).flush();
+    }
+
+    @Test
+    void givenContentOfOtherUsers_whenGettingContent_thenNotFound() {
+        assertThrows(BusinessNotFound.class, () -> messageContentService.getContent("Kate", "abc"));
+        Mockito.verify(messageContentRepository, Mockito.never()).getById(ArgumentMatchers.anyString());
+    }
+}
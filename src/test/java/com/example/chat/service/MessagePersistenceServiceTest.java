@@ -0,0 +1,247 @@
+package com.example.chat.service;
+
+import com.example.chat.config.MessagePersistenceProperties;
+import com.example.chat.dto.AckRangeDTO;
+import com.example.chat.dto.NewMessageDTO;
+import com.example.chat.enumeration.MessageDurability;
+import com.example.chat.enumeration.MessageStatus;
+import com.example.chat.errorHandling.MessageStoreUnavailable;
+import com.example.chat.repository.MessageRepository;
+import com.example.chat.search.MessageSearchIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessagePersistenceServiceTest {
+    @TempDir
+    Path journalDir;
+    MessageRepository messageRepository;
+    MessageSearchIndex messageSearchIndex;
+    ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        messageRepository = Mockito.mock(MessageRepository.class);
+        messageSearchIndex = Mockito.mock(MessageSearchIndex.class);
+        objectMapper = new ObjectMapper().findAndRegisterModules();
+    }
+
+    private MessagePersistenceService service(MessageDurability durability) throws Exception {
+        return service(durability, 10_000);
+    }
+
+    private MessagePersistenceService service(MessageDurability durability, int maxBufferedMessages)
+            throws Exception {
+        return new MessagePersistenceService(messageRepository, new MessagePersistenceProperties(durability, 500,
+                Duration.ofHours(1), maxBufferedMessages, journalDir, 100), objectMapper, messageSearchIndex);
+    }
+
+    private List<NewMessageDTO> messages(int count) {
+        List<NewMessageDTO> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            messages.add(new NewMessageDTO(i + 1L, "Hello, test: " + i, 12L, 8L, MessageStatus.PENDING,
+                    LocalDateTime.of(2024, 7, 27, 17, 45, i), null, null, null, null));
+        }
+        return messages;
+    }
+
+    @Test
+    void givenSyncDurability_whenSaving_thenInsertedImmediately() throws Exception {
+        MessagePersistenceService service = service(MessageDurability.SYNC);
+        NewMessageDTO message = messages(1).get(0);
+        service.save(message);
+        Mockito.verify(messageRepository).save(message.id(), message.content(), message.senderId(), message.receiverId(),
+                message.status(), message.timestamp(), null, null, null, null);
+    }
+
+    @Test
+    void givenBufferedDurability_whenFlushing_thenMessagesAreWrittenInOneBatch() throws Exception {
+        MessagePersistenceService service = service(MessageDurability.BUFFERED);
+        List<NewMessageDTO> messages = messages(3);
+        messages.forEach(service::save);
+        Mockito.verifyNoInteractions(messageRepository);
+        Mockito.verifyNoInteractions(messageSearchIndex);
+
+        service.flush();
+        Mockito.verify(messageRepository, Mockito.times(1)).saveAll(messages);
+        Mockito.verify(messageSearchIndex).requestCatchUp();
+        assertEquals(0, service.getBufferedCount());
+        service.shutdown();
+    }
+
+    @Test
+    void givenBufferedMessages_whenShuttingDown_thenMessagesAreFlushed() throws Exception {
+        MessagePersistenceService service = service(MessageDurability.BUFFERED);
+        List<NewMessageDTO> messages = messages(2);
+        messages.forEach(service::save);
+
+        service.shutdown();
+        Mockito.verify(messageRepository).saveAll(messages);
+    }
+
+    @Test
+    void givenFailingDatabase_whenFlushing_thenMessagesAreKeptForRetry() throws Exception {
+        MessagePersistenceService service = service(MessageDurability.BUFFERED);
+        List<NewMessageDTO> messages = messages(2);
+        messages.forEach(service::save);
+        Mockito.doThrow(new DataAccessResourceFailureException("down"))
+                .doNothing()
+                .when(messageRepository).saveAll(ArgumentMatchers.anyList());
+
+        service.flush();
+        assertEquals(2, service.getBufferedCount());
+        Mockito.verifyNoInteractions(messageSearchIndex);
+        service.flush();
+        assertEquals(0, service.getBufferedCount());
+        Mockito.verify(messageRepository, Mockito.times(2)).saveAll(messages);
+        service.shutdown();
+    }
+
+    @Test
+    void givenJournaledMessagesNotFlushed_whenRestarting_thenJournalIsReplayed() throws Exception {
+        MessagePersistenceService crashed = service(MessageDurability.JOURNALED);
+        List<NewMessageDTO> messages = messages(3);
+        messages.forEach(crashed::save);
+        Mockito.verifyNoInteractions(messageRepository);
+
+        service(MessageDurability.JOURNALED).shutdown();
+        Mockito.verify(messageRepository).saveAll(messages);
+    }
+
+    @Test
+    void givenConcurrentJournaledSaves_whenRestarting_thenEveryMessageIsReplayed() throws Exception {
+        MessagePersistenceService crashed = service(MessageDurability.JOURNALED);
+        List<NewMessageDTO> messages = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            messages.add(new NewMessageDTO(i + 1L, "Hello, test: " + i, 12L, 8L, MessageStatus.PENDING,
+                    LocalDateTime.of(2024, 7, 27, 17, 45).plusSeconds(i), null, null, null, null));
+        }
+        Set<NewMessageDTO> written = ConcurrentHashMap.newKeySet();
+        Mockito.doAnswer(invocation -> written.addAll(invocation.getArgument(0)))
+                .when(messageRepository).saveAll(ArgumentMatchers.anyList());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> saves = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                List<NewMessageDTO> slice = messages.subList(i * 50, (i + 1) * 50);
+                saves.add(executor.submit(() -> slice.forEach(crashed::save)));
+                if (i == 4) {
+                    // Rotates the journal while saves are running
+                    saves.add(executor.submit(crashed::flush));
+                }
+            }
+            for (Future<?> save : saves) {
+                save.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        service(MessageDurability.JOURNALED).shutdown();
+        assertEquals(new HashSet<>(messages), written);
+    }
+
+    @Test
+    void givenJournaledMessages_whenFlushed_thenJournalSegmentsAreDeleted() throws Exception {
+        MessagePersistenceService service = service(MessageDurability.JOURNALED);
+        messages(3).forEach(service::save);
+        service.flush();
+        service.shutdown();
+
+        try (Stream<Path> files = Files.list(journalDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void givenFailingDatabase_whenBufferIsFull_thenSaveFails() throws Exception {
+        MessagePersistenceService service = service(MessageDurability.JOURNALED, 2);
+        Mockito.doThrow(new DataAccessResourceFailureException("down"))
+                .when(messageRepository).saveAll(ArgumentMatchers.anyList());
+        List<NewMessageDTO> messages = messages(3);
+        service.save(messages.get(0));
+        service.save(messages.get(1));
+
+        assertThrows(MessageStoreUnavailable.class, () -> service.save(messages.get(2)));
+        assertEquals(2, service.getBufferedCount());
+    }
+
+    @Test
+    void givenDatabaseDownOnRestart_whenStarting_thenJournalIsReplayedByLaterFlush() throws Exception {
+        MessagePersistenceService crashed = service(MessageDurability.JOURNALED);
+        List<NewMessageDTO> messages = messages(3);
+        messages.forEach(crashed::save);
+        Mockito.doThrow(new DataAccessResourceFailureException("down"))
+                .doNothing()
+                .when(messageRepository).saveAll(ArgumentMatchers.anyList());
+
+        MessagePersistenceService restarted = service(MessageDurability.JOURNALED);
+        restarted.flush();
+        Mockito.verifyNoInteractions(messageSearchIndex);
+        restarted.flush();
+        Mockito.verify(messageRepository, Mockito.times(2)).saveAll(messages);
+        Mockito.verify(messageSearchIndex).requestCatchUp();
+        restarted.shutdown();
+    }
+
+    @Test
+    void givenBufferedMessages_whenUpdatingStatus_thenBufferedCopiesAreWrittenWithIt() throws Exception {
+        MessagePersistenceService service = service(MessageDurability.BUFFERED);
+        List<NewMessageDTO> messages = messages(3);
+        messages.forEach(service::save);
+        LocalDateTime now = LocalDateTime.now();
+
+        service.updatePending(List.of(1L, 2L), MessageStatus.SENT, now);
+        service.acknowledge(MessageStatus.READ, List.of(new AckRangeDTO(12L, 8L, 2, 3)), now);
+        assertEquals(List.of(messages.get(1).withStatus(MessageStatus.READ, now)),
+                service.getBuffered(message -> message.status() == MessageStatus.READ));
+        Mockito.verify(messageRepository).updateMessagesByIds(List.of(1L, 2L), "SENT", now);
+
+        service.flush();
+        Mockito.verify(messageRepository).saveAll(List.of(messages.get(0).withStatus(MessageStatus.SENT, now),
+                messages.get(1).withStatus(MessageStatus.READ, now), messages.get(2)));
+        assertTrue(service.getBuffered(message -> true).isEmpty());
+        service.shutdown();
+    }
+
+    @Test
+    void givenBatchBeingWritten_whenAcknowledging_thenAppliedAgainAfterCommit() throws Exception {
+        MessagePersistenceService service = service(MessageDurability.BUFFERED);
+        List<NewMessageDTO> messages = messages(2);
+        messages.forEach(service::save);
+        LocalDateTime now = LocalDateTime.now();
+        service.updatePending(List.of(1L, 2L), MessageStatus.SENT, now);
+        List<AckRangeDTO> ranges = List.of(new AckRangeDTO(12L, 8L, 1, 2));
+        Mockito.doAnswer(invocation -> {
+            assertTrue(service.isBuffered(message -> message.id() == 2L));
+            service.acknowledge(MessageStatus.DELIVERED, ranges, now);
+            return null;
+        }).when(messageRepository).saveAll(ArgumentMatchers.anyList());
+
+        service.flush();
+        Mockito.verify(messageRepository, Mockito.times(2)).acknowledge(MessageStatus.DELIVERED, ranges, now);
+        assertFalse(service.isBuffered(message -> true));
+        service.shutdown();
+    }
+}
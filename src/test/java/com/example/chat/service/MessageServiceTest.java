@@ -1,15 +1,26 @@
 package com.example.chat.service;
 
+import com.example.chat.config.MessagePersistenceProperties;
 import com.example.chat.dto.ChatDTO;
+import com.example.chat.dto.HistoryMessageDTO;
+import com.example.chat.dto.HistoryPageDTO;
+import com.example.chat.dto.MessageBody;
+import com.example.chat.dto.NewMessageDTO;
+import com.example.chat.enumeration.MessageDurability;
 import com.example.chat.enumeration.MessageStatus;
 import com.example.chat.enumeration.UserStatus;
+import com.example.chat.errorHandling.BusinessNotFound;
 import com.example.chat.model.Message;
 import com.example.chat.model.User;
 import com.example.chat.repository.MessageRepository;
+import com.example.chat.search.MessageSearchIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -24,10 +35,14 @@ class MessageServiceTest {
     User receiver;
     ChatDTO chatDTO;
     @BeforeEach
-    void setUp() {
+    void setUp() throws Exception {
         messageRepository = Mockito.mock(MessageRepository.class);
         userService = Mockito.mock(UserService.class);
-        messageService = new MessageService(messageRepository, userService);
+        MessagePersistenceService messagePersistenceService = new MessagePersistenceService(messageRepository,
+                new MessagePersistenceProperties(MessageDurability.SYNC, 500, Duration.ofMillis(50), 10_000,
+                        Path.of("data/journal"), 100), new ObjectMapper(), Mockito.mock(MessageSearchIndex.class));
+        messageService = new MessageService(messageRepository, userService, messagePersistenceService,
+                Mockito.mock(MessageIdAllocator.class));
         sender = new User(12L, "Dan", "Brown", "dan.brown@gmail.com",
                 "danBrown",
                 "$2a$10$W5fwnQAG.yqpBr4WJ7neFeUDmVxe4DOcCqIDd0O1QEPIuYCbImKIu", UserStatus.ONLINE);
@@ -40,45 +55,129 @@ class MessageServiceTest {
     void create() {
         MessageStatus status = MessageStatus.SENT;
         String fromUser = sender.getUserName();
-        LocalDateTime timestamp = LocalDateTime.now();
+        LocalDateTime timestamp = LocalDateTime.of(2024, 7, 27, 17, 45, 30, 600_000_000);
         Mockito.when(userService.getUserByUserName(fromUser)).thenReturn(sender);
         Mockito.when(userService.getUserByUserName(chatDTO.userName())).thenReturn(receiver);
-        messageService.create(chatDTO, sender.getUserName(), status, timestamp);
+        messageService.create(41L, chatDTO.userName(), new MessageBody(chatDTO.messageContent(), null, null),
+                sender.getUserName(), status, timestamp);
         Mockito.verify(messageRepository, Mockito.times(1))
-                .save(chatDTO.messageContent(), sender.getId(), receiver.getId(), status, timestamp);
+                .save(41L, chatDTO.messageContent(), sender.getId(), receiver.getId(), status,
+                        timestamp.withNano(0), null, null, null, timestamp.withNano(0));
+    }
+
+    private MessageService bufferedMessageService(NewMessageDTO... buffered) throws Exception {
+        MessagePersistenceService messagePersistenceService = new MessagePersistenceService(messageRepository,
+                new MessagePersistenceProperties(MessageDurability.BUFFERED, 500, Duration.ofHours(1), 10_000,
+                        Path.of("data/journal"), 100), new ObjectMapper(), Mockito.mock(MessageSearchIndex.class));
+        for (NewMessageDTO message : buffered) {
+            messagePersistenceService.save(message);
+        }
+        return new MessageService(messageRepository, userService, messagePersistenceService,
+                Mockito.mock(MessageIdAllocator.class));
+    }
+
+    private Message stored(long id, User from, User to, LocalDateTime timestamp) {
+        Message message = new Message();
+        message.setId(id);
+        message.setContent("Hello, test: " + id);
+        message.setSender(from);
+        message.setReceiver(to);
+        message.setStatus(MessageStatus.PENDING);
+        message.setTimestamp(timestamp);
+        return message;
     }
 
     @Test
-    void givenValidUserName_whenGetAllPendingToUserName_thenReturnAListOfPendingMessages() {
+    void givenPendingMessages_whenGettingFirstChunk_thenReturnTheChunk() {
         List<Message> expectedMessages = new ArrayList<>();
-        LocalDateTime timestamp = LocalDateTime.now();
-        for(int i = 0; i <= 4; i++) {
+        for(int i = 1; i <= 5; i++) {
             Message message = new Message();
             message.setId(i);
-            message.setContent("Hello, test: " + (i + 1));
-            message.setSender(sender);
-            message.setReceiver(receiver);
+            message.setContent("Hello, test: " + i);
             message.setStatus(MessageStatus.PENDING);
-            message.setTimestamp(timestamp);
             expectedMessages.add(message);
         }
 
-        String userName = receiver.getUserName();
-        Mockito.when(userService.getUserByUserName(userName)).thenReturn(receiver);
-        Mockito.when(messageRepository.getAllPendingByReceiverId(receiver.getId())).thenReturn(expectedMessages);
-        List<Message> actualMessages = messageService.getAllPendingTo(receiver.getUserName());
+        Mockito.when(messageRepository.getPendingChunk(receiver.getId(), 0, 5)).thenReturn(expectedMessages);
+        List<Message> actualMessages = messageService.getPendingChunk(receiver.getId(), 0, 5);
         assertEquals(expectedMessages, actualMessages);
     }
 
     @Test
-    void givenInValidUserName_whenGetAllPendingToUserName_thenReturnEmptyList() {
-        List<Message> expectedMessages = new ArrayList<>();
-        String userName = "InvalidUserName";
+    void givenBufferedPendingMessages_whenGettingChunk_thenMergedInIdOrderWithoutFlush() throws Exception {
+        LocalDateTime timestamp = LocalDateTime.of(2024, 7, 27, 17, 45);
+        MessageService service = bufferedMessageService(
+                new NewMessageDTO(2L, "buffered", sender.getId(), receiver.getId(), MessageStatus.PENDING,
+                        timestamp, null, null, null, null),
+                new NewMessageDTO(4L, "for someone else", sender.getId(), 99L, MessageStatus.PENDING,
+                        timestamp, null, null, null, null),
+                new NewMessageDTO(5L, "beyond the chunk", sender.getId(), receiver.getId(), MessageStatus.PENDING,
+                        timestamp, null, null, null, null));
+        Mockito.when(messageRepository.getPendingChunk(receiver.getId(), 0, 3)).thenReturn(new ArrayList<>(
+                List.of(stored(1, sender, receiver, timestamp), stored(3, sender, receiver, timestamp))));
 
-        Mockito.when(userService.getUserByUserName(userName)).thenReturn(null);
-        Mockito.when(messageRepository.getAllPendingByReceiverId(receiver.getId())).thenReturn(expectedMessages);
-        List<Message> actualMessages = messageService.getAllPendingTo(receiver.getUserName());
-        assertEquals(expectedMessages, actualMessages);
+        List<Message> chunk = service.getPendingChunk(receiver.getId(), 0, 3);
+        assertEquals(List.of(1L, 2L, 3L), chunk.stream().map(Message::getId).toList());
+        assertEquals("buffered", chunk.get(1).getContent());
+        Mockito.verify(messageRepository, Mockito.never()).saveAll(Mockito.anyList());
+    }
+
+    @Test
+    void givenBufferedMessage_whenGettingNewestConversationPage_thenItComesFirst() throws Exception {
+        LocalDateTime timestamp = LocalDateTime.of(2024, 7, 27, 17, 45);
+        MessageService service = bufferedMessageService(new NewMessageDTO(11L, "buffered", receiver.getId(),
+                sender.getId(), MessageStatus.SENT, timestamp.plusMinutes(1), null, null, null, null));
+        Mockito.when(userService.getUserByUserName(sender.getUserName())).thenReturn(sender);
+        Mockito.when(userService.getUserByUserName(receiver.getUserName())).thenReturn(receiver);
+        Mockito.when(messageRepository.getConversationPage(sender.getId(), receiver.getId(), null, null, 2))
+                .thenReturn(new ArrayList<>(List.of(stored(10, sender, receiver, timestamp),
+                        stored(9, receiver, sender, timestamp.minusMinutes(1)))));
+
+        HistoryPageDTO history = service.getConversation(sender.getUserName(), receiver.getUserName(), null, null, 2);
+        assertEquals(List.of(11L, 10L), history.messages().stream().map(HistoryMessageDTO::id).toList());
+        assertEquals(receiver.getUserName(), history.messages().get(0).sender());
+        assertEquals(timestamp, history.nextBeforeTimestamp());
+        assertEquals(10L, history.nextBeforeId());
+    }
+
+    @Test
+    void givenMessagesPushedSinceGap_whenReplaying_thenIncludedWhateverTheirId() throws Exception {
+        LocalDateTime since = LocalDateTime.of(2024, 7, 27, 17, 45);
+        MessageService service = bufferedMessageService(
+                new NewMessageDTO(2L, "from an earlier block", sender.getId(), receiver.getId(), MessageStatus.SENT,
+                        since.plusSeconds(1), null, null, null, since.plusSeconds(1)),
+                new NewMessageDTO(3L, "received before the gap", sender.getId(), receiver.getId(),
+                        MessageStatus.SENT, since.minusSeconds(1), null, null, null, since.minusSeconds(1)),
+                new NewMessageDTO(4L, "still pending", sender.getId(), receiver.getId(), MessageStatus.PENDING,
+                        since.plusSeconds(1), null, null, null, null));
+        Mockito.when(userService.getUserByUserName(receiver.getUserName())).thenReturn(receiver);
+        Mockito.when(messageRepository.getPushedSince(receiver.getId(), since, 10)).thenReturn(new ArrayList<>(
+                List.of(stored(9, sender, receiver, since))));
+
+        List<Message> replayed = service.getPushedSince(receiver.getUserName(), since, 10);
+        assertEquals(List.of(2L, 9L), replayed.stream().map(Message::getId).toList());
+    }
+
+    @Test
+    void givenClientMessageIdUsedBefore_whenLookingUp_thenBufferedOrStoredStatus() throws Exception {
+        LocalDateTime timestamp = LocalDateTime.of(2024, 7, 27, 17, 45);
+        MessageService service = bufferedMessageService(new NewMessageDTO(11L, "buffered", sender.getId(),
+                receiver.getId(), MessageStatus.PENDING, timestamp, null, null, "m-1", null));
+        Mockito.when(userService.getUserByUserName(sender.getUserName())).thenReturn(sender);
+        Mockito.when(messageRepository.getStatusByClientMessageId(sender.getId(), "m-2"))
+                .thenReturn(MessageStatus.READ);
+
+        assertEquals(MessageStatus.PENDING, service.getStatusByClientMessageId(sender.getUserName(), "m-1"));
+        assertEquals(MessageStatus.READ, service.getStatusByClientMessageId(sender.getUserName(), "m-2"));
+        assertNull(service.getStatusByClientMessageId(sender.getUserName(), "m-3"));
+        Mockito.verify(messageRepository, Mockito.never()).getStatusByClientMessageId(sender.getId(), "m-1");
+    }
+
+    @Test
+    void givenLastChunk_whenGettingNextChunk_thenReturnEmptyList() {
+        Mockito.when(messageRepository.getPendingChunk(receiver.getId(), 5, 5)).thenReturn(new ArrayList<>());
+        List<Message> actualMessages = messageService.getPendingChunk(receiver.getId(), 5, 5);
+        assertTrue(actualMessages.isEmpty());
     }
 
     @Test
@@ -99,4 +198,72 @@ class MessageServiceTest {
         Mockito.verify(messageRepository, Mockito.times(1))
                 .updateMessageById(id, status.toString(), timestamp);
     }
+
+    @Test
+    void givenSeveralIds_whenUpdatingMessages_thenSingleBatchUpdate() {
+        List<Long> ids = List.of(1L, 2L, 3L);
+        LocalDateTime timestamp = LocalDateTime.now();
+        MessageStatus status = MessageStatus.SENT;
+
+        messageService.updateMessages(ids, status, timestamp);
+        Mockito.verify(messageRepository, Mockito.times(1))
+                .updateMessagesByIds(ids, status.toString(), timestamp);
+        Mockito.verify(messageRepository, Mockito.never())
+                .updateMessageById(Mockito.anyLong(), Mockito.anyString(), Mockito.any());
+    }
+
+    @Test
+    void givenNoIds_whenUpdatingMessages_thenNoUpdate() {
+        messageService.updateMessages(List.of(), MessageStatus.SENT, LocalDateTime.now());
+        Mockito.verifyNoInteractions(messageRepository);
+    }
+
+    @Test
+    void givenFullPage_whenGettingConversation_thenNextCursorPointsAtOldestMessage() {
+        LocalDateTime timestamp = LocalDateTime.now();
+        List<Message> page = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Message message = new Message();
+            message.setId(10 - i);
+            message.setContent("Hello, test: " + i);
+            message.setSender(i == 0 ? sender : receiver);
+            message.setReceiver(i == 0 ? receiver : sender);
+            message.setStatus(MessageStatus.SENT);
+            message.setTimestamp(timestamp.minusMinutes(i));
+            page.add(message);
+        }
+        Mockito.when(userService.getUserByUserName(sender.getUserName())).thenReturn(sender);
+        Mockito.when(userService.getUserByUserName(receiver.getUserName())).thenReturn(receiver);
+        Mockito.when(messageRepository.getConversationPage(sender.getId(), receiver.getId(), null, null, 2))
+                .thenReturn(page);
+
+        HistoryPageDTO history = messageService.getConversation(sender.getUserName(), receiver.getUserName(),
+                null, null, 2);
+        assertEquals(2, history.messages().size());
+        assertEquals(sender.getUserName(), history.messages().get(0).sender());
+        assertEquals(receiver.getUserName(), history.messages().get(1).sender());
+        assertEquals(timestamp.minusMinutes(1), history.nextBeforeTimestamp());
+        assertEquals(9L, history.nextBeforeId());
+    }
+
+    @Test
+    void givenLastPage_whenGettingConversation_thenNoNextCursor() {
+        LocalDateTime before = LocalDateTime.now();
+        Mockito.when(userService.getUserByUserName(sender.getUserName())).thenReturn(sender);
+        Mockito.when(userService.getUserByUserName(receiver.getUserName())).thenReturn(receiver);
+        Mockito.when(messageRepository.getConversationPage(sender.getId(), receiver.getId(), before, 5L, 50))
+                .thenReturn(new ArrayList<>());
+
+        HistoryPageDTO history = messageService.getConversation(sender.getUserName(), receiver.getUserName(),
+                before, 5L, 50);
+        assertTrue(history.messages().isEmpty());
+        assertNull(history.nextBeforeId());
+    }
+
+    @Test
+    void givenUnknownUser_whenGettingConversation_thenBusinessNotFound() {
+        Mockito.when(userService.getUserByUserName(sender.getUserName())).thenReturn(sender);
+        assertThrows(BusinessNotFound.class, () -> messageService.getConversation(sender.getUserName(),
+                "Lisa", null, null, 50));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,144 @@
+package com.example.chat.service;
+
+import com.example.chat.config.PendingDeliveryProperties;
+import com.example.chat.delivery.EventLogService;
+import com.example.chat.delivery.SseDeliveryService;
+import com.example.chat.dto.UserDTO;
+import com.example.chat.enumeration.MessageStatus;
+import com.example.chat.enumeration.UserStatus;
+import com.example.chat.events.ChatEvent;
+import com.example.chat.metrics.MessageMetrics;
+import com.example.chat.model.Message;
+import com.example.chat.model.User;
+import com.example.chat.repository.RoomRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+class PendingDeliveryServiceTest {
+    private static final int CHUNK_SIZE = 3;
+
+    MessageService messageService = Mockito.mock(MessageService.class);
+    RoomRepository roomRepository = Mockito.mock(RoomRepository.class);
+    UserService userService = Mockito.mock(UserService.class);
+    EventLogService eventLogService = Mockito.mock(EventLogService.class);
+    SseDeliveryService sseDeliveryService = Mockito.mock(SseDeliveryService.class);
+    PendingDeliveryService pendingDeliveryService;
+    User receiver;
+    User sender;
+    UserDTO userDTO;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pendingDeliveryService = new PendingDeliveryService(messageService, roomRepository, userService,
+                eventLogService, sseDeliveryService, new MessageMetrics(new SimpleMeterRegistry()),
+                new PendingDeliveryProperties(CHUNK_SIZE, 1, Duration.ofSeconds(1), Duration.ofSeconds(10)));
+        receiver = new User(8L, "Kate", "Winslett", "kate.winslett@gmail.com", "Kate", "password",
+                UserStatus.ONLINE);
+        sender = new User(3L, "Dan", "Brown", "dan.brown@gmail.com", "danBrown", "password", UserStatus.ONLINE);
+        userDTO = new UserDTO(new SseEmitter(), receiver.getUserName());
+        Mockito.when(userService.getById(sender.getId())).thenReturn(sender);
+        Mockito.when(userService.getUserByUserName(receiver.getUserName())).thenReturn(receiver);
+        Mockito.when(sseDeliveryService.hasCapacity(userDTO)).thenReturn(true);
+        Mockito.when(roomRepository.getPendingChunk(ArgumentMatchers.anyLong(), ArgumentMatchers.anyLong(),
+                ArgumentMatchers.anyInt())).thenReturn(List.of());
+    }
+
+    @AfterEach
+    void tearDown() {
+        pendingDeliveryService.shutdown();
+    }
+
+    private List<Message> messages(long fromId, long toId) {
+        List<Message> messages = new ArrayList<>();
+        for (long id = fromId; id <= toId; id++) {
+            Message message = new Message();
+            message.setId(id);
+            message.setContent("Hello, test: " + id);
+            message.setSender(sender);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    @Test
+    void givenBacklogLargerThanAChunk_whenDelivering_thenEachChunkIsMarkedSentInTurn() throws Exception {
+        Mockito.when(messageService.getPendingChunk(8L, 0, CHUNK_SIZE)).thenReturn(messages(1, 3));
+        Mockito.when(messageService.getPendingChunk(8L, 3, CHUNK_SIZE)).thenReturn(messages(4, 5));
+        Mockito.when(eventLogService.publish(ArgumentMatchers.eq(userDTO), ArgumentMatchers.any()))
+                .thenReturn(true);
+
+        pendingDeliveryService.deliver(userDTO);
+
+        Mockito.verify(eventLogService).publish(userDTO, new ChatEvent("Hello, test: 5", "Kate", "danBrown", 5L,
+                null, null));
+        Mockito.verify(messageService).updateMessages(ArgumentMatchers.eq(List.of(1L, 2L, 3L)),
+                ArgumentMatchers.eq(MessageStatus.SENT), ArgumentMatchers.any());
+        Mockito.verify(messageService).updateMessages(ArgumentMatchers.eq(List.of(4L, 5L)),
+                ArgumentMatchers.eq(MessageStatus.SENT), ArgumentMatchers.any());
+        Mockito.verify(roomRepository).getPendingChunk(8L, 0, CHUNK_SIZE);
+    }
+
+    @Test
+    void givenConnectionDropsMidChunk_whenDelivering_thenOnlyPushedMessagesAreMarkedSent() throws Exception {
+        Mockito.when(messageService.getPendingChunk(8L, 0, CHUNK_SIZE)).thenReturn(messages(1, 3));
+        Mockito.when(eventLogService.publish(ArgumentMatchers.eq(userDTO), ArgumentMatchers.any()))
+                .thenReturn(true, false);
+
+        pendingDeliveryService.deliver(userDTO);
+
+        Mockito.verify(messageService).updateMessages(ArgumentMatchers.eq(List.of(1L)),
+                ArgumentMatchers.eq(MessageStatus.SENT), ArgumentMatchers.any());
+        Mockito.verify(messageService, Mockito.never()).getPendingChunk(8L, 3, CHUNK_SIZE);
+        Mockito.verify(roomRepository, Mockito.never()).getPendingChunk(ArgumentMatchers.anyLong(),
+                ArgumentMatchers.anyLong(), ArgumentMatchers.anyInt());
+    }
+
+    @Test
+    void givenQueueNeverDrains_whenDelivering_thenBacklogStaysPending() throws Exception {
+        Mockito.when(messageService.getPendingChunk(8L, 0, CHUNK_SIZE)).thenReturn(messages(1, 2));
+        Mockito.when(sseDeliveryService.hasCapacity(userDTO)).thenReturn(false);
+        Mockito.when(sseDeliveryService.whenWritable(ArgumentMatchers.eq(userDTO), ArgumentMatchers.any()))
+                .thenReturn(true);
+
+        pendingDeliveryService.deliver(userDTO);
+
+        Mockito.verify(eventLogService, Mockito.never()).publish(ArgumentMatchers.any(UserDTO.class),
+                ArgumentMatchers.any());
+        Mockito.verify(messageService).updateMessages(ArgumentMatchers.eq(List.of()),
+                ArgumentMatchers.eq(MessageStatus.SENT), ArgumentMatchers.any());
+        Mockito.verify(roomRepository, Mockito.never()).getPendingChunk(ArgumentMatchers.anyLong(),
+                ArgumentMatchers.anyLong(), ArgumentMatchers.anyInt());
+    }
+
+    @Test
+    void givenFullQueue_whenItDrains_thenDeliveryResumesWhereItParked() throws Exception {
+        Mockito.when(messageService.getPendingChunk(8L, 0, CHUNK_SIZE)).thenReturn(messages(1, 3));
+        Mockito.when(messageService.getPendingChunk(8L, 1, CHUNK_SIZE)).thenReturn(messages(2, 3));
+        Mockito.when(eventLogService.publish(ArgumentMatchers.eq(userDTO), ArgumentMatchers.any()))
+                .thenReturn(true);
+        Mockito.when(sseDeliveryService.hasCapacity(userDTO)).thenReturn(true, false, true);
+        ArgumentCaptor<Runnable> onWritable = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.when(sseDeliveryService.whenWritable(ArgumentMatchers.eq(userDTO), onWritable.capture()))
+                .thenReturn(true);
+
+        pendingDeliveryService.deliver(userDTO);
+        Mockito.verify(messageService).updateMessages(ArgumentMatchers.eq(List.of(1L)),
+                ArgumentMatchers.eq(MessageStatus.SENT), ArgumentMatchers.any());
+        Mockito.verify(messageService, Mockito.never()).getPendingChunk(8L, 1, CHUNK_SIZE);
+
+        onWritable.getValue().run();
+        Mockito.verify(messageService, Mockito.timeout(5000)).updateMessages(ArgumentMatchers.eq(List.of(2L, 3L)),
+                ArgumentMatchers.eq(MessageStatus.SENT), ArgumentMatchers.any());
+        Mockito.verify(roomRepository, Mockito.timeout(5000)).getPendingChunk(8L, 0, CHUNK_SIZE);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.chat.service;
+
+import com.example.chat.cluster.ClusterRouter;
+import com.example.chat.config.ReceiptProperties;
+import com.example.chat.delivery.EventLogService;
+import com.example.chat.dto.AckRangeDTO;
+import com.example.chat.dto.IdRange;
+import com.example.chat.dto.ReceiptRequest;
+import com.example.chat.enumeration.MessageStatus;
+import com.example.chat.enumeration.UserStatus;
+import com.example.chat.errorHandling.BusinessNotFound;
+import com.example.chat.events.ReceiptEvent;
+import com.example.chat.model.User;
+import com.example.chat.presence.ConnectedUserRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReceiptServiceTest {
+    UserService userService = Mockito.mock(UserService.class);
+    MessageService messageService = Mockito.mock(MessageService.class);
+    ConnectedUserRegistry connectedUserRegistry = Mockito.mock(ConnectedUserRegistry.class);
+    EventLogService eventLogService = Mockito.mock(EventLogService.class);
+    ClusterRouter clusterRouter = Mockito.mock(ClusterRouter.class);
+    ReceiptService receiptService;
+
+    @BeforeEach
+    void setUp() {
+        receiptService = new ReceiptService(userService, messageService, connectedUserRegistry, eventLogService,
+                clusterRouter, new ReceiptProperties(Duration.ofMinutes(1), 3));
+        Mockito.when(userService.getUserByUserName("Kate")).thenReturn(
+                new User(8L, "Kate", "Winslett", "kate.winslett@gmail.com", "Kate", "password", UserStatus.ONLINE));
+        Mockito.when(userService.getUserByUserName("danBrown")).thenReturn(
+                new User(3L, "Dan", "Brown", "dan.brown@gmail.com", "danBrown", "password", UserStatus.ONLINE));
+        Mockito.when(connectedUserRegistry.isConnected("danBrown")).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        receiptService.shutdown();
+    }
+
+    @Test
+    void givenOverlappingRanges_whenMerging_thenDisjointSortedRanges() {
+        List<IdRange> merged = ReceiptService.merge(List.of(new IdRange(5, 7L), new IdRange(1, 3L),
+                new IdRange(4, 4L), new IdRange(10, 12L), new IdRange(12, 15L), new IdRange(11, 11L)));
+
+        assertEquals(List.of(new IdRange(1, 7L), new IdRange(10, 15L)), merged);
+    }
+
+    @Test
+    void givenAcksInOneWindow_whenFlushing_thenOneBatchAndOneReceiptPerConversation() {
+        receiptService.acknowledge("Kate", new ReceiptRequest("danBrown", MessageStatus.DELIVERED,
+                List.of(new IdRange(1, 3L))));
+        receiptService.acknowledge("Kate", new ReceiptRequest("danBrown", MessageStatus.DELIVERED,
+                List.of(new IdRange(4, 6L), new IdRange(9, 9L))));
+        receiptService.flush();
+
+        Mockito.verify(messageService).acknowledge(MessageStatus.DELIVERED, List.of(
+                new AckRangeDTO(3L, 8L, 1, 6), new AckRangeDTO(3L, 8L, 9, 9)));
+        Mockito.verify(eventLogService, Mockito.times(1)).publish("danBrown", new ReceiptEvent("Kate",
+                MessageStatus.DELIVERED, List.of(new IdRange(1, 6L), new IdRange(9, 9L))));
+
+        receiptService.flush();
+        Mockito.verify(messageService, Mockito.times(1)).acknowledge(ArgumentMatchers.any(),
+                ArgumentMatchers.argThat(ranges -> !ranges.isEmpty()));
+    }
+
+    @Test
+    void givenFailedWrite_whenFlushingAgain_thenRetriedAndReceiptSentOnce() {
+        Mockito.doThrow(new QueryTimeoutException("timeout")).doNothing().when(messageService)
+                .acknowledge(ArgumentMatchers.eq(MessageStatus.READ), ArgumentMatchers.anyList());
+        receiptService.acknowledge("Kate", new ReceiptRequest("danBrown", MessageStatus.READ,
+                List.of(new IdRange(1, 3L))));
+
+        receiptService.flush();
+        Mockito.verify(eventLogService, Mockito.never()).publish(ArgumentMatchers.anyString(),
+                ArgumentMatchers.any(ReceiptEvent.class));
+
+        receiptService.flush();
+        Mockito.verify(messageService, Mockito.times(2)).acknowledge(MessageStatus.READ,
+                List.of(new AckRangeDTO(3L, 8L, 1, 3)));
+        Mockito.verify(eventLogService, Mockito.times(1)).publish("danBrown", new ReceiptEvent("Kate",
+                MessageStatus.READ, List.of(new IdRange(1, 3L))));
+    }
+
+    @Test
+    void givenInvalidAck_whenAcknowledging_thenRejected() {
+        assertThrows(IllegalArgumentException.class, () -> receiptService.acknowledge("Kate",
+                new ReceiptRequest("danBrown", MessageStatus.SENT, List.of(new IdRange(1, 3L)))));
+        assertThrows(IllegalArgumentException.class, () -> receiptService.acknowledge("Kate",
+                new ReceiptRequest("danBrown", MessageStatus.READ, List.of(new IdRange(5, 3L)))));
+        assertThrows(IllegalArgumentException.class, () -> receiptService.acknowledge("Kate",
+                new ReceiptRequest("danBrown", MessageStatus.READ, List.of(new IdRange(5, null)))));
+        assertThrows(IllegalArgumentException.class, () -> receiptService.acknowledge("Kate",
+                new ReceiptRequest("danBrown", MessageStatus.READ, List.of(new IdRange(1, 1L),
+                        new IdRange(2, 2L), new IdRange(3, 3L), new IdRange(4, 4L)))));
+        assertThrows(BusinessNotFound.class, () -> receiptService.acknowledge("Kate",
+                new ReceiptRequest("nobody", MessageStatus.READ, List.of(new IdRange(1, 3L)))));
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.chat.service;
+
+import com.example.chat.cluster.ClusterRouter;
+import com.example.chat.config.RoomProperties;
+import com.example.chat.delivery.EventLogService;
+import com.example.chat.dto.RoomMemberDTO;
+import com.example.chat.dto.RoomSendResponse;
+import com.example.chat.enumeration.UserStatus;
+import com.example.chat.errorHandling.BusinessNotFound;
+import com.example.chat.events.RoomEvent;
+import com.example.chat.metrics.MessageMetrics;
+import com.example.chat.model.Room;
+import com.example.chat.presence.ConnectedUserRegistry;
+import com.example.chat.repository.RoomRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomServiceTest {
+    private static final byte[] DATA = "{}".getBytes();
+
+    RoomRepository roomRepository = Mockito.mock(RoomRepository.class);
+    EmailOutboxService emailOutboxService = Mockito.mock(EmailOutboxService.class);
+    ConnectedUserRegistry connectedUserRegistry = Mockito.mock(ConnectedUserRegistry.class);
+    EventLogService eventLogService = Mockito.mock(EventLogService.class);
+    ClusterRouter clusterRouter = Mockito.mock(ClusterRouter.class);
+    RoomService roomService;
+
+    private RoomService roomService(int fanOutThreads, int minPartitionSize) {
+        roomService = new RoomService(roomRepository, Mockito.mock(UserService.class), emailOutboxService,
+                connectedUserRegistry, eventLogService, clusterRouter, new MessageMetrics(new SimpleMeterRegistry()),
+                new RoomProperties(fanOutThreads, minPartitionSize, 10_000));
+        Mockito.when(roomRepository.getByName("team")).thenReturn(new Room(3L, "team", 1L, LocalDateTime.now()));
+        Mockito.when(eventLogService.serialize(ArgumentMatchers.any())).thenReturn(DATA);
+        return roomService;
+    }
+
+    @AfterEach
+    void tearDown() {
+        roomService.shutdown();
+    }
+
+    @Test
+    void givenOnlineAndOfflineMembers_whenSending_thenOnlineArePushedAndOfflineStoredInBulk() {
+        roomService(1, 256);
+        Mockito.when(roomRepository.getMembers(3L)).thenReturn(List.of(
+                new RoomMemberDTO(1L, "danBrown", UserStatus.ONLINE),
+                new RoomMemberDTO(2L, "Kate", UserStatus.ONLINE),
+                new RoomMemberDTO(4L, "Mike", UserStatus.OFFLINE),
+                new RoomMemberDTO(5L, "Anna", UserStatus.ONLINE)));
+        Mockito.when(connectedUserRegistry.isConnected("Kate")).thenReturn(true);
+        Mockito.when(eventLogService.publish(ArgumentMatchers.eq("Kate"), ArgumentMatchers.any(RoomEvent.class),
+                ArgumentMatchers.same(DATA))).thenReturn(true);
+        Mockito.when(roomRepository.saveMessage(ArgumentMatchers.eq(3L), ArgumentMatchers.eq(1L),
+                ArgumentMatchers.eq("Hello, team"), ArgumentMatchers.any(), ArgumentMatchers.eq(List.of(2L, 4L, 5L))))
+                .thenReturn(77L);
+
+        RoomSendResponse response = roomService.send("danBrown", "team", "Hello, team");
+
+        assertEquals(77L, response.messageId());
+        assertEquals(1, response.delivered());
+        assertEquals(2, response.pending());
+        // Stored before anything is pushed, then serialized once with its id for the whole room
+        InOrder inOrder = Mockito.inOrder(roomRepository, eventLogService);
+        inOrder.verify(roomRepository).saveMessage(ArgumentMatchers.anyLong(), ArgumentMatchers.anyLong(),
+                ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any());
+        inOrder.verify(eventLogService, Mockito.times(1))
+                .serialize(new RoomEvent("team", "danBrown", "Hello, team", 77L));
+        inOrder.verify(eventLogService).publish(ArgumentMatchers.eq("Kate"), ArgumentMatchers.any(RoomEvent.class),
+                ArgumentMatchers.same(DATA));
+        inOrder.verify(roomRepository).markSent(ArgumentMatchers.eq(77L), ArgumentMatchers.eq(List.of(2L)),
+                ArgumentMatchers.any());
+        // Never published back to the sender
+        Mockito.verify(eventLogService, Mockito.never()).publish(ArgumentMatchers.eq("danBrown"),
+                ArgumentMatchers.any(), ArgumentMatchers.any(byte[].class));
+        Mockito.verify(emailOutboxService).enqueueAll(List.of(4L, 5L), "danBrown");
+    }
+
+    @Test
+    void givenLargeRoom_whenSending_thenEveryPartitionIsPushed() {
+        roomService(4, 10);
+        List<RoomMemberDTO> members = new ArrayList<>();
+        List<Long> expected = new ArrayList<>();
+        members.add(new RoomMemberDTO(0L, "user0", UserStatus.ONLINE));
+        for (long i = 1; i <= 1000; i++) {
+            members.add(new RoomMemberDTO(i, "user" + i, UserStatus.ONLINE));
+            expected.add(i);
+        }
+        Mockito.when(roomRepository.getMembers(3L)).thenReturn(members);
+        Mockito.when(connectedUserRegistry.isConnected(ArgumentMatchers.anyString())).thenReturn(true);
+        Mockito.when(eventLogService.publish(ArgumentMatchers.anyString(), ArgumentMatchers.any(RoomEvent.class),
+                ArgumentMatchers.same(DATA))).thenReturn(true);
+
+        RoomSendResponse response = roomService.send("user0", "team", "Hello, everyone");
+
+        assertEquals(1000, response.delivered());
+        assertEquals(0, response.pending());
+        Mockito.verify(roomRepository).saveMessage(ArgumentMatchers.eq(3L), ArgumentMatchers.eq(0L),
+                ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.eq(expected));
+        Mockito.verify(roomRepository).markSent(ArgumentMatchers.anyLong(), ArgumentMatchers.eq(expected),
+                ArgumentMatchers.any());
+    }
+
+    @Test
+    void givenMembersOnOtherNodes_whenSending_thenForwardedInOneCall() {
+        roomService(1, 256);
+        Mockito.when(roomRepository.getMembers(3L)).thenReturn(List.of(
+                new RoomMemberDTO(1L, "danBrown", UserStatus.ONLINE),
+                new RoomMemberDTO(2L, "Kate", UserStatus.ONLINE),
+                new RoomMemberDTO(4L, "Mike", UserStatus.ONLINE)));
+        Mockito.when(roomRepository.saveMessage(ArgumentMatchers.anyLong(), ArgumentMatchers.anyLong(),
+                ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(77L);
+        Mockito.when(clusterRouter.forwardAll(List.of("Kate", "Mike"), new RoomEvent("team", "danBrown",
+                "Hello, team", 77L))).thenReturn(Set.of("Mike"));
+
+        RoomSendResponse response = roomService.send("danBrown", "team", "Hello, team");
+
+        assertEquals(1, response.delivered());
+        Mockito.verify(clusterRouter, Mockito.never()).forward(ArgumentMatchers.any(), ArgumentMatchers.any());
+        Mockito.verify(roomRepository).markSent(ArgumentMatchers.eq(77L), ArgumentMatchers.eq(List.of(4L)),
+                ArgumentMatchers.any());
+        Mockito.verify(emailOutboxService).enqueueAll(List.of(2L), "danBrown");
+    }
+
+    @Test
+    void givenNonMember_whenSending_thenNotFound() {
+        roomService(1, 256);
+        Mockito.when(roomRepository.getMembers(3L)).thenReturn(List.of(
+                new RoomMemberDTO(2L, "Kate", UserStatus.ONLINE)));
+
+        assertThrows(BusinessNotFound.class, () -> roomService.send("danBrown", "team", "Hello, team"));
+        Mockito.verify(roomRepository, Mockito.never()).saveMessage(ArgumentMatchers.anyLong(),
+                ArgumentMatchers.anyLong(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+}
@@ -1,31 +1,57 @@
 package com.example.chat.service;
 
+import com.example.chat.cache.UserCache;
+import com.example.chat.cache.UserNameFilter;
+import com.example.chat.config.UserCacheProperties;
+import com.example.chat.config.PresenceProperties;
+import com.example.chat.config.UserNameFilterProperties;
 import com.example.chat.dto.UserRequest;
 import com.example.chat.dto.UserResponse;
 import com.example.chat.enumeration.UserStatus;
 import com.example.chat.model.User;
+import com.example.chat.presence.UserStatusWriter;
 import com.example.chat.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class UserServiceTest {
     UserRepository userRepository;
+    UserNameFilter userNameFilter;
+    UserStatusWriter userStatusWriter;
     UserService userService;
     User user;
 
     @BeforeEach
     void setUp() {
         userRepository = Mockito.mock(UserRepository.class);
-        userService = new UserService(userRepository);
+        userStatusWriter = new UserStatusWriter(userRepository, new PresenceProperties(Duration.ofMinutes(1), 2));
+        userNameFilter = new UserNameFilter(userRepository,
+                new UserNameFilterProperties(1000, 0.01, Duration.ofSeconds(5), 10));
+        userService = new UserService(userRepository,
+                new UserCache(new UserCacheProperties(100, Duration.ofMinutes(5))), userNameFilter,
+                userStatusWriter);
         user = new User(28L, "Kate", "Winslett", "kate.winslett@gmail.com",
                 "Kate",
                 "$2a$10$u4eU9d.OFQTlJdYum1tykunFmy.rKdA565cwr/t0tfHAUf/of/jt2", UserStatus.ONLINE);
     }
 
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        userStatusWriter.shutdown();
+    }
+
     @Test
     void givenValidId_whenGettingUserById_thenReturnUser() {
         long id = user.getId();
@@ -123,40 +149,158 @@ class UserServiceTest {
     void updateStatusTest() {
         String userName = user.getUserName();
         userService.updateStatus(userName, UserStatus.OFFLINE);
+        Mockito.verifyNoInteractions(userRepository);
+        userStatusWriter.flush();
         Mockito.verify(userRepository, Mockito.times(1))
-                .updateStatusByUserName(userName, UserStatus.OFFLINE.name());
+                .updateStatusByUserNames(List.of(userName), UserStatus.OFFLINE.name());
     }
 
 
     @Test
     void givenValidId_whenCheckingIfUserExistsById_thenReturnTRUE() {
         long id = user.getId();
-        User expectedUser = user;
-        Mockito.when(userRepository.getById(id)).thenReturn(expectedUser);
+        Mockito.when(userRepository.existsById(id)).thenReturn(true);
         assertTrue(userService.existsById(id));
     }
 
     @Test
     void givenInValidId_whenCheckingIfUserExistsById_thenReturnFALSE() {
         long id = user.getId();
-        User expectedUser = null;
-        Mockito.when(userRepository.getById(id)).thenReturn(expectedUser);
+        Mockito.when(userRepository.existsById(id)).thenReturn(false);
         assertFalse(userService.existsById(id));
     }
 
     @Test
     void givenValidUserName_whenCheckingIfUserExistsByUserName_thenReturnTRUE() {
         String userName = user.getUserName();
-        User expectedUser = user;
-        Mockito.when(userRepository.getByUserName(userName)).thenReturn(expectedUser);
+        Mockito.when(userRepository.existsByUserName(userName)).thenReturn(true);
         assertTrue(userService.existsByUserName(userName));
+        Mockito.verify(userRepository, Mockito.never()).getByUserName(userName);
     }
 
     @Test
     void givenInValidUserName_whenCheckingIfUserExistsByUserName_thenReturnFALSE() {
         String userName = user.getUserName();
-        User expectedUser = null;
-        Mockito.when(userRepository.getByUserName(userName)).thenReturn(expectedUser);
+        Mockito.when(userRepository.existsByUserName(userName)).thenReturn(false);
         assertFalse(userService.existsByUserName(userName));
     }
+
+    @Test
+    void givenCachedUser_whenCheckingIfUserExists_thenDatabaseNotQueried() {
+        Mockito.when(userRepository.getByUserName(user.getUserName())).thenReturn(user);
+        userService.getUserByUserName(user.getUserName());
+        assertTrue(userService.existsByUserName(user.getUserName()));
+        assertTrue(userService.existsById(user.getId()));
+        Mockito.verify(userRepository, Mockito.never()).existsByUserName(user.getUserName());
+        Mockito.verify(userRepository, Mockito.never()).existsById(user.getId());
+    }
+
+    @Test
+    void givenWarmFilter_whenCheckingUnregisteredUserName_thenAvailableWithoutDatabase() {
+        Mockito.when(userRepository.getUserNamesAfter(0L, 10_000)).thenReturn(List.of(user));
+        userNameFilter.refresh();
+
+        assertTrue(userService.isUserNameAvailable("nobody"));
+        Mockito.verify(userRepository, Mockito.never()).existsByUserName("nobody");
+
+        // The collation ignores case, so does the filter
+        Mockito.when(userRepository.existsByUserName("KATE")).thenReturn(true);
+        assertFalse(userService.isUserNameAvailable("KATE"));
+    }
+
+    @Test
+    void givenWarmFilter_whenLookingUpUserItHasNotSeen_thenDatabaseDecides() {
+        userNameFilter.refresh();
+        Mockito.when(userRepository.getByUserName(user.getUserName())).thenReturn(user);
+        Mockito.when(userRepository.existsByUserName(user.getUserName())).thenReturn(true);
+
+        assertEquals(user, userService.getUserByUserName(user.getUserName()));
+        assertTrue(userService.existsByUserName(user.getUserName()));
+    }
+
+    @Test
+    void givenRegistrationCommittedOutOfIdOrder_whenRefreshing_thenOverlapPicksItUp() {
+        User later = new User(40L, "Mike", "Ross", "mike.ross@gmail.com", "Mike", "password", UserStatus.OFFLINE);
+        Mockito.when(userRepository.getUserNamesAfter(0L, 10_000)).thenReturn(List.of(later));
+        userNameFilter.refresh();
+        assertFalse(userNameFilter.mightExist(user.getUserName()));
+
+        Mockito.when(userRepository.getUserNamesAfter(30L, 10_000)).thenReturn(List.of(user, later));
+        userNameFilter.refresh();
+        assertTrue(userNameFilter.mightExist(user.getUserName()));
+    }
+
+    @Test
+    void givenWarmFilter_whenCreatingUser_thenUserNameMightExist() {
+        userNameFilter.refresh();
+        UserRequest userRequest = new UserRequest(user.getFirstName(), user.getLastName(), user.getEmail(),
+                "newUser", user.getPassword());
+        assertFalse(userNameFilter.mightExist("newUser"));
+        userService.create(userRequest);
+        assertTrue(userNameFilter.mightExist("newUser"));
+    }
+
+    @Test
+    void givenCachedUser_whenGettingUserByUserNameAndId_thenRepositoryQueriedOnce() {
+        String userName = user.getUserName();
+        Mockito.when(userRepository.getByUserName(userName)).thenReturn(user);
+        userService.getUserByUserName(userName);
+        userService.getUserByUserName(userName);
+        assertEquals(user, userService.getById(user.getId()));
+        Mockito.verify(userRepository, Mockito.times(1)).getByUserName(userName);
+        Mockito.verify(userRepository, Mockito.never()).getById(user.getId());
+    }
+
+    @Test
+    void givenCachedUser_whenUpdatingStatus_thenUserNotReloaded() {
+        String userName = user.getUserName();
+        Mockito.when(userRepository.getByUserName(userName)).thenReturn(user);
+        userService.getUserByUserName(userName);
+        userService.updateStatus(userName, UserStatus.OFFLINE);
+        userService.getUserByUserName(userName);
+        Mockito.verify(userRepository, Mockito.times(1)).getByUserName(userName);
+    }
+
+    @Test
+    void givenStatusChangesInOneWindow_whenFlushing_thenOnlyLastStatusPerUserWrittenInBatches() {
+        userService.updateStatus("Kate", UserStatus.ONLINE);
+        userService.updateStatus("Mike", UserStatus.ONLINE);
+        userService.updateStatus("Anna", UserStatus.ONLINE);
+        userService.updateStatus("Kate", UserStatus.OFFLINE);
+        userStatusWriter.flush();
+
+        ArgumentCaptor<List<String>> online = ArgumentCaptor.captor();
+        Mockito.verify(userRepository, Mockito.times(1))
+                .updateStatusByUserNames(online.capture(), ArgumentMatchers.eq(UserStatus.ONLINE.name()));
+        assertEquals(Set.of("Mike", "Anna"), Set.copyOf(online.getValue()));
+        Mockito.verify(userRepository, Mockito.times(1))
+                .updateStatusByUserNames(List.of("Kate"), UserStatus.OFFLINE.name());
+
+        userStatusWriter.flush();
+        Mockito.verifyNoMoreInteractions(userRepository);
+    }
+
+    @Test
+    void givenFailedFlush_whenFlushingAgain_thenStatusRetried() {
+        Mockito.doThrow(new QueryTimeoutException("timeout")).doNothing().when(userRepository)
+                .updateStatusByUserNames(List.of("Kate"), UserStatus.OFFLINE.name());
+        userService.updateStatus("Kate", UserStatus.OFFLINE);
+        userStatusWriter.flush();
+        assertEquals(1, userStatusWriter.getPendingCount());
+        userStatusWriter.flush();
+        assertEquals(0, userStatusWriter.getPendingCount());
+        Mockito.verify(userRepository, Mockito.times(2))
+                .updateStatusByUserNames(List.of("Kate"), UserStatus.OFFLINE.name());
+    }
+
+    @Test
+    void givenCachedUser_whenDeleting_thenNextLookupReloadsUser() {
+        long id = user.getId();
+        Mockito.when(userRepository.getById(id)).thenReturn(user);
+        userService.getById(id);
+        userService.delete(id);
+        userService.getById(id);
+        Mockito.verify(userRepository, Mockito.times(1)).delete(id);
+        Mockito.verify(userRepository, Mockito.times(2)).getById(id);
+    }
 }
\ No newline at end of file